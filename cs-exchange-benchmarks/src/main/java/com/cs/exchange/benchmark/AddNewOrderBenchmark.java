@@ -0,0 +1,77 @@
+package com.cs.exchange.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Order;
+
+/**
+ * Latency of adding an order to books of increasing size
+ *
+ * Each operation leaves the book as it found it, so the book size holds
+ * steady throughout an iteration. The book is rebuilt for every iteration as
+ * the list of submitted orders keeps growing.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class AddNewOrderBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    private int bookSize;
+
+    @Param({ "OrderMatcherImpl", "PriceTimeOrderMatcher", "ProRataOrderMatcher" })
+    private String matcher;
+
+    private Exchange ex;
+
+    private Order restingBuy;
+    private Order matchingSell;
+    private Order replenishingBuy;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ex = new Exchange(BenchmarkOrders.newMatcher(matcher), BenchmarkOrders.INSTRUMENTS);
+        BenchmarkOrders.addRestingOrders(ex, bookSize, 1000);
+
+        // Joins the back of a level in the middle of the book
+        restingBuy = new Order(Direction.BUY, BenchmarkOrders.RIC, BenchmarkOrders.QUANTITY,
+                        BenchmarkOrders.bidPrice(500), "Benchmark");
+
+        // Takes out the first order at the best bid, which is then put back
+        matchingSell = new Order(Direction.SELL, BenchmarkOrders.RIC, BenchmarkOrders.QUANTITY,
+                        BenchmarkOrders.BEST_BID, "Benchmark");
+        replenishingBuy = new Order(Direction.BUY, BenchmarkOrders.RIC, BenchmarkOrders.QUANTITY,
+                        BenchmarkOrders.BEST_BID, "Benchmark");
+    }
+
+    @Benchmark
+    public boolean addAndCancelRestingOrder() {
+        return ex.cancelOrder(ex.addNewOrder(restingBuy));
+    }
+
+    @Benchmark
+    public long addMatchingOrder() {
+        ex.addNewOrder(matchingSell);
+        return ex.addNewOrder(replenishingBuy);
+    }
+
+}
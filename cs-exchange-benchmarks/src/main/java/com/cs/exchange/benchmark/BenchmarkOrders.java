@@ -0,0 +1,88 @@
+package com.cs.exchange.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.OrderMatcher;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+import com.cs.exchange.matcher.ProRataOrderMatcher;
+
+/**
+ * Builds the orders and books used by the benchmarks
+ *
+ */
+final class BenchmarkOrders {
+
+    static final String RIC = "VOD.L";
+    static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC);
+    static final BigDecimal QUANTITY = new BigDecimal("100");
+
+    // Best bid, with levels every TICK below it...offers start above it
+    static final BigDecimal BEST_BID = new BigDecimal("100.00");
+    static final BigDecimal BEST_OFFER = new BigDecimal("100.01");
+    static final BigDecimal TICK = new BigDecimal("0.01");
+
+    private BenchmarkOrders() {
+    }
+
+    static OrderMatcher newMatcher(String name) {
+        switch (name) {
+            case "OrderMatcherImpl":
+                return new OrderMatcherImpl();
+            case "PriceTimeOrderMatcher":
+                return new PriceTimeOrderMatcher();
+            case "ProRataOrderMatcher":
+                return new ProRataOrderMatcher();
+            default:
+                throw new IllegalArgumentException("Unknown matcher: " + name);
+        }
+    }
+
+    static BigDecimal bidPrice(int depth) {
+        return BEST_BID.subtract(TICK.multiply(BigDecimal.valueOf(depth)));
+    }
+
+    static BigDecimal offerPrice(int depth) {
+        return BEST_OFFER.add(TICK.multiply(BigDecimal.valueOf(depth)));
+    }
+
+    /**
+     * Build a book that does not cross, with half the orders on each side
+     * spread evenly over the given number of price levels per side
+     *
+     * @param ex
+     *            - the Exchange to add the orders to
+     * @param orderCount
+     *            - the total number of resting orders
+     * @param levels
+     *            - the number of price levels on each side
+     */
+    static void addRestingOrders(Exchange ex, int orderCount, int levels) {
+        List<Order> batch = new ArrayList<Order>(1024);
+
+        for (int i = 0; i < orderCount; i++) {
+            int depth = (i / 2) % levels;
+            String user = "User " + (i % 16);
+
+            if (i % 2 == 0) {
+                batch.add(new Order(Direction.BUY, RIC, QUANTITY, bidPrice(depth), user));
+            } else {
+                batch.add(new Order(Direction.SELL, RIC, QUANTITY, offerPrice(depth), user));
+            }
+
+            if (batch.size() == 1024) {
+                ex.addNewOrders(batch);
+                batch.clear();
+            }
+        }
+
+        ex.addNewOrders(batch);
+    }
+
+}
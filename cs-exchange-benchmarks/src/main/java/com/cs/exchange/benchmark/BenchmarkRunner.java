@@ -0,0 +1,28 @@
+package com.cs.exchange.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Exchange benchmarks with the GC profiler always enabled, so that
+ * allocation rates are reported alongside timings
+ *
+ * Accepts the usual JMH command line options, e.g. a benchmark name pattern
+ * to run a subset.
+ *
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                        .parent(new CommandLineOptions(args))
+                        .addProfiler(GCProfiler.class)
+                        .build();
+
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.cs.exchange.benchmark;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.SequencedExchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+
+/**
+ * Order submission throughput with several threads submitting at once, for
+ * the locking Exchange and the single-writer SequencedExchange
+ *
+ * Each thread alternately buys and sells its own stock, so every other order
+ * executes and the books stay small; the cost measured is that of getting
+ * the orders into the engine.
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@Threads(4)
+public class ContendedSubmissionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Exchanges {
+
+        private Exchange exchange;
+        private SequencedExchange sequencedExchange;
+
+        @Setup(Level.Iteration)
+        public void setUp(BenchmarkParams params) {
+            String[] rics = new String[params.getThreads()];
+
+            for (int i = 0; i < rics.length; i++) {
+                rics[i] = ric(i);
+            }
+
+            List<Instrument> instruments = Instrument.withDefaults(rics);
+            exchange = new Exchange(new OrderMatcherImpl(), instruments);
+            sequencedExchange = new SequencedExchange(new OrderMatcherImpl(), instruments);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            sequencedExchange.close();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class Submitter {
+
+        private Order buy;
+        private Order sell;
+        private boolean buyNext = true;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            String ric = ric(threadParams.getThreadIndex());
+            String user = "User " + threadParams.getThreadIndex();
+
+            buy = new Order(Direction.BUY, ric, BenchmarkOrders.QUANTITY, new BigDecimal("100"), user);
+            sell = new Order(Direction.SELL, ric, BenchmarkOrders.QUANTITY, new BigDecimal("100"), user);
+        }
+
+        Order next() {
+            buyNext = !buyNext;
+            return buyNext ? sell : buy;
+        }
+
+    }
+
+    @Benchmark
+    public long exchange(Exchanges exchanges, Submitter submitter) {
+        return exchanges.exchange.addNewOrder(submitter.next());
+    }
+
+    @Benchmark
+    public long sequencedExchange(Exchanges exchanges, Submitter submitter) {
+        return exchanges.sequencedExchange.addNewOrder(submitter.next());
+    }
+
+    /**
+     * @return the stock traded by the given thread
+     */
+    private static String ric(int threadIndex) {
+        return "RIC" + threadIndex + ".L";
+    }
+
+}
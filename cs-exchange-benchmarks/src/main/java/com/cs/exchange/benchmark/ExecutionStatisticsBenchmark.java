@@ -0,0 +1,79 @@
+package com.cs.exchange.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+
+/**
+ * Cost of the execution queries once millions of executions have occurred
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+public class ExecutionStatisticsBenchmark {
+
+    @Param({ "1000000", "5000000" })
+    private int executions;
+
+    private Exchange ex;
+
+    @Setup
+    public void setUp() {
+        ex = new Exchange(new OrderMatcherImpl(), BenchmarkOrders.INSTRUMENTS);
+
+        // Orders are immutable so each one can be submitted many times
+        Order[] orders = new Order[64];
+
+        for (int i = 0; i < orders.length; i += 2) {
+            BigDecimal price = BenchmarkOrders.bidPrice(i);
+            orders[i] = new Order(Direction.BUY, BenchmarkOrders.RIC, BenchmarkOrders.QUANTITY, price, "User 1");
+            orders[i + 1] = new Order(Direction.SELL, BenchmarkOrders.RIC, BenchmarkOrders.QUANTITY, price, "User 2");
+        }
+
+        List<Order> batch = new ArrayList<Order>(1024);
+
+        for (int i = 0; i < executions * 2; i++) {
+            batch.add(orders[i % orders.length]);
+
+            if (batch.size() == 1024) {
+                ex.addNewOrders(batch);
+                batch.clear();
+            }
+        }
+
+        ex.addNewOrders(batch);
+    }
+
+    @Benchmark
+    public BigDecimal averageExecutionPrice() {
+        return ex.getAverageExecutionPrice(BenchmarkOrders.RIC);
+    }
+
+    @Benchmark
+    public BigDecimal executedQuantityForUser() {
+        return ex.getExecutedQuantityForUser(BenchmarkOrders.RIC, "User 1");
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.cs.exchange.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+
+/**
+ * Cost of querying open interest for books with many price levels, both
+ * when the book is unchanged since the last query and when it has just
+ * changed
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class OpenInterestBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int levels;
+
+    private Exchange ex;
+
+    private Order change;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), BenchmarkOrders.INSTRUMENTS);
+        BenchmarkOrders.addRestingOrders(ex, levels * 2, levels);
+
+        change = new Order(Direction.BUY, BenchmarkOrders.RIC, BenchmarkOrders.QUANTITY,
+                        BenchmarkOrders.bidPrice(levels / 2), "Benchmark");
+    }
+
+    @Benchmark
+    public List<OpenInterest> unchangedBook() {
+        return ex.getOpenInterest(BenchmarkOrders.RIC, Direction.BUY);
+    }
+
+    @Benchmark
+    public List<OpenInterest> changedBook() {
+        ex.cancelOrder(ex.addNewOrder(change));
+        return ex.getOpenInterest(BenchmarkOrders.RIC, Direction.BUY);
+    }
+
+    @Benchmark
+    public List<OpenInterest> changedBookTopLevels() {
+        ex.cancelOrder(ex.addNewOrder(change));
+        return ex.getOpenInterest(BenchmarkOrders.RIC, Direction.BUY, 10);
+    }
+
+}
@@ -1,339 +1,710 @@
 package com.cs.exchange;
 
-import static com.google.common.collect.Collections2.filter;
-
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.util.ArrayList;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
 
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.AuctionPrice;
+import com.cs.exchange.domain.Bar;
 import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
 import com.cs.exchange.domain.OpenInterest;
 import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderRejectedException;
+import com.cs.exchange.domain.OrderResult;
+import com.cs.exchange.domain.OrderStatus;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.event.BackpressurePolicy;
+import com.cs.exchange.event.DepthListener;
+import com.cs.exchange.event.DepthSubscription;
+import com.cs.exchange.event.ExchangeListener;
+import com.cs.exchange.event.OrderEventHandler;
+import com.cs.exchange.event.Subscription;
+import com.cs.exchange.history.HistoryStore;
+import com.cs.exchange.journal.Journal;
 import com.cs.exchange.matcher.OrderMatcher;
-import com.google.common.base.Predicate;
+import com.cs.exchange.metrics.ExchangeMetrics;
+import com.cs.exchange.metrics.ExchangeMetricsBean;
+import com.cs.exchange.metrics.MetricsSnapshot;
+import com.cs.exchange.risk.RiskLimits;
+import com.cs.exchange.stats.BarResolution;
 
 /**
  * Exchange system that matches orders on stocks
  *
+ * All access to the underlying {@link MatchingEngine} is serialized on this
+ * Exchange's monitor. See {@link SequencedExchange} for an alternative that
+ * matches on a single dedicated thread and never locks.
+ *
+ * The time spent in each method, and waiting for the monitor, is recorded
+ * without allocating and can be read through {@link #getMetrics()} or JMX.
+ *
  */
 public class Exchange {
 
-    private final OrderMatcher matcher;
+    private final MatchingEngine engine;
 
-    // List of all orders submitted to the Exchange maintained in submission
-    // order
-    private final List<Order> submittedOrders = new ArrayList<Order>();
+    // Only recorded while holding the monitor
+    private final ExchangeMetrics metrics = new ExchangeMetrics();
 
-    // List of all open orders - this will grow and shrink...hence LinkedList
-    private final List<Order> openOrders = new LinkedList<Order>();
+    /**
+     * Create an Exchange that trades no stocks, so rejects every order
+     *
+     * @see #Exchange(OrderMatcher, Collection)
+     */
+    public Exchange(OrderMatcher matcher) {
+        this(matcher, Collections.<Instrument> emptyList());
+    }
 
-    // Map of stock identifier (RIC) against execution
-    private final Map<String, List<Execution>> execStockMap = new HashMap<String, List<Execution>>();
+    /**
+     * Create an Exchange that trades the given stocks
+     *
+     * Orders are only accepted for the stocks given, with prices and
+     * quantities that fit their scales and tick sizes. A stock must be given
+     * to be traded at all, e.g. with the default scales through
+     * {@link Instrument#withDefaults(String...)}.
+     *
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     */
+    public Exchange(OrderMatcher matcher, Collection<Instrument> instruments) {
+        this(matcher, instruments, null);
+    }
 
-    public Exchange(OrderMatcher matcher) {
-        this.matcher = matcher;
+    /**
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     * @param journal
+     *            - the journal to record every change in, or null for none
+     */
+    public Exchange(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal) {
+        this(matcher, instruments, journal, null);
     }
 
     /**
-     * Submit a new order to the Exchange
-     * 
-     * @param o
-     *            - the order to be added
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     * @param journal
+     *            - the journal to record every change in, or null for none
+     * @param historyStore
+     *            - the store for older orders and executions, or null to keep
+     *            them all in memory
      */
-    public void addNewOrder(Order o) {
+    public Exchange(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal,
+                    HistoryStore historyStore) {
+        this(new MatchingEngine(matcher, instruments, journal, historyStore));
+    }
 
-        if (o == null) {
-            throw new RuntimeException("Unable to add a NULL order");
-        }
+    private Exchange(MatchingEngine engine) {
+        this.engine = engine;
+    }
 
-        validateOrderDetails(o);
-        submittedOrders.add(o);
+    /**
+     * Rebuild an Exchange from its latest snapshot and journal
+     *
+     * @see MatchingEngine#recover(OrderMatcher, Collection, Journal, HistoryStore, Path)
+     */
+    public static Exchange recover(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal,
+                    Path snapshot) {
+        return recover(matcher, instruments, journal, null, snapshot);
+    }
 
-        // Avoid inconsistent collection state when matching and processing
-        // orders
-        synchronized (this) {
-            List<Order> matchingOrders = getMatchingOrders(o);
-            processMatchingOrders(o, matchingOrders);
-        }
+    /**
+     * Rebuild an Exchange from its latest snapshot and journal, keeping only
+     * recent history in memory
+     *
+     * @see MatchingEngine#recover(OrderMatcher, Collection, Journal, HistoryStore, Path)
+     */
+    public static Exchange recover(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal,
+                    HistoryStore historyStore, Path snapshot) {
+        return new Exchange(MatchingEngine.recover(matcher, instruments, journal, historyStore, snapshot));
     }
 
     /**
-     * Get a list of all the orders that were submitted to the Exchange
-     * 
-     * @return the list of all submitted orders
+     * Write a snapshot of the Exchange for fast recovery - typically called
+     * periodically, e.g. from a scheduled executor
+     *
+     * Matching is paused while the snapshot is written.
+     *
+     * @param file
+     *            - the snapshot file, replaced once the snapshot is complete
+     * @see MatchingEngine#writeSnapshot(Path)
      */
-    public List<Order> getAllOrders() {
-        return new ArrayList<Order>(submittedOrders);
+    public synchronized void writeSnapshot(Path file) {
+        engine.writeSnapshot(file);
     }
 
     /**
-     * Get the list of "open interest" for the given stock identifier (RIC) and
-     * direction
-     * 
-     * Open interest is defined as the total quantity of all open orders on a
-     * per price point basis
-     * 
-     * @param ric
-     *            - the stock identifier for which open interest is required
-     * @param buySell
-     *            - the direction for which open interest is required
-     * @return a list of open interest entries sorted in descending order of
-     *         price
+     * Submit a new order to the Exchange
+     *
+     * @param o
+     *            - the order to be added
+     * @return the id of the order, which can be used to cancel or amend it
+     * @throws OrderRejectedException
+     *             if the order is invalid or breaks a risk limit of its user
      */
-    public List<OpenInterest> getOpenInterest(String ric, Direction buySell) {
-        List<OpenInterest> interest = new ArrayList<OpenInterest>();
+    public long addNewOrder(Order o) {
 
-        Collection<Order> matchingOpenOrders = filter(openOrders, new Predicate<Order>() {
+        long submitted = System.nanoTime();
+        BookOrder bookOrder;
 
-            @Override
-            public boolean apply(Order input) {
-                return input.getRic().equals(ric) && input.getDirection().equals(buySell);
-            }
+        try {
+            bookOrder = engine.validate(o);
+        } catch (RuntimeException e) {
+            metrics.rejected();
+            throw e;
+        }
 
-        });
+        return add(bookOrder, submitted);
+    }
 
-        if (matchingOpenOrders != null && matchingOpenOrders.size() > 0) {
-            // Now we aggregate quantity for each price, but we don't want to
-            // use BigDecimal as key in a HashMap as equals/compareTo relationship
-            // is broken...so we use a TreeMap which only uses compareTo
-            Map<BigDecimal, BigDecimal> totalQtyByPriceMap = new TreeMap<BigDecimal, BigDecimal>();
+    /**
+     * Submit a new order already in its book representation, e.g. decoded
+     * straight from a binary message, so that no Order or BigDecimal need be
+     * created on the way to the matcher
+     *
+     * @param o
+     *            - the order to be added, not yet given an id, whose price and
+     *            quantity are scaled for its stock
+     * @return the id of the order, which can be used to cancel or amend it
+     * @throws OrderRejectedException
+     *             if the order is invalid or breaks a risk limit of its user
+     * @see #setOrderEventHandler(OrderEventHandler)
+     */
+    public long addNewOrder(BookOrder o) {
 
-            for (Order order : matchingOpenOrders) {
-                BigDecimal qty = totalQtyByPriceMap.get(order.getPrice());
+        long submitted = System.nanoTime();
 
-                if (qty == null) {
-                    qty = BigDecimal.ZERO;
-                }
+        try {
+            engine.validate(o);
+        } catch (RuntimeException e) {
+            metrics.rejected();
+            throw e;
+        }
 
-                totalQtyByPriceMap.put(order.getPrice(), qty.add(order.getQuantity()));
-            }
+        return add(o, submitted);
+    }
 
-            for (BigDecimal price : totalQtyByPriceMap.keySet()) {
-                interest.add(new OpenInterest(totalQtyByPriceMap.get(price), price));
+    /**
+     * Submit a batch of new orders to the Exchange
+     *
+     * Every order is validated before the batch is matched, in the order
+     * given, under a single acquisition of the lock. An invalid order, or one
+     * that breaks a risk limit, is rejected without affecting the rest of the
+     * batch.
+     *
+     * @param orders
+     *            - the orders to be added
+     * @return the result of each order, in the order given
+     */
+    public List<OrderResult> addNewOrders(Collection<Order> orders) {
+
+        OrderResult[] results = new OrderResult[orders.size()];
+        BookOrder[] bookOrders = new BookOrder[orders.size()];
+        int i = 0;
+
+        for (Order o : orders) {
+            try {
+                bookOrders[i] = engine.validate(o);
+            } catch (OrderRejectedException e) {
+                metrics.rejected();
+                results[i] = new OrderResult(o, -1, OrderStatus.REJECTED, e.getMessage(), e.getReason());
             }
 
-            // Sort the open interest entries by descending price
-            Collections.sort(interest, new Comparator<OpenInterest>() {
+            i++;
+        }
+
+        long requested = System.nanoTime();
+
+        synchronized (this) {
+            long started = metrics.lockAcquired(requested);
+
+            for (i = 0; i < bookOrders.length; i++) {
+                BookOrder bookOrder = bookOrders[i];
+
+                if (bookOrder == null) {
+                    continue;
+                }
 
-                @Override
-                public int compare(OpenInterest o1, OpenInterest o2) {
-                    return o2.getPrice().compareTo(o1.getPrice());
+                RejectReason reason = engine.checkRisk(bookOrder);
+
+                if (reason != null) {
+                    metrics.rejected();
+                    results[i] = new OrderResult(bookOrder.getOrder(), -1, OrderStatus.REJECTED,
+                                    reason.getDisplayValue(), reason);
+                } else {
+                    engine.process(bookOrder);
+                    started = metrics.orderMatched(started);
+                    results[i] = new OrderResult(bookOrder.getOrder(), bookOrder.getId(), getStatus(bookOrder),
+                                    null);
                 }
+            }
 
-            });
+            engine.endBatch();
         }
 
-        return interest;
+        return Arrays.asList(results);
     }
 
     /**
-     * Get the average execution price for the given stock identifier (RIC)
-     * 
-     * The average execution price is the average price per unit of all
-     * executions of the stock.
-     * 
-     * @param ric
-     *            - the stock identifier for which average execution price is
-     *            required
-     * @return - the average execution price or null if no executions have
-     *         occurred
+     * Submit a new order to the Exchange, reporting rather than throwing if
+     * it is rejected
+     *
+     * @param o
+     *            - the order to be added
+     * @return the result of the order, with the reason if it was rejected
      */
-    public BigDecimal getAverageExecutionPrice(String ric) {
-
-        List<Execution> execs = execStockMap.get(ric);
+    public OrderResult submitOrder(Order o) {
+        return addNewOrders(Collections.singletonList(o)).get(0);
+    }
 
-        if (execs != null) {
-            BigDecimal totalQty = BigDecimal.ZERO;
-            BigDecimal totalAmt = BigDecimal.ZERO;
-            MathContext mc = MathContext.DECIMAL64;
+    /**
+     * Set the pre-trade risk limits of a single user
+     *
+     * @param user
+     *            - the user whose orders are limited
+     * @param limits
+     *            - the limits, or null to go back to the default limits
+     * @see MatchingEngine#setRiskLimits(String, RiskLimits)
+     */
+    public void setRiskLimits(String user, RiskLimits limits) {
+        engine.setRiskLimits(user, limits);
+    }
 
-            for (Execution execution : execs) {
-                totalQty = totalQty.add(execution.quantity);
-                totalAmt = totalAmt.add(execution.getQuantity().multiply(execution.getPrice(), mc));
-            }
+    /**
+     * Set the pre-trade risk limits of every user without limits of their own
+     *
+     * @param limits
+     *            - the limits, or null for no limits
+     * @see MatchingEngine#setDefaultRiskLimits(RiskLimits)
+     */
+    public void setDefaultRiskLimits(RiskLimits limits) {
+        engine.setDefaultRiskLimits(limits);
+    }
 
-            return totalAmt.divide(totalQty, mc).setScale(4, RoundingMode.HALF_UP);
-        }
+    /**
+     * @see MatchingEngine#getInstrument(String)
+     */
+    public Instrument getInstrument(String ric) {
+        return engine.getInstrument(ric);
+    }
 
-        return null;
+    /**
+     * Set the handler told of each change to an order as it happens, while
+     * the Exchange's monitor is held
+     *
+     * @param handler
+     *            - the handler, or null for none
+     * @see MatchingEngine#setOrderEventHandler(OrderEventHandler)
+     */
+    public synchronized void setOrderEventHandler(OrderEventHandler handler) {
+        engine.setOrderEventHandler(handler);
     }
 
     /**
-     * Get the executed quantity for the given stock identifier (RIC) and user
-     * 
-     * The executed quantity is the sum of the quantities of all executed orders
-     * of the stock by user. Quantity for buy and sell orders is netted.
-     * 
-     * @param ric
-     *            - the stock identifier for which executed quantity is required
-     * @param user
-     *            - the user for which executed quantity is required
-     * @return - the executed quantity
+     * Set the clock that executions are timed by
+     *
+     * @param clock
+     *            - the clock, in place of the system clock
+     * @see MatchingEngine#setClock(Clock)
      */
-    public BigDecimal getExecutedQuantityForUser(String ric, String user) {
-        List<Execution> execs = execStockMap.get(ric);
+    public synchronized void setClock(Clock clock) {
+        engine.setClock(clock);
+    }
 
-        BigDecimal totalQty = BigDecimal.ZERO;
+    /**
+     * Cancel an OPEN order
+     *
+     * @param id
+     *            - the id returned when the order was added
+     * @return true if the order was cancelled, false if it is not OPEN
+     */
+    public boolean cancelOrder(long id) {
+        long requested = System.nanoTime();
 
-        if (execs != null) {
+        synchronized (this) {
+            metrics.lockAcquired(requested);
+            boolean cancelled = engine.cancelOrder(id);
+            engine.endBatch();
 
-            for (Execution execution : execs) {
-                if (execution.getBuyOrder().getUser().equals(user)) {
-                    totalQty = totalQty.add(execution.getQuantity());
-                } else if (execution.getSellOrder().getUser().equals(user)) {
-                    totalQty = totalQty.subtract(execution.getQuantity());
-                }
+            if (cancelled) {
+                metrics.cancelled();
             }
-        }
 
-        return totalQty;
+            return cancelled;
+        }
     }
 
-    private void processMatchingOrders(Order o, List<Order> matchingOrders) {
+    /**
+     * Change the open quantity and price of an OPEN order
+     *
+     * Reducing the quantity at the same price keeps the order's time
+     * priority, any other change loses it.
+     *
+     * @param id
+     *            - the id returned when the order was added
+     * @param quantity
+     *            - the new open quantity
+     * @param price
+     *            - the new price, or null for a MARKET order
+     * @return true if the order was amended, false if it is not OPEN
+     */
+    public boolean amendOrder(long id, BigDecimal quantity, BigDecimal price) {
+        long requested = System.nanoTime();
 
-        if (matchingOrders == null || matchingOrders.size() == 0) {
-            // No matching orders, add to list of OPEN orders
-            openOrders.add(o);
-        } else {
-            if (matchingOrders.size() == 1) {
-                // Single match so create an execution
-                addExecution(o, matchingOrders.get(0));
-            } else {
-                // Multiple possible matches
-                Order priceMatch = null;
+        synchronized (this) {
+            metrics.lockAcquired(requested);
+            boolean amended;
+
+            try {
+                amended = engine.amendOrder(id, quantity, price);
+            } catch (OrderRejectedException e) {
+                metrics.rejected();
+                throw e;
+            }
 
-                // Find the first matching order with same price as new order
-                for (Order order : matchingOrders) {
-                    if (o.getPrice().compareTo(order.getPrice()) == 0) {
-                        priceMatch = order;
-                        break;
-                    }
-                }
+            engine.endBatch();
 
-                if (priceMatch != null) {
-                    addExecution(o, priceMatch);
-                } else {
-                    // Sort the orders by price (lowest to highest)
-                    List<Order> ordersByPrice = new ArrayList<Order>(matchingOrders);
-                    Collections.sort(ordersByPrice, new Comparator<Order>() {
-
-                        @Override
-                        public int compare(Order o1, Order o2) {
-                            return o1.getPrice().compareTo(o2.getPrice());
-                        }
-                    });
-
-                    if (o.getDirection().equals(Direction.BUY)) {
-                        // New buy order should be matched against order with
-                        // lowest price (first element in sorted list)
-                        addExecution(o, ordersByPrice.get(0));
-                    } else {
-                        // New sell order should be matched against order with
-                        // highest price (last element in sorted list)
-                        addExecution(o, ordersByPrice.get(ordersByPrice.size() - 1));
-                    }
-                }
+            if (amended) {
+                metrics.amended();
             }
+
+            return amended;
         }
     }
 
-    private void addExecution(Order o, Order matchedOrder) {
+    /**
+     * Start an auction call for a stock, collecting its orders until it is
+     * uncrossed
+     *
+     * @param ric
+     *            - the stock identifier
+     * @see MatchingEngine#startAuction(String)
+     */
+    public synchronized void startAuction(String ric) {
+        engine.startAuction(ric);
+        engine.endBatch();
+    }
+
+    /**
+     * End the auction call for a stock, executing everything that crosses at
+     * a single price
+     *
+     * @param ric
+     *            - the stock identifier
+     * @return the price the book uncrossed at, or null if nothing crossed
+     * @see MatchingEngine#uncross(String)
+     */
+    public synchronized AuctionPrice uncross(String ric) {
+        AuctionPrice result = engine.uncross(ric);
+        engine.endBatch();
+        return result;
+    }
 
-        List<Execution> execs = execStockMap.get(o.getRic());
+    /**
+     * Get the price a stock's book would uncross at if its auction call ended
+     * now
+     *
+     * @see MatchingEngine#getAuctionPrice(String)
+     */
+    public AuctionPrice getAuctionPrice(String ric) {
+        long requested = System.nanoTime();
 
-        if (execs == null) {
-            execs = new ArrayList<Execution>();
-            execStockMap.put(o.getRic(), execs);
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            AuctionPrice result = engine.getAuctionPrice(ric);
+            metrics.queried(locked);
+            return result;
         }
+    }
 
-        Order buy = o.getDirection().equals(Direction.BUY) ? o : matchedOrder;
-        Order sell = (o == buy) ? matchedOrder : o;
+    /**
+     * Get the metrics recorded so far, e.g. to log or publish them
+     *
+     * @return a copy of the metrics, which is unaffected by later activity
+     */
+    public synchronized MetricsSnapshot getMetrics() {
+        return metrics.snapshot(engine.getExecutionCount(), engine.getOpenOrderCount(),
+                        engine.getPriceLevelCount());
+    }
 
-        execs.add(new Execution(buy, sell, o.getPrice()));
+    /**
+     * Publish the metrics of the Exchange over JMX, through the platform
+     * MBean server
+     *
+     * @param name
+     *            - the name of the Exchange, unique within the JVM
+     * @return the name the metrics are registered under, with which they can
+     *         be unregistered
+     * @see ExchangeMetricsBean#unregister(ObjectName)
+     */
+    public ObjectName registerMetrics(String name) {
+        return ExchangeMetricsBean.register(name, this::getMetrics);
+    }
 
-        // Having added the new execution, make sure matched order is no longer
-        // OPEN
-        openOrders.remove(matchedOrder);
+    /**
+     * Subscribe a listener to the changes made by the Exchange from now on,
+     * dropping events if it falls behind
+     *
+     * @param listener
+     *            - the listener to be called
+     * @return the subscription, to be closed when no longer needed
+     * @see #subscribe(ExchangeListener, int, int, BackpressurePolicy)
+     */
+    public Subscription subscribe(ExchangeListener listener) {
+        return subscribe(listener, Subscription.DEFAULT_QUEUE_SIZE, Subscription.DEFAULT_BATCH_SIZE,
+                        BackpressurePolicy.DROP);
     }
 
-    private List<Order> getMatchingOrders(Order o) {
+    /**
+     * Subscribe a listener to the changes made by the Exchange from now on
+     *
+     * Each accepted order, execution and change to a price level is queued
+     * for the listener and delivered on a thread of its own, so polling the
+     * query methods is no longer needed to see what has changed.
+     *
+     * @param listener
+     *            - the listener to be called
+     * @param queueSize
+     *            - the number of events that can be waiting for the listener
+     * @param batchSize
+     *            - the maximum number of events delivered at a time
+     * @param policy
+     *            - what happens to events when the queue is full
+     * @return the subscription, to be closed when no longer needed
+     * @see MatchingEngine#subscribe(ExchangeListener, int, int, BackpressurePolicy)
+     */
+    public synchronized Subscription subscribe(ExchangeListener listener, int queueSize, int batchSize,
+                    BackpressurePolicy policy) {
+        return engine.subscribe(listener, queueSize, batchSize, policy);
+    }
 
-        List<Order> matching = new ArrayList<Order>();
+    /**
+     * Subscribe a listener to conflated depth updates for the given stocks,
+     * instead of polling {@link #getOpenInterest(String, Direction)}
+     *
+     * Changes to the price levels of the stocks are merged over each
+     * conflation interval and delivered on a thread of the subscription's
+     * own, one update per changed stock, so a slow listener never holds up
+     * matching and bursts of changes cost no more than one update per
+     * interval. The first update of each stock holds its whole depth.
+     *
+     * @param rics
+     *            - the stocks of interest
+     * @param listener
+     *            - the listener to be called
+     * @param conflationInterval
+     *            - the interval between updates, or 0 to deliver changes as
+     *            soon as possible
+     * @param unit
+     *            - the unit of the interval
+     * @return the subscription, to be closed when no longer needed
+     */
+    public synchronized DepthSubscription subscribeDepth(Collection<String> rics, DepthListener listener,
+                    long conflationInterval, TimeUnit unit) {
+        return engine.subscribeDepth(rics, listener, conflationInterval, unit);
+    }
 
-        // Check all OPEN orders for a match
-        for (Order order : openOrders) {
-            if (matcher.checkIfOrdersMatch(o, order)) {
-                matching.add(order);
-            }
-        }
+    /**
+     * Get a list of all the orders that were submitted to the Exchange
+     *
+     * The list is a view rather than a copy, so it is cheap however many
+     * orders there have been; older orders may be read back from the history
+     * store as it is read.
+     *
+     * @return an immutable list of all orders submitted so far, which is
+     *         unaffected by later submissions
+     */
+    public List<Order> getAllOrders() {
+        long requested = System.nanoTime();
 
-        return matching;
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            List<Order> result = engine.getAllOrders();
+            metrics.queried(locked);
+            return result;
+        }
     }
 
-    private void validateOrderDetails(Order o) {
+    /**
+     * Get the list of "open interest" for the given stock identifier (RIC) and
+     * direction
+     *
+     * Open interest is defined as the total quantity of all open orders on a
+     * per price point basis
+     *
+     * @param ric
+     *            - the stock identifier for which open interest is required
+     * @param buySell
+     *            - the direction for which open interest is required
+     * @return an immutable list of open interest entries sorted in descending
+     *         order of price
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell) {
+        long requested = System.nanoTime();
 
-        if (o.getDirection() == null) {
-            throw new RuntimeException("Order direction is NULL");
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            List<OpenInterest> result = engine.getOpenInterest(ric, buySell);
+            metrics.queried(locked);
+            return result;
         }
+    }
 
-        if (o.getRic() == null || o.getRic().trim().length() == 0) {
-            throw new RuntimeException("Order stock identifier (RIC) is invalid");
+    /**
+     * Get the list of "open interest" for the best price levels of the given
+     * stock identifier (RIC) and direction
+     *
+     * @param ric
+     *            - the stock identifier for which open interest is required
+     * @param buySell
+     *            - the direction for which open interest is required
+     * @param maxLevels
+     *            - the maximum number of price levels required
+     * @return an immutable list of open interest entries for at most maxLevels
+     *         of the best prices, sorted in descending order of price
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell, int maxLevels) {
+        long requested = System.nanoTime();
+
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            List<OpenInterest> result = engine.getOpenInterest(ric, buySell, maxLevels);
+            metrics.queried(locked);
+            return result;
         }
+    }
 
-        if (o.getQuantity() == null || o.getQuantity().signum() != 1) {
-            throw new RuntimeException("Order quantity is invalid");
+    /**
+     * Get the average execution price for the given stock identifier (RIC)
+     *
+     * The average execution price is the average price per unit of all
+     * executions of the stock.
+     *
+     * @param ric
+     *            - the stock identifier for which average execution price is
+     *            required
+     * @return - the average execution price or null if no executions have
+     *         occurred
+     */
+    public BigDecimal getAverageExecutionPrice(String ric) {
+        long requested = System.nanoTime();
+
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            BigDecimal result = engine.getAverageExecutionPrice(ric);
+            metrics.queried(locked);
+            return result;
         }
+    }
+
+    /**
+     * Get the executed quantity for the given stock identifier (RIC) and user
+     *
+     * The executed quantity is the sum of the quantities of all executed orders
+     * of the stock by user. Quantity for buy and sell orders is netted.
+     *
+     * @param ric
+     *            - the stock identifier for which executed quantity is required
+     * @param user
+     *            - the user for which executed quantity is required
+     * @return - the executed quantity
+     */
+    public BigDecimal getExecutedQuantityForUser(String ric, String user) {
+        long requested = System.nanoTime();
 
-        if (o.getPrice() == null || o.getPrice().signum() != 1) {
-            throw new RuntimeException("Order price is invalid");
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            BigDecimal result = engine.getExecutedQuantityForUser(ric, user);
+            metrics.queried(locked);
+            return result;
         }
+    }
 
-        if (o.getUser() == null || o.getUser().trim().length() == 0) {
-            throw new RuntimeException("Order's user is invalid");
+    /**
+     * Get the bars of the given stock identifier (RIC) at one resolution over
+     * a range of time
+     *
+     * @see MatchingEngine#getBars(String, BarResolution, long, long)
+     */
+    public List<Bar> getBars(String ric, BarResolution resolution, long from, long to) {
+        long requested = System.nanoTime();
+
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            List<Bar> result = engine.getBars(ric, resolution, from, to);
+            metrics.queried(locked);
+            return result;
         }
+    }
+
+    /**
+     * Get a single bar summarising the executions of the given stock
+     * identifier (RIC) over a range of time
+     *
+     * @see MatchingEngine#getBar(String, long, long)
+     */
+    public Bar getBar(String ric, long from, long to) {
+        long requested = System.nanoTime();
 
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            Bar result = engine.getBar(ric, from, to);
+            metrics.queried(locked);
+            return result;
+        }
     }
 
-    private class Execution {
+    private long add(BookOrder bookOrder, long submitted) {
 
-        private final Order buyOrder;
-        private final Order sellOrder;
-        private final BigDecimal quantity;
-        private final BigDecimal price;
+        long requested = System.nanoTime();
 
-        Execution(Order buyOrder, Order sellOrder, BigDecimal price) {
-            this.buyOrder = buyOrder;
-            this.sellOrder = sellOrder;
+        // Avoid inconsistent collection state when matching and processing
+        // orders
+        synchronized (this) {
+            long locked = metrics.lockAcquired(requested);
+            RejectReason reason = engine.checkRisk(bookOrder);
 
-            this.quantity = buyOrder.getQuantity();
-            this.price = price;
-        }
+            if (reason != null) {
+                metrics.rejected();
+                engine.endBatch();
+                throw new OrderRejectedException(reason);
+            }
 
-        Order getBuyOrder() {
-            return buyOrder;
+            long id = engine.process(bookOrder);
+            metrics.orderMatched(locked);
+            engine.endBatch();
+            metrics.orderAdded(submitted);
+            return id;
         }
+    }
 
-        Order getSellOrder() {
-            return sellOrder;
-        }
+    private static OrderStatus getStatus(BookOrder o) {
 
-        BigDecimal getQuantity() {
-            return quantity;
+        if (o.getQuantity() == 0) {
+            return OrderStatus.FILLED;
         }
 
-        BigDecimal getPrice() {
-            return price;
+        // Nothing of an IOC, FOK or MARKET order stays OPEN
+        if (!o.isInBook() && o.getFilledQuantity() == 0) {
+            return OrderStatus.CANCELLED;
         }
 
+        return o.getFilledQuantity() > 0 ? OrderStatus.PARTIALLY_FILLED : OrderStatus.RESTED;
     }
 
 }
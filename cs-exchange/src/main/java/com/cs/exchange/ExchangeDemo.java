@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import com.cs.exchange.data.OrderGenerator;
 import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
 import com.cs.exchange.domain.OpenInterest;
 import com.cs.exchange.domain.Order;
 import com.cs.exchange.matcher.OrderMatcherImpl;
@@ -22,44 +23,38 @@ public class ExchangeDemo {
     
     public static void main(String[] args) {
         
-        Exchange ex = new Exchange(new OrderMatcherImpl());
+        Exchange ex = new Exchange(new OrderMatcherImpl(), Instrument.withDefaults(RIC));
         
         for (Order order : OrderGenerator.getOrders()) {
-            LOGGER.info("New Order: " + 
-                        String.format("%s %s %s @ %s %s", order.getDirection(),
-                                                          order.getQuantity().toString(),
-                                                          order.getRic(),
-                                                          order.getPrice().toString(),
-                                                          order.getUser()));
+            // Parameterized messages are only formatted if they are logged
+            LOGGER.info("New Order: {} {} {} @ {} {}", order.getDirection(), order.getQuantity(), order.getRic(),
+                        order.getPrice(), order.getUser());
             
             ex.addNewOrder(order);
             
             List<OpenInterest> interest = ex.getOpenInterest(RIC, Direction.BUY);
             
-            LOGGER.info(String.format("\tOpen %s %s interest = %s", 
-                        RIC, Direction.BUY, (interest != null ? interest.toString() : "")));
+            LOGGER.info("\tOpen {} {} interest = {}", RIC, Direction.BUY, interest);
             
             interest = ex.getOpenInterest(RIC, Direction.SELL);
             
-            LOGGER.info(String.format("\tOpen %s %s interest = %s", 
-                        RIC, Direction.SELL, (interest != null ? interest.toString() : "")));
+            LOGGER.info("\tOpen {} {} interest = {}", RIC, Direction.SELL, interest);
             
             BigDecimal avExecPrice = ex.getAverageExecutionPrice(RIC);
             
-            LOGGER.info(String.format("\tAverage %s execution price = %s", 
-                        RIC, (avExecPrice != null ? avExecPrice.toString() : "")));
+            LOGGER.info("\tAverage {} execution price = {}", RIC, avExecPrice);
         
             BigDecimal execQty = ex.getExecutedQuantityForUser(RIC, USER_1);
             
-            LOGGER.info(String.format("\tExecuted quantity for %s, %s = %s", 
-                        RIC, USER_1, (execQty != null ? execQty.toString() : "")));
+            LOGGER.info("\tExecuted quantity for {}, {} = {}", RIC, USER_1, execQty);
     
             execQty = ex.getExecutedQuantityForUser(RIC, USER_2);
             
-            LOGGER.info(String.format("\tExecuted quantity for %s, %s = %s", 
-                        RIC, USER_2, (execQty != null ? execQty.toString() : "")));
+            LOGGER.info("\tExecuted quantity for {}, {} = {}", RIC, USER_2, execQty);
     
         }
+
+        LOGGER.info("Metrics: {}", ex.getMetrics());
     }
 
 }
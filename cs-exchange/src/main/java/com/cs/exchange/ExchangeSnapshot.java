@@ -0,0 +1,189 @@
+package com.cs.exchange;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
+/**
+ * Immutable, consistent view of the state of the Exchange after a given
+ * number of orders have been processed
+ *
+ * A snapshot can be read from any thread without locking.
+ *
+ */
+public class ExchangeSnapshot {
+
+    private final long sequence;
+    private final List<BookOrder> submittedOrders;
+    private final Map<String, StockSnapshot> stocks;
+
+    ExchangeSnapshot(long sequence, List<BookOrder> submittedOrders, Map<String, StockSnapshot> stocks) {
+        this.sequence = sequence;
+        this.submittedOrders = submittedOrders;
+        this.stocks = Collections.unmodifiableMap(stocks);
+    }
+
+    /**
+     * Get the number of orders processed when this snapshot was taken
+     *
+     * @return the number of orders processed
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get a list of all the orders that were submitted to the Exchange
+     *
+     * @return the list of all submitted orders
+     */
+    public List<Order> getAllOrders() {
+        return Lists.transform(submittedOrders, new Function<BookOrder, Order>() {
+
+            @Override
+            public Order apply(BookOrder input) {
+                return input.getOrder();
+            }
+        });
+    }
+
+    /**
+     * Get the list of "open interest" for the given stock identifier (RIC) and
+     * direction
+     *
+     * @param ric
+     *            - the stock identifier for which open interest is required
+     * @param buySell
+     *            - the direction for which open interest is required
+     * @return a list of open interest entries sorted in descending order of
+     *         price
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell) {
+        StockSnapshot stock = stocks.get(ric);
+
+        if (stock == null) {
+            return Collections.emptyList();
+        }
+
+        return buySell == Direction.BUY ? stock.buyInterest : stock.sellInterest;
+    }
+
+    /**
+     * Get the list of "open interest" for the best price levels of the given
+     * stock identifier (RIC) and direction
+     *
+     * @param ric
+     *            - the stock identifier for which open interest is required
+     * @param buySell
+     *            - the direction for which open interest is required
+     * @param maxLevels
+     *            - the maximum number of price levels required
+     * @return a list of open interest entries for at most maxLevels of the
+     *         best prices, sorted in descending order of price
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell, int maxLevels) {
+
+        if (maxLevels < 0) {
+            throw new IllegalArgumentException("Maximum number of levels must not be negative");
+        }
+
+        List<OpenInterest> interest = getOpenInterest(ric, buySell);
+
+        if (maxLevels >= interest.size()) {
+            return interest;
+        }
+
+        // Best levels are first for buys and last for sells
+        return buySell == Direction.BUY ? interest.subList(0, maxLevels)
+                        : interest.subList(interest.size() - maxLevels, interest.size());
+    }
+
+    /**
+     * Get the average execution price for the given stock identifier (RIC)
+     *
+     * @param ric
+     *            - the stock identifier for which average execution price is
+     *            required
+     * @return - the average execution price or null if no executions have
+     *         occurred
+     */
+    public BigDecimal getAverageExecutionPrice(String ric) {
+        StockSnapshot stock = stocks.get(ric);
+        return stock == null ? null : stock.averageExecutionPrice;
+    }
+
+    /**
+     * Get the executed quantity for the given stock identifier (RIC) and user
+     *
+     * @param ric
+     *            - the stock identifier for which executed quantity is required
+     * @param user
+     *            - the user for which executed quantity is required
+     * @return - the executed quantity
+     */
+    public BigDecimal getExecutedQuantityForUser(String ric, String user) {
+        StockSnapshot stock = stocks.get(ric);
+        BigDecimal qty = (stock == null) ? null : stock.executedQuantityByUser.get(user);
+        return qty == null ? BigDecimal.ZERO : qty;
+    }
+
+    /**
+     * Get the executed quantity of the given user for every stock identifier
+     * (RIC) the user has executions for
+     *
+     * @param user
+     *            - the user for which executed quantities are required
+     * @return a map of stock identifier against executed quantity
+     */
+    public Map<String, BigDecimal> getExecutedQuantitiesForUser(String user) {
+        Map<String, BigDecimal> qtyByRic = new HashMap<String, BigDecimal>();
+
+        for (Map.Entry<String, StockSnapshot> entry : stocks.entrySet()) {
+            BigDecimal qty = entry.getValue().executedQuantityByUser.get(user);
+
+            if (qty != null) {
+                qtyByRic.put(entry.getKey(), qty);
+            }
+        }
+
+        return qtyByRic;
+    }
+
+    List<BookOrder> getSubmittedOrders() {
+        return submittedOrders;
+    }
+
+    Map<String, StockSnapshot> getStocks() {
+        return stocks;
+    }
+
+    /**
+     * State of a single stock
+     */
+    static class StockSnapshot {
+
+        private final List<OpenInterest> buyInterest;
+        private final List<OpenInterest> sellInterest;
+        private final BigDecimal averageExecutionPrice;
+        private final Map<String, BigDecimal> executedQuantityByUser;
+
+        StockSnapshot(List<OpenInterest> buyInterest, List<OpenInterest> sellInterest,
+                        BigDecimal averageExecutionPrice, Map<String, BigDecimal> executedQuantityByUser) {
+            this.buyInterest = buyInterest;
+            this.sellInterest = sellInterest;
+            this.averageExecutionPrice = averageExecutionPrice;
+            this.executedQuantityByUser = executedQuantityByUser;
+        }
+
+    }
+
+}
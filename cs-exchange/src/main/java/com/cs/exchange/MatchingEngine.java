@@ -0,0 +1,1691 @@
+package com.cs.exchange;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.book.OrderBook;
+import com.cs.exchange.book.OrderBookSide;
+import com.cs.exchange.book.PriceLevel;
+import com.cs.exchange.domain.AuctionPrice;
+import com.cs.exchange.domain.Bar;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderRejectedException;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.event.BackpressurePolicy;
+import com.cs.exchange.event.DepthListener;
+import com.cs.exchange.event.DepthSubscription;
+import com.cs.exchange.event.EventPublisher;
+import com.cs.exchange.event.ExchangeListener;
+import com.cs.exchange.event.OrderEventHandler;
+import com.cs.exchange.event.Subscription;
+import com.cs.exchange.history.ExecutionLog;
+import com.cs.exchange.history.HistoryStore;
+import com.cs.exchange.history.OrderHistory;
+import com.cs.exchange.journal.Journal;
+import com.cs.exchange.journal.JournalHandler;
+import com.cs.exchange.journal.JournalReader;
+import com.cs.exchange.journal.SnapshotHandler;
+import com.cs.exchange.journal.SnapshotReader;
+import com.cs.exchange.journal.SnapshotWriter;
+import com.cs.exchange.matcher.Equilibrium;
+import com.cs.exchange.matcher.FillHandler;
+import com.cs.exchange.matcher.OrderMatcher;
+import com.cs.exchange.risk.RiskChecker;
+import com.cs.exchange.risk.RiskLimits;
+import com.cs.exchange.stats.BarHistory;
+import com.cs.exchange.stats.BarResolution;
+import com.cs.exchange.stats.BarSeries;
+import com.cs.exchange.stats.ExecutionStatistics;
+import com.cs.exchange.util.LongObjectHashMap;
+import com.cs.exchange.util.SymbolTable;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+
+/**
+ * Core of the Exchange holding all order book and execution state
+ *
+ * Prices and quantities are converted to scaled longs as each order is
+ * submitted, using the scales and tick size of the order's instrument, and
+ * only converted back to BigDecimal when requested through the query methods.
+ *
+ * Only {@link #validate(Order)} is thread safe. Everything else must be
+ * called by one thread at a time, either by holding a lock (see
+ * {@link Exchange}) or by confining the engine to a single thread (see
+ * {@link SequencedExchange}).
+ *
+ */
+public class MatchingEngine {
+
+    private final OrderMatcher matcher;
+
+    // Optional write-ahead journal of everything that changes the engine -
+    // only attached once any recovery is complete
+    private Journal journal;
+
+    // Map of stock identifier (RIC) against instrument details - stocks not
+    // configured up front get the default scales and tick size
+    private final Map<String, Instrument> instruments = new ConcurrentHashMap<String, Instrument>();
+
+    // Optional store for history that is no longer kept in memory
+    private final HistoryStore historyStore;
+
+    // List of all orders submitted to the Exchange maintained in submission
+    // order
+    private final OrderHistory submittedOrders;
+
+    // Id given to the next order that does not already have one
+    private long nextId;
+
+    // Map of stock identifier (RIC) against the order book of all its OPEN
+    // orders
+    private final Map<String, OrderBook> orderBooks = new HashMap<String, OrderBook>();
+
+    // Map of order id against every OPEN order, across all books
+    private final LongObjectHashMap<BookOrder> openOrders = new LongObjectHashMap<BookOrder>();
+
+    // Map of stock identifier (RIC) against its most recent executions
+    private final Map<String, ExecutionLog> execStockMap = new HashMap<String, ExecutionLog>();
+
+    // Ids of every user with orders, shared by the execution totals of all
+    // stocks
+    private final SymbolTable users = new SymbolTable();
+
+    // Book of the order being matched, to which the matcher's fills apply
+    private OrderBook matchingBook;
+
+    // Time executions are given while matching the current order or
+    // amendment, read from the clock once per operation, or from the journal
+    // while recovering
+    private Clock clock = Clock.systemUTC();
+    private long matchingTime;
+
+    private final FillHandler fills = new FillHandler() {
+
+        @Override
+        public void onFill(BookOrder o, BookOrder matched, long quantity, long price) {
+            addExecution(o, matched, quantity, price, matchingBook);
+        }
+    };
+
+    // Number of executions made since the engine was created
+    private long executionCount;
+
+    // Map of stock identifier (RIC) against running execution totals
+    private final Map<String, ExecutionStatistics> execStatsMap = new HashMap<String, ExecutionStatistics>();
+
+    // Map of stock identifier (RIC) against its executions bucketed by time
+    private final Map<String, BarHistory> barsMap = new HashMap<String, BarHistory>();
+
+    // Stock identifiers (RIC) whose book or executions have changed since the
+    // last snapshot
+    private final Set<String> changedRics = new HashSet<String>();
+
+    private final EventPublisher events = new EventPublisher();
+
+    private final RiskChecker risk = new RiskChecker();
+
+    // Optional handler told of each change to an order as it happens
+    private OrderEventHandler orderHandler;
+
+    // Price levels changed by the current operation, which only ever touches
+    // one book, published once it is complete - only kept while there are
+    // subscriptions
+    private OrderBook touchedBook;
+    private Direction[] touchedSides = new Direction[16];
+    private long[] touchedPrices = new long[16];
+    private int touchedCount;
+
+    // Index of the latest level touched on each side, or -1 for none
+    private int lastTouchedBid = -1;
+    private int lastTouchedOffer = -1;
+
+    public MatchingEngine(OrderMatcher matcher, Collection<Instrument> instruments) {
+        this(matcher, instruments, null);
+    }
+
+    /**
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     * @param journal
+     *            - the journal to record orders, cancels, amendments and
+     *            executions in, or null for none
+     */
+    public MatchingEngine(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal) {
+        this(matcher, instruments, journal, null);
+    }
+
+    /**
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     * @param journal
+     *            - the journal to record orders, cancels, amendments and
+     *            executions in, or null for none
+     * @param historyStore
+     *            - the store for older orders and executions, or null to keep
+     *            them all in memory
+     */
+    public MatchingEngine(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal,
+                    HistoryStore historyStore) {
+        this.matcher = matcher;
+        this.journal = journal;
+        this.historyStore = historyStore;
+        this.submittedOrders = new OrderHistory(historyStore);
+
+        for (Instrument instrument : instruments) {
+            this.instruments.put(instrument.getRic(), instrument);
+        }
+    }
+
+    /**
+     * Check a new order is valid and convert it to its book representation
+     * 
+     * This may be called by any thread.
+     * 
+     * @param o
+     *            - the order to be validated
+     * @return the order as it would be held in the book
+     */
+    public BookOrder validate(Order o) {
+
+        if (o == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Unable to add a NULL order");
+        }
+
+        validateOrderDetails(o);
+        return validateNotional(toBookOrder(o, getTradedInstrument(o.getRic())));
+    }
+
+    /**
+     * Check a new order already in its book representation is valid, e.g. one
+     * decoded straight from a binary message without creating an Order
+     *
+     * This may be called by any thread.
+     *
+     * @param o
+     *            - the order to be validated, whose price and quantity are
+     *            scaled for its stock
+     * @return the same order
+     */
+    public BookOrder validate(BookOrder o) {
+
+        if (o == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Unable to add a NULL order");
+        }
+
+        if (o.getDirection() == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order direction is NULL");
+        }
+
+        if (o.getRic() == null || o.getRic().trim().length() == 0) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order stock identifier (RIC) is invalid");
+        }
+
+        if (o.getQuantity() <= 0 || o.getFilledQuantity() != 0) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order quantity is invalid");
+        }
+
+        if (o.getType() == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order type is NULL");
+        }
+
+        if (o.getTimeInForce() == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order time in force is NULL");
+        }
+
+        if (o.getUser() == null || o.getUser().trim().length() == 0) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order's user is invalid");
+        }
+
+        if (o.getType() == OrderType.MARKET) {
+
+            if (o.getPrice() != BookOrder.marketPrice(o.getDirection())) {
+                throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Market order must not have a price");
+            }
+
+            if (o.getTimeInForce() == TimeInForce.GTC) {
+                throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Market order must be IOC or FOK");
+            }
+
+        } else if (o.getPrice() <= 0) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order price is invalid");
+        }
+
+        Instrument instrument = getTradedInstrument(o.getRic());
+
+        if (o.getType() != OrderType.MARKET && !instrument.isOnTick(o.getPrice())) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER,
+                            "Order price is not a multiple of the tick size for " + instrument);
+        }
+
+        return validateNotional(o);
+    }
+
+    /**
+     * Check a validated order against the pre-trade risk limits of its user
+     *
+     * Must be called by the thread matching orders, just before the order is
+     * processed, so that it sees the position left by every earlier order.
+     * A rejected order is neither journalled nor added to the order history.
+     * 
+     * An order that could take the stock's execution totals beyond what they
+     * can hold is rejected as invalid here too, as only the matching thread
+     * knows the totals. So is any order once the order history is full.
+     *
+     * @param o
+     *            - the order returned by {@link #validate(Order)}
+     * @return null if the order can be processed, otherwise the reason it is
+     *         rejected
+     */
+    public RejectReason checkRisk(BookOrder o) {
+        o.setUserId(users.intern(o.getUser()));
+
+        RejectReason reason = submittedOrders.isFull() || exceedsTotals(o, o.getQuantity(), o.getPrice())
+                        ? RejectReason.INVALID_ORDER
+                        : risk.check(o, getInstrument(o.getRic()), execStatsMap.get(o.getRic()),
+                                        getHighestOppositePrice(o));
+
+        if (reason != null) {
+            events.orderRejected(o, reason);
+        }
+
+        return reason;
+    }
+
+    /**
+     * Set the pre-trade risk limits of a single user
+     *
+     * This may be called by any thread.
+     *
+     * @param user
+     *            - the user whose orders are limited
+     * @param limits
+     *            - the limits, or null to go back to the default limits
+     */
+    public void setRiskLimits(String user, RiskLimits limits) {
+        risk.setLimits(user, limits);
+    }
+
+    /**
+     * Set the pre-trade risk limits of every user without limits of their own
+     *
+     * This may be called by any thread.
+     *
+     * @param limits
+     *            - the limits, or null for no limits
+     */
+    public void setDefaultRiskLimits(RiskLimits limits) {
+        risk.setDefaultLimits(limits);
+    }
+
+    /**
+     * Set the handler told of each change to an order, on the thread matching
+     * orders
+     *
+     * @param handler
+     *            - the handler, or null for none
+     */
+    public void setOrderEventHandler(OrderEventHandler handler) {
+        this.orderHandler = handler;
+    }
+
+    /**
+     * Add a validated order to the Exchange and match it against the OPEN
+     * orders
+     * 
+     * The order is given the next order id unless the caller has already
+     * assigned one.
+     * 
+     * @param o
+     *            - the order returned by {@link #validate(Order)}
+     * @return the id of the order
+     */
+    public long process(BookOrder o) {
+        return process(o, clock.millis());
+    }
+
+    private long process(BookOrder o, long time) {
+        matchingTime = time;
+
+        if (o.getId() < 0) {
+            o.setId(nextId++);
+        } else if (o.getId() >= nextId) {
+            nextId = o.getId() + 1;
+        }
+
+        if (journal != null) {
+            journal.writeNewOrder(o, time);
+        }
+
+        events.orderAccepted(o);
+
+        if (orderHandler != null) {
+            orderHandler.onOrderAccepted(o);
+        }
+
+        submittedOrders.add(o);
+        match(o, getOrderBook(o));
+        publishTouchedLevels();
+
+        return o.getId();
+    }
+
+    /**
+     * Cancel an OPEN order
+     * 
+     * @param id
+     *            - the id of the order to be cancelled
+     * @return true if the order was cancelled, false if it is not OPEN (e.g.
+     *         it has already been filled or cancelled)
+     */
+    public boolean cancelOrder(long id) {
+        BookOrder o = openOrders.remove(id);
+
+        if (o == null) {
+            return false;
+        }
+
+        if (journal != null) {
+            journal.writeCancel(id);
+        }
+
+        cancel(o, orderBooks.get(o.getRic()));
+        publishTouchedLevels();
+
+        return true;
+    }
+
+    /**
+     * Change the open quantity and price of an OPEN order
+     * 
+     * Reducing the quantity at the same price keeps the order's time
+     * priority. Any other change is treated as a cancel followed by a new
+     * order with the same id, which loses time priority and may match
+     * straight away. The order keeps its type and time in force, so e.g. an
+     * IOC order collected during an auction call is still cancelled after the
+     * uncross.
+     * 
+     * @param id
+     *            - the id of the order to be amended
+     * @param quantity
+     *            - the new open quantity
+     * @param price
+     *            - the new price, or null for a MARKET order, whose price
+     *            cannot be amended
+     * @return true if the order was amended, false if it is not OPEN
+     * @throws OrderRejectedException
+     *             if the amendment is invalid or breaks one of the user's
+     *             risk limits, leaving the order as it was
+     */
+    public boolean amendOrder(long id, BigDecimal quantity, BigDecimal price) {
+        BookOrder o = openOrders.get(id);
+
+        if (o == null) {
+            return false;
+        }
+
+        if (quantity == null || quantity.signum() != 1) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order quantity is invalid");
+        }
+
+        if (o.getType() == OrderType.MARKET) {
+
+            if (price != null) {
+                throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Market order must not have a price");
+            }
+
+        } else if (price == null || price.signum() != 1) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order price is invalid");
+        }
+
+        OrderBook book = orderBooks.get(o.getRic());
+        long newQuantity = toQuantity(quantity, book.getInstrument());
+        long newPrice = price == null ? o.getPrice() : toPrice(price, book.getInstrument());
+
+        if (exceedsTotals(o, newQuantity, newPrice)) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order notional is too large");
+        }
+
+        // Only reducing the quantity can never add to the user's risk, so is
+        // allowed whatever the market has done since
+        if (newPrice != o.getPrice() || newQuantity > o.getQuantity()) {
+            RejectReason reason = risk.check(o, newQuantity, newPrice, book.getInstrument(),
+                            execStatsMap.get(o.getRic()), getHighestOppositePrice(o));
+
+            if (reason != null) {
+                throw new OrderRejectedException(reason);
+            }
+        }
+
+        matchingTime = clock.millis();
+
+        if (journal != null) {
+            journal.writeAmend(id, newQuantity, newPrice, matchingTime);
+        }
+
+        amend(o, book, newQuantity, newPrice, quantity, price);
+        publishTouchedLevels();
+
+        return true;
+    }
+
+
+    /**
+     * Start an auction call for a stock
+     * 
+     * Until the book is uncrossed new orders are only collected, so the book
+     * may cross. Fill or kill orders cannot be collected and are cancelled
+     * straight away.
+     * 
+     * @param ric
+     *            - the stock identifier
+     * @throws IllegalArgumentException
+     *             if the stock is not traded
+     * @throws IllegalStateException
+     *             if an auction call is already in progress for the stock
+     * @see #uncross(String)
+     */
+    public void startAuction(String ric) {
+        OrderBook book = getOrderBook(ric);
+
+        if (book.isInAuction()) {
+            throw new IllegalStateException("Auction already in progress for " + ric);
+        }
+
+        if (journal != null) {
+            journal.writeAuctionStart(ric);
+        }
+
+        book.setInAuction(true);
+        changedRics.add(ric);
+    }
+
+    /**
+     * End the auction call for a stock, executing everything that crosses at
+     * a single equilibrium price
+     * 
+     * The price comes from the price level totals, then the crossing orders
+     * are filled in price-time priority in a single pass over the book. Any
+     * immediate or cancel orders left over are then cancelled and matching
+     * carries on as normal.
+     * 
+     * @param ric
+     *            - the stock identifier
+     * @return the price the book uncrossed at, or null if nothing crossed
+     * @throws IllegalStateException
+     *             if no auction call is in progress for the stock
+     */
+    public AuctionPrice uncross(String ric) {
+        return uncross(ric, clock.millis());
+    }
+
+    private AuctionPrice uncross(String ric, long time) {
+        OrderBook book = orderBooks.get(ric);
+
+        if (book == null || !book.isInAuction()) {
+            throw new IllegalStateException("No auction in progress for " + ric);
+        }
+
+        Equilibrium equilibrium = Equilibrium.find(book, getLastPrice(ric));
+
+        // Checked before anything changes, so the call carries on instead
+        if (equilibrium != null && exceedsTotals(ric, equilibrium.getVolume(), equilibrium.getPrice())) {
+            throw new IllegalStateException("Uncrossing " + ric + " would overflow its execution totals");
+        }
+
+        matchingTime = time;
+
+        if (journal != null) {
+            journal.writeUncross(ric, time);
+        }
+
+        if (equilibrium != null) {
+            OrderBookSide bids = book.getSide(Direction.BUY);
+            OrderBookSide asks = book.getSide(Direction.SELL);
+            long price = equilibrium.getPrice();
+
+            // Every order at a better price than the equilibrium fills in
+            // full, so taking the first order of the best level on each side
+            // allocates the volume in price-time priority
+            for (long remaining = equilibrium.getVolume(); remaining > 0;) {
+                BookOrder buy = bids.getLevelAt(0).getFirstOrder();
+                BookOrder sell = asks.getLevelAt(0).getFirstOrder();
+                long quantity = Math.min(remaining, Math.min(buy.getQuantity(), sell.getQuantity()));
+
+                recordExecution(buy, sell, quantity, price, book);
+                touch(book, Direction.BUY, buy.getPrice());
+                touch(book, Direction.SELL, sell.getPrice());
+                book.fill(buy, quantity);
+                book.fill(sell, quantity);
+
+                if (!buy.isInBook()) {
+                    openOrders.remove(buy.getId());
+                }
+
+                if (!sell.isInBook()) {
+                    openOrders.remove(sell.getId());
+                }
+
+                if (orderHandler != null) {
+                    orderHandler.onExecution(buy, sell, quantity, price);
+                }
+
+                remaining -= quantity;
+            }
+        }
+
+        book.setInAuction(false);
+        cancelUnlessGoodTillCancel(book, book.getSide(Direction.BUY));
+        cancelUnlessGoodTillCancel(book, book.getSide(Direction.SELL));
+        changedRics.add(ric);
+        publishTouchedLevels();
+
+        return equilibrium == null ? null : toAuctionPrice(ric, book.getInstrument(), equilibrium);
+    }
+
+    /**
+     * Set the clock that executions are timed by, e.g. a fixed or simulated
+     * clock for reproducible replays
+     * 
+     * The time is read once for each new order or amendment, and recorded in
+     * the journal so recovered executions keep their original times.
+     * 
+     * @param clock
+     *            - the clock, in place of the system clock
+     */
+    public void setClock(Clock clock) {
+
+        if (clock == null) {
+            throw new IllegalArgumentException("Clock must not be NULL");
+        }
+
+        this.clock = clock;
+    }
+
+    /**
+     * End a batch of changes to the engine, making the journal durable
+     * according to its fsync policy
+     */
+    public void endBatch() {
+
+        if (journal != null) {
+            journal.flush();
+        }
+
+        events.endBatch();
+    }
+
+    /**
+     * Subscribe a listener to every order accepted, execution and change to a
+     * price level from now on
+     * 
+     * This may be called by any thread. Events are delivered on a thread
+     * belonging to the subscription once the batch they are part of ends.
+     * 
+     * @param listener
+     *            - the listener to be called
+     * @param queueSize
+     *            - the number of events that can be waiting for the listener
+     * @param batchSize
+     *            - the maximum number of events delivered at a time
+     * @param policy
+     *            - what happens to events when the queue is full
+     * @return the subscription, to be closed when no longer needed
+     */
+    public Subscription subscribe(ExchangeListener listener, int queueSize, int batchSize,
+                    BackpressurePolicy policy) {
+        return events.subscribe(listener, queueSize, batchSize, policy);
+    }
+
+    /**
+     * Subscribe a listener to conflated depth updates for the given stocks
+     *
+     * Must be called by the thread matching orders, or while it is held off,
+     * so that the first update of each stock holds its whole depth and every
+     * later change follows it.
+     *
+     * @param rics
+     *            - the stocks of interest
+     * @param listener
+     *            - the listener, called on a thread of its own
+     * @param conflationInterval
+     *            - the interval between updates, in which changes to the same
+     *            level are merged, or 0 to deliver changes as soon as possible
+     * @param unit
+     *            - the unit of the interval
+     * @return the subscription, to be closed when no longer needed
+     */
+    public DepthSubscription subscribeDepth(Collection<String> rics, DepthListener listener, long conflationInterval,
+                    TimeUnit unit) {
+        List<OrderBook> books = new ArrayList<OrderBook>();
+
+        for (String ric : rics) {
+            OrderBook book = orderBooks.get(ric);
+
+            if (book != null) {
+                books.add(book);
+            }
+        }
+
+        return events.subscribeDepth(rics, listener, unit.toNanos(conflationInterval), books);
+    }
+
+    /**
+     * Write a snapshot of every OPEN order, the execution totals and bars, from
+     * which the engine can be recovered along with the rest of its journal
+     * 
+     * The journal is forced to disk first, so the snapshot never refers to
+     * journal records that could be lost.
+     * 
+     * @param file
+     *            - the snapshot file, replaced once the snapshot is complete
+     * @see #recover(OrderMatcher, Collection, Journal, HistoryStore, Path)
+     */
+    public void writeSnapshot(Path file) {
+
+        if (journal == null) {
+            throw new IllegalStateException("A snapshot can only be taken of an engine with a journal");
+        }
+
+        journal.force();
+
+        try (SnapshotWriter writer = new SnapshotWriter(file, journal.getPosition(), nextId)) {
+            for (OrderBook book : orderBooks.values()) {
+                writeOrders(writer, book.getSide(Direction.BUY));
+                writeOrders(writer, book.getSide(Direction.SELL));
+
+                if (book.isInAuction()) {
+                    writer.writeAuction(book.getRic());
+                }
+            }
+
+            for (Map.Entry<String, ExecutionStatistics> entry : execStatsMap.entrySet()) {
+                writer.writeStatistics(entry.getKey(), entry.getValue());
+            }
+
+            for (Map.Entry<String, BarHistory> entry : barsMap.entrySet()) {
+                for (BarResolution resolution : BarResolution.values()) {
+                    writer.writeBars(entry.getKey(), entry.getValue().getSeries(resolution));
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuild an engine from its latest snapshot and journal
+     * 
+     * The OPEN orders and execution totals are loaded from the snapshot and
+     * only the journal records written after it are matched again, so the
+     * recovered engine gives the same query results as the engine that wrote
+     * them. Orders submitted before the snapshot are listed by
+     * {@link #getAllOrders()} but not matched again. Once recovered, the
+     * engine carries on writing to the journal.
+     * 
+     * @param matcher
+     *            - the matcher used by the engine that wrote the journal
+     * @param instruments
+     *            - the instruments used by the engine that wrote the journal
+     * @param journal
+     *            - the journal, opened for appending
+     * @param historyStore
+     *            - the store for older orders and executions, or null to keep
+     *            them all in memory
+     * @param snapshot
+     *            - the latest snapshot, or null (or a missing file) to replay
+     *            the whole journal
+     * @return the recovered engine
+     */
+    public static MatchingEngine recover(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal,
+                    HistoryStore historyStore, Path snapshot) {
+
+        MatchingEngine engine = new MatchingEngine(matcher, instruments, null, historyStore);
+        Recovery recovery = engine.new Recovery(new JournalReader(journal.getFile()));
+
+        if (snapshot != null && Files.exists(snapshot)) {
+            new SnapshotReader(snapshot).read(recovery);
+        }
+
+        recovery.reader.read(recovery);
+        engine.journal = journal;
+
+        return engine;
+    }
+
+    /**
+     * Get an OPEN order by its id
+     * 
+     * @param id
+     *            - the id of the order required
+     * @return the order or null if it is not OPEN
+     */
+    public BookOrder getOpenOrder(long id) {
+        return openOrders.get(id);
+    }
+
+    /**
+     * Get all the orders that were submitted to the Exchange
+     * 
+     * Nothing is copied; orders no longer kept in memory are read back from
+     * the history store as the list is read.
+     * 
+     * @return an immutable list of all orders submitted so far, in submission
+     *         order, which is unaffected by later submissions
+     */
+    public List<Order> getAllOrders() {
+        return Lists.transform(submittedOrders.view(), new Function<BookOrder, Order>() {
+
+            @Override
+            public Order apply(BookOrder input) {
+                return input.getOrder();
+            }
+        });
+    }
+
+    /**
+     * Get all the orders that were submitted to the Exchange, as held in the
+     * book
+     * 
+     * @return an immutable list of all orders submitted so far, in submission
+     *         order, which is unaffected by later submissions
+     */
+    public List<BookOrder> getSubmittedOrders() {
+        return submittedOrders.view();
+    }
+
+    /**
+     * Get the list of "open interest" for the given stock identifier (RIC) and
+     * direction
+     * 
+     * Open interest is defined as the total quantity of all open orders on a
+     * per price point basis
+     * 
+     * @param ric
+     *            - the stock identifier for which open interest is required
+     * @param buySell
+     *            - the direction for which open interest is required
+     * @return an immutable list of open interest entries sorted in descending
+     *         order of price
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell) {
+        OrderBook book = orderBooks.get(ric);
+
+        if (book == null) {
+            return Collections.emptyList();
+        }
+
+        // Price levels are already aggregated and sorted so no need to look
+        // at individual orders
+        return book.getSide(buySell).getOpenInterest();
+    }
+
+    /**
+     * Get the list of "open interest" for the best price levels of the given
+     * stock identifier (RIC) and direction
+     * 
+     * @param ric
+     *            - the stock identifier for which open interest is required
+     * @param buySell
+     *            - the direction for which open interest is required
+     * @param maxLevels
+     *            - the maximum number of price levels required
+     * @return an immutable list of open interest entries for at most maxLevels
+     *         of the best prices, sorted in descending order of price
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell, int maxLevels) {
+        OrderBook book = orderBooks.get(ric);
+
+        if (book == null) {
+            return Collections.emptyList();
+        }
+
+        return book.getSide(buySell).getOpenInterest(maxLevels);
+    }
+
+    /**
+     * Get the price a stock's book would uncross at if its auction call ended
+     * now
+     * 
+     * @param ric
+     *            - the stock identifier
+     * @return the indicative price or null if nothing crosses
+     */
+    public AuctionPrice getAuctionPrice(String ric) {
+        OrderBook book = orderBooks.get(ric);
+        Equilibrium equilibrium = book == null ? null : Equilibrium.find(book, getLastPrice(ric));
+
+        return equilibrium == null ? null : toAuctionPrice(ric, book.getInstrument(), equilibrium);
+    }
+
+    /**
+     * Check whether an auction call is in progress for a stock
+     * 
+     * @param ric
+     *            - the stock identifier
+     * @return true from {@link #startAuction(String)} until
+     *         {@link #uncross(String)}
+     */
+    public boolean isInAuction(String ric) {
+        OrderBook book = orderBooks.get(ric);
+
+        return book != null && book.isInAuction();
+    }
+
+    /**
+     * Get the average execution price for the given stock identifier (RIC)
+     * 
+     * The average execution price is the average price per unit of all
+     * executions of the stock.
+     * 
+     * @param ric
+     *            - the stock identifier for which average execution price is
+     *            required
+     * @return - the average execution price or null if no executions have
+     *         occurred
+     */
+    public BigDecimal getAverageExecutionPrice(String ric) {
+
+        ExecutionStatistics stats = execStatsMap.get(ric);
+
+        if (stats != null) {
+            // Only now do we need BigDecimal...for the division
+            Instrument instrument = orderBooks.get(ric).getInstrument();
+            MathContext mc = MathContext.DECIMAL64;
+
+            return instrument.notionalOf(stats.getTotalNotional())
+                            .divide(instrument.quantityOf(stats.getTotalQuantity()), mc)
+                            .setScale(4, RoundingMode.HALF_UP);
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the executed quantity for the given stock identifier (RIC) and user
+     * 
+     * The executed quantity is the sum of the quantities of all executed orders
+     * of the stock by user. Quantity for buy and sell orders is netted.
+     * 
+     * @param ric
+     *            - the stock identifier for which executed quantity is required
+     * @param user
+     *            - the user for which executed quantity is required
+     * @return - the executed quantity
+     */
+    public BigDecimal getExecutedQuantityForUser(String ric, String user) {
+        ExecutionStatistics stats = execStatsMap.get(ric);
+
+        if (stats != null) {
+            return orderBooks.get(ric).getInstrument().quantityOf(stats.getNetQuantity(user));
+        }
+
+        return BigDecimal.ZERO;
+    }
+
+    /**
+     * Get the executed quantity of every user with executions for the given
+     * stock identifier (RIC)
+     * 
+     * @param ric
+     *            - the stock identifier for which executed quantities are
+     *            required
+     * @return a map of user against executed quantity
+     */
+    public Map<String, BigDecimal> getExecutedQuantitiesByUser(String ric) {
+        ExecutionStatistics stats = execStatsMap.get(ric);
+
+        if (stats == null) {
+            return Collections.emptyMap();
+        }
+
+        Instrument instrument = orderBooks.get(ric).getInstrument();
+        Map<String, BigDecimal> qtyByUser = new HashMap<String, BigDecimal>();
+
+        for (Map.Entry<String, Long> entry : stats.getNetQuantities().entrySet()) {
+            qtyByUser.put(entry.getKey(), instrument.quantityOf(entry.getValue()));
+        }
+
+        return qtyByUser;
+    }
+
+    /**
+     * Get the details of a stock
+     *
+     * This may be called by any thread.
+     *
+     * @param ric
+     *            - the stock identifier
+     * @return the instrument of the stock, or null if the stock is not traded
+     */
+    public Instrument getInstrument(String ric) {
+        return instruments.get(ric);
+    }
+
+    /**
+     * Get the running execution totals for the given stock identifier (RIC)
+     * 
+     * @param ric
+     *            - the stock identifier required
+     * @return the execution totals or null if no executions have occurred
+     */
+    public ExecutionStatistics getExecutionStatistics(String ric) {
+        return execStatsMap.get(ric);
+    }
+
+    /**
+     * Get the most recent executions of the given stock identifier (RIC)
+     * 
+     * @param ric
+     *            - the stock identifier required
+     * @return the executions still held in memory or null if no executions
+     *         have occurred
+     */
+    public ExecutionLog getExecutions(String ric) {
+        return execStockMap.get(ric);
+    }
+
+    /**
+     * Get the bars of the given stock identifier (RIC) at one resolution over
+     * a range of time
+     * 
+     * Only periods with executions have a bar, and only as many bars as the
+     * resolution retains are held. The range is rounded out to whole bars.
+     * 
+     * @param ric
+     *            - the stock identifier required
+     * @param resolution
+     *            - the time covered by each bar
+     * @param from
+     *            - the start of the range, in milliseconds since the epoch
+     * @param to
+     *            - the end of the range (exclusive)
+     * @return the bars in time order, or an empty list if there are none
+     */
+    public List<Bar> getBars(String ric, BarResolution resolution, long from, long to) {
+        BarHistory history = barsMap.get(ric);
+
+        if (history == null) {
+            return Collections.emptyList();
+        }
+
+        Instrument instrument = orderBooks.get(ric).getInstrument();
+        BarSeries bars = history.getSeries(resolution);
+        int end = bars.indexOf(to);
+        List<Bar> result = new ArrayList<Bar>();
+
+        for (int i = bars.indexOf(resolution.startOf(from)); i < end; i++) {
+            result.add(toBar(ric, instrument, bars, i, i + 1));
+        }
+
+        return result;
+    }
+
+    /**
+     * Get a single bar summarising the executions of the given stock
+     * identifier (RIC) over a range of time, e.g. the VWAP of the last five
+     * minutes or the high and low since the open
+     * 
+     * The bars of the coarsest resolution that fits the range are aggregated,
+     * so the cost depends on the length of the range and not on the number of
+     * executions. A range that does not fit any resolution exactly is rounded
+     * out to whole bars of the finest resolution still holding its start.
+     * 
+     * @param ric
+     *            - the stock identifier required
+     * @param from
+     *            - the start of the range, in milliseconds since the epoch
+     * @param to
+     *            - the end of the range (exclusive)
+     * @return the summary or null if there were no executions in the range
+     */
+    public Bar getBar(String ric, long from, long to) {
+        BarHistory history = barsMap.get(ric);
+
+        if (history == null) {
+            return null;
+        }
+
+        BarSeries bars = history.getSeriesFor(from, to);
+        int first = bars.indexOf(bars.getResolution().startOf(from));
+        int end = bars.indexOf(to);
+
+        return first < end ? toBar(ric, orderBooks.get(ric).getInstrument(), bars, first, end) : null;
+    }
+
+    /**
+     * Get the number of executions made since the engine was created,
+     * including any made while recovering
+     * 
+     * @return the number of executions
+     */
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * Get the number of OPEN orders across all books
+     * 
+     * @return the number of resting orders
+     */
+    public int getOpenOrderCount() {
+        return openOrders.size();
+    }
+
+    /**
+     * Get the number of price levels on both sides of every book
+     * 
+     * @return the total depth of the books
+     */
+    public int getPriceLevelCount() {
+        int count = 0;
+
+        for (OrderBook book : orderBooks.values()) {
+            count += book.getSide(Direction.BUY).getLevelCount() + book.getSide(Direction.SELL).getLevelCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * Take a snapshot of the current state of the Exchange
+     * 
+     * Only the stocks that have changed since the previous snapshot are
+     * rebuilt; the state of every other stock is shared with the previous
+     * snapshot.
+     * 
+     * @param previous
+     *            - the previous snapshot taken from this engine, or null if
+     *            there is none
+     * @param sequence
+     *            - the number of orders processed when the snapshot is taken
+     * @return the new snapshot
+     */
+    public ExchangeSnapshot snapshot(ExchangeSnapshot previous, long sequence) {
+        Map<String, ExchangeSnapshot.StockSnapshot> stocks = new HashMap<String, ExchangeSnapshot.StockSnapshot>();
+
+        if (previous != null) {
+            stocks.putAll(previous.getStocks());
+        }
+
+        for (String ric : changedRics) {
+            stocks.put(ric, new ExchangeSnapshot.StockSnapshot(
+                            getOpenInterest(ric, Direction.BUY),
+                            getOpenInterest(ric, Direction.SELL),
+                            getAverageExecutionPrice(ric),
+                            Collections.unmodifiableMap(getExecutedQuantitiesByUser(ric))));
+        }
+
+        changedRics.clear();
+
+        return new ExchangeSnapshot(sequence, getSubmittedOrders(), stocks);
+    }
+
+    private OrderBook getOrderBook(BookOrder o) {
+        return getOrderBook(o.getRic());
+    }
+
+    private OrderBook getOrderBook(String ric) {
+        OrderBook book = orderBooks.get(ric);
+
+        if (book == null) {
+            Instrument instrument = instruments.get(ric);
+
+            if (instrument == null) {
+                throw new IllegalArgumentException("Stock is not traded: " + ric);
+            }
+
+            book = new OrderBook(instrument);
+            orderBooks.put(ric, book);
+        }
+
+        return book;
+    }
+
+    private static void writeOrders(SnapshotWriter writer, OrderBookSide side) {
+        for (int depth = 0; depth < side.getLevelCount(); depth++) {
+            for (BookOrder o = side.getLevelAt(depth).getFirstOrder(); o != null; o = o.getNextInLevel()) {
+                writer.writeOrder(o);
+            }
+        }
+    }
+
+    private void amend(BookOrder o, OrderBook book, long newQuantity, long newPrice, BigDecimal quantity,
+                    BigDecimal price) {
+
+        touch(book, o.getDirection(), o.getPrice());
+
+        if (newPrice == o.getPrice() && newQuantity <= o.getQuantity()) {
+            if (newQuantity < o.getQuantity()) {
+                book.reduce(o, o.getQuantity() - newQuantity);
+            }
+        } else {
+            openOrders.remove(o.getId());
+            book.remove(o);
+
+            BookOrder amended = o.amend(new Order(o.getDirection(), o.getRic(), quantity,
+                            o.getType() == OrderType.MARKET ? null : price, o.getUser(), o.getType(),
+                            o.getTimeInForce()), newPrice, newQuantity);
+            amended.setId(o.getId());
+            match(amended, book);
+        }
+
+        changedRics.add(o.getRic());
+    }
+
+    private void match(BookOrder o, OrderBook book) {
+        o.setUserId(users.intern(o.getUser()));
+
+        if (book.isInAuction()) {
+            // Collected for the uncross...apart from fill or kill, which can
+            // only ever execute straight away
+            if (o.getTimeInForce() != TimeInForce.FOK) {
+                addToBook(o, book);
+            } else if (orderHandler != null) {
+                orderHandler.onOrderCancelled(o);
+            }
+
+            changedRics.add(o.getRic());
+            return;
+        }
+
+        OrderBookSide opposite = book.getOppositeSide(o.getDirection());
+
+        // Fill or kill needs enough crossing quantity for the whole order,
+        // which the level totals answer without touching any order. A matcher
+        // without partial fills only ever fills an order in full anyway.
+        if (o.getTimeInForce() != TimeInForce.FOK || !matcher.isPartialFillAllowed()
+                        || opposite.isQuantityCrossedBy(o.getPrice(), o.getQuantity())) {
+            // The matcher picks the counterparties straight from the book
+            matchingBook = book;
+            matcher.match(o, opposite, fills);
+        }
+
+        if (o.getQuantity() > 0 && o.getTimeInForce() == TimeInForce.GTC) {
+            // Remainder stays OPEN with its reduced quantity
+            addToBook(o, book);
+        } else if (o.getQuantity() > 0 && orderHandler != null) {
+            orderHandler.onOrderCancelled(o);
+        }
+
+        changedRics.add(o.getRic());
+    }
+
+    private void addToBook(BookOrder o, OrderBook book) {
+        book.add(o);
+        openOrders.put(o.getId(), o);
+        touch(book, o.getDirection(), o.getPrice());
+    }
+
+    private void touch(OrderBook book, Direction side, long price) {
+
+        // MARKET orders collected during an auction call are not at a price
+        // anyone can see
+        if (!events.hasSubscriptions() || price == BookOrder.marketPrice(side)) {
+            return;
+        }
+
+        // A sweep fills each level in turn, and an uncross takes both sides
+        // together, so only the last level of each side needs checking for a
+        // repeat
+        int last = side == Direction.BUY ? lastTouchedBid : lastTouchedOffer;
+
+        if (last >= 0 && touchedPrices[last] == price) {
+            return;
+        }
+
+        if (touchedCount == touchedPrices.length) {
+            touchedSides = Arrays.copyOf(touchedSides, touchedCount * 2);
+            touchedPrices = Arrays.copyOf(touchedPrices, touchedCount * 2);
+        }
+
+        if (side == Direction.BUY) {
+            lastTouchedBid = touchedCount;
+        } else {
+            lastTouchedOffer = touchedCount;
+        }
+
+        touchedBook = book;
+        touchedSides[touchedCount] = side;
+        touchedPrices[touchedCount++] = price;
+    }
+
+    private void publishTouchedLevels() {
+
+        for (int i = 0; i < touchedCount; i++) {
+            PriceLevel level = touchedBook.getSide(touchedSides[i]).getLevel(touchedPrices[i]);
+
+            events.levelChanged(touchedBook.getInstrument(), touchedSides[i], touchedPrices[i],
+                            level == null ? 0 : level.getTotalQuantity());
+        }
+
+        touchedCount = 0;
+        touchedBook = null;
+        lastTouchedBid = -1;
+        lastTouchedOffer = -1;
+    }
+
+    private void addExecution(BookOrder o, BookOrder matchedOrder, long quantity, long price, OrderBook book) {
+
+        BookOrder buy = o.getDirection() == Direction.BUY ? o : matchedOrder;
+        BookOrder sell = (o == buy) ? matchedOrder : o;
+
+        recordExecution(buy, sell, quantity, price, book);
+        touch(book, matchedOrder.getDirection(), matchedOrder.getPrice());
+
+        // Having added the new execution, reduce both orders...a fully filled
+        // matched order is no longer OPEN
+        o.fill(quantity);
+        book.fill(matchedOrder, quantity);
+
+        if (!matchedOrder.isInBook()) {
+            openOrders.remove(matchedOrder.getId());
+        }
+
+        if (orderHandler != null) {
+            orderHandler.onExecution(o, matchedOrder, quantity, price);
+        }
+    }
+
+    private void recordExecution(BookOrder buy, BookOrder sell, long quantity, long price, OrderBook book) {
+
+        String ric = book.getRic();
+        ExecutionLog execs = execStockMap.get(ric);
+        ExecutionStatistics stats = execStatsMap.get(ric);
+
+        if (execs == null) {
+            execs = new ExecutionLog(ric, historyStore);
+            execStockMap.put(ric, execs);
+        }
+
+        if (stats == null) {
+            stats = new ExecutionStatistics(users);
+            execStatsMap.put(ric, stats);
+        }
+
+        // Keep the running totals up to date so queries never need to look
+        // at the individual executions...which is what lets older executions
+        // leave memory
+        stats.addExecution(buy.getUserId(), sell.getUserId(), quantity, price);
+        getBarHistory(ric).add(matchingTime, quantity, price);
+        execs.add(buy.getId(), sell.getId(), quantity, price);
+        executionCount++;
+
+        if (journal != null) {
+            journal.writeExecution(ric, buy.getId(), sell.getId(), quantity, price);
+        }
+
+        events.execution(book.getInstrument(), buy.getId(), sell.getId(), quantity, price);
+    }
+
+    private void cancel(BookOrder o, OrderBook book) {
+        openOrders.remove(o.getId());
+        touch(book, o.getDirection(), o.getPrice());
+        book.remove(o);
+        changedRics.add(o.getRic());
+
+        if (orderHandler != null) {
+            orderHandler.onOrderCancelled(o);
+        }
+    }
+
+    private void cancelUnlessGoodTillCancel(OrderBook book, OrderBookSide side) {
+
+        // Usually every order collected was good till cancel
+        if (side.getNonGoodTillCancelCount() == 0) {
+            return;
+        }
+
+        List<BookOrder> cancels = new ArrayList<BookOrder>();
+
+        for (int depth = 0; depth < side.getLevelCount(); depth++) {
+            for (BookOrder o = side.getLevelAt(depth).getFirstOrder(); o != null; o = o.getNextInLevel()) {
+                if (o.getTimeInForce() != TimeInForce.GTC) {
+                    cancels.add(o);
+                }
+            }
+        }
+
+        // Not journalled...the uncross cancels them again on recovery
+        for (BookOrder o : cancels) {
+            cancel(o, book);
+        }
+    }
+
+    /**
+     * Check that every execution of a LIMIT order has a notional that fits
+     * in a long, whatever it matches against
+     */
+    private static BookOrder validateNotional(BookOrder o) {
+
+        if (o.getType() != OrderType.MARKET && o.getQuantity() > Long.MAX_VALUE / o.getPrice()) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order notional is too large");
+        }
+
+        return o;
+    }
+
+    /**
+     * Check whether matching an order could overflow the execution totals of
+     * its stock, which must never fail part way through a sweep
+     * 
+     * Each execution is at no more than the order's own price or the
+     * highest price on the opposite side, so their sum is bounded by the
+     * quantity at the higher of the two.
+     */
+    private boolean exceedsTotals(BookOrder o, long quantity, long price) {
+        long highest = o.getType() == OrderType.MARKET ? 0 : price;
+
+        return exceedsTotals(o.getRic(), quantity, Math.max(highest, getHighestOppositePrice(o)));
+    }
+
+    /**
+     * @return the highest price on the opposite side of the order's book, or
+     *         0 if that side has no priced orders
+     */
+    private long getHighestOppositePrice(BookOrder o) {
+        OrderBook book = orderBooks.get(o.getRic());
+
+        if (book == null || book.getOppositeSide(o.getDirection()).isEmpty()) {
+            return 0;
+        }
+
+        OrderBookSide opposite = book.getOppositeSide(o.getDirection());
+
+        // Bids are highest first, offers highest last. Only bids can have a
+        // MARKET level at the top, and it has no price of its own.
+        int depth = o.getDirection() == Direction.SELL ? 0 : opposite.getLevelCount() - 1;
+
+        if (opposite.isMarketLevel(opposite.getLevelAt(depth)) && o.getDirection() == Direction.SELL) {
+            depth++;
+        }
+
+        return depth < opposite.getLevelCount() ? opposite.getLevelAt(depth).getPrice() : 0;
+    }
+
+    private boolean exceedsTotals(String ric, long quantity, long price) {
+        ExecutionStatistics stats = execStatsMap.get(ric);
+        long totalQuantity = stats == null ? 0 : stats.getTotalQuantity();
+        long totalNotional = stats == null ? 0 : stats.getTotalNotional();
+
+        return quantity > Long.MAX_VALUE - totalQuantity
+                        || (price > 0 && quantity > (Long.MAX_VALUE - totalNotional) / price);
+    }
+
+    private long getLastPrice(String ric) {
+        ExecutionStatistics stats = execStatsMap.get(ric);
+
+        return stats == null ? 0 : stats.getLastPrice();
+    }
+
+    private static AuctionPrice toAuctionPrice(String ric, Instrument instrument, Equilibrium equilibrium) {
+        long surplus = equilibrium.getSurplus();
+        Direction surplusSide = surplus > 0 ? Direction.BUY : surplus < 0 ? Direction.SELL : null;
+
+        return new AuctionPrice(ric, instrument.priceOf(equilibrium.getPrice()),
+                        instrument.quantityOf(equilibrium.getVolume()), instrument.quantityOf(Math.abs(surplus)),
+                        surplusSide);
+    }
+
+    private BarHistory getBarHistory(String ric) {
+        BarHistory history = barsMap.get(ric);
+
+        if (history == null) {
+            history = new BarHistory();
+            barsMap.put(ric, history);
+        }
+
+        return history;
+    }
+
+    /**
+     * Aggregate the bars from first up to but not including end
+     */
+    private static Bar toBar(String ric, Instrument instrument, BarSeries bars, int first, int end) {
+        long high = Long.MIN_VALUE;
+        long low = Long.MAX_VALUE;
+        long volume = 0;
+        long notional = 0;
+        long count = 0;
+
+        for (int i = first; i < end; i++) {
+            high = Math.max(high, bars.getHigh(i));
+            low = Math.min(low, bars.getLow(i));
+            volume += bars.getVolume(i);
+            notional += bars.getNotional(i);
+            count += bars.getCount(i);
+        }
+
+        BigDecimal totalQuantity = instrument.quantityOf(volume);
+        BigDecimal totalNotional = instrument.notionalOf(notional);
+        BigDecimal averagePrice = totalNotional.divide(totalQuantity, MathContext.DECIMAL64).setScale(4,
+                        RoundingMode.HALF_UP);
+
+        return new Bar(ric, bars.getStart(first), bars.getStart(end - 1) + bars.getResolution().getMillis(),
+                        instrument.priceOf(bars.getOpen(first)), instrument.priceOf(high), instrument.priceOf(low),
+                        instrument.priceOf(bars.getClose(end - 1)), totalQuantity, totalNotional, averagePrice,
+                        count);
+    }
+
+    private Instrument getTradedInstrument(String ric) {
+        Instrument instrument = instruments.get(ric);
+
+        if (instrument == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order stock identifier (RIC) is not traded: "
+                            + ric);
+        }
+
+        return instrument;
+    }
+
+    private BookOrder toBookOrder(Order o, Instrument instrument) {
+        long quantity = toQuantity(o.getQuantity(), instrument);
+        long price = o.getType() == OrderType.MARKET ? BookOrder.marketPrice(o.getDirection())
+                        : toPrice(o.getPrice(), instrument);
+
+        return new BookOrder(o, price, quantity);
+    }
+
+    private long toQuantity(BigDecimal quantity, Instrument instrument) {
+        try {
+            return instrument.toQuantity(quantity);
+        } catch (ArithmeticException e) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order quantity is invalid for " + instrument);
+        }
+    }
+
+    private long toPrice(BigDecimal price, Instrument instrument) {
+        long scaledPrice;
+
+        try {
+            scaledPrice = instrument.toPrice(price);
+        } catch (ArithmeticException e) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order price is invalid for " + instrument);
+        }
+
+        if (!instrument.isOnTick(scaledPrice)) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order price is not a multiple of the tick size for " + instrument);
+        }
+
+        return scaledPrice;
+    }
+
+    private void validateOrderDetails(Order o) {
+
+        if (o.getDirection() == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order direction is NULL");
+        }
+
+        if (o.getRic() == null || o.getRic().trim().length() == 0) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order stock identifier (RIC) is invalid");
+        }
+
+        if (o.getQuantity() == null || o.getQuantity().signum() != 1) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order quantity is invalid");
+        }
+
+        if (o.getType() == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order type is NULL");
+        }
+
+        if (o.getTimeInForce() == null) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order time in force is NULL");
+        }
+
+        if (o.getType() == OrderType.MARKET) {
+
+            if (o.getPrice() != null) {
+                throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Market order must not have a price");
+            }
+
+            if (o.getTimeInForce() == TimeInForce.GTC) {
+                throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Market order must be IOC or FOK");
+            }
+
+        } else if (o.getPrice() == null || o.getPrice().signum() != 1) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order price is invalid");
+        }
+
+        if (o.getUser() == null || o.getUser().trim().length() == 0) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order's user is invalid");
+        }
+
+    }
+
+    /**
+     * Loads a snapshot and then replays the journal records written after it
+     */
+    private class Recovery implements SnapshotHandler, JournalHandler {
+
+        private final JournalReader reader;
+
+        // Journal records before this are already reflected in the snapshot
+        private long snapshotPosition;
+
+        Recovery(JournalReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public void onStart(long journalPosition, long snapshotNextId) {
+            snapshotPosition = journalPosition;
+            nextId = snapshotNextId;
+        }
+
+        @Override
+        public void onOrder(long id, Direction direction, String ric, String user, long quantity,
+                        long filledQuantity, long price, OrderType type, TimeInForce timeInForce) {
+            Instrument instrument = getOrderBook(ric).getInstrument();
+            Order order = new Order(direction, ric, instrument.quantityOf(quantity + filledQuantity),
+                            type == OrderType.MARKET ? null : instrument.priceOf(price), user, type, timeInForce);
+
+            BookOrder o = new BookOrder(order, price, quantity, filledQuantity);
+            o.setId(id);
+            o.setUserId(users.intern(user));
+            addToBook(o, getOrderBook(ric));
+            changedRics.add(ric);
+        }
+
+        @Override
+        public void onStatistics(String ric, long executionCount, long totalQuantity, long totalNotional,
+                        long lastPrice, Map<String, Long> netQuantities) {
+            getOrderBook(ric);
+            execStatsMap.put(ric, new ExecutionStatistics(users, executionCount, totalQuantity, totalNotional,
+                            lastPrice, netQuantities));
+            changedRics.add(ric);
+        }
+
+        @Override
+        public void onBar(String ric, BarResolution resolution, long start, long open, long high, long low,
+                        long close, long volume, long notional, long count) {
+            getOrderBook(ric);
+            getBarHistory(ric).getSeries(resolution).restore(start, open, high, low, close, volume, notional,
+                            count);
+        }
+
+        @Override
+        public void onAuctionCall(String ric) {
+            getOrderBook(ric).setInAuction(true);
+        }
+
+        @Override
+        public void onNewOrder(long id, Direction direction, String ric, String user, long quantity, long price,
+                        OrderType type, TimeInForce timeInForce, long time) {
+            Instrument instrument = getOrderBook(ric).getInstrument();
+            Order order = new Order(direction, ric, instrument.quantityOf(quantity),
+                            type == OrderType.MARKET ? null : instrument.priceOf(price), user, type, timeInForce);
+
+            BookOrder o = new BookOrder(order, price, quantity);
+            o.setId(id);
+
+            if (reader.getRecordPosition() < snapshotPosition) {
+                // Already matched...only needed for the list of all orders
+                submittedOrders.add(o);
+            } else {
+                process(o, time);
+            }
+        }
+
+        @Override
+        public void onCancel(long id) {
+            if (reader.getRecordPosition() >= snapshotPosition) {
+                cancelOrder(id);
+            }
+        }
+
+        @Override
+        public void onAmend(long id, long quantity, long price, long time) {
+            BookOrder o = openOrders.get(id);
+
+            if (o != null && reader.getRecordPosition() >= snapshotPosition) {
+                Instrument instrument = orderBooks.get(o.getRic()).getInstrument();
+                matchingTime = time;
+                amend(o, orderBooks.get(o.getRic()), quantity, price, instrument.quantityOf(quantity),
+                                instrument.priceOf(price));
+            }
+        }
+
+        @Override
+        public void onExecution(String ric, long buyId, long sellId, long quantity, long price) {
+            // Executions are matched again from the orders
+        }
+
+        @Override
+        public void onAuctionStart(String ric) {
+            if (reader.getRecordPosition() >= snapshotPosition) {
+                startAuction(ric);
+            }
+        }
+
+        @Override
+        public void onUncross(String ric, long time) {
+            if (reader.getRecordPosition() >= snapshotPosition) {
+                uncross(ric, time);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,680 @@
+package com.cs.exchange;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.AuctionPrice;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderRejectedException;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.event.BackpressurePolicy;
+import com.cs.exchange.event.DepthListener;
+import com.cs.exchange.event.DepthSubscription;
+import com.cs.exchange.event.ExchangeListener;
+import com.cs.exchange.event.Subscription;
+import com.cs.exchange.history.HistoryStore;
+import com.cs.exchange.journal.Journal;
+import com.cs.exchange.matcher.OrderMatcher;
+import com.cs.exchange.risk.RiskLimits;
+import com.cs.exchange.util.RingBuffer;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Exchange system that matches orders on a single dedicated thread
+ *
+ * Submitting threads validate their orders and publish them into a bounded
+ * ring buffer. The matching thread is the only thread that ever touches the
+ * {@link MatchingEngine}; after each batch of orders it publishes an
+ * immutable {@link ExchangeSnapshot}, which the query methods read without
+ * locking.
+ *
+ * Order submission is therefore asynchronous: the query methods reflect an
+ * order once the matching thread has processed it. Use
+ * {@link #awaitProcessed()} to wait for all orders submitted so far.
+ *
+ */
+public class SequencedExchange implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SequencedExchange.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // Maximum number of orders matched before publishing a new snapshot
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = 50000L;
+
+    private final MatchingEngine engine;
+    // Holds new orders (BookOrder), changes to OPEN orders (Amendment) and
+    // anything else the matching thread must do (Runnable)
+    private final RingBuffer<Object> ringBuffer;
+    private final Thread matchingThread;
+
+    // Ids are assigned on the submitting thread so they can be returned
+    // without waiting for the order to be matched. Each is taken under the
+    // publish lock together with its slot in the buffer, so the matching
+    // thread always sees orders in id order.
+    private final AtomicLong nextId = new AtomicLong();
+    private final Object publishLock = new Object();
+    // Orders rejected by the risk check on the matching thread
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private volatile ExchangeSnapshot snapshot;
+    private volatile boolean running = true;
+
+    /**
+     * Create an Exchange that trades no stocks, so rejects every order
+     *
+     * @see Exchange#Exchange(OrderMatcher, Collection)
+     */
+    public SequencedExchange(OrderMatcher matcher) {
+        this(matcher, Collections.<Instrument> emptyList());
+    }
+
+    public SequencedExchange(OrderMatcher matcher, Collection<Instrument> instruments) {
+        this(matcher, instruments, DEFAULT_BUFFER_SIZE);
+    }
+
+    public SequencedExchange(OrderMatcher matcher, Collection<Instrument> instruments, int bufferSize) {
+        this(matcher, instruments, null, bufferSize);
+    }
+
+    /**
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     * @param journal
+     *            - the journal to record every change in, or null for none;
+     *            it is only ever written by the matching thread
+     * @param bufferSize
+     *            - the number of orders that can be queued for matching
+     */
+    public SequencedExchange(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal,
+                    int bufferSize) {
+        this(matcher, instruments, journal, null, bufferSize);
+    }
+
+    /**
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     * @param journal
+     *            - the journal to record every change in, or null for none;
+     *            it is only ever written by the matching thread
+     * @param historyStore
+     *            - the store for older orders and executions, or null to keep
+     *            them all in memory; pages of orders are read back by the
+     *            query threads
+     * @param bufferSize
+     *            - the number of orders that can be queued for matching
+     */
+    public SequencedExchange(OrderMatcher matcher, Collection<Instrument> instruments, Journal journal,
+                    HistoryStore historyStore, int bufferSize) {
+        this(new MatchingEngine(matcher, instruments, journal, historyStore), bufferSize, "exchange-matcher");
+    }
+
+    SequencedExchange(MatchingEngine engine, int bufferSize, String threadName) {
+        this.engine = engine;
+        this.ringBuffer = new RingBuffer<Object>(bufferSize);
+        this.snapshot = engine.snapshot(null, 0);
+
+        this.matchingThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    matchOrders();
+                } finally {
+                    abandonQueued();
+                }
+            }
+        }, threadName);
+
+        this.matchingThread.setDaemon(true);
+        this.matchingThread.start();
+    }
+
+    /**
+     * Submit a new order to the Exchange
+     *
+     * The order is validated on the calling thread and then queued for
+     * matching, waiting for room in the buffer if necessary.
+     *
+     * The pre-trade risk check is only made by the matching thread, so an
+     * order that breaks its user's risk limits is rejected after its id has
+     * been returned. A rejected order never appears in
+     * {@link #getAllOrders()}, is reported to subscribers through
+     * {@link ExchangeListener#onOrderRejected(long, Order, RejectReason)} and is
+     * counted by {@link #getRejectedCount()}.
+     *
+     * @param o
+     *            - the order to be added
+     * @return the id of the order, starting from 0
+     * @throws OrderRejectedException
+     *             if the order is invalid
+     */
+    public long addNewOrder(Order o) {
+
+        return publish(engine.validate(o), nextId, 1, 0);
+    }
+
+    /**
+     * Cancel an OPEN order
+     *
+     * The cancel is queued behind the orders already submitted. It is
+     * ignored if the order is no longer OPEN when the cancel is processed.
+     *
+     * @param id
+     *            - the id returned when the order was added
+     */
+    public void cancelOrder(long id) {
+        publish(new Amendment(id, null, null));
+    }
+
+    /**
+     * Change the open quantity and price of an OPEN order
+     *
+     * The amendment is queued behind the orders already submitted. It is
+     * ignored if the order is no longer OPEN when the amendment is processed.
+     *
+     * @param id
+     *            - the id returned when the order was added
+     * @param quantity
+     *            - the new open quantity
+     * @param price
+     *            - the new price, or null for a MARKET order
+     * @see MatchingEngine#amendOrder(long, BigDecimal, BigDecimal)
+     */
+    public void amendOrder(long id, BigDecimal quantity, BigDecimal price) {
+
+        if (quantity == null || quantity.signum() != 1) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order quantity is invalid");
+        }
+
+        // Only the matching thread knows whether the order is MARKET
+        if (price != null && price.signum() != 1) {
+            throw new OrderRejectedException(RejectReason.INVALID_ORDER, "Order price is invalid");
+        }
+
+        publish(new Amendment(id, quantity, price));
+    }
+
+    BookOrder validate(Order o) {
+        return engine.validate(o);
+    }
+
+    void publish(Object command) {
+
+        synchronized (publishLock) {
+            checkRunning();
+            ringBuffer.put(command);
+        }
+    }
+
+    /**
+     * Number a new order and queue it for matching
+     *
+     * The id is sequence * stride + offset, where the sequence is taken from
+     * the given counter under the publish lock, so that orders are matched
+     * in id order however many threads submit them.
+     *
+     * @return the id given to the order
+     */
+    long publish(BookOrder o, AtomicLong sequence, int stride, int offset) {
+
+        synchronized (publishLock) {
+            checkRunning();
+            o.setId(sequence.getAndIncrement() * stride + offset);
+            ringBuffer.put(o);
+        }
+
+        return o.getId();
+    }
+
+    private void checkRunning() {
+
+        if (!running) {
+            throw new IllegalStateException("Exchange has been closed");
+        }
+    }
+
+    /**
+     * Wait until every order, cancel and amendment submitted before this call
+     * has been processed and is reflected in the query methods
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void awaitProcessed() throws InterruptedException {
+        awaitProcessed(ringBuffer.getClaimedCount());
+    }
+
+    /**
+     * Wait until the given number of orders, cancels and amendments have been
+     * processed and are reflected in the query methods
+     *
+     * @param count
+     *            - the number of orders, cancels and amendments
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void awaitProcessed(long count) throws InterruptedException {
+        while (snapshot.getSequence() < count) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (!matchingThread.isAlive()) {
+                throw new IllegalStateException("Exchange has been closed");
+            }
+
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Subscribe a listener to the changes made by the Exchange from now on,
+     * dropping events if it falls behind
+     *
+     * @param listener
+     *            - the listener to be called
+     * @return the subscription, to be closed when no longer needed
+     * @see #subscribe(ExchangeListener, int, int, BackpressurePolicy)
+     */
+    public Subscription subscribe(ExchangeListener listener) {
+        return subscribe(listener, Subscription.DEFAULT_QUEUE_SIZE, Subscription.DEFAULT_BATCH_SIZE,
+                        BackpressurePolicy.DROP);
+    }
+
+    /**
+     * Subscribe a listener to the changes made by the Exchange from now on
+     *
+     * Each accepted order, execution and change to a price level is queued
+     * by the matching thread for the listener and delivered on a thread of
+     * its own, so polling the query methods is no longer needed to see what
+     * has changed.
+     *
+     * @param listener
+     *            - the listener to be called
+     * @param queueSize
+     *            - the number of events that can be waiting for the listener
+     * @param batchSize
+     *            - the maximum number of events delivered at a time
+     * @param policy
+     *            - what happens to events when the queue is full
+     * @return the subscription, to be closed when no longer needed
+     * @see MatchingEngine#subscribe(ExchangeListener, int, int, BackpressurePolicy)
+     */
+    public Subscription subscribe(ExchangeListener listener, int queueSize, int batchSize,
+                    BackpressurePolicy policy) {
+        return engine.subscribe(listener, queueSize, batchSize, policy);
+    }
+
+    /**
+     * Subscribe a listener to conflated depth updates for the given stocks
+     *
+     * The subscription is made by the matching thread, queued behind the
+     * orders already submitted, and this waits for it. It counts as one
+     * command towards {@link #awaitProcessed(long)}.
+     *
+     * Changes to the price levels of the stocks are merged over each
+     * conflation interval and delivered on a thread of the subscription's
+     * own, one update per changed stock, so a slow listener never holds up
+     * matching and bursts of changes cost no more than one update per
+     * interval. The first update of each stock holds its whole depth.
+     *
+     * @param rics
+     *            - the stocks of interest
+     * @param listener
+     *            - the listener to be called
+     * @param conflationInterval
+     *            - the interval between updates, or 0 to deliver changes as
+     *            soon as possible
+     * @param unit
+     *            - the unit of the interval
+     * @return the subscription, to be closed when no longer needed
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public DepthSubscription subscribeDepth(final Collection<String> rics, final DepthListener listener,
+                    final long conflationInterval, final TimeUnit unit) throws InterruptedException {
+        return call(new Callable<DepthSubscription>() {
+
+            @Override
+            public DepthSubscription call() {
+                return engine.subscribeDepth(rics, listener, conflationInterval, unit);
+            }
+        });
+    }
+
+    /**
+     * Start an auction call for a stock, collecting its orders until it is
+     * uncrossed
+     *
+     * The call starts once every order already queued has been matched.
+     *
+     * @param ric
+     *            - the stock identifier
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     * @see MatchingEngine#startAuction(String)
+     */
+    public void startAuction(final String ric) throws InterruptedException {
+        call(new Callable<Void>() {
+
+            @Override
+            public Void call() {
+                engine.startAuction(ric);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * End the auction call for a stock, once every order already queued has
+     * been collected, executing everything that crosses at a single price
+     *
+     * @param ric
+     *            - the stock identifier
+     * @return the price the book uncrossed at, or null if nothing crossed
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     * @see MatchingEngine#uncross(String)
+     */
+    public AuctionPrice uncross(final String ric) throws InterruptedException {
+        return call(new Callable<AuctionPrice>() {
+
+            @Override
+            public AuctionPrice call() {
+                return engine.uncross(ric);
+            }
+        });
+    }
+
+    /**
+     * Get the price a stock's book would uncross at once every order already
+     * queued has been collected
+     *
+     * @param ric
+     *            - the stock identifier
+     * @return the indicative price or null if nothing crosses
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     * @see MatchingEngine#getAuctionPrice(String)
+     */
+    public AuctionPrice getAuctionPrice(final String ric) throws InterruptedException {
+        return call(new Callable<AuctionPrice>() {
+
+            @Override
+            public AuctionPrice call() {
+                return engine.getAuctionPrice(ric);
+            }
+        });
+    }
+
+    /**
+     * Run a task on the matching thread, after everything already queued, and
+     * wait for its result
+     */
+    private <T> T call(Callable<T> callable) throws InterruptedException {
+        FutureTask<T> task = new FutureTask<T>(callable);
+        publish(task);
+
+        try {
+            while (true) {
+                try {
+                    return task.get(IDLE_PARK_NANOS, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (!matchingThread.isAlive() && !task.isDone()) {
+                        throw new IllegalStateException("Exchange has been closed");
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } catch (CancellationException e) {
+            throw new IllegalStateException("Exchange has been closed");
+        }
+    }
+
+    /**
+     * Set the pre-trade risk limits of a single user
+     *
+     * Orders are checked by the matching thread, so limits apply to orders
+     * matched from now on, including any already queued.
+     *
+     * @param user
+     *            - the user whose orders are limited
+     * @param limits
+     *            - the limits, or null to go back to the default limits
+     * @see MatchingEngine#setRiskLimits(String, RiskLimits)
+     */
+    public void setRiskLimits(String user, RiskLimits limits) {
+        engine.setRiskLimits(user, limits);
+    }
+
+    /**
+     * Set the pre-trade risk limits of every user without limits of their own
+     *
+     * @param limits
+     *            - the limits, or null for no limits
+     * @see MatchingEngine#setDefaultRiskLimits(RiskLimits)
+     */
+    public void setDefaultRiskLimits(RiskLimits limits) {
+        engine.setDefaultRiskLimits(limits);
+    }
+
+    /**
+     * Get the number of orders rejected by the risk check
+     *
+     * @return the number of orders rejected by the matching thread since the
+     *         Exchange started
+     * @see #addNewOrder(Order)
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Get the latest snapshot of the Exchange
+     *
+     * @return an immutable view of the state of the Exchange
+     */
+    public ExchangeSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Get a list of all the orders that were submitted to the Exchange
+     *
+     * @return the list of all submitted orders
+     * @see ExchangeSnapshot#getAllOrders()
+     */
+    public List<Order> getAllOrders() {
+        return snapshot.getAllOrders();
+    }
+
+    /**
+     * @see ExchangeSnapshot#getOpenInterest(String, Direction)
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell) {
+        return snapshot.getOpenInterest(ric, buySell);
+    }
+
+    /**
+     * @see ExchangeSnapshot#getOpenInterest(String, Direction, int)
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell, int maxLevels) {
+        return snapshot.getOpenInterest(ric, buySell, maxLevels);
+    }
+
+    /**
+     * @see ExchangeSnapshot#getAverageExecutionPrice(String)
+     */
+    public BigDecimal getAverageExecutionPrice(String ric) {
+        return snapshot.getAverageExecutionPrice(ric);
+    }
+
+    /**
+     * @see ExchangeSnapshot#getExecutedQuantityForUser(String, String)
+     */
+    public BigDecimal getExecutedQuantityForUser(String ric, String user) {
+        return snapshot.getExecutedQuantityForUser(ric, user);
+    }
+
+    /**
+     * Stop accepting orders and stop the matching thread once every order
+     * already submitted has been matched
+     *
+     * An interrupt does not cut the wait short, but is kept for the caller
+     */
+    @Override
+    public void close() {
+
+        // Once no submitter is between its check and its put, everything
+        // queued is drained before the matching thread stops
+        synchronized (publishLock) {
+            running = false;
+        }
+
+        LockSupport.unpark(matchingThread);
+        Uninterruptibles.joinUninterruptibly(matchingThread);
+    }
+
+    private void matchOrders() {
+        long processed = 0;
+        int idleCount = 0;
+
+        // Keep going after close until everything already queued is matched
+        while (running || !ringBuffer.isEmpty()) {
+            int batchSize = 0;
+            Object command;
+
+            while (batchSize < MAX_BATCH_SIZE && (command = ringBuffer.poll()) != null) {
+                if (command instanceof BookOrder) {
+                    BookOrder o = (BookOrder) command;
+
+                    try {
+                        // A rejected order keeps its id, which is never used
+                        if (engine.checkRisk(o) == null) {
+                            engine.process(o);
+                        } else {
+                            rejectedCount.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        LOGGER.error("Failed to match order " + o.getOrder(), e);
+                    }
+                } else if (command instanceof Runnable) {
+                    // Work that must be done by the matching thread
+                    ((Runnable) command).run();
+                } else {
+                    apply((Amendment) command);
+                }
+
+                batchSize++;
+            }
+
+            if (batchSize > 0) {
+                try {
+                    engine.endBatch();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to end batch", e);
+                }
+
+                processed += batchSize;
+                snapshot = engine.snapshot(snapshot, processed);
+                idleCount = 0;
+            } else if (++idleCount > IDLE_SPINS) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Drop anything still queued once the matching thread stops, which only
+     * happens if it stopped before being closed, e.g. on an Error
+     */
+    private void abandonQueued() {
+        running = false;
+        int abandoned = drain();
+
+        // Wait for any submitter already past its check, which may have been
+        // waiting for the room just made
+        synchronized (publishLock) {
+            abandoned += drain();
+        }
+
+        if (abandoned > 0) {
+            LOGGER.error("Matching stopped with " + abandoned + " orders, cancels and amendments unprocessed");
+        }
+    }
+
+    private int drain() {
+        int count = 0;
+        Object command;
+
+        while ((command = ringBuffer.poll()) != null) {
+            if (command instanceof Future) {
+                ((Future<?>) command).cancel(false);
+            }
+
+            count++;
+        }
+
+        return count;
+    }
+
+    private void apply(Amendment amendment) {
+        try {
+            if (amendment.quantity == null) {
+                engine.cancelOrder(amendment.id);
+            } else {
+                engine.amendOrder(amendment.id, amendment.quantity, amendment.price);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to amend order " + amendment.id, e);
+        }
+    }
+
+    /**
+     * A cancel (no quantity or price) or amendment of an OPEN order
+     */
+    private static class Amendment {
+
+        private final long id;
+        private final BigDecimal quantity;
+        private final BigDecimal price;
+
+        Amendment(long id, BigDecimal quantity, BigDecimal price) {
+            this.id = id;
+            this.quantity = quantity;
+            this.price = price;
+        }
+
+    }
+
+}
@@ -0,0 +1,465 @@
+package com.cs.exchange;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.AuctionPrice;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.history.HistoryStore;
+import com.cs.exchange.matcher.OrderMatcher;
+import com.cs.exchange.risk.RiskLimits;
+
+/**
+ * Exchange system that spreads stocks across several independent matching
+ * engines, each running on its own thread
+ *
+ * Every stock identifier (RIC) is always routed to the same shard, so
+ * matching for a stock is identical to a single {@link SequencedExchange},
+ * but a burst of orders on one stock only delays the stocks sharing its
+ * shard. Each shard is a {@link SequencedExchange}, so order submission is
+ * asynchronous and queries read lock-free snapshots.
+ *
+ */
+public class ShardedExchange implements AutoCloseable {
+
+    private final SequencedExchange[] shards;
+
+    // Orders are numbered across all shards so that the submission order of
+    // the whole Exchange can be rebuilt from the shards
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * Create an Exchange that trades no stocks, so rejects every order
+     *
+     * @see Exchange#Exchange(OrderMatcher, Collection)
+     */
+    public ShardedExchange(OrderMatcher matcher, int shardCount) {
+        this(matcher, Collections.<Instrument> emptyList(), shardCount);
+    }
+
+    public ShardedExchange(OrderMatcher matcher, Collection<Instrument> instruments, int shardCount) {
+        this(matcher, instruments, shardCount, SequencedExchange.DEFAULT_BUFFER_SIZE);
+    }
+
+    public ShardedExchange(OrderMatcher matcher, Collection<Instrument> instruments, int shardCount,
+                    int bufferSize) {
+        this(matcher, instruments, null, shardCount, bufferSize);
+    }
+
+    /**
+     * @param matcher
+     *            - the matcher used to match orders
+     * @param instruments
+     *            - the stocks that can be traded
+     * @param historyStores
+     *            - a store for the older orders and executions of each shard,
+     *            in shard order, or null to keep them all in memory; a store
+     *            is only ever written by the matching thread of its shard
+     * @param shardCount
+     *            - the number of matching engines, each on its own thread
+     * @param bufferSize
+     *            - the number of orders that can be queued for matching by
+     *            each shard
+     */
+    public ShardedExchange(OrderMatcher matcher, Collection<Instrument> instruments,
+                    List<HistoryStore> historyStores, int shardCount, int bufferSize) {
+
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+
+        if (historyStores != null && historyStores.size() != shardCount) {
+            throw new IllegalArgumentException("There must be one history store for each shard");
+        }
+
+        this.shards = new SequencedExchange[shardCount];
+
+        for (int i = 0; i < shardCount; i++) {
+            HistoryStore historyStore = historyStores == null ? null : historyStores.get(i);
+
+            shards[i] = new SequencedExchange(new MatchingEngine(matcher, instruments, null, historyStore),
+                            bufferSize, "exchange-matcher-" + i);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Get the shard that matches orders for the given stock identifier (RIC)
+     *
+     * @param ric
+     *            - the stock identifier
+     * @return the index of the shard
+     */
+    public int getShard(String ric) {
+
+        if (ric == null) {
+            return 0;
+        }
+
+        // Spread the hash as RICs often differ only in their last characters
+        int h = ric.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % shards.length;
+    }
+
+    /**
+     * Submit a new order to the Exchange
+     *
+     * The order is validated on the calling thread and then queued for
+     * matching on the shard for its stock.
+     *
+     * As with {@link SequencedExchange#addNewOrder(Order)}, the risk check is
+     * made by the shard's matching thread, so an order can still be rejected
+     * after its id has been returned. It is then reported to subscribers of
+     * that shard and counted by {@link #getRejectedCount()}.
+     *
+     * @param o
+     *            - the order to be added
+     * @return the id of the order, unique across all shards
+     * @throws com.cs.exchange.domain.OrderRejectedException
+     *             if the order is invalid
+     */
+    public long addNewOrder(Order o) {
+        int shardIndex = getShard(o == null ? null : o.getRic());
+        SequencedExchange shard = shards[shardIndex];
+
+        // The shard is held in the id so cancels and amendments can be routed
+        // without a lookup, while ids still increase in submission order. The
+        // shard takes the sequence as it queues the order, so each shard
+        // matches its orders in id order.
+        return shard.publish(shard.validate(o), nextSequence, shards.length, shardIndex);
+    }
+
+    /**
+     * @see SequencedExchange#cancelOrder(long)
+     */
+    public void cancelOrder(long id) {
+        getShardForId(id).cancelOrder(id);
+    }
+
+    /**
+     * @see SequencedExchange#amendOrder(long, BigDecimal, BigDecimal)
+     */
+    public void amendOrder(long id, BigDecimal quantity, BigDecimal price) {
+        getShardForId(id).amendOrder(id, quantity, price);
+    }
+
+    /**
+     * Set the pre-trade risk limits of a single user, in every shard
+     *
+     * Each shard checks positions in its own stocks only, so the limits apply
+     * per stock as for a single Exchange.
+     *
+     * @see SequencedExchange#setRiskLimits(String, RiskLimits)
+     */
+    public void setRiskLimits(String user, RiskLimits limits) {
+        for (SequencedExchange shard : shards) {
+            shard.setRiskLimits(user, limits);
+        }
+    }
+
+    /**
+     * @see SequencedExchange#setDefaultRiskLimits(RiskLimits)
+     */
+    public void setDefaultRiskLimits(RiskLimits limits) {
+        for (SequencedExchange shard : shards) {
+            shard.setDefaultRiskLimits(limits);
+        }
+    }
+
+    /**
+     * Wait until every order, cancel and amendment submitted before this call
+     * has been processed and is reflected in the query methods
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public void awaitProcessed() throws InterruptedException {
+        for (SequencedExchange shard : shards) {
+            shard.awaitProcessed();
+        }
+    }
+
+    /**
+     * Get the number of orders rejected by the risk check on any shard
+     *
+     * @return the total number of orders rejected by the matching threads
+     * @see SequencedExchange#getRejectedCount()
+     */
+    public long getRejectedCount() {
+        long count = 0;
+
+        for (SequencedExchange shard : shards) {
+            count += shard.getRejectedCount();
+        }
+
+        return count;
+    }
+
+    /**
+     * Get a list of all the orders that were submitted to the Exchange
+     *
+     * The orders of every shard are merged back into submission order as the
+     * list is read, so nothing is copied. Iterating the list is the cheapest
+     * way to read it.
+     *
+     * @return an unmodifiable view of all submitted orders, as they were when
+     *         called
+     */
+    public List<Order> getAllOrders() {
+        List<List<BookOrder>> shardOrders = new ArrayList<List<BookOrder>>(shards.length);
+
+        for (SequencedExchange shard : shards) {
+            shardOrders.add(shard.getSnapshot().getSubmittedOrders());
+        }
+
+        return new MergedOrders(shardOrders);
+    }
+
+    /**
+     * @see SequencedExchange#startAuction(String)
+     */
+    public void startAuction(String ric) throws InterruptedException {
+        shards[getShard(ric)].startAuction(ric);
+    }
+
+    /**
+     * @see SequencedExchange#uncross(String)
+     */
+    public AuctionPrice uncross(String ric) throws InterruptedException {
+        return shards[getShard(ric)].uncross(ric);
+    }
+
+    /**
+     * @see SequencedExchange#getAuctionPrice(String)
+     */
+    public AuctionPrice getAuctionPrice(String ric) throws InterruptedException {
+        return shards[getShard(ric)].getAuctionPrice(ric);
+    }
+
+    /**
+     * @see ExchangeSnapshot#getOpenInterest(String, Direction)
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell) {
+        return shards[getShard(ric)].getOpenInterest(ric, buySell);
+    }
+
+    /**
+     * @see ExchangeSnapshot#getOpenInterest(String, Direction, int)
+     */
+    public List<OpenInterest> getOpenInterest(String ric, Direction buySell, int maxLevels) {
+        return shards[getShard(ric)].getOpenInterest(ric, buySell, maxLevels);
+    }
+
+    /**
+     * @see ExchangeSnapshot#getAverageExecutionPrice(String)
+     */
+    public BigDecimal getAverageExecutionPrice(String ric) {
+        return shards[getShard(ric)].getAverageExecutionPrice(ric);
+    }
+
+    /**
+     * @see ExchangeSnapshot#getExecutedQuantityForUser(String, String)
+     */
+    public BigDecimal getExecutedQuantityForUser(String ric, String user) {
+        return shards[getShard(ric)].getExecutedQuantityForUser(ric, user);
+    }
+
+    /**
+     * Get the executed quantity of the given user for every stock identifier
+     * (RIC) across all shards
+     *
+     * @param user
+     *            - the user for which executed quantities are required
+     * @return a map of stock identifier against executed quantity
+     */
+    public Map<String, BigDecimal> getExecutedQuantitiesForUser(String user) {
+        Map<String, BigDecimal> qtyByRic = new HashMap<String, BigDecimal>();
+
+        for (SequencedExchange shard : shards) {
+            qtyByRic.putAll(shard.getSnapshot().getExecutedQuantitiesForUser(user));
+        }
+
+        return qtyByRic;
+    }
+
+    private SequencedExchange getShardForId(long id) {
+
+        if (id < 0) {
+            throw new IllegalArgumentException("Order id is invalid: " + id);
+        }
+
+        return shards[(int) (id % shards.length)];
+    }
+
+    /**
+     * Stop accepting orders and stop every shard once the orders already
+     * submitted have been matched
+     *
+     * An interrupt does not cut the wait short, but is kept for the caller
+     */
+    @Override
+    public void close() {
+        for (SequencedExchange shard : shards) {
+            shard.close();
+        }
+    }
+
+    /**
+     * The submitted orders of every shard, each list in id order, read as one
+     * list in id order
+     */
+    private static class MergedOrders extends AbstractList<Order> {
+
+        private final List<List<BookOrder>> shardOrders;
+        private final int size;
+
+        MergedOrders(List<List<BookOrder>> shardOrders) {
+            this.shardOrders = shardOrders;
+
+            int total = 0;
+
+            for (List<BookOrder> orders : shardOrders) {
+                total += orders.size();
+            }
+
+            this.size = total;
+        }
+
+        @Override
+        public Order get(int index) {
+
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+
+            // The order at the index has the lowest id with more than index
+            // orders at or below it
+            long low = 0;
+            long high = 0;
+
+            for (List<BookOrder> orders : shardOrders) {
+
+                if (!orders.isEmpty()) {
+                    high = Math.max(high, orders.get(orders.size() - 1).getId());
+                }
+            }
+
+            while (low < high) {
+                long mid = low + (high - low) / 2;
+
+                if (countUpTo(mid) > index) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+
+            for (List<BookOrder> orders : shardOrders) {
+                int position = countUpTo(orders, low) - 1;
+
+                if (position >= 0 && orders.get(position).getId() == low) {
+                    return orders.get(position).getOrder();
+                }
+            }
+
+            throw new IllegalStateException("Order is missing: " + low);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Order> iterator() {
+            return new Iterator<Order>() {
+
+                private final int[] positions = new int[shardOrders.size()];
+                private int returned;
+
+                @Override
+                public boolean hasNext() {
+                    return returned < size;
+                }
+
+                @Override
+                public Order next() {
+
+                    if (returned == size) {
+                        throw new NoSuchElementException();
+                    }
+
+                    int next = -1;
+                    long lowest = Long.MAX_VALUE;
+
+                    // Shard counts are small so a linear pick of the lowest
+                    // id is cheaper than a heap
+                    for (int i = 0; i < positions.length; i++) {
+                        List<BookOrder> orders = shardOrders.get(i);
+
+                        if (positions[i] < orders.size() && orders.get(positions[i]).getId() < lowest) {
+                            lowest = orders.get(positions[i]).getId();
+                            next = i;
+                        }
+                    }
+
+                    returned++;
+                    return shardOrders.get(next).get(positions[next]++).getOrder();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private int countUpTo(long id) {
+            int count = 0;
+
+            for (List<BookOrder> orders : shardOrders) {
+                count += countUpTo(orders, id);
+            }
+
+            return count;
+        }
+
+        /**
+         * @return the number of orders with ids no greater than the given id
+         */
+        private static int countUpTo(List<BookOrder> orders, long id) {
+            int low = 0;
+            int high = orders.size();
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+
+                if (orders.get(mid).getId() <= id) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+    }
+
+}
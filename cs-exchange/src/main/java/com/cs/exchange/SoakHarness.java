@@ -0,0 +1,197 @@
+package com.cs.exchange;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cs.exchange.data.OrderFlowGenerator;
+import com.cs.exchange.data.OrderFlowSettings;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.history.HistoryStore;
+import com.cs.exchange.matcher.OrderMatcher;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+import com.cs.exchange.matcher.ProRataOrderMatcher;
+import com.cs.exchange.util.LatencyHistogram;
+
+/**
+ * Drives an {@link Exchange} with synthetic order flow and reports the
+ * throughput and latency of order submission
+ *
+ * Settings are given on the command line as name=value pairs: "events" (the
+ * number of new orders and cancels, default 10 million), "matcher"
+ * (OrderMatcherImpl, PriceTimeOrderMatcher or ProRataOrderMatcher) and any
+ * {@link OrderFlowSettings} name, e.g.
+ *
+ * <pre>
+ * > java com.cs.exchange.SoakHarness events=100000000 rate=200000 cancelRatio=0.6
+ * </pre>
+ *
+ * Older orders and executions are kept in a temporary history store, so a
+ * long run does not hold them all in memory.
+ *
+ */
+public class SoakHarness {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SoakHarness.class);
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int HISTORY_ORDERS_IN_MEMORY = 100000;
+    private static final int HISTORY_EXECUTIONS_IN_MEMORY = 10000;
+
+    private final Exchange ex;
+    private final OrderFlowGenerator generator;
+
+    // Ids of the most recent new orders, for cancels to pick from
+    private final long[] recentIds;
+    private long newOrderCount;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LatencyHistogram intervalLatencies = new LatencyHistogram();
+
+    public SoakHarness(Exchange ex, OrderFlowGenerator generator) {
+        this.ex = ex;
+        this.generator = generator;
+        this.recentIds = new long[generator.getSettings().getCancelWindow()];
+    }
+
+    /**
+     * Submit every event of the flow, logging progress every second
+     *
+     * @return the latency of every event, in nanoseconds
+     */
+    public LatencyHistogram run() {
+        long rate = generator.getSettings().getRate();
+        long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) / rate : 0;
+
+        long start = System.nanoTime();
+        long nextReport = start + REPORT_INTERVAL_NANOS;
+        long reportedCount = 0;
+        long count = 0;
+
+        while (generator.hasNext()) {
+            OrderFlowGenerator.Event event = generator.next();
+            long sendTime;
+
+            if (rate > 0) {
+                // Measure from when the event should have been sent, so that
+                // a stall also counts against the events queued behind it
+                sendTime = start + count * intervalNanos;
+                waitUntil(sendTime);
+            } else {
+                sendTime = System.nanoTime();
+            }
+
+            submit(event);
+
+            long now = System.nanoTime();
+            latencies.record(now - sendTime);
+            intervalLatencies.record(now - sendTime);
+            count++;
+
+            if (now >= nextReport) {
+                report(count - reportedCount, now - nextReport + REPORT_INTERVAL_NANOS);
+                reportedCount = count;
+                nextReport = now + REPORT_INTERVAL_NANOS;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        LOGGER.info(String.format("Submitted %d events in %.1f s, %.0f events/s", count, elapsed / 1e9,
+                        count * 1e9 / elapsed));
+        LOGGER.info("Overall latency (ns): " + describe(latencies));
+
+        return latencies;
+    }
+
+    private void submit(OrderFlowGenerator.Event event) {
+
+        if (event.getType() == OrderFlowGenerator.EventType.NEW) {
+            recentIds[(int) (newOrderCount++ % recentIds.length)] = ex.addNewOrder(event.getOrder());
+        } else {
+            // Often already filled or cancelled, which is fine
+            ex.cancelOrder(recentIds[(int) ((newOrderCount - 1 - event.getCancelAge()) % recentIds.length)]);
+        }
+    }
+
+    private void report(long count, long elapsedNanos) {
+        LOGGER.info(String.format("%.0f events/s, latency (ns): %s", count * 1e9 / elapsedNanos,
+                        describe(intervalLatencies)));
+        intervalLatencies.reset();
+    }
+
+    private static String describe(LatencyHistogram h) {
+        return String.format("p50=%d p90=%d p99=%d p99.9=%d p99.99=%d max=%d", h.getValueAtPercentile(50),
+                        h.getValueAtPercentile(90), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9),
+                        h.getValueAtPercentile(99.99), h.getMax());
+    }
+
+    private static void waitUntil(long time) {
+        long remaining;
+
+        while ((remaining = time - System.nanoTime()) > 0) {
+            if (remaining > 100000L) {
+                LockSupport.parkNanos(remaining - 50000L);
+            }
+        }
+    }
+
+    private static OrderMatcher newMatcher(String name) {
+        switch (name) {
+            case "OrderMatcherImpl":
+                return new OrderMatcherImpl();
+            case "PriceTimeOrderMatcher":
+                return new PriceTimeOrderMatcher();
+            case "ProRataOrderMatcher":
+                return new ProRataOrderMatcher();
+            default:
+                throw new IllegalArgumentException("Unknown matcher: " + name);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        OrderFlowSettings settings = new OrderFlowSettings();
+        long events = 10000000L;
+        OrderMatcher matcher = new OrderMatcherImpl();
+
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+
+            if (split < 0) {
+                throw new IllegalArgumentException("Expected name=value but got: " + arg);
+            }
+
+            String name = arg.substring(0, split);
+            String value = arg.substring(split + 1);
+
+            if (name.equals("events")) {
+                events = Long.parseLong(value);
+            } else if (name.equals("matcher")) {
+                matcher = newMatcher(value);
+            } else {
+                settings.set(name, value);
+            }
+        }
+
+        Path directory = Files.createTempDirectory("soak");
+        HistoryStore store = new HistoryStore(directory, HISTORY_ORDERS_IN_MEMORY, HISTORY_EXECUTIONS_IN_MEMORY);
+
+        try {
+            OrderFlowGenerator generator = new OrderFlowGenerator(settings, events);
+            Exchange ex = new Exchange(matcher, Instrument.withDefaults(generator.getRics()), null, store);
+            new SoakHarness(ex, generator).run();
+        } finally {
+            store.close();
+            Files.delete(directory.resolve(HistoryStore.ORDERS_FILE));
+            Files.delete(directory.resolve(HistoryStore.EXECUTIONS_FILE));
+            Files.delete(directory);
+        }
+    }
+
+}
@@ -0,0 +1,232 @@
+package com.cs.exchange.book;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * An order as held in the order book
+ *
+ * Price and quantity are held as scaled longs (see
+ * {@link com.cs.exchange.domain.Instrument}) so that matching never needs to
+ * create or compare BigDecimals. The quantity is the open quantity, which
+ * goes down as the order is partially filled.
+ *
+ */
+public class BookOrder {
+
+    private final Order order;
+    private final long price;
+
+    // Open quantity - only changed through fill while the order is not in the
+    // book, or by the book while it is
+    long quantity;
+    long filledQuantity;
+
+    private long id = -1;
+
+    // Id of the user interned by the engine, so executions need not look the
+    // user up by name
+    private int userId = -1;
+
+    // Time priority within the book, renewed each time the order joins a
+    // level
+    long priority;
+
+    // The level holding the order while it is in the book
+    PriceLevel level;
+
+    // Links to the neighbouring orders at the same price in arrival order
+    BookOrder prevInLevel;
+    BookOrder nextInLevel;
+
+    // Links to the neighbouring orders with the same price and quantity
+    BookOrder prevWithSameQuantity;
+    BookOrder nextWithSameQuantity;
+
+    public BookOrder(Order order, long price, long quantity) {
+        this(order, price, quantity, 0);
+    }
+
+    /**
+     * Create an order that has already been partially filled, e.g. when
+     * restoring a book
+     */
+    public BookOrder(Order order, long price, long quantity, long filledQuantity) {
+        this.order = order;
+        this.price = price;
+        this.quantity = quantity;
+        this.filledQuantity = filledQuantity;
+    }
+
+    /**
+     * Get the scaled price at which a MARKET order is held, the most
+     * aggressive price possible, so that it crosses every level on the
+     * opposite side
+     *
+     * @param direction
+     *            - the direction of the order
+     * @return the scaled price
+     */
+    public static long marketPrice(Direction direction) {
+        return direction == Direction.BUY ? Long.MAX_VALUE : 0;
+    }
+
+    /**
+     * Get the order as originally submitted to the Exchange
+     *
+     * @return the submitted order
+     */
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Create the order that replaces this one when it is amended to a new
+     * price or a larger quantity, and so loses its place in the queue
+     *
+     * Subclasses override this to carry over anything else they hold, e.g.
+     * where the order came from.
+     *
+     * @param amended
+     *            - the order as amended
+     * @param price
+     *            - the new scaled price
+     * @param quantity
+     *            - the new scaled open quantity
+     * @return the replacement order, without an id
+     */
+    public BookOrder amend(Order amended, long price, long quantity) {
+        return new BookOrder(amended, price, quantity);
+    }
+
+    public Direction getDirection() {
+        return order.getDirection();
+    }
+
+    public String getRic() {
+        return order.getRic();
+    }
+
+    public String getUser() {
+        return order.getUser();
+    }
+
+    public OrderType getType() {
+        return order.getType();
+    }
+
+    public TimeInForce getTimeInForce() {
+        return order.getTimeInForce();
+    }
+
+    /**
+     * Get the scaled limit price, which for a MARKET order is the most
+     * aggressive price possible so that it crosses every level
+     *
+     * @return the scaled price
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * Get the open quantity of the order, i.e. the quantity not yet filled
+     *
+     * @return the scaled open quantity
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Get the quantity of the order that has been filled so far
+     *
+     * @return the scaled filled quantity
+     */
+    public long getFilledQuantity() {
+        return filledQuantity;
+    }
+
+    /**
+     * Check whether the order is currently held in an order book
+     *
+     * @return true if the order is OPEN in a book, else false
+     */
+    public boolean isInBook() {
+        return level != null;
+    }
+
+    /**
+     * Fill part or all of an order that is not held in a book
+     *
+     * Orders in a book must be filled through
+     * {@link OrderBook#fill(BookOrder, long)} so that the book stays
+     * consistent.
+     *
+     * @param fillQuantity
+     *            - the scaled quantity filled
+     */
+    public void fill(long fillQuantity) {
+
+        if (level != null) {
+            throw new IllegalStateException("Order is in the book and must be filled through the book");
+        }
+
+        if (fillQuantity <= 0 || fillQuantity > quantity) {
+            throw new IllegalArgumentException("Fill quantity is invalid: " + fillQuantity);
+        }
+
+        quantity -= fillQuantity;
+        filledQuantity += fillQuantity;
+    }
+
+    /**
+     * Get the Exchange assigned identifier of the order
+     *
+     * Ids are unique within an Exchange and increase in submission order.
+     *
+     * @return the order id or -1 if none has been assigned yet
+     */
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the id of the order's user, as interned by the engine holding the
+     * order
+     *
+     * @return the user id or -1 if none has been assigned yet
+     */
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Get the next open order at the same price
+     *
+     * @return the next order in arrival order or null if this is the last
+     */
+    public BookOrder getNextInLevel() {
+        return nextInLevel;
+    }
+
+    /**
+     * Get the next open order at the same price with the same quantity
+     *
+     * @return the next order in arrival order or null if this is the last
+     */
+    public BookOrder getNextWithSameQuantity() {
+        return nextWithSameQuantity;
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.cs.exchange.book;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+
+/**
+ * Order book holding all open orders for a single stock identifier (RIC)
+ *
+ */
+public class OrderBook {
+
+    private final Instrument instrument;
+
+    private final OrderBookSide buySide;
+    private final OrderBookSide sellSide;
+
+    // Whether orders are being collected for an auction rather than matched
+    private boolean inAuction;
+
+    public OrderBook(Instrument instrument) {
+        this.instrument = instrument;
+        this.buySide = new OrderBookSide(Direction.BUY, instrument);
+        this.sellSide = new OrderBookSide(Direction.SELL, instrument);
+    }
+
+    public Instrument getInstrument() {
+        return instrument;
+    }
+
+    public String getRic() {
+        return instrument.getRic();
+    }
+
+    /**
+     * Check whether an auction call is in progress, during which the book
+     * may be crossed
+     *
+     * @return true if new orders are only being collected
+     */
+    public boolean isInAuction() {
+        return inAuction;
+    }
+
+    public void setInAuction(boolean inAuction) {
+        this.inAuction = inAuction;
+    }
+
+    /**
+     * Get the side of the book holding orders with the given direction
+     *
+     * @param direction
+     *            - the direction required
+     * @return the side of the book
+     */
+    public OrderBookSide getSide(Direction direction) {
+        return direction == Direction.BUY ? buySide : sellSide;
+    }
+
+    /**
+     * Get the side of the book an order with the given direction would match
+     * against
+     *
+     * @param direction
+     *            - the direction of the incoming order
+     * @return the opposite side of the book
+     */
+    public OrderBookSide getOppositeSide(Direction direction) {
+        return direction == Direction.BUY ? sellSide : buySide;
+    }
+
+    /**
+     * Add an open order to the book
+     *
+     * @param o
+     *            - the order to be added
+     */
+    public void add(BookOrder o) {
+        getSide(o.getDirection()).add(o);
+    }
+
+    /**
+     * Remove an open order from the book
+     *
+     * @param o
+     *            - the order to be removed, which must be in the book
+     */
+    public void remove(BookOrder o) {
+
+        if (!o.isInBook()) {
+            throw new IllegalStateException("Order is not in the book");
+        }
+
+        getSide(o.getDirection()).remove(o);
+    }
+
+    /**
+     * Fill part or all of an open order in the book
+     *
+     * A partially filled order keeps its time priority, a fully filled order
+     * is removed from the book.
+     *
+     * @param o
+     *            - the order to be filled, which must be in the book
+     * @param quantity
+     *            - the scaled quantity filled
+     */
+    public void fill(BookOrder o, long quantity) {
+
+        if (!o.isInBook()) {
+            throw new IllegalStateException("Order is not in the book");
+        }
+
+        getSide(o.getDirection()).reduce(o, quantity);
+        o.filledQuantity += quantity;
+    }
+
+    /**
+     * Reduce the open quantity of an order in the book without filling it
+     *
+     * The order keeps its time priority unless nothing is left open, in
+     * which case it is removed from the book.
+     *
+     * @param o
+     *            - the order to be reduced, which must be in the book
+     * @param quantity
+     *            - the scaled quantity to take off the open quantity
+     */
+    public void reduce(BookOrder o, long quantity) {
+
+        if (!o.isInBook()) {
+            throw new IllegalStateException("Order is not in the book");
+        }
+
+        getSide(o.getDirection()).reduce(o, quantity);
+    }
+
+}
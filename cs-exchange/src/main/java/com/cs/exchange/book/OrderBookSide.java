@@ -0,0 +1,417 @@
+package com.cs.exchange.book;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * One side (buy or sell) of the order book for a single stock
+ *
+ * Price levels are held in an array sorted worst-first so that the best
+ * level, which is where almost all activity happens, sits at the end and can
+ * be added or removed without moving any other level. Levels are looked up
+ * by binary search on price.
+ *
+ * Each level keeps its own total quantity up to date as orders are added and
+ * removed, so the open interest of a side can be read straight from its
+ * levels. The last open interest built is kept until the side next changes.
+ *
+ * Emptied levels are kept on a free list and reused for new prices, so the
+ * churn of levels around the best price does not create garbage.
+ *
+ * MARKET orders collected during an auction call are held at the best
+ * possible price (see {@link BookOrder#marketPrice(Direction)}) so they come
+ * first in priority. That level is not a real price, so it is left out of
+ * the open interest.
+ *
+ */
+public class OrderBookSide {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Direction direction;
+    private final Instrument instrument;
+
+    private PriceLevel[] levels = new PriceLevel[INITIAL_CAPACITY];
+    private int levelCount;
+
+    // Emptied levels ready for reuse
+    private PriceLevel freeLevels;
+
+    private int orderCount;
+    private long totalQuantity;
+
+    // Orders collected during an auction call that do not outlive it
+    private int nonGoodTillCancelCount;
+
+    // Time priority given to the next order to join the side
+    private long nextPriority;
+
+    // Incremented on every change to the side
+    private long version;
+
+    // Open interest as at openInterestVersion
+    private List<OpenInterest> openInterest = Collections.emptyList();
+    private long openInterestVersion;
+
+    OrderBookSide(Direction direction, Instrument instrument) {
+        this.direction = direction;
+        this.instrument = instrument;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    /**
+     * Get the price level for the given price
+     *
+     * @param price
+     *            - the scaled price required
+     * @return the price level or null if there are no open orders at the
+     *         price
+     */
+    public PriceLevel getLevel(long price) {
+        int index = indexOf(price);
+        return index < 0 ? null : levels[index];
+    }
+
+    /**
+     * Get the number of price levels on this side of the book
+     *
+     * @return the number of price levels
+     */
+    public int getLevelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Get a price level by its distance from the best price
+     *
+     * @param depth
+     *            - 0 for the best price level, 1 for the next best and so on
+     * @return the price level
+     */
+    public PriceLevel getLevelAt(int depth) {
+        if (depth < 0 || depth >= levelCount) {
+            throw new IndexOutOfBoundsException("No price level at depth " + depth);
+        }
+
+        return levels[levelCount - 1 - depth];
+    }
+
+    /**
+     * Check whether the given price is at least as good as the price level
+     * from the point of view of an incoming order on the opposite side
+     *
+     * @param price
+     *            - the scaled limit price of an order on the opposite side
+     * @param level
+     *            - a price level on this side
+     * @return true if the order could trade at the level, else false
+     */
+    public boolean isCrossedBy(long price, PriceLevel level) {
+        return direction == Direction.SELL ? price >= level.getPrice() : price <= level.getPrice();
+    }
+
+    /**
+     * Check whether the open quantity at the levels crossed by the given
+     * price adds up to at least the given quantity
+     *
+     * Only the level totals are used, best first, and the check stops as
+     * soon as the answer is known, so no order is looked at.
+     *
+     * @param price
+     *            - the scaled limit price of an order on the opposite side
+     * @param quantity
+     *            - the scaled quantity required
+     * @return true if there is enough open quantity, else false
+     */
+    public boolean isQuantityCrossedBy(long price, long quantity) {
+
+        if (totalQuantity < quantity) {
+            return false;
+        }
+
+        // Every level is crossed, so the side total will do
+        if (isCrossedBy(price, getLevelAt(levelCount - 1))) {
+            return true;
+        }
+
+        long available = 0;
+
+        for (int depth = 0; depth < levelCount; depth++) {
+            PriceLevel level = getLevelAt(depth);
+
+            if (!isCrossedBy(price, level)) {
+                return false;
+            }
+
+            available += level.getTotalQuantity();
+
+            if (available >= quantity) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether a level holds MARKET orders rather than orders at a price
+     *
+     * @param level
+     *            - a price level on this side
+     * @return true if the level is at the market price of this side
+     */
+    public boolean isMarketLevel(PriceLevel level) {
+        return level.getPrice() == BookOrder.marketPrice(direction);
+    }
+
+    public boolean isEmpty() {
+        return levelCount == 0;
+    }
+
+    /**
+     * Get the number of open orders on this side of the book
+     *
+     * @return the number of open orders
+     */
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Get the number of open orders on this side of the book that are not
+     * good till cancel, which can only rest during an auction call
+     *
+     * @return the number of open IOC and FOK orders
+     */
+    public int getNonGoodTillCancelCount() {
+        return nonGoodTillCancelCount;
+    }
+
+    /**
+     * Get the total quantity of all open orders on this side of the book
+     *
+     * @return the total scaled quantity
+     */
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * Get the version of this side of the book, which changes whenever an
+     * order is added, removed or changed
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the "open interest" of this side of the book, i.e. the total
+     * quantity of all open orders on a per price point basis
+     *
+     * @return an immutable list of open interest entries sorted in descending
+     *         order of price
+     */
+    public List<OpenInterest> getOpenInterest() {
+
+        if (openInterestVersion != version) {
+            openInterest = buildOpenInterest(getLimitLevelCount());
+            openInterestVersion = version;
+        }
+
+        return openInterest;
+    }
+
+    /**
+     * Get the "open interest" of the best price levels on this side of the
+     * book
+     *
+     * @param maxLevels
+     *            - the maximum number of price levels required
+     * @return an immutable list of open interest entries for at most
+     *         maxLevels of the best price levels, sorted in descending order
+     *         of price
+     */
+    public List<OpenInterest> getOpenInterest(int maxLevels) {
+
+        if (maxLevels < 0) {
+            throw new IllegalArgumentException("Maximum number of levels must not be negative");
+        }
+
+        int limitLevelCount = getLimitLevelCount();
+
+        if (maxLevels >= limitLevelCount) {
+            return getOpenInterest();
+        }
+
+        if (openInterestVersion == version) {
+            // Best levels are first for buys and last for sells
+            return direction == Direction.BUY ? openInterest.subList(0, maxLevels)
+                            : openInterest.subList(limitLevelCount - maxLevels, limitLevelCount);
+        }
+
+        // Only build the levels asked for rather than the whole side
+        return buildOpenInterest(maxLevels);
+    }
+
+    void add(BookOrder o) {
+
+        if (o.isInBook()) {
+            throw new IllegalStateException("Order is already in the book");
+        }
+
+        int index = indexOf(o.getPrice());
+        PriceLevel level;
+
+        if (index >= 0) {
+            level = levels[index];
+        } else {
+            level = newLevel(o.getPrice());
+            insertLevel(-(index + 1), level);
+        }
+
+        level.add(o, nextPriority++);
+        orderCount++;
+        totalQuantity += o.getQuantity();
+        version++;
+
+        if (o.getTimeInForce() != TimeInForce.GTC) {
+            nonGoodTillCancelCount++;
+        }
+    }
+
+    void remove(BookOrder o) {
+        PriceLevel level = o.level;
+        long quantity = o.getQuantity();
+
+        level.remove(o);
+        orderCount--;
+        totalQuantity -= quantity;
+        version++;
+
+        if (o.getTimeInForce() != TimeInForce.GTC) {
+            nonGoodTillCancelCount--;
+        }
+
+        if (level.isEmpty()) {
+            removeLevel(indexOf(level.getPrice()));
+            level.nextFree = freeLevels;
+            freeLevels = level;
+        }
+    }
+
+    void reduce(BookOrder o, long quantity) {
+
+        if (quantity <= 0 || quantity > o.getQuantity()) {
+            throw new IllegalArgumentException("Quantity is invalid: " + quantity);
+        }
+
+        if (quantity == o.getQuantity()) {
+            // Nothing left so no longer OPEN
+            remove(o);
+            o.quantity = 0;
+        } else {
+            o.level.reduce(o, quantity);
+            totalQuantity -= quantity;
+            version++;
+        }
+    }
+
+    private List<OpenInterest> buildOpenInterest(int depth) {
+
+        if (depth == 0) {
+            return Collections.emptyList();
+        }
+
+        List<OpenInterest> interest = new ArrayList<OpenInterest>(depth);
+        int first = levelCount - getLimitLevelCount();
+
+        for (int i = 0; i < depth; i++) {
+            // Buy levels are best-first in descending price order already,
+            // sell levels need reversing
+            PriceLevel level = getLevelAt(first + (direction == Direction.BUY ? i : depth - 1 - i));
+            interest.add(new OpenInterest(instrument.quantityOf(level.getTotalQuantity()),
+                            instrument.priceOf(level.getPrice())));
+        }
+
+        return Collections.unmodifiableList(interest);
+    }
+
+    private int getLimitLevelCount() {
+        // MARKET orders can only ever be at the best level
+        return levelCount > 0 && isMarketLevel(levels[levelCount - 1]) ? levelCount - 1 : levelCount;
+    }
+
+    private PriceLevel newLevel(long price) {
+        PriceLevel level = freeLevels;
+
+        if (level == null) {
+            return new PriceLevel(price);
+        }
+
+        freeLevels = level.nextFree;
+        level.reset(price);
+
+        return level;
+    }
+
+    private void insertLevel(int index, PriceLevel level) {
+        if (levelCount == levels.length) {
+            levels = Arrays.copyOf(levels, levelCount * 2);
+        }
+
+        System.arraycopy(levels, index, levels, index + 1, levelCount - index);
+        levels[index] = level;
+        levelCount++;
+    }
+
+    private void removeLevel(int index) {
+        levelCount--;
+        System.arraycopy(levels, index + 1, levels, index, levelCount - index);
+        levels[levelCount] = null;
+    }
+
+    /**
+     * Binary search for the level with the given price
+     *
+     * @return the index of the level if found, otherwise (-(insertion point)
+     *         - 1)
+     */
+    private int indexOf(long price) {
+        long key = sortKey(price);
+        int low = 0;
+        int high = levelCount - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = sortKey(levels[mid].getPrice());
+
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    private long sortKey(long price) {
+        // Worst-first means ascending price for buys and descending for sells
+        return direction == Direction.BUY ? price : -price;
+    }
+
+}
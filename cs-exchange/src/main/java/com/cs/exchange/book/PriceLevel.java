@@ -0,0 +1,255 @@
+package com.cs.exchange.book;
+
+import com.cs.exchange.util.LongObjectHashMap;
+
+/**
+ * All open orders resting at a single price point on one side of the book
+ *
+ * Orders are linked in arrival order, which gives their time priority at the
+ * price. They are also indexed by open quantity so that a match for a given
+ * quantity can be found without scanning the whole level; orders with the
+ * same quantity are held in arrival order too.
+ *
+ * Levels come and go constantly around the best price, so an emptied level
+ * is kept by its side for reuse at another price, and each level keeps its
+ * emptied quantity queues for reuse in the same way.
+ *
+ */
+public class PriceLevel {
+
+    private long price;
+
+    private BookOrder head;
+    private BookOrder tail;
+
+    private final LongObjectHashMap<OrderQueue> ordersByQuantity = new LongObjectHashMap<OrderQueue>();
+
+    private int orderCount;
+    private long totalQuantity;
+
+    // Emptied quantity queues ready for reuse
+    private OrderQueue freeQueues;
+
+    // Next emptied level ready for reuse, while this level is not in use
+    PriceLevel nextFree;
+
+    PriceLevel(long price) {
+        this.price = price;
+    }
+
+    /**
+     * Reuse an empty level for another price
+     */
+    void reset(long price) {
+
+        if (orderCount != 0) {
+            throw new IllegalStateException("Only an empty level can be reused");
+        }
+
+        this.price = price;
+        this.nextFree = null;
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * Get the earliest open order at this level
+     *
+     * Subsequent orders can be reached through
+     * {@link BookOrder#getNextInLevel()}.
+     *
+     * @return the earliest order or null if there are none
+     */
+    public BookOrder getFirstOrder() {
+        return head;
+    }
+
+    /**
+     * Get the first open order at this level with the given quantity
+     *
+     * Subsequent orders with the same quantity can be reached through
+     * {@link BookOrder#getNextWithSameQuantity()}.
+     *
+     * @param quantity
+     *            - the quantity required
+     * @return the earliest order or null if there are none
+     */
+    public BookOrder getFirstOrder(long quantity) {
+        OrderQueue orders = ordersByQuantity.get(quantity);
+        return orders == null ? null : orders.head;
+    }
+
+    /**
+     * Get the total quantity of all open orders at this level
+     *
+     * @return the total open quantity
+     */
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    public int getOrderCount() {
+        return orderCount;
+    }
+
+    public boolean isEmpty() {
+        return orderCount == 0;
+    }
+
+    void add(BookOrder o, long priority) {
+        o.level = this;
+        o.priority = priority;
+        o.prevInLevel = tail;
+        o.nextInLevel = null;
+
+        if (tail == null) {
+            head = o;
+        } else {
+            tail.nextInLevel = o;
+        }
+
+        tail = o;
+
+        getOrCreateQueue(o.quantity).addLast(o);
+        orderCount++;
+        totalQuantity += o.quantity;
+    }
+
+    void remove(BookOrder o) {
+        if (o.prevInLevel == null) {
+            head = o.nextInLevel;
+        } else {
+            o.prevInLevel.nextInLevel = o.nextInLevel;
+        }
+
+        if (o.nextInLevel == null) {
+            tail = o.prevInLevel;
+        } else {
+            o.nextInLevel.prevInLevel = o.prevInLevel;
+        }
+
+        o.prevInLevel = null;
+        o.nextInLevel = null;
+        o.level = null;
+
+        removeFromQueue(o);
+        orderCount--;
+        totalQuantity -= o.quantity;
+    }
+
+    /**
+     * Reduce the open quantity of an order without removing it from the level
+     *
+     * The order keeps its time priority.
+     */
+    void reduce(BookOrder o, long quantity) {
+        removeFromQueue(o);
+        o.quantity -= quantity;
+        totalQuantity -= quantity;
+        getOrCreateQueue(o.quantity).insertByPriority(o);
+    }
+
+    private OrderQueue getOrCreateQueue(long quantity) {
+        OrderQueue orders = ordersByQuantity.get(quantity);
+
+        if (orders == null) {
+            orders = freeQueues;
+
+            if (orders == null) {
+                orders = new OrderQueue();
+            } else {
+                freeQueues = orders.nextFree;
+                orders.nextFree = null;
+            }
+
+            ordersByQuantity.put(quantity, orders);
+        }
+
+        return orders;
+    }
+
+    private void removeFromQueue(BookOrder o) {
+        OrderQueue orders = ordersByQuantity.get(o.quantity);
+
+        orders.remove(o);
+
+        if (orders.head == null) {
+            ordersByQuantity.remove(o.quantity);
+            orders.nextFree = freeQueues;
+            freeQueues = orders;
+        }
+    }
+
+    /**
+     * Orders with the same quantity linked in arrival order
+     */
+    private static class OrderQueue {
+
+        private BookOrder head;
+        private BookOrder tail;
+
+        private OrderQueue nextFree;
+
+        void addLast(BookOrder o) {
+            o.prevWithSameQuantity = tail;
+            o.nextWithSameQuantity = null;
+
+            if (tail == null) {
+                head = o;
+            } else {
+                tail.nextWithSameQuantity = o;
+            }
+
+            tail = o;
+        }
+
+        void insertByPriority(BookOrder o) {
+            // Orders mostly move queue when partially filled, and a sweep
+            // fills the oldest order at the level first, so it usually goes
+            // at or near the front: search from there
+            BookOrder next = head;
+
+            while (next != null && next.priority < o.priority) {
+                next = next.nextWithSameQuantity;
+            }
+
+            BookOrder prev = (next == null) ? tail : next.prevWithSameQuantity;
+
+            o.prevWithSameQuantity = prev;
+            o.nextWithSameQuantity = next;
+
+            if (prev == null) {
+                head = o;
+            } else {
+                prev.nextWithSameQuantity = o;
+            }
+
+            if (next == null) {
+                tail = o;
+            } else {
+                next.prevWithSameQuantity = o;
+            }
+        }
+
+        void remove(BookOrder o) {
+            if (o.prevWithSameQuantity == null) {
+                head = o.nextWithSameQuantity;
+            } else {
+                o.prevWithSameQuantity.nextWithSameQuantity = o.nextWithSameQuantity;
+            }
+
+            if (o.nextWithSameQuantity == null) {
+                tail = o.prevWithSameQuantity;
+            } else {
+                o.nextWithSameQuantity.prevWithSameQuantity = o.prevWithSameQuantity;
+            }
+
+            o.prevWithSameQuantity = null;
+            o.nextWithSameQuantity = null;
+        }
+
+    }
+
+}
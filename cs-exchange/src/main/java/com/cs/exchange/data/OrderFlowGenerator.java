@@ -0,0 +1,209 @@
+package com.cs.exchange.data;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * Lazily generated stream of synthetic order flow for load and soak testing
+ *
+ * Each event either adds a new order or cancels one of the most recent new
+ * orders. Events are created one at a time as they are requested and every
+ * price, quantity, RIC and user is built up front, so memory use stays flat
+ * however many events are generated. The same settings, including the seed,
+ * always produce the same events.
+ *
+ * Not thread safe.
+ *
+ */
+public class OrderFlowGenerator implements Iterator<OrderFlowGenerator.Event> {
+
+    public enum EventType {
+        NEW,
+        CANCEL
+    }
+
+    private final OrderFlowSettings settings;
+    private final long eventCount;
+    private final Random random;
+
+    private final String[] rics;
+    private final String[] users;
+    private final BigDecimal[] prices;
+    private final BigDecimal[] quantities;
+
+    // Index into prices of the mid
+    private final int midIndex;
+
+    private long generatedCount;
+    private long newOrderCount;
+
+    /**
+     * @param settings
+     *            - the settings of the flow
+     * @param eventCount
+     *            - the number of events to generate, or Long.MAX_VALUE for an
+     *            endless flow
+     */
+    public OrderFlowGenerator(OrderFlowSettings settings, long eventCount) {
+
+        if (settings.getRicCount() < 1 || settings.getUserCount() < 1 || settings.getMaxLots() < 1) {
+            throw new IllegalArgumentException("RIC, user and lot counts must be positive");
+        }
+
+        if (settings.getCancelRatio() < 0 || settings.getCancelRatio() >= 1) {
+            throw new IllegalArgumentException("Cancel ratio must be at least 0 and less than 1");
+        }
+
+        if (settings.getIocRatio() < 0 || settings.getFokRatio() < 0
+                        || settings.getIocRatio() + settings.getFokRatio() > 1) {
+            throw new IllegalArgumentException("IOC and FOK ratios must be at least 0 and add up to at most 1");
+        }
+
+        this.settings = settings;
+        this.eventCount = eventCount;
+        this.random = new Random(settings.getSeed());
+
+        this.rics = new String[settings.getRicCount()];
+
+        for (int i = 0; i < rics.length; i++) {
+            rics[i] = "RIC" + i + ".L";
+        }
+
+        this.users = new String[settings.getUserCount()];
+
+        for (int i = 0; i < users.length; i++) {
+            users[i] = "User " + (i + 1);
+        }
+
+        // Cover 4 standard deviations either side of the mid, but never go
+        // below a single tick
+        BigDecimal tick = settings.getTickSize();
+        int ticksAbove = (int) Math.ceil(4 * settings.getPriceStdDevTicks());
+        int ticksBelow = Math.min(ticksAbove, settings.getMidPrice().divideToIntegralValue(tick).intValue() - 1);
+
+        this.prices = new BigDecimal[ticksBelow + ticksAbove + 1];
+        this.midIndex = ticksBelow;
+
+        for (int i = 0; i < prices.length; i++) {
+            prices[i] = settings.getMidPrice().add(tick.multiply(BigDecimal.valueOf(i - midIndex)));
+        }
+
+        this.quantities = new BigDecimal[settings.getMaxLots()];
+
+        for (int i = 0; i < quantities.length; i++) {
+            quantities[i] = settings.getLotSize().multiply(BigDecimal.valueOf(i + 1));
+        }
+    }
+
+    public OrderFlowSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Get the stock identifiers (RICs) orders are generated for
+     *
+     * @return the RICs, which must not be changed
+     */
+    public String[] getRics() {
+        return rics;
+    }
+
+    public long getGeneratedCount() {
+        return generatedCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return generatedCount < eventCount;
+    }
+
+    @Override
+    public Event next() {
+
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        generatedCount++;
+
+        // Nothing to cancel until there has been a new order
+        if (newOrderCount > 0 && random.nextDouble() < settings.getCancelRatio()) {
+            int window = (int) Math.min(newOrderCount, settings.getCancelWindow());
+            return new Event(EventType.CANCEL, null, random.nextInt(window));
+        }
+
+        newOrderCount++;
+
+        Direction direction = random.nextDouble() < settings.getBuyRatio() ? Direction.BUY : Direction.SELL;
+        String ric = rics[random.nextInt(rics.length)];
+        String user = users[random.nextInt(users.length)];
+        BigDecimal quantity = quantities[random.nextInt(quantities.length)];
+
+        long ticks = Math.round(random.nextGaussian() * settings.getPriceStdDevTicks());
+        int priceIndex = (int) Math.max(0, Math.min(prices.length - 1, midIndex + ticks));
+
+        TimeInForce timeInForce = TimeInForce.GTC;
+
+        // Only drawn when asked for, so flows without them are unchanged
+        if (settings.getIocRatio() > 0 || settings.getFokRatio() > 0) {
+            double draw = random.nextDouble();
+
+            if (draw < settings.getIocRatio()) {
+                timeInForce = TimeInForce.IOC;
+            } else if (draw < settings.getIocRatio() + settings.getFokRatio()) {
+                timeInForce = TimeInForce.FOK;
+            }
+        }
+
+        return new Event(EventType.NEW, new Order(direction, ric, quantity, prices[priceIndex], user,
+                        OrderType.LIMIT, timeInForce), 0);
+    }
+
+    /**
+     * A single event in the flow
+     */
+    public static class Event {
+
+        private final EventType type;
+        private final Order order;
+        private final int cancelAge;
+
+        Event(EventType type, Order order, int cancelAge) {
+            this.type = type;
+            this.order = order;
+            this.cancelAge = cancelAge;
+        }
+
+        public EventType getType() {
+            return type;
+        }
+
+        /**
+         * Get the new order
+         *
+         * @return the order or null for a cancel
+         */
+        public Order getOrder() {
+            return order;
+        }
+
+        /**
+         * Get which recent new order is to be cancelled
+         *
+         * @return 0 for the most recent new order, 1 for the one before and
+         *         so on, up to the cancel window
+         */
+        public int getCancelAge() {
+            return cancelAge;
+        }
+
+    }
+
+}
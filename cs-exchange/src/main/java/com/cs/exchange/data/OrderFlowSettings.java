@@ -0,0 +1,233 @@
+package com.cs.exchange.data;
+
+import java.math.BigDecimal;
+
+/**
+ * Settings for an {@link OrderFlowGenerator}
+ *
+ * Every setting has a default, so only those of interest need to be set.
+ *
+ */
+public class OrderFlowSettings {
+
+    private int ricCount = 10;
+    private int userCount = 100;
+
+    // Prices are normally distributed around the mid, in whole ticks
+    private BigDecimal midPrice = new BigDecimal("100");
+    private BigDecimal tickSize = new BigDecimal("0.01");
+    private double priceStdDevTicks = 10;
+
+    // Quantities are a whole number of lots, uniformly distributed
+    private BigDecimal lotSize = new BigDecimal("100");
+    private int maxLots = 10;
+
+    private double buyRatio = 0.5;
+    private double cancelRatio = 0.0;
+
+    // New orders are good till cancelled unless they are drawn as IOC or FOK
+    private double iocRatio = 0.0;
+    private double fokRatio = 0.0;
+
+    // Cancels pick one of this many most recent orders
+    private int cancelWindow = 1024;
+
+    private long seed = 1L;
+
+    // Orders per second, or 0 to submit as fast as possible
+    private long rate = 0;
+
+    public int getRicCount() {
+        return ricCount;
+    }
+
+    public void setRicCount(int ricCount) {
+        this.ricCount = ricCount;
+    }
+
+    public int getUserCount() {
+        return userCount;
+    }
+
+    public void setUserCount(int userCount) {
+        this.userCount = userCount;
+    }
+
+    public BigDecimal getMidPrice() {
+        return midPrice;
+    }
+
+    public void setMidPrice(BigDecimal midPrice) {
+        this.midPrice = midPrice;
+    }
+
+    public BigDecimal getTickSize() {
+        return tickSize;
+    }
+
+    public void setTickSize(BigDecimal tickSize) {
+        this.tickSize = tickSize;
+    }
+
+    public double getPriceStdDevTicks() {
+        return priceStdDevTicks;
+    }
+
+    public void setPriceStdDevTicks(double priceStdDevTicks) {
+        this.priceStdDevTicks = priceStdDevTicks;
+    }
+
+    public BigDecimal getLotSize() {
+        return lotSize;
+    }
+
+    public void setLotSize(BigDecimal lotSize) {
+        this.lotSize = lotSize;
+    }
+
+    public int getMaxLots() {
+        return maxLots;
+    }
+
+    public void setMaxLots(int maxLots) {
+        this.maxLots = maxLots;
+    }
+
+    /**
+     * Get the proportion of new orders that are buys
+     *
+     * @return a value from 0 (all sells) to 1 (all buys)
+     */
+    public double getBuyRatio() {
+        return buyRatio;
+    }
+
+    public void setBuyRatio(double buyRatio) {
+        this.buyRatio = buyRatio;
+    }
+
+    /**
+     * Get the proportion of events that cancel an earlier order rather than
+     * add a new one
+     *
+     * @return a value from 0 (no cancels) up to but excluding 1
+     */
+    public double getCancelRatio() {
+        return cancelRatio;
+    }
+
+    public void setCancelRatio(double cancelRatio) {
+        this.cancelRatio = cancelRatio;
+    }
+
+    /**
+     * Get the proportion of new orders that are immediate or cancel
+     *
+     * @return a value from 0 (none) to 1, which together with the FOK ratio
+     *         must not exceed 1
+     */
+    public double getIocRatio() {
+        return iocRatio;
+    }
+
+    public void setIocRatio(double iocRatio) {
+        this.iocRatio = iocRatio;
+    }
+
+    /**
+     * Get the proportion of new orders that are fill or kill
+     *
+     * @return a value from 0 (none) to 1, which together with the IOC ratio
+     *         must not exceed 1
+     */
+    public double getFokRatio() {
+        return fokRatio;
+    }
+
+    public void setFokRatio(double fokRatio) {
+        this.fokRatio = fokRatio;
+    }
+
+    public int getCancelWindow() {
+        return cancelWindow;
+    }
+
+    public void setCancelWindow(int cancelWindow) {
+        this.cancelWindow = cancelWindow;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public void setRate(long rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Apply a setting given as text, e.g. from the command line
+     *
+     * @param name
+     *            - the name of the setting, as in its setter without the
+     *            "set" (e.g. "ricCount")
+     * @param value
+     *            - the value of the setting
+     */
+    public void set(String name, String value) {
+        switch (name) {
+            case "ricCount":
+                setRicCount(Integer.parseInt(value));
+                break;
+            case "userCount":
+                setUserCount(Integer.parseInt(value));
+                break;
+            case "midPrice":
+                setMidPrice(new BigDecimal(value));
+                break;
+            case "tickSize":
+                setTickSize(new BigDecimal(value));
+                break;
+            case "priceStdDevTicks":
+                setPriceStdDevTicks(Double.parseDouble(value));
+                break;
+            case "lotSize":
+                setLotSize(new BigDecimal(value));
+                break;
+            case "maxLots":
+                setMaxLots(Integer.parseInt(value));
+                break;
+            case "buyRatio":
+                setBuyRatio(Double.parseDouble(value));
+                break;
+            case "cancelRatio":
+                setCancelRatio(Double.parseDouble(value));
+                break;
+            case "iocRatio":
+                setIocRatio(Double.parseDouble(value));
+                break;
+            case "fokRatio":
+                setFokRatio(Double.parseDouble(value));
+                break;
+            case "cancelWindow":
+                setCancelWindow(Integer.parseInt(value));
+                break;
+            case "seed":
+                setSeed(Long.parseLong(value));
+                break;
+            case "rate":
+                setRate(Long.parseLong(value));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown order flow setting: " + name);
+        }
+    }
+
+}
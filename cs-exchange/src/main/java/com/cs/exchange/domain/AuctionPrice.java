@@ -0,0 +1,61 @@
+package com.cs.exchange.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * The price a stock's auction uncrosses, or would uncross, at along with the
+ * quantity executed and the surplus left over
+ *
+ */
+public class AuctionPrice {
+
+    private final String ric;
+    private final BigDecimal price;
+    private final BigDecimal volume;
+    private final BigDecimal surplus;
+    private final Direction surplusSide;
+
+    public AuctionPrice(String ric, BigDecimal price, BigDecimal volume, BigDecimal surplus,
+                    Direction surplusSide) {
+        this.ric = ric;
+        this.price = price;
+        this.volume = volume;
+        this.surplus = surplus;
+        this.surplusSide = surplusSide;
+    }
+
+    public String getRic() {
+        return ric;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public BigDecimal getVolume() {
+        return volume;
+    }
+
+    /**
+     * Get the quantity crossing the price that is left over
+     */
+    public BigDecimal getSurplus() {
+        return surplus;
+    }
+
+    /**
+     * Get the side of the book with the surplus
+     *
+     * @return the side or null if both sides execute in full
+     */
+    public Direction getSurplusSide() {
+        return surplusSide;
+    }
+
+    @Override
+    public String toString() {
+        return ric + " " + volume + " @ " + price
+                        + (surplusSide == null ? "" : " " + surplusSide + " surplus " + surplus);
+    }
+
+}
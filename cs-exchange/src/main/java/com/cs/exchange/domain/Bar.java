@@ -0,0 +1,97 @@
+package com.cs.exchange.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Summary of the executions of a stock over a period of time
+ *
+ * Times are milliseconds since the epoch; the period runs from the start up
+ * to but not including the end.
+ *
+ */
+public class Bar {
+
+    private final String ric;
+    private final long start;
+    private final long end;
+    private final BigDecimal open;
+    private final BigDecimal high;
+    private final BigDecimal low;
+    private final BigDecimal close;
+    private final BigDecimal volume;
+    private final BigDecimal notional;
+    private final BigDecimal averagePrice;
+    private final long executionCount;
+
+    public Bar(String ric, long start, long end, BigDecimal open, BigDecimal high, BigDecimal low,
+                    BigDecimal close, BigDecimal volume, BigDecimal notional, BigDecimal averagePrice,
+                    long executionCount) {
+        this.ric = ric;
+        this.start = start;
+        this.end = end;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.notional = notional;
+        this.averagePrice = averagePrice;
+        this.executionCount = executionCount;
+    }
+
+    public String getRic() {
+        return ric;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public BigDecimal getOpen() {
+        return open;
+    }
+
+    public BigDecimal getHigh() {
+        return high;
+    }
+
+    public BigDecimal getLow() {
+        return low;
+    }
+
+    public BigDecimal getClose() {
+        return close;
+    }
+
+    public BigDecimal getVolume() {
+        return volume;
+    }
+
+    public BigDecimal getNotional() {
+        return notional;
+    }
+
+    /**
+     * Get the volume weighted average price (VWAP) of the executions
+     *
+     * @return the notional divided by the volume
+     */
+    public BigDecimal getAveragePrice() {
+        return averagePrice;
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    @Override
+    public String toString() {
+        return ric + " [" + start + ", " + end + ") O " + open + " H " + high + " L " + low + " C " + close + " V "
+                        + volume + " VWAP " + averagePrice;
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.cs.exchange.domain;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static details of a stock traded on the Exchange
+ *
+ * Prices and quantities are held internally as scaled longs, e.g. a price of
+ * 100.25 with a price scale of 4 is held as 1002500. The tick size is the
+ * minimum price increment expressed in the same scaled units.
+ *
+ */
+public class Instrument {
+
+    public static final int DEFAULT_PRICE_SCALE = 4;
+    public static final int DEFAULT_QUANTITY_SCALE = 0;
+    public static final long DEFAULT_TICK_SIZE = 1L;
+
+    private final String ric;
+    private final int priceScale;
+    private final int quantityScale;
+    private final long tickSize;
+
+    public Instrument(String ric) {
+        this(ric, DEFAULT_PRICE_SCALE, DEFAULT_QUANTITY_SCALE, DEFAULT_TICK_SIZE);
+    }
+
+    /**
+     * Get instruments with the default scales and tick size
+     *
+     * @param rics
+     *            - the stock identifiers
+     * @return an instrument for each stock, in the same order
+     */
+    public static List<Instrument> withDefaults(String... rics) {
+        List<Instrument> instruments = new ArrayList<Instrument>(rics.length);
+
+        for (String ric : rics) {
+            instruments.add(new Instrument(ric));
+        }
+
+        return instruments;
+    }
+
+    public Instrument(String ric, int priceScale, int quantityScale, long tickSize) {
+
+        if (ric == null || ric.trim().length() == 0) {
+            throw new IllegalArgumentException("Instrument stock identifier (RIC) is invalid");
+        }
+
+        if (priceScale < 0 || quantityScale < 0) {
+            throw new IllegalArgumentException("Instrument scale must not be negative");
+        }
+
+        if (tickSize <= 0) {
+            throw new IllegalArgumentException("Instrument tick size must be positive");
+        }
+
+        this.ric = ric;
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+        this.tickSize = tickSize;
+    }
+
+    public String getRic() {
+        return ric;
+    }
+
+    public int getPriceScale() {
+        return priceScale;
+    }
+
+    public int getQuantityScale() {
+        return quantityScale;
+    }
+
+    public long getTickSize() {
+        return tickSize;
+    }
+
+    /**
+     * Convert a price to its scaled representation
+     *
+     * @param price
+     *            - the price to be converted
+     * @return the scaled price
+     * @throws ArithmeticException
+     *             if the price has more decimal places than the price scale
+     *             allows or is too large
+     */
+    public long toPrice(BigDecimal price) {
+        return price.movePointRight(priceScale).longValueExact();
+    }
+
+    /**
+     * Convert a quantity to its scaled representation
+     *
+     * @param quantity
+     *            - the quantity to be converted
+     * @return the scaled quantity
+     * @throws ArithmeticException
+     *             if the quantity has more decimal places than the quantity
+     *             scale allows or is too large
+     */
+    public long toQuantity(BigDecimal quantity) {
+        return quantity.movePointRight(quantityScale).longValueExact();
+    }
+
+    public BigDecimal priceOf(long price) {
+        return BigDecimal.valueOf(price, priceScale);
+    }
+
+    public BigDecimal quantityOf(long quantity) {
+        return BigDecimal.valueOf(quantity, quantityScale);
+    }
+
+    /**
+     * Convert a notional amount (scaled quantity multiplied by scaled price)
+     * back to a decimal amount
+     *
+     * @param notional
+     *            - the scaled notional amount
+     * @return the notional amount
+     */
+    public BigDecimal notionalOf(long notional) {
+        return BigDecimal.valueOf(notional, priceScale + quantityScale);
+    }
+
+    public boolean isOnTick(long price) {
+        return price % tickSize == 0;
+    }
+
+    @Override
+    public String toString() {
+        return ric + " (price scale " + priceScale + ", quantity scale " + quantityScale + ", tick " + tickSize + ")";
+    }
+
+}
@@ -5,6 +5,11 @@ import java.math.BigDecimal;
 /**
  * Simple equity order
  *
+ * A LIMIT order has a price and, unless its time in force says otherwise,
+ * any part of it that does not fill straight away stays OPEN in the book. A
+ * MARKET order has no price and takes whatever the opposite side of the book
+ * offers; it never stays OPEN, so it must be IOC or FOK.
+ *
  */
 public class Order {
 
@@ -13,13 +18,31 @@ public class Order {
     private final BigDecimal quantity;
     private final BigDecimal price;
     private final String user;
+    private final OrderType type;
+    private final TimeInForce timeInForce;
 
+    /**
+     * Create a LIMIT order that is good till cancelled
+     */
     public Order(Direction direction, String ric, BigDecimal quantity, BigDecimal price, String user) {
+        this(direction, ric, quantity, price, user, OrderType.LIMIT, TimeInForce.GTC);
+    }
+
+    /**
+     * Create an order of any type
+     *
+     * @param price
+     *            - the limit price, which must be null for a MARKET order
+     */
+    public Order(Direction direction, String ric, BigDecimal quantity, BigDecimal price, String user,
+                    OrderType type, TimeInForce timeInForce) {
         this.direction = direction;
         this.ric = ric;
         this.quantity = quantity;
         this.price = price;
         this.user = user;
+        this.type = type;
+        this.timeInForce = timeInForce;
     }
 
     public Direction getDirection() {
@@ -42,6 +65,14 @@ public class Order {
         return user;
     }
 
+    public OrderType getType() {
+        return type;
+    }
+
+    public TimeInForce getTimeInForce() {
+        return timeInForce;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -50,6 +81,8 @@ public class Order {
         result = prime * result + ((price == null) ? 0 : price.hashCode());
         result = prime * result + ((quantity == null) ? 0 : quantity.hashCode());
         result = prime * result + ((ric == null) ? 0 : ric.hashCode());
+        result = prime * result + ((timeInForce == null) ? 0 : timeInForce.hashCode());
+        result = prime * result + ((type == null) ? 0 : type.hashCode());
         result = prime * result + ((user == null) ? 0 : user.hashCode());
         return result;
     }
@@ -90,6 +123,12 @@ public class Order {
         } else if (!ric.equals(other.ric)) {
             return false;
         }
+        if (timeInForce != other.timeInForce) {
+            return false;
+        }
+        if (type != other.type) {
+            return false;
+        }
         if (user == null) {
             if (other.user != null) {
                 return false;
@@ -0,0 +1,31 @@
+package com.cs.exchange.domain;
+
+/**
+ * Thrown when an order is not accepted by the Exchange, either because it is
+ * invalid or because it breaks one of its user's risk limits
+ *
+ * Rejections are part of the normal flow of orders, e.g. from the order-entry
+ * gateway, so no stack trace is captured; the reason and message say all
+ * there is to know.
+ *
+ */
+public class OrderRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final RejectReason reason;
+
+    public OrderRejectedException(RejectReason reason) {
+        this(reason, reason.getDisplayValue());
+    }
+
+    public OrderRejectedException(RejectReason reason, String message) {
+        super(message, null, false, false);
+        this.reason = reason;
+    }
+
+    public RejectReason getReason() {
+        return reason;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.cs.exchange.domain;
+
+/**
+ * Outcome of submitting a single order, as known once it has been matched
+ *
+ */
+public class OrderResult {
+
+    private final Order order;
+    private final long id;
+    private final OrderStatus status;
+    private final String reason;
+    private final RejectReason rejectReason;
+
+    public OrderResult(Order order, long id, OrderStatus status, String reason) {
+        this(order, id, status, reason, reason == null ? null : RejectReason.INVALID_ORDER);
+    }
+
+    public OrderResult(Order order, long id, OrderStatus status, String reason, RejectReason rejectReason) {
+        this.order = order;
+        this.id = id;
+        this.status = status;
+        this.reason = reason;
+        this.rejectReason = rejectReason;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Get the id given to the order by the Exchange
+     *
+     * @return the order id or -1 if the order was rejected
+     */
+    public long getId() {
+        return id;
+    }
+
+    public OrderStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the reason the order was rejected
+     *
+     * @return the reason or null if the order was accepted
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Get the type of reason the order was rejected, e.g. to tell an invalid
+     * order from one that breaks a risk limit
+     *
+     * @return the reason or null if the order was accepted
+     */
+    public RejectReason getRejectReason() {
+        return rejectReason;
+    }
+
+    public boolean isRejected() {
+        return status == OrderStatus.REJECTED;
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + status.getDisplayValue() + (reason == null ? "" : " (" + reason + ")");
+    }
+
+}
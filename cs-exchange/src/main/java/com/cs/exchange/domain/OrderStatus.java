@@ -0,0 +1,23 @@
+package com.cs.exchange.domain;
+
+/*
+ * Enumerated type representing the outcome of submitting an order
+ */
+public enum OrderStatus {
+    RESTED("Rested"),
+    PARTIALLY_FILLED("Partially Filled"),
+    FILLED("Filled"),
+    CANCELLED("Cancelled"),
+    REJECTED("Rejected");
+
+    private final String displayValue;
+
+    private OrderStatus(String displayValue) {
+        this.displayValue = displayValue;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.cs.exchange.domain;
+
+/*
+ * Enumerated type representing how an order is priced
+ */
+public enum OrderType {
+    LIMIT("Limit"),
+    MARKET("Market");
+
+    private final String displayValue;
+
+    private OrderType(String displayValue) {
+        this.displayValue = displayValue;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+}
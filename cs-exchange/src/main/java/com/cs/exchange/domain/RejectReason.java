@@ -0,0 +1,23 @@
+package com.cs.exchange.domain;
+
+/*
+ * Enumerated type representing why an order was rejected
+ */
+public enum RejectReason {
+    INVALID_ORDER("Invalid order"),
+    MAX_ORDER_QUANTITY("Order quantity exceeds the user's limit"),
+    MAX_ORDER_NOTIONAL("Order notional exceeds the user's limit"),
+    MAX_POSITION("Order could take the user's position beyond its limit"),
+    PRICE_BAND("Order price is too far from the last trade price");
+
+    private final String displayValue;
+
+    private RejectReason(String displayValue) {
+        this.displayValue = displayValue;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.cs.exchange.domain;
+
+/*
+ * Enumerated type representing what happens to the part of an order that
+ * does not fill as soon as it is submitted
+ */
+public enum TimeInForce {
+    GTC("Good Till Cancelled"),
+    IOC("Immediate Or Cancel"),
+    FOK("Fill Or Kill");
+
+    private final String displayValue;
+
+    private TimeInForce(String displayValue) {
+        this.displayValue = displayValue;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+}
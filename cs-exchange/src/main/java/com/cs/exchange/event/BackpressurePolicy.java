@@ -0,0 +1,26 @@
+package com.cs.exchange.event;
+
+/*
+ * Enumerated type representing what happens to an event when a subscriber's
+ * queue is full
+ */
+public enum BackpressurePolicy {
+    // Wait for the subscriber to make room - holds up matching, so only for
+    // subscribers that must see every event and can keep up
+    BLOCK("Block"),
+    // Discard the event and count it against the subscription
+    DROP("Drop"),
+    // Cut the subscriber off once it has been delivered what was queued
+    DISCONNECT("Disconnect");
+
+    private final String displayValue;
+
+    private BackpressurePolicy(String displayValue) {
+        this.displayValue = displayValue;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.cs.exchange.event;
+
+/**
+ * Receives conflated changes to the depth of the order books of an Exchange
+ *
+ * Every call is made on the subscription's own thread, at most once per
+ * stock per conflation interval.
+ *
+ */
+public interface DepthListener {
+
+    /**
+     * The price levels of a stock have changed since its last update
+     * @param update the latest open quantity of each changed level
+     */
+    public void onDepthUpdate(DepthUpdate update);
+
+}
@@ -0,0 +1,268 @@
+package com.cs.exchange.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cs.exchange.book.OrderBook;
+import com.cs.exchange.book.OrderBookSide;
+import com.cs.exchange.book.PriceLevel;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * A listener's subscription to conflated depth updates for a set of stocks
+ *
+ * The thread matching orders records the new open quantity of each changed
+ * price level in a map keyed on level, overwriting any earlier change to the
+ * same level, so it does a constant amount of work per change and never
+ * waits for the listener. Once per conflation interval the subscription's
+ * own thread swaps the map for an empty one and delivers one update per
+ * stock with the levels it holds.
+ *
+ * However fast the book changes, a listener therefore receives at most one
+ * update per stock per interval and each level at most once in an update,
+ * and nothing queued can grow beyond the number of levels in the books.
+ *
+ */
+public class DepthSubscription implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DepthSubscription.class);
+
+    // How long to wait between checks for changes with no conflation
+    private static final long IDLE_PARK_NANOS = 50000L;
+
+    private static final Comparator<OpenInterest> ASCENDING_PRICE = new Comparator<OpenInterest>() {
+
+        @Override
+        public int compare(OpenInterest o1, OpenInterest o2) {
+            return o1.getPrice().compareTo(o2.getPrice());
+        }
+    };
+
+    private final EventPublisher publisher;
+    private final DepthListener listener;
+    private final Set<String> rics;
+    private final long conflationNanos;
+    private final Thread deliveryThread;
+
+    // Changes recorded by the thread matching orders since the last swap -
+    // guarded by this subscription's monitor, which is only held for a put
+    // or a swap
+    private LevelChanges pending = new LevelChanges();
+
+    // Changes being delivered - only used by the delivery thread
+    private LevelChanges delivering = new LevelChanges();
+
+    private volatile boolean connected = true;
+    private volatile long updateCount;
+    private volatile long conflatedCount;
+
+    DepthSubscription(EventPublisher publisher, Collection<String> rics, DepthListener listener,
+                    long conflationNanos, String threadName) {
+
+        if (listener == null || rics == null || rics.isEmpty()) {
+            throw new IllegalArgumentException("Listener and stock identifiers (RICs) must not be NULL or empty");
+        }
+
+        if (conflationNanos < 0) {
+            throw new IllegalArgumentException("Conflation interval must not be negative");
+        }
+
+        this.publisher = publisher;
+        this.listener = listener;
+        this.rics = new HashSet<String>(rics);
+        this.conflationNanos = conflationNanos;
+
+        this.deliveryThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                deliverUpdates();
+            }
+        }, threadName);
+
+        this.deliveryThread.setDaemon(true);
+    }
+
+    void start() {
+        deliveryThread.start();
+    }
+
+    public DepthListener getListener() {
+        return listener;
+    }
+
+    public long getConflationNanos() {
+        return conflationNanos;
+    }
+
+    /**
+     * Get the number of updates delivered so far
+     *
+     * @return the number of calls to the listener
+     */
+    public long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Get the number of level changes merged into a later change to the same
+     * level, and so never delivered on their own
+     *
+     * @return the number of changes conflated so far
+     */
+    public long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Stop recording changes and stop the delivery thread once the changes
+     * already recorded have been delivered
+     *
+     * An interrupt does not cut the wait short, but is kept for the caller
+     */
+    @Override
+    public void close() {
+        connected = false;
+        publisher.remove(this);
+        LockSupport.unpark(deliveryThread);
+
+        // A listener may close its own subscription
+        if (Thread.currentThread() != deliveryThread) {
+            Uninterruptibles.joinUninterruptibly(deliveryThread);
+        }
+    }
+
+    /**
+     * Record every level of a book, so that the first update of the stock
+     * holds its whole depth
+     */
+    void seed(OrderBook book) {
+        for (Direction direction : Direction.values()) {
+            OrderBookSide side = book.getSide(direction);
+
+            for (int depth = 0; depth < side.getLevelCount(); depth++) {
+                PriceLevel level = side.getLevelAt(depth);
+
+                if (!side.isMarketLevel(level)) {
+                    levelChanged(book.getInstrument(), direction, level.getPrice(), level.getTotalQuantity());
+                }
+            }
+        }
+    }
+
+    void levelChanged(Instrument instrument, Direction direction, long price, long quantity) {
+        if (rics.contains(instrument.getRic())) {
+            synchronized (this) {
+                pending.put(instrument, direction, price, quantity);
+            }
+        }
+    }
+
+    private void deliverUpdates() {
+        long next = System.nanoTime();
+
+        // Keep going after closing until the last changes are delivered
+        while (true) {
+            boolean open = connected;
+            LevelChanges changes;
+
+            synchronized (this) {
+                changes = pending;
+                pending = delivering;
+            }
+
+            delivering = changes;
+
+            if (!changes.isEmpty()) {
+                conflatedCount += changes.getConflatedCount();
+                deliver(changes);
+                changes.clear();
+            }
+
+            if (!open) {
+                break;
+            }
+
+            next += conflationNanos;
+            long now = System.nanoTime();
+
+            if (next - now > 0) {
+                // Woken early only to close
+                LockSupport.parkNanos(next - now);
+            } else {
+                // Running late, so start a new interval rather than catch up
+                // with a burst of updates
+                next = now;
+
+                if (conflationNanos == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    private void deliver(LevelChanges changes) {
+        Map<Instrument, Levels> levelsByStock = new LinkedHashMap<Instrument, Levels>();
+
+        for (int i = 0; i < changes.size(); i++) {
+            Instrument instrument = changes.getInstrument(i);
+            Levels levels = levelsByStock.get(instrument);
+
+            if (levels == null) {
+                levels = new Levels();
+                levelsByStock.put(instrument, levels);
+            }
+
+            OpenInterest level = new OpenInterest(instrument.quantityOf(changes.getQuantity(i)),
+                            instrument.priceOf(changes.getPrice(i)));
+
+            if (changes.getSide(i) == Direction.BUY) {
+                levels.buy.add(level);
+            } else {
+                levels.sell.add(level);
+            }
+        }
+
+        for (Map.Entry<Instrument, Levels> entry : levelsByStock.entrySet()) {
+            Levels levels = entry.getValue();
+
+            // Best price first, as for getOpenInterest
+            Collections.sort(levels.buy, Collections.reverseOrder(ASCENDING_PRICE));
+            Collections.sort(levels.sell, ASCENDING_PRICE);
+
+            try {
+                listener.onDepthUpdate(new DepthUpdate(entry.getKey().getRic(),
+                                Collections.unmodifiableList(levels.buy), Collections.unmodifiableList(levels.sell)));
+            } catch (RuntimeException e) {
+                LOGGER.error("Listener failed to handle depth update", e);
+            }
+
+            updateCount++;
+        }
+    }
+
+    private static class Levels {
+
+        private final List<OpenInterest> buy = new ArrayList<OpenInterest>();
+        private final List<OpenInterest> sell = new ArrayList<OpenInterest>();
+    }
+
+}
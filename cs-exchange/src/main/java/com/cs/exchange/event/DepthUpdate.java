@@ -0,0 +1,48 @@
+package com.cs.exchange.event;
+
+import java.util.List;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OpenInterest;
+
+/**
+ * The price levels of a stock that changed during a conflation interval,
+ * each with its open quantity at the end of the interval
+ *
+ * A level with zero quantity has gone from the book. Applying updates in
+ * order to the levels last seen gives the current depth.
+ *
+ */
+public class DepthUpdate {
+
+    private final String ric;
+    private final List<OpenInterest> buyLevels;
+    private final List<OpenInterest> sellLevels;
+
+    public DepthUpdate(String ric, List<OpenInterest> buyLevels, List<OpenInterest> sellLevels) {
+        this.ric = ric;
+        this.buyLevels = buyLevels;
+        this.sellLevels = sellLevels;
+    }
+
+    public String getRic() {
+        return ric;
+    }
+
+    /**
+     * Get the changed levels of one side of the book
+     *
+     * @param buySell
+     *            - the side required
+     * @return the changed levels, best price first
+     */
+    public List<OpenInterest> getLevels(Direction buySell) {
+        return buySell == Direction.BUY ? buyLevels : sellLevels;
+    }
+
+    @Override
+    public String toString() {
+        return ric + " buy " + buyLevels + " sell " + sellLevels;
+    }
+
+}
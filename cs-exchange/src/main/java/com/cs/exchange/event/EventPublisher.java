@@ -0,0 +1,166 @@
+package com.cs.exchange.event;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.book.OrderBook;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.RejectReason;
+
+/**
+ * Publishes the events of a matching engine to its subscriptions
+ *
+ * The publishing methods are called by whichever thread is matching orders
+ * and never allocate; with no subscriptions they do nothing. Subscriptions
+ * can be added and removed by any thread.
+ *
+ */
+public class EventPublisher {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private volatile Subscription[] subscriptions = new Subscription[0];
+    private volatile DepthSubscription[] depthSubscriptions = new DepthSubscription[0];
+
+    /**
+     * Subscribe a listener to every event published from now on
+     *
+     * @param listener
+     *            - the listener, called on a delivery thread of its own
+     * @param queueSize
+     *            - the number of events that can be waiting for the listener
+     * @param batchSize
+     *            - the maximum number of events delivered between calls to
+     *            {@link ExchangeListener#onBatchEnd()}
+     * @param policy
+     *            - what happens to events when the queue is full
+     * @return the subscription, to be closed when no longer needed
+     */
+    public synchronized Subscription subscribe(ExchangeListener listener, int queueSize, int batchSize,
+                    BackpressurePolicy policy) {
+        Subscription subscription = new Subscription(this, listener, queueSize, batchSize, policy,
+                        "exchange-events-" + THREAD_COUNT.getAndIncrement());
+
+        Subscription[] current = subscriptions;
+        Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+
+        subscription.start();
+        subscriptions = updated;
+
+        return subscription;
+    }
+
+    synchronized void remove(Subscription subscription) {
+        Subscription[] current = subscriptions;
+
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] updated = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Subscribe a listener to conflated depth updates for the given stocks
+     *
+     * @param rics
+     *            - the stocks of interest
+     * @param listener
+     *            - the listener, called on a thread of its own
+     * @param conflationNanos
+     *            - the interval between updates, in which changes to the same
+     *            level are merged, or 0 to deliver changes as soon as possible
+     * @param books
+     *            - the current books of the stocks, whose levels make up the
+     *            first update, which must not change until this returns
+     * @return the subscription, to be closed when no longer needed
+     */
+    public synchronized DepthSubscription subscribeDepth(Collection<String> rics, DepthListener listener,
+                    long conflationNanos, Collection<OrderBook> books) {
+        DepthSubscription subscription = new DepthSubscription(this, rics, listener, conflationNanos,
+                        "exchange-depth-" + THREAD_COUNT.getAndIncrement());
+
+        for (OrderBook book : books) {
+            subscription.seed(book);
+        }
+
+        DepthSubscription[] current = depthSubscriptions;
+        DepthSubscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+
+        subscription.start();
+        depthSubscriptions = updated;
+
+        return subscription;
+    }
+
+    synchronized void remove(DepthSubscription subscription) {
+        DepthSubscription[] current = depthSubscriptions;
+
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                DepthSubscription[] updated = new DepthSubscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                depthSubscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    public boolean hasSubscriptions() {
+        return subscriptions.length > 0 || depthSubscriptions.length > 0;
+    }
+
+    public void orderAccepted(BookOrder o) {
+        for (Subscription subscription : subscriptions) {
+            subscription.orderAccepted(o.getId(), o.getOrder());
+        }
+    }
+
+    public void orderRejected(BookOrder o, RejectReason reason) {
+        for (Subscription subscription : subscriptions) {
+            subscription.orderRejected(o.getId(), o.getOrder(), reason);
+        }
+    }
+
+    public void execution(Instrument instrument, long buyId, long sellId, long quantity, long price) {
+        for (Subscription subscription : subscriptions) {
+            subscription.execution(instrument, buyId, sellId, quantity, price);
+        }
+    }
+
+    /**
+     * Publish the new total open quantity at a price level
+     *
+     * @param quantity
+     *            - the scaled open quantity, or 0 if the level has gone
+     */
+    public void levelChanged(Instrument instrument, Direction direction, long price, long quantity) {
+        for (Subscription subscription : subscriptions) {
+            subscription.levelChanged(instrument, direction, price, quantity);
+        }
+
+        for (DepthSubscription subscription : depthSubscriptions) {
+            subscription.levelChanged(instrument, direction, price, quantity);
+        }
+    }
+
+    /**
+     * Hand the events of a batch over to the delivery threads
+     */
+    public void endBatch() {
+        for (Subscription subscription : subscriptions) {
+            subscription.publish();
+        }
+    }
+
+}
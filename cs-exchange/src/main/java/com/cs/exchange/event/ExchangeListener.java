@@ -0,0 +1,70 @@
+package com.cs.exchange.event;
+
+import java.math.BigDecimal;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.RejectReason;
+
+/**
+ * Receives the changes made by an Exchange, in the order they were made
+ *
+ * Every call is made on the subscription's own delivery thread, never on the
+ * thread matching orders, so a slow listener does not hold up order
+ * submission (see {@link BackpressurePolicy}). Events are delivered in
+ * batches, each followed by {@link #onBatchEnd()}.
+ *
+ */
+public interface ExchangeListener {
+
+    /**
+     * A new order has been accepted and is about to be matched
+     * @param id id given to the order
+     * @param order the order as submitted
+     */
+    public void onOrderAccepted(long id, Order order);
+
+    /**
+     * A new order has executed against an OPEN order
+     * @param ric stock identifier
+     * @param buyId id of the buy order
+     * @param sellId id of the sell order
+     * @param quantity executed quantity
+     * @param price execution price
+     */
+    public void onExecution(String ric, long buyId, long sellId, BigDecimal quantity, BigDecimal price);
+
+    /**
+     * The open quantity at a price level has changed
+     * @param ric stock identifier
+     * @param direction side of the book
+     * @param price price of the level
+     * @param quantity total open quantity at the price, zero once the level
+     *        has gone
+     */
+    public void onBookLevelChanged(String ric, Direction direction, BigDecimal price, BigDecimal quantity);
+
+    /**
+     * A new order has been rejected by a risk check instead of being matched
+     * @param id id given to the order, or -1 if it was rejected before being
+     *        given one
+     * @param order the order as submitted
+     * @param reason the limit the order breaks
+     */
+    public default void onOrderRejected(long id, Order order, RejectReason reason) {
+    }
+
+    /**
+     * A batch of events has been delivered, e.g. to flush anything buffered
+     */
+    public default void onBatchEnd() {
+    }
+
+    /**
+     * The subscription has been cut off for falling behind, under
+     * {@link BackpressurePolicy#DISCONNECT}, and no more events will follow
+     */
+    public default void onDisconnected() {
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.cs.exchange.event;
+
+import java.util.Arrays;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+
+/**
+ * The latest open quantity of each price level changed since it was last
+ * cleared, keyed on stock, side and price
+ *
+ * Entries are held in primitive columns in the order levels first changed,
+ * indexed by an open addressing table, so recording a change that has
+ * already been seen overwrites it in place and never allocates.
+ *
+ * Not thread safe.
+ *
+ */
+final class LevelChanges {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private Instrument[] instruments;
+    private byte[] sides;
+    private long[] prices;
+    private long[] quantities;
+    private int size;
+
+    // Entry index + 1 of each slot, 0 for an empty slot
+    private int[] slots;
+    private int mask;
+
+    // Number of changes since the last clear that overwrote an earlier change
+    // to the same level
+    private long conflatedCount;
+
+    LevelChanges() {
+        allocate(16);
+    }
+
+    /**
+     * Record the new open quantity of a level
+     */
+    void put(Instrument instrument, Direction side, long price, long quantity) {
+        int slot = hash(instrument, side, price) & mask;
+
+        while (true) {
+            int entry = slots[slot];
+
+            if (entry == 0) {
+                break;
+            }
+
+            int i = entry - 1;
+
+            if (instruments[i] == instrument && sides[i] == side.ordinal() && prices[i] == price) {
+                quantities[i] = quantity;
+                conflatedCount++;
+                return;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == instruments.length) {
+            grow();
+            put(instrument, side, price, quantity);
+            return;
+        }
+
+        instruments[size] = instrument;
+        sides[size] = (byte) side.ordinal();
+        prices[size] = price;
+        quantities[size] = quantity;
+        slots[slot] = ++size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Instrument getInstrument(int i) {
+        return instruments[i];
+    }
+
+    Direction getSide(int i) {
+        return DIRECTIONS[sides[i]];
+    }
+
+    long getPrice(int i) {
+        return prices[i];
+    }
+
+    long getQuantity(int i) {
+        return quantities[i];
+    }
+
+    long getConflatedCount() {
+        return conflatedCount;
+    }
+
+    void clear() {
+        Arrays.fill(instruments, 0, size, null);
+        Arrays.fill(slots, 0);
+        size = 0;
+        conflatedCount = 0;
+    }
+
+    private void grow() {
+        Instrument[] oldInstruments = instruments;
+        byte[] oldSides = sides;
+        long[] oldPrices = prices;
+        long[] oldQuantities = quantities;
+        int oldSize = size;
+
+        allocate(instruments.length * 2);
+
+        for (int i = 0; i < oldSize; i++) {
+            put(oldInstruments[i], DIRECTIONS[oldSides[i]], oldPrices[i], oldQuantities[i]);
+        }
+    }
+
+    private void allocate(int capacity) {
+        instruments = new Instrument[capacity];
+        sides = new byte[capacity];
+        prices = new long[capacity];
+        quantities = new long[capacity];
+        size = 0;
+
+        // At most half full
+        slots = new int[capacity * 2];
+        mask = slots.length - 1;
+    }
+
+    private static int hash(Instrument instrument, Direction side, long price) {
+        int h = instrument.getRic().hashCode() * 31 + side.ordinal();
+        h = h * 31 + (int) (price ^ (price >>> 32));
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.cs.exchange.event;
+
+import com.cs.exchange.book.BookOrder;
+
+/**
+ * Told of each change to an order synchronously, on the thread matching
+ * orders, with the orders as held in the book
+ *
+ * Unlike an {@link ExchangeListener} nothing is queued or converted to
+ * BigDecimal, so a handler can keep state of its own per order without
+ * allocating, e.g. to report back to the session that sent the order. A
+ * handler must be quick and must not call back into the Exchange.
+ *
+ */
+public interface OrderEventHandler {
+
+    /**
+     * A new order has been given its id and is about to be matched
+     * @param o the new order
+     */
+    public void onOrderAccepted(BookOrder o);
+
+    /**
+     * A new order has executed against an OPEN order, and both have been
+     * filled
+     * @param o the new order
+     * @param matched the OPEN order
+     * @param quantity scaled executed quantity
+     * @param price scaled execution price
+     */
+    public void onExecution(BookOrder o, BookOrder matched, long quantity, long price);
+
+    /**
+     * An order's open quantity has been cancelled, either on request or
+     * because its time in force does not let it rest in the book
+     * @param o the order, whose quantity is the quantity cancelled
+     */
+    public void onOrderCancelled(BookOrder o);
+
+}
@@ -0,0 +1,342 @@
+package com.cs.exchange.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.RejectReason;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * A listener's subscription to the events of an Exchange
+ *
+ * Events are written by the thread matching orders into a bounded ring held
+ * as primitive columns, so publishing an event never allocates, and are
+ * made visible to the delivery thread once per batch. The delivery thread
+ * converts them to BigDecimal and calls the listener, at most batchSize
+ * events at a time.
+ *
+ * When the ring is full the {@link BackpressurePolicy} decides whether the
+ * matching thread waits, the event is dropped or the subscriber is cut off.
+ *
+ */
+public class Subscription implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Subscription.class);
+
+    public static final int DEFAULT_QUEUE_SIZE = 64 * 1024;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final byte ORDER_ACCEPTED = 1;
+    private static final byte EXECUTION = 2;
+    private static final byte LEVEL_CHANGED = 3;
+    private static final byte ORDER_REJECTED = 4;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final RejectReason[] REJECT_REASONS = RejectReason.values();
+
+    private static final int IDLE_SPINS = 100;
+    private static final long IDLE_PARK_NANOS = 50000L;
+    private static final long BLOCKED_PARK_NANOS = 1000L;
+
+    private final EventPublisher publisher;
+    private final ExchangeListener listener;
+    private final BackpressurePolicy policy;
+    private final int batchSize;
+    private final int mask;
+    private final Thread deliveryThread;
+
+    // One entry per event - the order of an accepted or rejected order,
+    // otherwise the instrument, whose scales convert the longs back to
+    // BigDecimal. Codes hold the ordinal of a direction or reject reason.
+    private final byte[] types;
+    private final Object[] refs;
+    private final byte[] codes;
+    private final long[] firstIds;
+    private final long[] secondIds;
+    private final long[] quantities;
+    private final long[] prices;
+
+    // Next sequence to be written - only used by the thread matching orders
+    private long claimed;
+
+    // Sequence up to which events can be delivered
+    private final AtomicLong published = new AtomicLong();
+
+    // Sequence up to which events have been delivered
+    private final AtomicLong delivered = new AtomicLong();
+
+    private volatile long droppedCount;
+    private volatile boolean connected = true;
+    private volatile boolean overflowed;
+
+    Subscription(EventPublisher publisher, ExchangeListener listener, int queueSize, int batchSize,
+                    BackpressurePolicy policy, String threadName) {
+
+        if (listener == null || policy == null) {
+            throw new IllegalArgumentException("Listener and backpressure policy must not be NULL");
+        }
+
+        if (queueSize < 1 || queueSize > (1 << 30) || batchSize < 1) {
+            throw new IllegalArgumentException("Queue and batch sizes must be positive");
+        }
+
+        int size = Integer.highestOneBit(queueSize * 2 - 1);
+
+        this.publisher = publisher;
+        this.listener = listener;
+        this.policy = policy;
+        this.batchSize = batchSize;
+        this.mask = size - 1;
+
+        this.types = new byte[size];
+        this.refs = new Object[size];
+        this.codes = new byte[size];
+        this.firstIds = new long[size];
+        this.secondIds = new long[size];
+        this.quantities = new long[size];
+        this.prices = new long[size];
+
+        this.deliveryThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                deliverEvents();
+            }
+        }, threadName);
+
+        this.deliveryThread.setDaemon(true);
+    }
+
+    void start() {
+        deliveryThread.start();
+    }
+
+    public ExchangeListener getListener() {
+        return listener;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Get the number of events discarded because the queue was full, under
+     * {@link BackpressurePolicy#DROP}
+     *
+     * @return the number of events dropped so far
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Get the number of events queued but not yet delivered
+     *
+     * @return the number of events waiting for the listener
+     */
+    public long getQueuedCount() {
+        return published.get() - delivered.get();
+    }
+
+    /**
+     * Check whether the subscription is still receiving new events
+     *
+     * @return false once closed or cut off for falling behind
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Stop receiving new events and stop the delivery thread once every event
+     * already published has been delivered
+     *
+     * An interrupt does not cut the wait short, but is kept for the caller
+     */
+    @Override
+    public void close() {
+        disconnect();
+
+        // A listener may close its own subscription
+        if (Thread.currentThread() != deliveryThread) {
+            Uninterruptibles.joinUninterruptibly(deliveryThread);
+        }
+    }
+
+    void orderAccepted(long id, Order order) {
+        if (claim()) {
+            int index = (int) claimed++ & mask;
+            types[index] = ORDER_ACCEPTED;
+            refs[index] = order;
+            firstIds[index] = id;
+        }
+    }
+
+    void orderRejected(long id, Order order, RejectReason reason) {
+        if (claim()) {
+            int index = (int) claimed++ & mask;
+            types[index] = ORDER_REJECTED;
+            refs[index] = order;
+            firstIds[index] = id;
+            codes[index] = (byte) reason.ordinal();
+        }
+    }
+
+    void execution(Instrument instrument, long buyId, long sellId, long quantity, long price) {
+        if (claim()) {
+            int index = (int) claimed++ & mask;
+            types[index] = EXECUTION;
+            refs[index] = instrument;
+            firstIds[index] = buyId;
+            secondIds[index] = sellId;
+            quantities[index] = quantity;
+            prices[index] = price;
+        }
+    }
+
+    void levelChanged(Instrument instrument, Direction direction, long price, long quantity) {
+        if (claim()) {
+            int index = (int) claimed++ & mask;
+            types[index] = LEVEL_CHANGED;
+            refs[index] = instrument;
+            codes[index] = (byte) direction.ordinal();
+            quantities[index] = quantity;
+            prices[index] = price;
+        }
+    }
+
+    /**
+     * Make the events written since the last batch visible to the delivery
+     * thread
+     */
+    void publish() {
+        if (published.get() != claimed) {
+            published.lazySet(claimed);
+        }
+    }
+
+    private boolean claim() {
+
+        if (!connected) {
+            return false;
+        }
+
+        if (claimed - delivered.get() <= mask) {
+            return true;
+        }
+
+        switch (policy) {
+            case BLOCK:
+                // Let the delivery thread see what it has to catch up on
+                published.set(claimed);
+
+                while (claimed - delivered.get() > mask) {
+                    if (!connected) {
+                        return false;
+                    }
+
+                    LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+                }
+
+                return true;
+            case DROP:
+                // Only ever written by the thread matching orders
+                droppedCount++;
+                return false;
+            default:
+                // Deliver what was queued before cutting the subscriber off
+                published.set(claimed);
+                overflowed = true;
+                disconnect();
+                return false;
+        }
+    }
+
+    private void disconnect() {
+        connected = false;
+        publisher.remove(this);
+        LockSupport.unpark(deliveryThread);
+    }
+
+    private void deliverEvents() {
+        int idleCount = 0;
+
+        // Keep going after disconnecting until everything published is
+        // delivered
+        while (true) {
+            long sequence = delivered.get();
+            long available = published.get() - sequence;
+
+            if (available == 0) {
+                if (!connected) {
+                    break;
+                } else if (++idleCount > IDLE_SPINS) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                } else {
+                    Thread.yield();
+                }
+
+                continue;
+            }
+
+            idleCount = 0;
+            int count = (int) Math.min(available, batchSize);
+
+            for (int i = 0; i < count; i++) {
+                deliver((int) (sequence + i) & mask);
+            }
+
+            // Free the slots before letting the matching thread reuse them
+            delivered.lazySet(sequence + count);
+
+            try {
+                listener.onBatchEnd();
+            } catch (RuntimeException e) {
+                LOGGER.error("Listener failed at end of batch", e);
+            }
+        }
+
+        if (overflowed) {
+            listener.onDisconnected();
+        }
+    }
+
+    private void deliver(int index) {
+        Object ref = refs[index];
+
+        // Nothing published is held on to once delivered
+        refs[index] = null;
+
+        try {
+            switch (types[index]) {
+                case ORDER_ACCEPTED:
+                    listener.onOrderAccepted(firstIds[index], (Order) ref);
+                    break;
+                case ORDER_REJECTED:
+                    listener.onOrderRejected(firstIds[index], (Order) ref, REJECT_REASONS[codes[index]]);
+                    break;
+                case EXECUTION: {
+                    Instrument instrument = (Instrument) ref;
+                    listener.onExecution(instrument.getRic(), firstIds[index], secondIds[index],
+                                    instrument.quantityOf(quantities[index]), instrument.priceOf(prices[index]));
+                    break;
+                }
+                default: {
+                    Instrument instrument = (Instrument) ref;
+                    listener.onBookLevelChanged(instrument.getRic(), DIRECTIONS[codes[index]],
+                                    instrument.priceOf(prices[index]), instrument.quantityOf(quantities[index]));
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Listener failed to handle event", e);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.cs.exchange.gateway;
+
+import com.cs.exchange.domain.RejectReason;
+
+/**
+ * A message from the order-entry gateway, as decoded by
+ * {@link OrderGatewayClient}
+ *
+ * Fields a message type does not have are 0, or null for the reject reason.
+ *
+ */
+public class GatewayMessage {
+
+    private final byte type;
+    private final long clientOrderId;
+    private final long orderId;
+    private final long quantity;
+    private final long price;
+    private final long openQuantity;
+    private final RejectReason rejectReason;
+
+    public GatewayMessage(byte type, long clientOrderId, long orderId, long quantity, long price, long openQuantity,
+                    RejectReason rejectReason) {
+        this.type = type;
+        this.clientOrderId = clientOrderId;
+        this.orderId = orderId;
+        this.quantity = quantity;
+        this.price = price;
+        this.openQuantity = openQuantity;
+        this.rejectReason = rejectReason;
+    }
+
+    /**
+     * @return one of the gateway to client types of {@link GatewayProtocol}
+     */
+    public byte getType() {
+        return type;
+    }
+
+    public long getClientOrderId() {
+        return clientOrderId;
+    }
+
+    public long getOrderId() {
+        return orderId;
+    }
+
+    /**
+     * Get the scaled quantity executed or cancelled
+     */
+    public long getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Get the scaled execution price
+     */
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * Get the scaled quantity of the order left open after an execution
+     */
+    public long getOpenQuantity() {
+        return openQuantity;
+    }
+
+    public RejectReason getRejectReason() {
+        return rejectReason;
+    }
+
+    @Override
+    public String toString() {
+        return (char) type + " " + clientOrderId + " " + orderId + " " + quantity + " " + price + " " + openQuantity
+                        + (rejectReason == null ? "" : " " + rejectReason);
+    }
+
+}
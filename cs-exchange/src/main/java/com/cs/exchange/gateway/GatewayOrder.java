@@ -0,0 +1,105 @@
+package com.cs.exchange.gateway;
+
+import java.math.BigDecimal;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * A new order decoded from a gateway message
+ *
+ * The fields of the order are held directly, so its Order, with BigDecimal
+ * price and quantity, is only created if something asks for it, e.g.
+ * getAllOrders or a subscriber. The order also remembers the session it came
+ * from, for execution reports, which an amended order keeps.
+ *
+ */
+final class GatewayOrder extends BookOrder {
+
+    private final GatewaySession session;
+    private final long clientOrderId;
+    private final Instrument instrument;
+    private final Direction direction;
+    private final OrderType type;
+    private final TimeInForce timeInForce;
+    private final String user;
+    private final long submittedQuantity;
+
+    // Created on first use - racing threads at worst create equal Orders,
+    // whose final fields make either safe to share
+    private Order order;
+
+    GatewayOrder(GatewaySession session, long clientOrderId, Instrument instrument, Direction direction,
+                    OrderType type, TimeInForce timeInForce, long quantity, long price) {
+        super(null, price, quantity);
+        this.session = session;
+        this.clientOrderId = clientOrderId;
+        this.instrument = instrument;
+        this.direction = direction;
+        this.type = type;
+        this.timeInForce = timeInForce;
+        this.user = session.getUser();
+        this.submittedQuantity = quantity;
+    }
+
+    GatewaySession getSession() {
+        return session;
+    }
+
+    long getClientOrderId() {
+        return clientOrderId;
+    }
+
+    @Override
+    public Order getOrder() {
+        Order o = order;
+
+        if (o == null) {
+            BigDecimal price = type == OrderType.MARKET ? null : instrument.priceOf(getPrice());
+            o = new Order(direction, instrument.getRic(), instrument.quantityOf(submittedQuantity), price, user,
+                            type, timeInForce);
+            order = o;
+        }
+
+        return o;
+    }
+
+    @Override
+    public BookOrder amend(Order amended, long price, long quantity) {
+        GatewayOrder o = new GatewayOrder(session, clientOrderId, instrument, direction, type, timeInForce,
+                        quantity, price);
+        o.order = amended;
+
+        return o;
+    }
+
+    @Override
+    public Direction getDirection() {
+        return direction;
+    }
+
+    @Override
+    public String getRic() {
+        return instrument.getRic();
+    }
+
+    @Override
+    public String getUser() {
+        return user;
+    }
+
+    @Override
+    public OrderType getType() {
+        return type;
+    }
+
+    @Override
+    public TimeInForce getTimeInForce() {
+        return timeInForce;
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.cs.exchange.gateway;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * The fixed-length binary messages of the order-entry gateway
+ *
+ * Every message starts with a one byte type, which fixes its length. Numbers
+ * are big-endian, quantities and prices are scaled longs in the scales of
+ * the stock (see {@link com.cs.exchange.domain.Instrument}) and text is
+ * ASCII, padded on the right with spaces.
+ *
+ * <pre>
+ * Client to gateway
+ *   LOGIN      'L' user (16)
+ *   NEW_ORDER  'O' client order id (8) RIC (8) direction (1) type (1)
+ *                  time in force (1) quantity (8) price (8, 0 for MARKET)
+ *   CANCEL     'X' order id (8)
+ *
+ * Gateway to client
+ *   ACCEPTED        'A' client order id (8) order id (8)
+ *   REJECTED        'J' client order id (8) reject reason (1)
+ *   EXECUTED        'E' client order id (8) order id (8) quantity (8)
+ *                       price (8) open quantity (8)
+ *   CANCELLED       'C' client order id (8) order id (8) quantity cancelled (8)
+ *   CANCEL_REJECTED 'R' order id (8)
+ * </pre>
+ *
+ * Directions are 'B' or 'S', types 'L' or 'M', times in force 'G', 'I' or
+ * 'F' and reject reasons the ordinal of {@link com.cs.exchange.domain.RejectReason}.
+ *
+ */
+public final class GatewayProtocol {
+
+    public static final byte LOGIN = 'L';
+    public static final byte NEW_ORDER = 'O';
+    public static final byte CANCEL = 'X';
+
+    public static final byte ACCEPTED = 'A';
+    public static final byte REJECTED = 'J';
+    public static final byte EXECUTED = 'E';
+    public static final byte CANCELLED = 'C';
+    public static final byte CANCEL_REJECTED = 'R';
+
+    public static final int USER_LENGTH = 16;
+    public static final int RIC_LENGTH = 8;
+
+    public static final int LOGIN_LENGTH = 1 + USER_LENGTH;
+    public static final int NEW_ORDER_LENGTH = 36;
+    public static final int CANCEL_LENGTH = 9;
+
+    public static final int ACCEPTED_LENGTH = 17;
+    public static final int REJECTED_LENGTH = 10;
+    public static final int EXECUTED_LENGTH = 41;
+    public static final int CANCELLED_LENGTH = 25;
+    public static final int CANCEL_REJECTED_LENGTH = 9;
+
+    private static final byte PADDING = ' ';
+
+    private GatewayProtocol() {
+    }
+
+    /**
+     * Get the length of a message from its type
+     *
+     * @param type
+     *            - the first byte of the message
+     * @return the length in bytes, including the type, or -1 if the type is
+     *         unknown
+     */
+    public static int getLength(byte type) {
+
+        switch (type) {
+            case LOGIN:
+                return LOGIN_LENGTH;
+            case NEW_ORDER:
+                return NEW_ORDER_LENGTH;
+            case CANCEL:
+                return CANCEL_LENGTH;
+            case ACCEPTED:
+                return ACCEPTED_LENGTH;
+            case REJECTED:
+                return REJECTED_LENGTH;
+            case EXECUTED:
+                return EXECUTED_LENGTH;
+            case CANCELLED:
+                return CANCELLED_LENGTH;
+            case CANCEL_REJECTED:
+                return CANCEL_REJECTED_LENGTH;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Pack a RIC into the 8 bytes it takes in a message, as a long, so that
+     * the gateway can look stocks up without creating a String
+     *
+     * @param ric
+     *            - the stock identifier, of at most 8 ASCII characters
+     * @return the RIC as it would be read from a message by getLong
+     */
+    public static long packRic(String ric) {
+
+        if (ric == null || ric.isEmpty() || ric.length() > RIC_LENGTH) {
+            throw new IllegalArgumentException("RIC must be 1 to " + RIC_LENGTH + " characters: " + ric);
+        }
+
+        long packed = 0;
+
+        for (int i = 0; i < RIC_LENGTH; i++) {
+            char c = i < ric.length() ? ric.charAt(i) : (char) PADDING;
+
+            if (c > 127) {
+                throw new IllegalArgumentException("RIC must be ASCII: " + ric);
+            }
+
+            packed = (packed << 8) | c;
+        }
+
+        return packed;
+    }
+
+    /**
+     * Pad a user name to the fixed length it takes in a LOGIN message
+     *
+     * @param user
+     *            - the user, of at most 16 ASCII characters
+     * @return the padded bytes
+     */
+    public static byte[] padUser(String user) {
+
+        if (user == null || user.trim().isEmpty() || user.length() > USER_LENGTH) {
+            throw new IllegalArgumentException("User must be 1 to " + USER_LENGTH + " characters: " + user);
+        }
+
+        byte[] bytes = new byte[USER_LENGTH];
+
+        for (int i = 0; i < USER_LENGTH; i++) {
+            char c = i < user.length() ? user.charAt(i) : (char) PADDING;
+
+            if (c > 127) {
+                throw new IllegalArgumentException("User must be ASCII: " + user);
+            }
+
+            bytes[i] = (byte) c;
+        }
+
+        return bytes;
+    }
+
+    public static byte encode(Direction direction) {
+        return direction == Direction.BUY ? (byte) 'B' : (byte) 'S';
+    }
+
+    public static byte encode(OrderType type) {
+        return type == OrderType.MARKET ? (byte) 'M' : (byte) 'L';
+    }
+
+    public static byte encode(TimeInForce timeInForce) {
+
+        switch (timeInForce) {
+            case IOC:
+                return 'I';
+            case FOK:
+                return 'F';
+            default:
+                return 'G';
+        }
+    }
+
+    /**
+     * @return the direction or null if the code is unknown
+     */
+    public static Direction decodeDirection(byte code) {
+
+        switch (code) {
+            case 'B':
+                return Direction.BUY;
+            case 'S':
+                return Direction.SELL;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the order type or null if the code is unknown
+     */
+    public static OrderType decodeType(byte code) {
+
+        switch (code) {
+            case 'L':
+                return OrderType.LIMIT;
+            case 'M':
+                return OrderType.MARKET;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the time in force or null if the code is unknown
+     */
+    public static TimeInForce decodeTimeInForce(byte code) {
+
+        switch (code) {
+            case 'G':
+                return TimeInForce.GTC;
+            case 'I':
+                return TimeInForce.IOC;
+            case 'F':
+                return TimeInForce.FOK;
+            default:
+                return null;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.cs.exchange.gateway;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.util.LongObjectHashMap;
+
+/**
+ * A client connection to the order-entry gateway
+ *
+ * Input is only read by the gateway thread. Reports are encoded into the
+ * output buffer by whichever thread is matching orders, under this session's
+ * monitor, and written to the channel by the gateway thread. A client that
+ * does not read its reports fast enough to leave room for more is
+ * disconnected.
+ *
+ */
+final class GatewaySession {
+
+    private final SocketChannel channel;
+
+    // Only used by the gateway thread
+    private final ByteBuffer input;
+    private String user;
+
+    // Guarded by this session's monitor
+    private final ByteBuffer output;
+    private final LongObjectHashMap<GatewayOrder> openOrders = new LongObjectHashMap<GatewayOrder>();
+    private boolean overflowed;
+    private boolean closed;
+
+    GatewaySession(SocketChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.input = ByteBuffer.allocateDirect(bufferSize);
+        this.output = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    ByteBuffer getInput() {
+        return input;
+    }
+
+    /**
+     * @return the user logged in, or null before the LOGIN message
+     */
+    String getUser() {
+        return user;
+    }
+
+    void setUser(String user) {
+        this.user = user;
+    }
+
+    synchronized boolean isOwnOrder(long id) {
+        return openOrders.containsKey(id);
+    }
+
+    synchronized void accepted(GatewayOrder o) {
+        openOrders.put(o.getId(), o);
+
+        if (reserve(GatewayProtocol.ACCEPTED_LENGTH)) {
+            output.put(GatewayProtocol.ACCEPTED);
+            output.putLong(o.getClientOrderId());
+            output.putLong(o.getId());
+        }
+    }
+
+    synchronized void rejected(long clientOrderId, RejectReason reason) {
+        if (reserve(GatewayProtocol.REJECTED_LENGTH)) {
+            output.put(GatewayProtocol.REJECTED);
+            output.putLong(clientOrderId);
+            output.put((byte) reason.ordinal());
+        }
+    }
+
+    /**
+     * Report an execution of one of this session's orders, which has already
+     * been filled
+     */
+    synchronized void executed(GatewayOrder o, long quantity, long price) {
+        if (o.getQuantity() == 0) {
+            openOrders.remove(o.getId());
+        }
+
+        if (reserve(GatewayProtocol.EXECUTED_LENGTH)) {
+            output.put(GatewayProtocol.EXECUTED);
+            output.putLong(o.getClientOrderId());
+            output.putLong(o.getId());
+            output.putLong(quantity);
+            output.putLong(price);
+            output.putLong(o.getQuantity());
+        }
+    }
+
+    synchronized void cancelled(GatewayOrder o) {
+        openOrders.remove(o.getId());
+
+        if (reserve(GatewayProtocol.CANCELLED_LENGTH)) {
+            output.put(GatewayProtocol.CANCELLED);
+            output.putLong(o.getClientOrderId());
+            output.putLong(o.getId());
+            output.putLong(o.getQuantity());
+        }
+    }
+
+    synchronized void cancelRejected(long id) {
+        if (reserve(GatewayProtocol.CANCEL_REJECTED_LENGTH)) {
+            output.put(GatewayProtocol.CANCEL_REJECTED);
+            output.putLong(id);
+        }
+    }
+
+    /**
+     * Check whether reports have been lost because the client fell behind
+     */
+    synchronized boolean isOverflowed() {
+        return overflowed;
+    }
+
+    /**
+     * Write as many pending reports to the channel as it will take without
+     * blocking
+     *
+     * @return true if nothing is left to write
+     */
+    synchronized boolean flush() throws IOException {
+
+        if (output.position() == 0 || closed) {
+            return true;
+        }
+
+        output.flip();
+        channel.write(output);
+        output.compact();
+
+        return output.position() == 0;
+    }
+
+    synchronized void close() {
+        closed = true;
+        openOrders.clear();
+    }
+
+    private boolean reserve(int length) {
+
+        if (closed || overflowed) {
+            return false;
+        }
+
+        if (output.remaining() < length) {
+            overflowed = true;
+            return false;
+        }
+
+        return true;
+    }
+
+}
@@ -0,0 +1,401 @@
+package com.cs.exchange.gateway;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OrderRejectedException;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.event.OrderEventHandler;
+import com.cs.exchange.util.LongObjectHashMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * TCP order-entry server for an {@link Exchange}, speaking the fixed-length
+ * binary messages of {@link GatewayProtocol}
+ *
+ * A single gateway thread accepts connections and reads them through a
+ * non-blocking selector. Messages are decoded straight out of direct
+ * buffers: RICs are looked up by their 8 bytes read as a long, and prices and
+ * quantities are already scaled longs, so the only object created for a new
+ * order is the order the book holds. Acknowledgements, executions and
+ * cancels are reported back over the same connection, including executions
+ * of OPEN orders caused by other sessions or by in-process callers.
+ *
+ * Each session must LOGIN before anything else, which fixes the user of its
+ * orders; there is no authentication. A session may only cancel its own
+ * orders, and its OPEN orders stay in the book if it disconnects.
+ *
+ * The gateway sets the Exchange's {@link OrderEventHandler}, so only one
+ * gateway can front an Exchange.
+ *
+ */
+public class OrderGateway implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderGateway.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Exchange exchange;
+    private final int bufferSize;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Thread gatewayThread;
+
+    // Map of RIC, packed into a long, against the stocks that can be traded
+    private final LongObjectHashMap<Instrument> instruments = new LongObjectHashMap<Instrument>();
+
+    // Only used by the gateway thread
+    private final List<GatewaySession> sessions = new ArrayList<GatewaySession>();
+
+    private volatile boolean running = true;
+
+    private final OrderEventHandler reports = new OrderEventHandler() {
+
+        @Override
+        public void onOrderAccepted(BookOrder o) {
+            if (o instanceof GatewayOrder) {
+                GatewayOrder order = (GatewayOrder) o;
+                order.getSession().accepted(order);
+                wakeup();
+            }
+        }
+
+        @Override
+        public void onExecution(BookOrder o, BookOrder matched, long quantity, long price) {
+            if (o instanceof GatewayOrder) {
+                GatewayOrder order = (GatewayOrder) o;
+                order.getSession().executed(order, quantity, price);
+                wakeup();
+            }
+
+            if (matched instanceof GatewayOrder) {
+                GatewayOrder order = (GatewayOrder) matched;
+                order.getSession().executed(order, quantity, price);
+                wakeup();
+            }
+        }
+
+        @Override
+        public void onOrderCancelled(BookOrder o) {
+            if (o instanceof GatewayOrder) {
+                GatewayOrder order = (GatewayOrder) o;
+                order.getSession().cancelled(order);
+                wakeup();
+            }
+        }
+    };
+
+    public OrderGateway(Exchange exchange, Collection<String> rics, InetSocketAddress address) throws IOException {
+        this(exchange, rics, address, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Start accepting connections
+     *
+     * @param exchange
+     *            - the Exchange orders are submitted to
+     * @param rics
+     *            - the stocks that can be traded, of at most 8 characters
+     *            each, which must all be traded by the Exchange
+     * @param address
+     *            - the address to listen on, e.g. port 0 on the loopback
+     *            address for any free port
+     * @param bufferSize
+     *            - the size of each session's input and output buffers,
+     *            which limits how far behind a client can fall
+     * @throws IOException
+     *             if the gateway cannot listen on the address
+     */
+    public OrderGateway(Exchange exchange, Collection<String> rics, InetSocketAddress address, int bufferSize)
+                    throws IOException {
+
+        if (bufferSize < GatewayProtocol.EXECUTED_LENGTH) {
+            throw new IllegalArgumentException("Buffer size is too small for a message");
+        }
+
+        this.exchange = exchange;
+        this.bufferSize = bufferSize;
+
+        for (String ric : rics) {
+            Instrument instrument = exchange.getInstrument(ric);
+
+            if (instrument == null) {
+                throw new IllegalArgumentException("Stock is not traded by the Exchange: " + ric);
+            }
+
+            instruments.put(GatewayProtocol.packRic(ric), instrument);
+        }
+
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+
+        try {
+            serverChannel.configureBlocking(false);
+            serverChannel.bind(address);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+
+        exchange.setOrderEventHandler(reports);
+
+        this.gatewayThread = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "order-gateway");
+
+        gatewayThread.setDaemon(true);
+        gatewayThread.start();
+    }
+
+    /**
+     * Get the address the gateway is listening on, e.g. to find the port
+     * chosen for port 0
+     *
+     * @return the local address
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Stop accepting orders, disconnect every session and stop the gateway
+     * thread
+     *
+     * An interrupt does not cut the wait short, but is kept for the caller
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        Uninterruptibles.joinUninterruptibly(gatewayThread);
+        exchange.setOrderEventHandler(null);
+    }
+
+    private void serve() {
+        try {
+            while (running) {
+                selector.select();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    if (!key.isValid()) {
+                        continue;
+                    }
+
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else if (key.isReadable()) {
+                        read((GatewaySession) key.attachment());
+                    }
+                }
+
+                // Reports may also have been written by other threads
+                // matching orders, which wake the selector up
+                flushSessions();
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Order gateway failed", e);
+        } finally {
+            for (int i = sessions.size() - 1; i >= 0; i--) {
+                disconnect(sessions.get(i));
+            }
+
+            closeQuietly();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+
+        if (channel == null) {
+            return;
+        }
+
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+
+        GatewaySession session = new GatewaySession(channel, bufferSize);
+        channel.register(selector, SelectionKey.OP_READ, session);
+        sessions.add(session);
+    }
+
+    private void read(GatewaySession session) {
+        ByteBuffer input = session.getInput();
+
+        try {
+            if (session.getChannel().read(input) < 0) {
+                disconnect(session);
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read from {}, disconnecting", session.getUser(), e);
+            disconnect(session);
+            return;
+        }
+
+        input.flip();
+
+        // Decode every whole message, leaving any partial message for the next
+        // read
+        while (input.hasRemaining()) {
+            int position = input.position();
+            byte type = input.get(position);
+            int length = GatewayProtocol.getLength(type);
+
+            if (!isInbound(type) || (session.getUser() == null) != (type == GatewayProtocol.LOGIN)) {
+                LOGGER.warn("Unexpected message type {} from {}, disconnecting", (char) type, session.getUser());
+                disconnect(session);
+                return;
+            }
+
+            if (input.remaining() < length) {
+                break;
+            }
+
+            switch (type) {
+                case GatewayProtocol.LOGIN:
+                    login(session, input, position);
+                    break;
+                case GatewayProtocol.NEW_ORDER:
+                    newOrder(session, input, position);
+                    break;
+                default:
+                    cancel(session, input.getLong(position + 1));
+                    break;
+            }
+
+            input.position(position + length);
+        }
+
+        input.compact();
+    }
+
+    private void login(GatewaySession session, ByteBuffer input, int position) {
+        byte[] user = new byte[GatewayProtocol.USER_LENGTH];
+
+        for (int i = 0; i < user.length; i++) {
+            user[i] = input.get(position + 1 + i);
+        }
+
+        session.setUser(new String(user, StandardCharsets.US_ASCII).trim());
+    }
+
+    private void newOrder(GatewaySession session, ByteBuffer input, int position) {
+        long clientOrderId = input.getLong(position + 1);
+        Instrument instrument = instruments.get(input.getLong(position + 9));
+        Direction direction = GatewayProtocol.decodeDirection(input.get(position + 17));
+        OrderType type = GatewayProtocol.decodeType(input.get(position + 18));
+        TimeInForce timeInForce = GatewayProtocol.decodeTimeInForce(input.get(position + 19));
+        long quantity = input.getLong(position + 20);
+        long price = input.getLong(position + 28);
+
+        if (instrument == null || direction == null || type == null || timeInForce == null
+                        || (type == OrderType.MARKET && price != 0)) {
+            session.rejected(clientOrderId, RejectReason.INVALID_ORDER);
+            return;
+        }
+
+        if (type == OrderType.MARKET) {
+            price = BookOrder.marketPrice(direction);
+        }
+
+        try {
+            // Accepted and executed orders are reported by the handler
+            exchange.addNewOrder(new GatewayOrder(session, clientOrderId, instrument, direction, type,
+                            timeInForce, quantity, price));
+        } catch (OrderRejectedException e) {
+            session.rejected(clientOrderId, e.getReason());
+        }
+    }
+
+    private void cancel(GatewaySession session, long id) {
+        // A successful cancel is reported by the handler
+        if (!session.isOwnOrder(id) || !exchange.cancelOrder(id)) {
+            session.cancelRejected(id);
+        }
+    }
+
+    private void flushSessions() {
+        for (int i = sessions.size() - 1; i >= 0; i--) {
+            GatewaySession session = sessions.get(i);
+            SelectionKey key = session.getChannel().keyFor(selector);
+
+            if (session.isOverflowed()) {
+                LOGGER.warn("Session {} fell behind reading its reports, disconnecting", session.getUser());
+                disconnect(session);
+                continue;
+            }
+
+            try {
+                boolean flushed = session.flush();
+
+                // Wait for room to write the rest
+                key.interestOps(flushed ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (IOException e) {
+                LOGGER.warn("Failed to write to {}, disconnecting", session.getUser(), e);
+                disconnect(session);
+            }
+        }
+    }
+
+    private void disconnect(GatewaySession session) {
+        session.close();
+        sessions.remove(session);
+
+        try {
+            session.getChannel().close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close connection of {}", session.getUser(), e);
+        }
+    }
+
+    private void wakeup() {
+        // The gateway thread flushes its own reports before selecting again
+        if (Thread.currentThread() != gatewayThread) {
+            selector.wakeup();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close order gateway", e);
+        }
+    }
+
+    private static boolean isInbound(byte type) {
+        return type == GatewayProtocol.LOGIN || type == GatewayProtocol.NEW_ORDER || type == GatewayProtocol.CANCEL;
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.cs.exchange.gateway;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * Simple blocking client of the order-entry gateway, e.g. for tests over the
+ * loopback interface
+ *
+ * Not thread safe.
+ *
+ */
+public class OrderGatewayClient implements AutoCloseable {
+
+    private static final RejectReason[] REJECT_REASONS = RejectReason.values();
+
+    private final SocketChannel channel;
+    private final ByteBuffer output = ByteBuffer.allocateDirect(GatewayProtocol.NEW_ORDER_LENGTH);
+    private final ByteBuffer input = ByteBuffer.allocateDirect(GatewayProtocol.EXECUTED_LENGTH);
+
+    /**
+     * Connect to the gateway and log in
+     *
+     * @param address
+     *            - the address of the gateway
+     * @param user
+     *            - the user of every order sent
+     */
+    public OrderGatewayClient(InetSocketAddress address, String user) throws IOException {
+        byte[] paddedUser = GatewayProtocol.padUser(user);
+
+        this.channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+
+        output.clear();
+        output.put(GatewayProtocol.LOGIN);
+        output.put(paddedUser);
+        send();
+    }
+
+    /**
+     * Send a new order
+     *
+     * @param clientOrderId
+     *            - the client's own id for the order, returned in its reports
+     * @param quantity
+     *            - the scaled quantity
+     * @param price
+     *            - the scaled price, or 0 for a MARKET order
+     */
+    public void newOrder(long clientOrderId, String ric, Direction direction, OrderType type,
+                    TimeInForce timeInForce, long quantity, long price) throws IOException {
+        output.clear();
+        output.put(GatewayProtocol.NEW_ORDER);
+        output.putLong(clientOrderId);
+        output.putLong(GatewayProtocol.packRic(ric));
+        output.put(GatewayProtocol.encode(direction));
+        output.put(GatewayProtocol.encode(type));
+        output.put(GatewayProtocol.encode(timeInForce));
+        output.putLong(quantity);
+        output.putLong(price);
+        send();
+    }
+
+    /**
+     * Send a cancel of an OPEN order
+     *
+     * @param id
+     *            - the order id given in the order's ACCEPTED message
+     */
+    public void cancel(long id) throws IOException {
+        output.clear();
+        output.put(GatewayProtocol.CANCEL);
+        output.putLong(id);
+        send();
+    }
+
+    /**
+     * Wait for the next message from the gateway
+     *
+     * @return the message
+     * @throws EOFException
+     *             if the gateway has disconnected
+     */
+    public GatewayMessage read() throws IOException {
+        readFully(1);
+        byte type = input.get(0);
+        int length = GatewayProtocol.getLength(type);
+
+        if (length < 0) {
+            throw new IOException("Unknown message type " + (char) type);
+        }
+
+        readFully(length);
+
+        switch (type) {
+            case GatewayProtocol.ACCEPTED:
+                return new GatewayMessage(type, input.getLong(1), input.getLong(9), 0, 0, 0, null);
+            case GatewayProtocol.REJECTED:
+                return new GatewayMessage(type, input.getLong(1), -1, 0, 0, 0, REJECT_REASONS[input.get(9)]);
+            case GatewayProtocol.EXECUTED:
+                return new GatewayMessage(type, input.getLong(1), input.getLong(9), input.getLong(17),
+                                input.getLong(25), input.getLong(33), null);
+            case GatewayProtocol.CANCELLED:
+                return new GatewayMessage(type, input.getLong(1), input.getLong(9), input.getLong(17), 0, 0, null);
+            case GatewayProtocol.CANCEL_REJECTED:
+                return new GatewayMessage(type, 0, input.getLong(1), 0, 0, 0, null);
+            default:
+                throw new IOException("Unexpected message type " + (char) type);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void send() throws IOException {
+        output.flip();
+
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+    }
+
+    /**
+     * Read until the message at the start of the input buffer has the given
+     * length
+     */
+    private void readFully(int length) throws IOException {
+        if (length == 1) {
+            input.clear();
+        }
+
+        input.limit(length);
+
+        while (input.hasRemaining()) {
+            if (channel.read(input) < 0) {
+                throw new EOFException("Gateway disconnected");
+            }
+        }
+    }
+
+}
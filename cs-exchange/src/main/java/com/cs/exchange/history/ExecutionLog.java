@@ -0,0 +1,129 @@
+package com.cs.exchange.history;
+
+import java.util.Arrays;
+
+/**
+ * The most recent executions of a single stock
+ *
+ * Executions are held as columns of primitives rather than as objects, so
+ * adding one never allocates once the columns have grown to size. With a
+ * {@link HistoryStore} the columns are a ring of the number of executions to
+ * keep in memory; the oldest execution is written to the store and its slot
+ * reused for the newest. Without a store every execution is kept.
+ *
+ * Prices and quantities are scaled longs (see
+ * {@link com.cs.exchange.domain.Instrument}).
+ *
+ * Not thread safe.
+ *
+ */
+public class ExecutionLog {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String ric;
+    private final HistoryStore store;
+    private final int maxSize;
+
+    private long[] buyIds;
+    private long[] sellIds;
+    private long[] quantities;
+    private long[] prices;
+
+    // Slot of the oldest execution
+    private int head;
+    private int size;
+
+    /**
+     * @param ric
+     *            - the stock identifier the executions are for
+     * @param store
+     *            - the store for executions no longer kept in memory, or null
+     *            to keep them all
+     */
+    public ExecutionLog(String ric, HistoryStore store) {
+        this.ric = ric;
+        this.store = store;
+        this.maxSize = store == null ? Integer.MAX_VALUE : store.getExecutionsInMemory();
+
+        int capacity = Math.min(INITIAL_CAPACITY, maxSize);
+        this.buyIds = new long[capacity];
+        this.sellIds = new long[capacity];
+        this.quantities = new long[capacity];
+        this.prices = new long[capacity];
+    }
+
+    public String getRic() {
+        return ric;
+    }
+
+    public void add(long buyId, long sellId, long quantity, long price) {
+
+        if (maxSize == 0) {
+            store.writeExecution(ric, buyId, sellId, quantity, price);
+            return;
+        }
+
+        if (size == maxSize) {
+            store.writeExecution(ric, buyIds[head], sellIds[head], quantities[head], prices[head]);
+            head = (head + 1) % buyIds.length;
+            size--;
+        } else if (size == buyIds.length) {
+            // Nothing has left the ring yet, so the oldest is still in slot 0
+            grow((int) Math.min((long) size * 2, maxSize));
+        }
+
+        int slot = (head + size) % buyIds.length;
+
+        buyIds[slot] = buyId;
+        sellIds[slot] = sellId;
+        quantities[slot] = quantity;
+        prices[slot] = price;
+        size++;
+    }
+
+    /**
+     * Get the number of executions held in memory
+     *
+     * @return the number of executions held
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     *            - 0 for the oldest execution held, size() - 1 for the newest
+     */
+    public long getBuyId(int index) {
+        return buyIds[slot(index)];
+    }
+
+    public long getSellId(int index) {
+        return sellIds[slot(index)];
+    }
+
+    public long getQuantity(int index) {
+        return quantities[slot(index)];
+    }
+
+    public long getPrice(int index) {
+        return prices[slot(index)];
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return (head + index) % buyIds.length;
+    }
+
+    private void grow(int capacity) {
+        buyIds = Arrays.copyOf(buyIds, capacity);
+        sellIds = Arrays.copyOf(sellIds, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        prices = Arrays.copyOf(prices, capacity);
+    }
+
+}
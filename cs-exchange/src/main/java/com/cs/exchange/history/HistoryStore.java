@@ -0,0 +1,304 @@
+package com.cs.exchange.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.journal.FsyncPolicy;
+import com.cs.exchange.journal.Journal;
+
+/**
+ * Append-only file store for order and execution history that no longer
+ * needs to be held in memory
+ *
+ * Orders are written a page at a time and can be read back by page number
+ * from any thread. Each order is written with its id and the prices and
+ * quantities exactly as submitted, so it reads back equal to the original.
+ * Executions are written to a {@link Journal} of their own, which can be read
+ * with a {@link com.cs.exchange.journal.JournalReader}.
+ *
+ * The store only holds history for the lifetime of an engine, so any
+ * existing files are replaced when it is opened. The engine's journal, if
+ * any, remains the durable record.
+ *
+ * Writing is not thread safe.
+ *
+ */
+public class HistoryStore implements Closeable {
+
+    public static final String ORDERS_FILE = "orders.dat";
+    public static final String EXECUTIONS_FILE = "executions.journal";
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final TimeInForce[] TIMES_IN_FORCE = TimeInForce.values();
+
+    // Executions are small and written in order, so a modest region will do
+    private static final int EXECUTIONS_REGION_SIZE = 4 * 1024 * 1024;
+
+    private final Path directory;
+    private final int ordersInMemory;
+    private final int executionsInMemory;
+
+    private final FileChannel orders;
+    private final Journal executions;
+
+    // Position of the start of each page of orders, followed by the end of
+    // the last page - replaced rather than changed so readers need no lock
+    private volatile long[] pageOffsets = { 0 };
+
+    // Reused for every page written
+    private final PageBuffer pageBuffer = new PageBuffer();
+    private final DataOutputStream pageOut = new DataOutputStream(pageBuffer);
+
+    /**
+     * @param directory
+     *            - the directory to hold the history files, which is created
+     *            if necessary
+     * @param ordersInMemory
+     *            - the minimum number of the most recent submitted orders to
+     *            keep in memory
+     * @param executionsInMemory
+     *            - the number of the most recent executions of each stock to
+     *            keep in memory
+     */
+    public HistoryStore(Path directory, int ordersInMemory, int executionsInMemory) {
+
+        if (ordersInMemory < 0 || executionsInMemory < 0) {
+            throw new IllegalArgumentException("Number of orders and executions in memory must not be negative");
+        }
+
+        this.directory = directory;
+        this.ordersInMemory = ordersInMemory;
+        this.executionsInMemory = executionsInMemory;
+
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(directory.resolve(EXECUTIONS_FILE));
+
+            this.orders = FileChannel.open(directory.resolve(ORDERS_FILE), StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open history store " + directory, e);
+        }
+
+        this.executions = new Journal(directory.resolve(EXECUTIONS_FILE), FsyncPolicy.NONE,
+                        Journal.DEFAULT_FSYNC_INTERVAL_MILLIS, EXECUTIONS_REGION_SIZE);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public int getOrdersInMemory() {
+        return ordersInMemory;
+    }
+
+    public int getExecutionsInMemory() {
+        return executionsInMemory;
+    }
+
+    public int getPageCount() {
+        return pageOffsets.length - 1;
+    }
+
+    /**
+     * Append a page of orders
+     *
+     * @param page
+     *            - the orders, which must have been given their ids
+     * @return the number of the page
+     */
+    public int writeOrders(List<BookOrder> page) {
+        DataOutputStream out = pageOut;
+        pageBuffer.reset();
+
+        try {
+            out.writeInt(page.size());
+
+            for (BookOrder o : page) {
+                Order order = o.getOrder();
+
+                out.writeLong(o.getId());
+                out.writeByte(order.getDirection().ordinal());
+                out.writeUTF(order.getRic());
+                out.writeUTF(order.getUser());
+                out.writeLong(o.getPrice());
+                out.writeLong(o.getQuantity() + o.getFilledQuantity());
+                out.writeByte(order.getType().ordinal());
+                out.writeByte(order.getTimeInForce().ordinal());
+                writeDecimal(out, order.getQuantity());
+
+                // A MARKET order has no price
+                if (order.getType() != OrderType.MARKET) {
+                    writeDecimal(out, order.getPrice());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write orders to history store " + directory, e);
+        }
+
+        long[] offsets = pageOffsets;
+        long start = offsets[offsets.length - 1];
+        ByteBuffer buffer = pageBuffer.toByteBuffer();
+
+        try {
+            for (long position = start; buffer.hasRemaining();) {
+                position += orders.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write orders to history store " + directory, e);
+        }
+
+        // Only now can readers see the page
+        offsets = Arrays.copyOf(offsets, offsets.length + 1);
+        offsets[offsets.length - 1] = start + buffer.limit();
+        pageOffsets = offsets;
+
+        return offsets.length - 2;
+    }
+
+    /**
+     * Read back a page of orders - may be called by any thread
+     *
+     * The orders read are copies holding the submitted order and its id; they
+     * are not in any book.
+     *
+     * @param page
+     *            - the number of the page
+     * @return the orders of the page, in the order they were written
+     */
+    public List<BookOrder> readOrders(int page) {
+        long[] offsets = pageOffsets;
+
+        if (page < 0 || page >= offsets.length - 1) {
+            throw new IndexOutOfBoundsException("Page: " + page + ", Pages: " + (offsets.length - 1));
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[page + 1] - offsets[page]));
+
+        try {
+            for (long position = offsets[page]; buffer.hasRemaining();) {
+                int read = orders.read(buffer, position);
+
+                if (read < 0) {
+                    throw new IOException("Unexpected end of file");
+                }
+
+                position += read;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+            int count = in.readInt();
+            List<BookOrder> result = new ArrayList<BookOrder>(count);
+
+            for (int i = 0; i < count; i++) {
+                long id = in.readLong();
+                Direction direction = DIRECTIONS[in.readByte()];
+                String ric = in.readUTF();
+                String user = in.readUTF();
+                long price = in.readLong();
+                long quantity = in.readLong();
+                OrderType type = ORDER_TYPES[in.readByte()];
+                TimeInForce timeInForce = TIMES_IN_FORCE[in.readByte()];
+                BigDecimal orderQuantity = readDecimal(in);
+                BigDecimal orderPrice = type == OrderType.MARKET ? null : readDecimal(in);
+                Order order = new Order(direction, ric, orderQuantity, orderPrice, user, type, timeInForce);
+
+                BookOrder o = new BookOrder(order, price, quantity);
+                o.setId(id);
+                result.add(o);
+            }
+
+            return Collections.unmodifiableList(result);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read orders from history store " + directory, e);
+        }
+    }
+
+    /**
+     * Append an execution that no longer needs to be held in memory
+     */
+    public void writeExecution(String ric, long buyId, long sellId, long quantity, long price) {
+        executions.writeExecution(ric, buyId, sellId, quantity, price);
+    }
+
+    public Path getExecutionsFile() {
+        return executions.getFile();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            orders.close();
+        } finally {
+            executions.close();
+        }
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        BigInteger unscaled = value.unscaledValue();
+
+        out.writeInt(value.scale());
+
+        // Almost every value fits in a long, anything else is written in full
+        if (unscaled.bitLength() < 64) {
+            out.writeShort(0);
+            out.writeLong(unscaled.longValue());
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int scale = in.readInt();
+        int length = in.readShort();
+
+        if (length == 0) {
+            return BigDecimal.valueOf(in.readLong(), scale);
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    /**
+     * Byte array output stream whose contents can be written without copying
+     */
+    private static class PageBuffer extends ByteArrayOutputStream {
+
+        PageBuffer() {
+            super(OrderHistory.PAGE_SIZE * 64);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.cs.exchange.history;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.util.AppendOnlyList;
+
+/**
+ * All orders submitted to an engine, in submission order, with only the most
+ * recent held in memory
+ *
+ * Once more than the number of orders to keep in memory have been added, the
+ * oldest are moved to the {@link HistoryStore} a page at a time. Without a
+ * store every order is kept in memory.
+ *
+ * Orders are indexed by int, so an engine can only ever take
+ * {@link AppendOnlyList#MAX_SIZE} orders.
+ *
+ * Adding is not thread safe.
+ *
+ */
+public class OrderHistory {
+
+    public static final int PAGE_SIZE = AppendOnlyList.CHUNK_SIZE;
+
+    private final AppendOnlyList<BookOrder> recent = new AppendOnlyList<BookOrder>();
+    private final HistoryStore store;
+
+    /**
+     * @param store
+     *            - the store for orders no longer kept in memory, or null to
+     *            keep them all
+     */
+    public OrderHistory(HistoryStore store) {
+        this.store = store;
+    }
+
+    public void add(BookOrder o) {
+        recent.add(o);
+
+        // Always leave at least the number asked for
+        if (store != null && recent.size() - recent.getFirstIndex() >= store.getOrdersInMemory() + PAGE_SIZE) {
+            store.writeOrders(recent.evictFirstChunk());
+        }
+    }
+
+    public int size() {
+        return recent.size();
+    }
+
+    /**
+     * Check whether no more orders can be added
+     *
+     * @return true if the maximum number of orders has been added
+     */
+    public boolean isFull() {
+        return recent.isFull();
+    }
+
+    /**
+     * Get the number of orders still held in memory
+     *
+     * @return the number of the most recent orders held
+     */
+    public int getSizeInMemory() {
+        return recent.size() - recent.getFirstIndex();
+    }
+
+    /**
+     * Get an immutable view of the orders added so far
+     *
+     * Nothing is copied: orders no longer in memory are read back from the
+     * store a page at a time as the view is read, so iterating over the view
+     * only ever holds one page of them.
+     *
+     * @return a list of the orders added so far, which is unaffected by later
+     *         additions
+     */
+    public List<BookOrder> view() {
+        return new View(recent.view(), recent.getFirstIndex(), store);
+    }
+
+    private static class View extends AbstractList<BookOrder> {
+
+        private final List<BookOrder> recent;
+        private final int firstIndex;
+        private final HistoryStore store;
+
+        // Most recently read page...a view may be read by several threads, so
+        // the page is replaced rather than changed
+        private volatile Page page;
+
+        View(List<BookOrder> recent, int firstIndex, HistoryStore store) {
+            this.recent = recent;
+            this.firstIndex = firstIndex;
+            this.store = store;
+        }
+
+        @Override
+        public BookOrder get(int index) {
+
+            if (index < 0 || index >= firstIndex) {
+                return recent.get(index);
+            }
+
+            int number = index / PAGE_SIZE;
+            Page current = page;
+
+            if (current == null || current.number != number) {
+                current = new Page(number, store.readOrders(number));
+                page = current;
+            }
+
+            return current.orders.get(index % PAGE_SIZE);
+        }
+
+        @Override
+        public int size() {
+            return recent.size();
+        }
+
+    }
+
+    private static class Page {
+
+        private final int number;
+        private final List<BookOrder> orders;
+
+        Page(int number, List<BookOrder> orders) {
+            this.number = number;
+            this.orders = orders;
+        }
+
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.cs.exchange.journal;
+
+/*
+ * Enumerated type representing when the journal forces its writes to disk
+ */
+public enum FsyncPolicy {
+    // Leave it to the operating system - survives a process crash but not a
+    // machine crash
+    NONE("None"),
+    // After every batch of orders, before the batch is acknowledged
+    BATCH("Batch"),
+    // After a batch once the fsync interval has elapsed since the last force
+    INTERVAL("Interval");
+
+    private final String displayValue;
+
+    private FsyncPolicy(String displayValue) {
+        this.displayValue = displayValue;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+}
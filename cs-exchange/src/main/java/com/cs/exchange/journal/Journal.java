@@ -0,0 +1,322 @@
+package com.cs.exchange.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.cs.exchange.book.BookOrder;
+
+/**
+ * Write-ahead journal of accepted orders, cancels, amendments, executions and
+ * auction calls
+ *
+ * Records are appended in a compact binary format to a memory-mapped file,
+ * so writing a record is only a copy into memory. Each stock identifier
+ * (RIC) and user is written once and then referred to by number. The file is
+ * mapped a region at a time and the file grows as each new region is mapped.
+ *
+ * A record is its length (int), type (byte) and payload. The length is
+ * written last, so a reader never sees a partly written record; a length of
+ * 0 marks the end of the journal.
+ *
+ * Writes become durable according to the {@link FsyncPolicy} when
+ * {@link #flush()} is called at the end of each batch.
+ *
+ * Not thread safe.
+ *
+ */
+public class Journal implements Closeable {
+
+    static final int MAGIC = 0x43534A4C;
+    static final int VERSION = 4;
+    static final int HEADER_LENGTH = 8;
+
+    static final byte SYMBOL = 1;
+    static final byte NEW_ORDER = 2;
+    static final byte CANCEL = 3;
+    static final byte AMEND = 4;
+    static final byte EXECUTION = 5;
+    static final byte AUCTION_START = 6;
+    static final byte UNCROSS = 7;
+
+    public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 100;
+
+    // Length and type of each record
+    private static final int RECORD_OVERHEAD = 5;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final int regionSize;
+
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    private final Map<String, Integer> symbols = new HashMap<String, Integer>();
+
+    private long recordStart;
+    private boolean unforced;
+    private long lastForceTime = System.nanoTime();
+
+    public Journal(Path file, FsyncPolicy fsyncPolicy) {
+        this(file, fsyncPolicy, DEFAULT_FSYNC_INTERVAL_MILLIS, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Open a journal, appending to it if it already exists
+     *
+     * @param file
+     *            - the journal file
+     * @param fsyncPolicy
+     *            - when writes are forced to disk
+     * @param fsyncIntervalMillis
+     *            - the minimum time between forces for
+     *            {@link FsyncPolicy#INTERVAL}
+     * @param regionSize
+     *            - the number of bytes mapped at a time
+     */
+    public Journal(Path file, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis, int regionSize) {
+
+        if (regionSize < 1024) {
+            throw new IllegalArgumentException("Region size must be at least 1024 bytes");
+        }
+
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.regionSize = regionSize;
+
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE);
+
+            if (channel.size() == 0) {
+                map(0);
+                region.putInt(MAGIC);
+                region.putInt(VERSION);
+            } else {
+                // Carry on from the end of the existing records
+                Map<Integer, String> existing = new HashMap<Integer, String>();
+                long end = new JournalReader(file).read(null, existing);
+
+                for (Map.Entry<Integer, String> entry : existing.entrySet()) {
+                    symbols.put(entry.getValue(), entry.getKey());
+                }
+
+                map(end);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open journal " + file, e);
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Get the position just after the last record written
+     *
+     * @return the length of the journal in bytes
+     */
+    public long getPosition() {
+        return regionStart + region.position();
+    }
+
+    /**
+     * Record a new order that has been accepted, before it is matched
+     *
+     * @param o
+     *            - the order, which must have been given its id
+     * @param time
+     *            - the time the order is matched at, in milliseconds since
+     *            the epoch
+     */
+    public void writeNewOrder(BookOrder o, long time) {
+        int ric = symbol(o.getRic());
+        int user = symbol(o.getUser());
+
+        begin(NEW_ORDER, 8 + 8 + 1 + 4 + 4 + 8 + 8 + 1 + 1);
+        region.putLong(time);
+        region.putLong(o.getId());
+        region.put((byte) o.getDirection().ordinal());
+        region.putInt(ric);
+        region.putInt(user);
+        region.putLong(o.getQuantity());
+        region.putLong(o.getPrice());
+        region.put((byte) o.getType().ordinal());
+        region.put((byte) o.getTimeInForce().ordinal());
+        end();
+    }
+
+    public void writeCancel(long id) {
+        begin(CANCEL, 8);
+        region.putLong(id);
+        end();
+    }
+
+    /**
+     * Record an amendment to an OPEN order, before it is applied
+     *
+     * @param id
+     *            - the id of the order
+     * @param quantity
+     *            - the new scaled open quantity
+     * @param price
+     *            - the new scaled price
+     * @param time
+     *            - the time the amended order is matched at, in milliseconds
+     *            since the epoch
+     */
+    public void writeAmend(long id, long quantity, long price, long time) {
+        begin(AMEND, 8 + 8 + 8 + 8);
+        region.putLong(time);
+        region.putLong(id);
+        region.putLong(quantity);
+        region.putLong(price);
+        end();
+    }
+
+    public void writeExecution(String ric, long buyId, long sellId, long quantity, long price) {
+        int symbol = symbol(ric);
+
+        begin(EXECUTION, 4 + 8 + 8 + 8 + 8);
+        region.putInt(symbol);
+        region.putLong(buyId);
+        region.putLong(sellId);
+        region.putLong(quantity);
+        region.putLong(price);
+        end();
+    }
+
+    /**
+     * Record the start of an auction call for a stock
+     */
+    public void writeAuctionStart(String ric) {
+        int symbol = symbol(ric);
+
+        begin(AUCTION_START, 4);
+        region.putInt(symbol);
+        end();
+    }
+
+    /**
+     * Record the end of an auction call, before the book is uncrossed
+     *
+     * @param ric
+     *            - the stock identifier
+     * @param time
+     *            - the time the book is uncrossed at, in milliseconds since
+     *            the epoch
+     */
+    public void writeUncross(String ric, long time) {
+        int symbol = symbol(ric);
+
+        begin(UNCROSS, 4 + 8);
+        region.putInt(symbol);
+        region.putLong(time);
+        end();
+    }
+
+    /**
+     * Force every record written so far to disk, whatever the fsync policy
+     */
+    public void force() {
+        region.force();
+        unforced = false;
+        lastForceTime = System.nanoTime();
+    }
+
+    /**
+     * End a batch of records, forcing them to disk if the fsync policy
+     * requires it
+     */
+    public void flush() {
+
+        if (!unforced || fsyncPolicy == FsyncPolicy.NONE) {
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if (fsyncPolicy == FsyncPolicy.BATCH || now - lastForceTime >= fsyncIntervalNanos) {
+            force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        region.force();
+        channel.close();
+    }
+
+    private int symbol(String value) {
+        Integer id = symbols.get(value);
+
+        if (id == null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+
+            id = symbols.size();
+            begin(SYMBOL, 4 + 4 + bytes.length);
+            region.putInt(id);
+            region.putInt(bytes.length);
+            region.put(bytes);
+            end();
+
+            symbols.put(value, id);
+        }
+
+        return id;
+    }
+
+    private void begin(byte type, int length) {
+
+        if (region.remaining() < RECORD_OVERHEAD + length + 4) {
+            // Leave room for the end of journal marker too
+            if (RECORD_OVERHEAD + length + 4 > regionSize) {
+                throw new IllegalArgumentException("Journal record is too large: " + length);
+            }
+
+            map(getPosition());
+        }
+
+        recordStart = region.position();
+        region.position(region.position() + 4);
+        region.put(type);
+    }
+
+    private void end() {
+        // Only now is the record visible to a reader
+        region.putInt((int) recordStart, region.position() - (int) recordStart);
+        unforced = true;
+    }
+
+    private void map(long position) {
+        try {
+            if (region != null) {
+                region.force();
+            }
+
+            // Records carry on seamlessly from where the last region ended
+            region = channel.map(FileChannel.MapMode.READ_WRITE, position, regionSize);
+            regionStart = position;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to extend journal " + file, e);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.cs.exchange.journal;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * Receives the records of a journal as it is read
+ *
+ * Prices and quantities are scaled longs as held in the book (see
+ * {@link com.cs.exchange.domain.Instrument}). Times are milliseconds since the
+ * epoch, as given by the clock of the engine that wrote the journal.
+ *
+ */
+public interface JournalHandler {
+
+    public void onNewOrder(long id, Direction direction, String ric, String user, long quantity, long price,
+                    OrderType type, TimeInForce timeInForce, long time);
+
+    public void onCancel(long id);
+
+    public void onAmend(long id, long quantity, long price, long time);
+
+    public void onExecution(String ric, long buyId, long sellId, long quantity, long price);
+
+    public default void onAuctionStart(String ric) {
+    }
+
+    /**
+     * Called at the end of an auction call, ahead of the executions of the
+     * uncross
+     */
+    public default void onUncross(String ric, long time) {
+    }
+
+}
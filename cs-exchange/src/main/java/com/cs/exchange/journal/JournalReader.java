@@ -0,0 +1,181 @@
+package com.cs.exchange.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+
+/**
+ * Reads the records of a journal written by {@link Journal}, in the order
+ * they were written
+ *
+ */
+public class JournalReader {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final TimeInForce[] TIMES_IN_FORCE = TimeInForce.values();
+
+    private final Path file;
+
+    private long recordPosition;
+
+    public JournalReader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Pass every record in the journal to the handler
+     *
+     * @param handler
+     *            - the handler of the records
+     * @return the position just after the last record
+     */
+    public long read(JournalHandler handler) {
+        return read(handler, new HashMap<Integer, String>());
+    }
+
+    /**
+     * Get the position of the record currently being passed to the handler
+     *
+     * @return the position in bytes from the start of the journal
+     */
+    public long getRecordPosition() {
+        return recordPosition;
+    }
+
+    /**
+     * Read the journal from the start
+     *
+     * @param handler
+     *            - the handler of the records, or null to only find the end
+     * @param symbols
+     *            - filled with the symbols defined in the journal
+     * @return the position just after the last record
+     */
+    long read(JournalHandler handler, Map<Integer, String> symbols) {
+
+        try (InputStream is = Files.newInputStream(file);
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(is, 64 * 1024))) {
+
+            if (in.readInt() != Journal.MAGIC || in.readInt() != Journal.VERSION) {
+                throw new IllegalStateException("Not a journal or unsupported version: " + file);
+            }
+
+            long position = Journal.HEADER_LENGTH;
+
+            while (true) {
+                int length;
+
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return position;
+                }
+
+                // A length of 0 is the unwritten remainder of the file
+                if (length == 0) {
+                    return position;
+                }
+
+                recordPosition = position;
+                readRecord(in, in.readByte(), handler, symbols);
+                position += length;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read journal " + file, e);
+        }
+    }
+
+    private void readRecord(DataInputStream in, byte type, JournalHandler handler, Map<Integer, String> symbols)
+                    throws IOException {
+
+        switch (type) {
+            case Journal.SYMBOL: {
+                int id = in.readInt();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                symbols.put(id, new String(bytes, StandardCharsets.UTF_8));
+                break;
+            }
+            case Journal.NEW_ORDER: {
+                long time = in.readLong();
+                long id = in.readLong();
+                Direction direction = DIRECTIONS[in.readByte()];
+                String ric = symbols.get(in.readInt());
+                String user = symbols.get(in.readInt());
+                long quantity = in.readLong();
+                long price = in.readLong();
+                OrderType orderType = ORDER_TYPES[in.readByte()];
+                TimeInForce timeInForce = TIMES_IN_FORCE[in.readByte()];
+
+                if (handler != null) {
+                    handler.onNewOrder(id, direction, ric, user, quantity, price, orderType, timeInForce, time);
+                }
+                break;
+            }
+            case Journal.CANCEL: {
+                long id = in.readLong();
+
+                if (handler != null) {
+                    handler.onCancel(id);
+                }
+                break;
+            }
+            case Journal.AMEND: {
+                long time = in.readLong();
+                long id = in.readLong();
+                long quantity = in.readLong();
+                long price = in.readLong();
+
+                if (handler != null) {
+                    handler.onAmend(id, quantity, price, time);
+                }
+                break;
+            }
+            case Journal.EXECUTION: {
+                String ric = symbols.get(in.readInt());
+                long buyId = in.readLong();
+                long sellId = in.readLong();
+                long quantity = in.readLong();
+                long price = in.readLong();
+
+                if (handler != null) {
+                    handler.onExecution(ric, buyId, sellId, quantity, price);
+                }
+                break;
+            }
+            case Journal.AUCTION_START: {
+                String ric = symbols.get(in.readInt());
+
+                if (handler != null) {
+                    handler.onAuctionStart(ric);
+                }
+                break;
+            }
+            case Journal.UNCROSS: {
+                String ric = symbols.get(in.readInt());
+                long time = in.readLong();
+
+                if (handler != null) {
+                    handler.onUncross(ric, time);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type + " in " + file);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.cs.exchange.journal;
+
+import java.util.Map;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.stats.BarResolution;
+
+/**
+ * Receives the contents of a snapshot as it is read
+ *
+ * Prices and quantities are scaled longs as held in the book (see
+ * {@link com.cs.exchange.domain.Instrument}).
+ *
+ */
+public interface SnapshotHandler {
+
+    /**
+     * Called once, before anything else
+     *
+     * @param journalPosition
+     *            - the position in the journal the snapshot was taken at
+     * @param nextId
+     *            - the id the next new order is to be given
+     */
+    public void onStart(long journalPosition, long nextId);
+
+    /**
+     * Called for every OPEN order, in time priority order within each price
+     * level
+     *
+     * Only GTC orders are OPEN, apart from orders collected during an auction
+     * call.
+     */
+    public void onOrder(long id, Direction direction, String ric, String user, long quantity, long filledQuantity,
+                    long price, OrderType type, TimeInForce timeInForce);
+
+    /**
+     * Called for every stock with executions
+     */
+    public void onStatistics(String ric, long executionCount, long totalQuantity, long totalNotional,
+                    long lastPrice, Map<String, Long> netQuantities);
+
+    /**
+     * Called for every bar of every stock with executions, oldest first for
+     * each resolution
+     */
+    public void onBar(String ric, BarResolution resolution, long start, long open, long high, long low, long close,
+                    long volume, long notional, long count);
+
+    /**
+     * Called for every stock whose auction call was in progress
+     */
+    public void onAuctionCall(String ric);
+
+}
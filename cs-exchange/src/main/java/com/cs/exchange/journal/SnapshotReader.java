@@ -0,0 +1,95 @@
+package com.cs.exchange.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.stats.BarResolution;
+
+/**
+ * Reads a snapshot written by {@link SnapshotWriter}
+ *
+ */
+public class SnapshotReader {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final OrderType[] ORDER_TYPES = OrderType.values();
+    private static final TimeInForce[] TIMES_IN_FORCE = TimeInForce.values();
+    private static final BarResolution[] RESOLUTIONS = BarResolution.values();
+
+    private final Path file;
+
+    public SnapshotReader(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Pass the whole snapshot to the handler
+     *
+     * @param handler
+     *            - the handler of the snapshot contents
+     */
+    public void read(SnapshotHandler handler) {
+
+        try (InputStream is = Files.newInputStream(file);
+                        DataInputStream in = new DataInputStream(new BufferedInputStream(is, 64 * 1024))) {
+
+            if (in.readInt() != SnapshotWriter.MAGIC || in.readInt() != SnapshotWriter.VERSION) {
+                throw new IllegalStateException("Not a snapshot or unsupported version: " + file);
+            }
+
+            handler.onStart(in.readLong(), in.readLong());
+
+            byte type;
+
+            while ((type = in.readByte()) != SnapshotWriter.END) {
+                if (type == SnapshotWriter.ORDER) {
+                    handler.onOrder(in.readLong(), DIRECTIONS[in.readByte()], in.readUTF(), in.readUTF(),
+                                    in.readLong(), in.readLong(), in.readLong(), ORDER_TYPES[in.readByte()],
+                                    TIMES_IN_FORCE[in.readByte()]);
+                } else if (type == SnapshotWriter.STATISTICS) {
+                    String ric = in.readUTF();
+                    long executionCount = in.readLong();
+                    long totalQuantity = in.readLong();
+                    long totalNotional = in.readLong();
+                    long lastPrice = in.readLong();
+
+                    int userCount = in.readInt();
+                    Map<String, Long> netQuantities = new HashMap<String, Long>(userCount * 2);
+
+                    for (int i = 0; i < userCount; i++) {
+                        netQuantities.put(in.readUTF(), in.readLong());
+                    }
+
+                    handler.onStatistics(ric, executionCount, totalQuantity, totalNotional, lastPrice,
+                                    netQuantities);
+                } else if (type == SnapshotWriter.BARS) {
+                    String ric = in.readUTF();
+                    BarResolution resolution = RESOLUTIONS[in.readByte()];
+                    int barCount = in.readInt();
+
+                    for (int i = 0; i < barCount; i++) {
+                        handler.onBar(ric, resolution, in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                                        in.readLong(), in.readLong(), in.readLong(), in.readLong());
+                    }
+                } else if (type == SnapshotWriter.AUCTION) {
+                    handler.onAuctionCall(in.readUTF());
+                } else {
+                    throw new IllegalStateException("Unknown snapshot record type " + type + " in " + file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read snapshot " + file, e);
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.cs.exchange.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.stats.BarSeries;
+import com.cs.exchange.stats.ExecutionStatistics;
+
+/**
+ * Writes a binary snapshot of the OPEN orders, execution totals, bars and
+ * auction calls of an engine, to be read back by {@link SnapshotReader}
+ *
+ * The snapshot is written to a temporary file which only replaces the
+ * target file once it is complete, so a crash while writing leaves the
+ * previous snapshot in place.
+ *
+ */
+public class SnapshotWriter implements Closeable {
+
+    static final int MAGIC = 0x4353534E;
+    static final int VERSION = 3;
+
+    static final byte ORDER = 1;
+    static final byte STATISTICS = 2;
+    static final byte BARS = 3;
+    static final byte AUCTION = 4;
+    static final byte END = 0;
+
+    private final Path file;
+    private final Path tempFile;
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+
+    public SnapshotWriter(Path file, long journalPosition, long nextId) {
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+            this.fileOut = new FileOutputStream(tempFile.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(journalPosition);
+            out.writeLong(nextId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Write an OPEN order - orders at the same price must be written in time
+     * priority order
+     */
+    public void writeOrder(BookOrder o) {
+        try {
+            out.writeByte(ORDER);
+            out.writeLong(o.getId());
+            out.writeByte(o.getDirection().ordinal());
+            out.writeUTF(o.getRic());
+            out.writeUTF(o.getUser());
+            out.writeLong(o.getQuantity());
+            out.writeLong(o.getFilledQuantity());
+            out.writeLong(o.getPrice());
+            out.writeByte(o.getType().ordinal());
+            out.writeByte(o.getTimeInForce().ordinal());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot " + file, e);
+        }
+    }
+
+    public void writeStatistics(String ric, ExecutionStatistics stats) {
+        try {
+            out.writeByte(STATISTICS);
+            out.writeUTF(ric);
+            out.writeLong(stats.getExecutionCount());
+            out.writeLong(stats.getTotalQuantity());
+            out.writeLong(stats.getTotalNotional());
+            out.writeLong(stats.getLastPrice());
+
+            Map<String, Long> netQuantities = stats.getNetQuantities();
+            out.writeInt(netQuantities.size());
+
+            for (Map.Entry<String, Long> entry : netQuantities.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Write the bars of a stock at one resolution, oldest first
+     */
+    public void writeBars(String ric, BarSeries bars) {
+        try {
+            out.writeByte(BARS);
+            out.writeUTF(ric);
+            out.writeByte(bars.getResolution().ordinal());
+            out.writeInt(bars.size());
+
+            for (int i = 0; i < bars.size(); i++) {
+                out.writeLong(bars.getStart(i));
+                out.writeLong(bars.getOpen(i));
+                out.writeLong(bars.getHigh(i));
+                out.writeLong(bars.getLow(i));
+                out.writeLong(bars.getClose(i));
+                out.writeLong(bars.getVolume(i));
+                out.writeLong(bars.getNotional(i));
+                out.writeLong(bars.getCount(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Write a stock whose auction call is in progress
+     */
+    public void writeAuction(String ric) {
+        try {
+            out.writeByte(AUCTION);
+            out.writeUTF(ric);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Complete the snapshot, replacing any previous snapshot
+     */
+    @Override
+    public void close() {
+        try {
+            out.writeByte(END);
+            out.flush();
+
+            // Make sure it is all on disk before it replaces the last one
+            fileOut.getFD().sync();
+            out.close();
+
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write snapshot " + file, e);
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.cs.exchange.matcher;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.book.OrderBookSide;
+import com.cs.exchange.book.PriceLevel;
+
+/**
+ * Ways of choosing the counterparties of a new order straight from the OPEN
+ * orders on the opposite side of the book, for use by {@link OrderMatcher}
+ * implementations
+ *
+ * Levels are held best-first and found by binary search on price, and the
+ * orders of a level are linked in time priority and indexed by quantity, so
+ * nothing is copied or sorted while matching.
+ *
+ */
+public final class BookMatching {
+
+    private BookMatching() {
+    }
+
+    /**
+     * Fill a new order in full against a single OPEN order with the same
+     * quantity
+     *
+     * An OPEN order at the same price as the new order takes precedence,
+     * otherwise the best priced OPEN order that crosses. Within a level the
+     * earliest OPEN order the matcher accepts is chosen.
+     *
+     * @param matcher
+     *            - decides whether each candidate matches and at what price
+     * @param o
+     *            - the new order
+     * @param opposite
+     *            - the opposite side of the book
+     * @param fills
+     *            - receives the fill, if any
+     */
+    public static void matchInFull(OrderMatcher matcher, BookOrder o, OrderBookSide opposite, FillHandler fills) {
+        BookOrder matched = findInFull(matcher, o, opposite);
+
+        if (matched != null) {
+            fills.onFill(o, matched, o.getQuantity(), matcher.getExecutionPrice(o, matched));
+        }
+    }
+
+    /**
+     * Sweep the OPEN orders in price-time priority, filling as much of a new
+     * order as the matcher allows against each until the prices no longer
+     * cross
+     *
+     * @param matcher
+     *            - decides the quantity and price of each execution
+     * @param o
+     *            - the new order
+     * @param opposite
+     *            - the opposite side of the book
+     * @param fills
+     *            - receives each fill
+     */
+    public static void sweep(OrderMatcher matcher, BookOrder o, OrderBookSide opposite, FillHandler fills) {
+        int depth = 0;
+
+        // Stop as soon as prices no longer cross
+        while (o.getQuantity() > 0 && depth < opposite.getLevelCount()) {
+            PriceLevel level = opposite.getLevelAt(depth);
+
+            if (!opposite.isCrossedBy(o.getPrice(), level)) {
+                break;
+            }
+
+            BookOrder order = level.getFirstOrder();
+
+            while (order != null && o.getQuantity() > 0) {
+                // Fully filled orders are unlinked, so move on first
+                BookOrder next = order.getNextInLevel();
+                long quantity = matcher.getExecutionQuantity(o, order);
+
+                if (quantity > 0) {
+                    fills.onFill(o, order, quantity, matcher.getExecutionPrice(o, order));
+                }
+
+                order = next;
+            }
+
+            // An emptied level has been removed, bringing the next level up to
+            // the same depth
+            if (!level.isEmpty()) {
+                depth++;
+            }
+        }
+    }
+
+    private static BookOrder findInFull(OrderMatcher matcher, BookOrder o, OrderBookSide opposite) {
+
+        // An OPEN order with the same price as the new order takes precedence
+        PriceLevel priceMatch = opposite.getLevel(o.getPrice());
+
+        if (priceMatch != null) {
+            BookOrder matched = findInFull(matcher, o, priceMatch);
+
+            if (matched != null) {
+                return matched;
+            }
+        }
+
+        // Otherwise new buy order should be matched against the lowest sell
+        // price and new sell order against the highest buy price
+        for (int depth = 0; depth < opposite.getLevelCount(); depth++) {
+            PriceLevel level = opposite.getLevelAt(depth);
+
+            if (!opposite.isCrossedBy(o.getPrice(), level)) {
+                break;
+            }
+
+            if (level != priceMatch) {
+                BookOrder matched = findInFull(matcher, o, level);
+
+                if (matched != null) {
+                    return matched;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static BookOrder findInFull(OrderMatcher matcher, BookOrder o, PriceLevel level) {
+
+        // Only OPEN orders of the same quantity are candidates for a match
+        for (BookOrder order = level.getFirstOrder(o.getQuantity()); order != null; order = order
+                        .getNextWithSameQuantity()) {
+            if (matcher.checkIfBookOrdersMatch(o, order)) {
+                return order;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,166 @@
+package com.cs.exchange.matcher;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.book.OrderBook;
+import com.cs.exchange.book.OrderBookSide;
+import com.cs.exchange.book.PriceLevel;
+import com.cs.exchange.domain.Direction;
+
+/**
+ * The price at which a crossed book uncrosses at the end of an auction call,
+ * and the quantity that executes there
+ *
+ * The price is the limit price at which the most quantity executes. Ties go
+ * to the price leaving the smallest surplus, then to the highest price when
+ * the surplus is on the buy side or the lowest when it is on the sell side,
+ * then to the price closest to the reference price (e.g. the last trade).
+ *
+ * It is found from the price level totals alone, walking the crossed levels
+ * of both sides once in price order with running totals, so the cost is the
+ * number of crossed levels whatever the number of orders. Market orders
+ * count at every price but never set it.
+ *
+ * Prices and quantities are scaled longs (see
+ * {@link com.cs.exchange.domain.Instrument}).
+ *
+ */
+public final class Equilibrium {
+
+    private final long price;
+    private final long volume;
+    private final long buyQuantity;
+    private final long sellQuantity;
+
+    private Equilibrium(long price, long volume, long buyQuantity, long sellQuantity) {
+        this.price = price;
+        this.volume = volume;
+        this.buyQuantity = buyQuantity;
+        this.sellQuantity = sellQuantity;
+    }
+
+    /**
+     * Find the price a book uncrosses at
+     *
+     * @param book
+     *            - the book, which may be crossed
+     * @param referencePrice
+     *            - the price to break remaining ties with, or 0 for none
+     * @return the equilibrium or null if nothing would execute
+     */
+    public static Equilibrium find(OrderBook book, long referencePrice) {
+        OrderBookSide bids = book.getSide(Direction.BUY);
+        OrderBookSide asks = book.getSide(Direction.SELL);
+
+        if (bids.isEmpty() || asks.isEmpty()) {
+            return null;
+        }
+
+        long highestBid = bids.getLevelAt(0).getPrice();
+        long lowestAsk = asks.getLevelAt(0).getPrice();
+
+        // Only the levels priced inside the cross can execute
+        int bidCount = 0;
+        long bidTotal = 0;
+
+        while (bidCount < bids.getLevelCount() && bids.getLevelAt(bidCount).getPrice() >= lowestAsk) {
+            bidTotal += bids.getLevelAt(bidCount++).getTotalQuantity();
+        }
+
+        int askCount = 0;
+
+        while (askCount < asks.getLevelCount() && asks.getLevelAt(askCount).getPrice() <= highestBid) {
+            askCount++;
+        }
+
+        // Each candidate price in ascending order - bids are held highest
+        // first so are walked from the lowest crossed level up
+        int bid = bidCount - 1;
+        int ask = 0;
+        long buyQuantity = bidTotal;
+        long sellQuantity = 0;
+        Equilibrium best = null;
+
+        while (bid >= 0 || ask < askCount) {
+            long price = Math.min(bid >= 0 ? bids.getLevelAt(bid).getPrice() : Long.MAX_VALUE,
+                            ask < askCount ? asks.getLevelAt(ask).getPrice() : Long.MAX_VALUE);
+
+            // Sells at or below the price execute
+            while (ask < askCount && asks.getLevelAt(ask).getPrice() <= price) {
+                sellQuantity += asks.getLevelAt(ask++).getTotalQuantity();
+            }
+
+            if (price != BookOrder.marketPrice(Direction.BUY) && price != BookOrder.marketPrice(Direction.SELL)) {
+                best = better(best, price, buyQuantity, sellQuantity, referencePrice);
+            }
+
+            // Buys at the price no longer execute at any higher price
+            while (bid >= 0 && bids.getLevelAt(bid).getPrice() <= price) {
+                buyQuantity -= bids.getLevelAt(bid--).getTotalQuantity();
+            }
+        }
+
+        return best;
+    }
+
+    private static Equilibrium better(Equilibrium best, long price, long buyQuantity, long sellQuantity,
+                    long referencePrice) {
+        long volume = Math.min(buyQuantity, sellQuantity);
+        long surplus = buyQuantity - sellQuantity;
+
+        if (volume == 0 || (best != null && volume < best.volume)) {
+            return best;
+        }
+
+        if (best != null && volume == best.volume) {
+            long bestSurplus = Math.abs(best.getSurplus());
+
+            if (Math.abs(surplus) > bestSurplus) {
+                return best;
+            }
+
+            // Prices only ever rise, so the best so far is the lower price
+            if (Math.abs(surplus) == bestSurplus) {
+                if (surplus < 0 || (surplus == 0 && (referencePrice <= 0
+                                || Math.abs(price - referencePrice) >= Math.abs(best.price - referencePrice)))) {
+                    return best;
+                }
+            }
+        }
+
+        return new Equilibrium(price, volume, buyQuantity, sellQuantity);
+    }
+
+    public long getPrice() {
+        return price;
+    }
+
+    /**
+     * Get the quantity that executes at the price
+     */
+    public long getVolume() {
+        return volume;
+    }
+
+    /**
+     * Get the quantity bid at or above the price
+     */
+    public long getBuyQuantity() {
+        return buyQuantity;
+    }
+
+    /**
+     * Get the quantity offered at or below the price
+     */
+    public long getSellQuantity() {
+        return sellQuantity;
+    }
+
+    /**
+     * Get the quantity left over after the uncross, positive when bids are
+     * left over and negative when offers are
+     */
+    public long getSurplus() {
+        return buyQuantity - sellQuantity;
+    }
+
+}
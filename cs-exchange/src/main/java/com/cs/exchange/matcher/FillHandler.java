@@ -0,0 +1,30 @@
+package com.cs.exchange.matcher;
+
+import com.cs.exchange.book.BookOrder;
+
+/**
+ * Receives the fills chosen by an {@link OrderMatcher} for a new order
+ *
+ * The engine applies each fill as it is received, so the book reflects it
+ * (a fully filled OPEN order is removed) before the matcher looks for the
+ * next counterparty.
+ *
+ */
+public interface FillHandler {
+
+    /**
+     * Execute part or all of a new order against an OPEN order
+     * 
+     * @param o
+     *            - the new order
+     * @param matched
+     *            - the OPEN order, which must be in the book
+     * @param quantity
+     *            - the scaled quantity to execute, no more than the open
+     *            quantity of either order
+     * @param price
+     *            - the scaled execution price
+     */
+    public void onFill(BookOrder o, BookOrder matched, long quantity, long price);
+
+}
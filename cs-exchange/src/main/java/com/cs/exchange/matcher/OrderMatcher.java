@@ -1,10 +1,19 @@
 package com.cs.exchange.matcher;
 
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.book.OrderBookSide;
 import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
 
 /**
  * Order matching interface
  *
+ * A matcher decides which orders match and, through
+ * {@link #match(BookOrder, OrderBookSide, FillHandler)}, chooses the
+ * counterparties of each new order straight from the book, so a venue can
+ * plug in its own allocation rule. See {@link BookMatching} for the rules
+ * that come with the Exchange.
+ *
  */
 public interface OrderMatcher {
 
@@ -15,5 +24,80 @@ public interface OrderMatcher {
      * @return true if matched, else false
      */
     public boolean checkIfOrdersMatch(Order o1, Order o2);
-    
+
+    /**
+     * Check whether the two specified book orders match or not
+     * 
+     * This is the check used by the Exchange when matching, so it must
+     * compare the open quantities and scaled prices of the book orders:
+     * the submitted Orders keep their original quantities after a partial
+     * fill, and a MARKET order has no price.
+     * @param o1 first order
+     * @param o2 second order
+     * @return true if matched, else false
+     */
+    public boolean checkIfBookOrdersMatch(BookOrder o1, BookOrder o2);
+
+    /**
+     * Check whether orders may be partially filled
+     * 
+     * If not, a new order is matched in full against a single OPEN order, an
+     * OPEN order at the same price taking precedence over one at a better
+     * price. If so, a new order sweeps the OPEN orders in price-time priority,
+     * filling as much as it can and leaving any remainder OPEN.
+     * @return true if partial fills are allowed, else false
+     */
+    public default boolean isPartialFillAllowed() {
+        return false;
+    }
+
+    /**
+     * Get the quantity that can be executed between a new order and an OPEN
+     * order
+     * @param o new order, with its remaining quantity
+     * @param matched OPEN order
+     * @return the scaled quantity to execute, or 0 if the orders do not match
+     */
+    public default long getExecutionQuantity(BookOrder o, BookOrder matched) {
+        
+        if (!checkIfBookOrdersMatch(o, matched)) {
+            return 0;
+        }
+        
+        return Math.min(o.getQuantity(), matched.getQuantity());
+    }
+
+    /**
+     * Get the price at which a new order executes against an OPEN order
+     * @param o new order
+     * @param matched OPEN order
+     * @return the scaled execution price - by default the price of the new
+     *         order, or of the OPEN order if the new order is a MARKET order
+     */
+    public default long getExecutionPrice(BookOrder o, BookOrder matched) {
+        return o.getType() == OrderType.MARKET ? matched.getPrice() : o.getPrice();
+    }
+
+    /**
+     * Match a new order against the OPEN orders on the opposite side of the
+     * book, passing each execution to the fill handler
+     * 
+     * Whatever is left of the new order once this returns stays OPEN, unless
+     * its type or time in force says it should be cancelled. By
+     * default the new order is matched in full against a single OPEN order,
+     * or swept in price-time priority if partial fills are allowed.
+     * @param o new order, with its remaining quantity
+     * @param opposite opposite side of the book
+     * @param fills receives each execution, which is applied to the book
+     *        straight away
+     */
+    public default void match(BookOrder o, OrderBookSide opposite, FillHandler fills) {
+        
+        if (isPartialFillAllowed()) {
+            BookMatching.sweep(this, o, opposite, fills);
+        } else {
+            BookMatching.matchInFull(this, o, opposite, fills);
+        }
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.cs.exchange.matcher;
 
+import com.cs.exchange.book.BookOrder;
 import com.cs.exchange.domain.Direction;
 import com.cs.exchange.domain.Order;
 
@@ -44,4 +45,38 @@ public class OrderMatcherImpl implements OrderMatcher {
         return false;
     }
 
+    /**
+     * Match the two specified book orders using their scaled prices and
+     * quantities
+     * @param o1 first order
+     * @param o2 second order
+     * @return true if matched, else false
+     */
+    @Override
+    public boolean checkIfBookOrdersMatch(BookOrder o1, BookOrder o2) {
+        
+        if (o1 == null || o2 == null) {
+            return false;
+        }
+        
+        if (o1.getDirection() == o2.getDirection()) {
+            return false;
+        }
+        
+        if (!o1.getRic().equals(o2.getRic())) {
+            return false;
+        }
+        
+        if (o1.getQuantity() != o2.getQuantity()) {
+            return false;
+        }
+        
+        if ((o1.getDirection() == Direction.SELL && o1.getPrice() <= o2.getPrice()) || 
+            (o2.getDirection() == Direction.SELL && o2.getPrice() <= o1.getPrice())) {
+            return true;
+        }
+        
+        return false;
+    }
+
 }
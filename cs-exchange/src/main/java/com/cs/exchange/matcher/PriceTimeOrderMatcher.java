@@ -0,0 +1,88 @@
+package com.cs.exchange.matcher;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Order;
+
+/**
+ * Price-time priority order matching implementation
+ * 
+ * Orders match whenever their prices cross, whatever their quantities, so a
+ * new order may be partially filled by several OPEN orders. Executions take
+ * place at the price of the OPEN order.
+ *
+ */
+public class PriceTimeOrderMatcher implements OrderMatcher {
+
+    /**
+     * Match the two specified orders
+     * @param o1 first order
+     * @param o2 second order
+     * @return true if matched, else false
+     */
+    @Override
+    public boolean checkIfOrdersMatch(Order o1, Order o2) {
+        
+        if (o1 == null || o2 == null) {
+            return false;
+        }
+        
+        if (o1.getDirection().equals(o2.getDirection())) {
+            return false;
+        }
+        
+        if (!o1.getRic().equals(o2.getRic())) {
+            return false;
+        }
+        
+        Order sell = o1.getDirection().equals(Direction.SELL) ? o1 : o2;
+        Order buy = (sell == o1) ? o2 : o1;
+        
+        return sell.getPrice().compareTo(buy.getPrice()) <= 0;
+    }
+
+    /**
+     * Match the two specified book orders using their scaled prices
+     * @param o1 first order
+     * @param o2 second order
+     * @return true if matched, else false
+     */
+    @Override
+    public boolean checkIfBookOrdersMatch(BookOrder o1, BookOrder o2) {
+        
+        if (o1 == null || o2 == null) {
+            return false;
+        }
+        
+        if (o1.getDirection() == o2.getDirection()) {
+            return false;
+        }
+        
+        if (!o1.getRic().equals(o2.getRic())) {
+            return false;
+        }
+        
+        BookOrder sell = o1.getDirection() == Direction.SELL ? o1 : o2;
+        BookOrder buy = (sell == o1) ? o2 : o1;
+        
+        return sell.getPrice() <= buy.getPrice();
+    }
+
+    @Override
+    public boolean isPartialFillAllowed() {
+        return true;
+    }
+
+    /**
+     * Executions take place at the price of the OPEN order, so a new order
+     * never pays more (or receives less) than the price it sweeps
+     * @param o new order
+     * @param matched OPEN order
+     * @return the scaled price of the OPEN order
+     */
+    @Override
+    public long getExecutionPrice(BookOrder o, BookOrder matched) {
+        return matched.getPrice();
+    }
+
+}
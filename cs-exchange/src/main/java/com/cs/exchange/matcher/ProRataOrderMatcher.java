@@ -0,0 +1,87 @@
+package com.cs.exchange.matcher;
+
+import java.math.BigInteger;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.book.OrderBookSide;
+import com.cs.exchange.book.PriceLevel;
+
+/**
+ * Price pro-rata order matching implementation
+ *
+ * Orders match whenever their prices cross, as for
+ * {@link PriceTimeOrderMatcher}, and levels are taken best price first, but
+ * a new order that only takes part of a level is shared between all the
+ * OPEN orders at the level in proportion to their open quantity. Each share
+ * is rounded down and what is left over is filled in time priority.
+ * Executions take place at the price of the OPEN order.
+ *
+ */
+public class ProRataOrderMatcher extends PriceTimeOrderMatcher {
+
+    @Override
+    public void match(BookOrder o, OrderBookSide opposite, FillHandler fills) {
+
+        while (o.getQuantity() > 0 && !opposite.isEmpty()) {
+            PriceLevel level = opposite.getLevelAt(0);
+
+            if (!opposite.isCrossedBy(o.getPrice(), level)) {
+                break;
+            }
+
+            if (o.getQuantity() >= level.getTotalQuantity()) {
+                // Takes the whole level, emptying it
+                fillInTimePriority(o, level, o.getQuantity(), fills);
+            } else {
+                allocate(o, level, fills);
+            }
+        }
+    }
+
+    /**
+     * Share a new order that takes less than the whole level between the
+     * OPEN orders at the level
+     */
+    private void allocate(BookOrder o, PriceLevel level, FillHandler fills) {
+        long quantity = o.getQuantity();
+        long total = level.getTotalQuantity();
+        long allocated = 0;
+
+        // No share can be the whole of an order, so none leaves the level
+        for (BookOrder order = level.getFirstOrder(); order != null; order = order.getNextInLevel()) {
+            long share = share(quantity, order.getQuantity(), total);
+
+            if (share > 0) {
+                fills.onFill(o, order, share, getExecutionPrice(o, order));
+                allocated += share;
+            }
+        }
+
+        fillInTimePriority(o, level, quantity - allocated, fills);
+    }
+
+    private void fillInTimePriority(BookOrder o, PriceLevel level, long quantity, FillHandler fills) {
+        BookOrder order = level.getFirstOrder();
+
+        while (order != null && quantity > 0) {
+            // Fully filled orders are unlinked, so move on first
+            BookOrder next = order.getNextInLevel();
+            long fill = Math.min(quantity, order.getQuantity());
+
+            fills.onFill(o, order, fill, getExecutionPrice(o, order));
+            quantity -= fill;
+            order = next;
+        }
+    }
+
+    private static long share(long quantity, long orderQuantity, long total) {
+        try {
+            return Math.multiplyExact(quantity, orderQuantity) / total;
+        } catch (ArithmeticException e) {
+            // Only for very large scaled quantities
+            return BigInteger.valueOf(quantity).multiply(BigInteger.valueOf(orderQuantity))
+                            .divide(BigInteger.valueOf(total)).longValue();
+        }
+    }
+
+}
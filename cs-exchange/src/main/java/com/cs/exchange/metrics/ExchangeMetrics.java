@@ -0,0 +1,110 @@
+package com.cs.exchange.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cs.exchange.util.LatencyHistogram;
+
+/**
+ * Records where an Exchange spends its time and how much work it has done
+ *
+ * Each method takes or returns System.nanoTime() readings so one reading can
+ * end one interval and start the next. Recording only updates preallocated
+ * histograms and counters, so nothing is allocated per order.
+ *
+ * Not thread safe - every method except {@link #rejected()} must be called
+ * while holding the lock of the Exchange being measured.
+ *
+ */
+public class ExchangeMetrics {
+
+    private final LatencyHistogram addNewOrderLatency = new LatencyHistogram();
+    private final LatencyHistogram matchingLatency = new LatencyHistogram();
+    private final LatencyHistogram queryLatency = new LatencyHistogram();
+    private final LatencyHistogram lockWaitLatency = new LatencyHistogram();
+
+    private long orderCount;
+    private long cancelCount;
+    private long amendCount;
+
+    // Orders are rejected while being validated, before the lock is taken
+    private final AtomicLong rejectCount = new AtomicLong();
+
+    /**
+     * @param requested
+     *            - when the lock was asked for
+     * @return the time now, i.e. when the lock was acquired
+     */
+    public long lockAcquired(long requested) {
+        long now = System.nanoTime();
+        lockWaitLatency.record(now - requested);
+        return now;
+    }
+
+    /**
+     * @param started
+     *            - when matching of the order started
+     * @return the time now, i.e. when the order was matched
+     */
+    public long orderMatched(long started) {
+        long now = System.nanoTime();
+        matchingLatency.record(now - started);
+        orderCount++;
+        return now;
+    }
+
+    /**
+     * @param submitted
+     *            - when the order was submitted to the Exchange, before it
+     *            was validated
+     */
+    public void orderAdded(long submitted) {
+        addNewOrderLatency.record(System.nanoTime() - submitted);
+    }
+
+    /**
+     * @param started
+     *            - when the query started, once the lock was acquired
+     */
+    public void queried(long started) {
+        queryLatency.record(System.nanoTime() - started);
+    }
+
+    public void cancelled() {
+        cancelCount++;
+    }
+
+    public void amended() {
+        amendCount++;
+    }
+
+    /**
+     * Count an order that failed validation - may be called by any thread
+     */
+    public void rejected() {
+        rejectCount.incrementAndGet();
+    }
+
+    /**
+     * Copy the metrics recorded so far
+     *
+     * @param executionCount
+     *            - the number of executions made by the engine
+     * @param openOrderCount
+     *            - the number of OPEN orders across all books
+     * @param priceLevelCount
+     *            - the number of price levels across all books
+     * @return the copy, which is unaffected by later recording
+     */
+    public MetricsSnapshot snapshot(long executionCount, int openOrderCount, int priceLevelCount) {
+        return new MetricsSnapshot(orderCount, executionCount, rejectCount.get(), cancelCount, amendCount,
+                        openOrderCount, priceLevelCount, copy(addNewOrderLatency), copy(matchingLatency),
+                        copy(queryLatency), copy(lockWaitLatency));
+    }
+
+    private static LatencyHistogram copy(LatencyHistogram histogram) {
+        LatencyHistogram copy = new LatencyHistogram();
+        copy.add(histogram);
+        return copy;
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.cs.exchange.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the metrics of an Exchange over JMX
+ *
+ * A JMX client typically reads every attribute in turn, so one snapshot is
+ * shared by all the reads made within a short interval rather than taking
+ * the Exchange's lock for each.
+ *
+ */
+public class ExchangeMetricsBean implements ExchangeMetricsMXBean {
+
+    public static final String DOMAIN = "com.cs.exchange";
+
+    private static final long MAX_AGE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Supplier<MetricsSnapshot> metrics;
+
+    private volatile MetricsSnapshot snapshot;
+    private volatile long snapshotTime;
+
+    /**
+     * @param metrics
+     *            - takes a new snapshot of the metrics when called
+     */
+    public ExchangeMetricsBean(Supplier<MetricsSnapshot> metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Register the metrics with the platform MBean server
+     *
+     * @param name
+     *            - the name of the Exchange, unique within the JVM
+     * @param metrics
+     *            - takes a new snapshot of the metrics when called
+     * @return the name the metrics are registered under
+     */
+    public static ObjectName register(String name, Supplier<MetricsSnapshot> metrics) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN, "name", ObjectName.quote(name));
+            server.registerMBean(new ExchangeMetricsBean(metrics), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics for " + name, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to unregister metrics " + objectName, e);
+        }
+    }
+
+    @Override
+    public long getOrderCount() {
+        return snapshot().getOrderCount();
+    }
+
+    @Override
+    public long getExecutionCount() {
+        return snapshot().getExecutionCount();
+    }
+
+    @Override
+    public long getRejectCount() {
+        return snapshot().getRejectCount();
+    }
+
+    @Override
+    public long getCancelCount() {
+        return snapshot().getCancelCount();
+    }
+
+    @Override
+    public long getAmendCount() {
+        return snapshot().getAmendCount();
+    }
+
+    @Override
+    public int getOpenOrderCount() {
+        return snapshot().getOpenOrderCount();
+    }
+
+    @Override
+    public int getPriceLevelCount() {
+        return snapshot().getPriceLevelCount();
+    }
+
+    @Override
+    public LatencySummary getAddNewOrderLatency() {
+        return new LatencySummary(snapshot().getAddNewOrderLatency());
+    }
+
+    @Override
+    public LatencySummary getMatchingLatency() {
+        return new LatencySummary(snapshot().getMatchingLatency());
+    }
+
+    @Override
+    public LatencySummary getQueryLatency() {
+        return new LatencySummary(snapshot().getQueryLatency());
+    }
+
+    @Override
+    public LatencySummary getLockWaitLatency() {
+        return new LatencySummary(snapshot().getLockWaitLatency());
+    }
+
+    private MetricsSnapshot snapshot() {
+        long now = System.nanoTime();
+
+        if (snapshot == null || now - snapshotTime > MAX_AGE_NANOS) {
+            snapshot = metrics.get();
+            snapshotTime = now;
+        }
+
+        return snapshot;
+    }
+
+}
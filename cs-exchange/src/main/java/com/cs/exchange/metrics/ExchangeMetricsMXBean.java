@@ -0,0 +1,33 @@
+package com.cs.exchange.metrics;
+
+/**
+ * Metrics of an Exchange as published over JMX
+ *
+ * @see MetricsSnapshot
+ *
+ */
+public interface ExchangeMetricsMXBean {
+
+    public long getOrderCount();
+
+    public long getExecutionCount();
+
+    public long getRejectCount();
+
+    public long getCancelCount();
+
+    public long getAmendCount();
+
+    public int getOpenOrderCount();
+
+    public int getPriceLevelCount();
+
+    public LatencySummary getAddNewOrderLatency();
+
+    public LatencySummary getMatchingLatency();
+
+    public LatencySummary getQueryLatency();
+
+    public LatencySummary getLockWaitLatency();
+
+}
@@ -0,0 +1,63 @@
+package com.cs.exchange.metrics;
+
+import com.cs.exchange.util.LatencyHistogram;
+
+/**
+ * The percentiles of a latency histogram, in nanoseconds, as published over
+ * JMX
+ *
+ */
+public class LatencySummary {
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public LatencySummary(LatencyHistogram histogram) {
+        this.count = histogram.getTotalCount();
+        this.mean = histogram.getMean();
+        this.p50 = histogram.getValueAtPercentile(50);
+        this.p90 = histogram.getValueAtPercentile(90);
+        this.p99 = histogram.getValueAtPercentile(99);
+        this.p999 = histogram.getValueAtPercentile(99.9);
+        this.max = histogram.getMax();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getP999() {
+        return p999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " p50=" + p50 + " p90=" + p90 + " p99=" + p99 + " p99.9=" + p999 + " max=" + max;
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.cs.exchange.metrics;
+
+import com.cs.exchange.util.LatencyHistogram;
+
+/**
+ * The metrics of an Exchange at a point in time
+ *
+ * Counters run from when the Exchange was created, or for executions from
+ * when its engine was created, including any recovery. Gauges are the values
+ * when the snapshot was taken. Latencies are in nanoseconds.
+ *
+ */
+public class MetricsSnapshot {
+
+    private final long orderCount;
+    private final long executionCount;
+    private final long rejectCount;
+    private final long cancelCount;
+    private final long amendCount;
+    private final int openOrderCount;
+    private final int priceLevelCount;
+
+    private final LatencyHistogram addNewOrderLatency;
+    private final LatencyHistogram matchingLatency;
+    private final LatencyHistogram queryLatency;
+    private final LatencyHistogram lockWaitLatency;
+
+    public MetricsSnapshot(long orderCount, long executionCount, long rejectCount, long cancelCount,
+                    long amendCount, int openOrderCount, int priceLevelCount, LatencyHistogram addNewOrderLatency,
+                    LatencyHistogram matchingLatency, LatencyHistogram queryLatency,
+                    LatencyHistogram lockWaitLatency) {
+        this.orderCount = orderCount;
+        this.executionCount = executionCount;
+        this.rejectCount = rejectCount;
+        this.cancelCount = cancelCount;
+        this.amendCount = amendCount;
+        this.openOrderCount = openOrderCount;
+        this.priceLevelCount = priceLevelCount;
+        this.addNewOrderLatency = addNewOrderLatency;
+        this.matchingLatency = matchingLatency;
+        this.queryLatency = queryLatency;
+        this.lockWaitLatency = lockWaitLatency;
+    }
+
+    /**
+     * @return the number of orders accepted and matched
+     */
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * @return the number of orders that failed validation
+     */
+    public long getRejectCount() {
+        return rejectCount;
+    }
+
+    /**
+     * @return the number of OPEN orders cancelled
+     */
+    public long getCancelCount() {
+        return cancelCount;
+    }
+
+    /**
+     * @return the number of OPEN orders amended
+     */
+    public long getAmendCount() {
+        return amendCount;
+    }
+
+    /**
+     * @return the number of orders resting in the books
+     */
+    public int getOpenOrderCount() {
+        return openOrderCount;
+    }
+
+    /**
+     * @return the depth of the books, i.e. the number of price levels on both
+     *         sides of every book
+     */
+    public int getPriceLevelCount() {
+        return priceLevelCount;
+    }
+
+    /**
+     * @return the latency of addNewOrder, from submission (including
+     *         validation and waiting for the lock) until the order is matched
+     *         and journalled
+     */
+    public LatencyHistogram getAddNewOrderLatency() {
+        return addNewOrderLatency;
+    }
+
+    /**
+     * @return the time taken to match each order, including batches
+     */
+    public LatencyHistogram getMatchingLatency() {
+        return matchingLatency;
+    }
+
+    /**
+     * @return the time taken by the query methods once they hold the lock
+     */
+    public LatencyHistogram getQueryLatency() {
+        return queryLatency;
+    }
+
+    /**
+     * @return the time spent waiting for the lock by every method that takes
+     *         it
+     */
+    public LatencyHistogram getLockWaitLatency() {
+        return lockWaitLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "orders=" + orderCount + " executions=" + executionCount + " rejects=" + rejectCount + " cancels="
+                        + cancelCount + " amends=" + amendCount + " openOrders=" + openOrderCount + " priceLevels="
+                        + priceLevelCount + " addNewOrder(ns)=[" + new LatencySummary(addNewOrderLatency)
+                        + "] matching(ns)=[" + new LatencySummary(matchingLatency) + "] query(ns)=["
+                        + new LatencySummary(queryLatency) + "] lockWait(ns)=["
+                        + new LatencySummary(lockWaitLatency) + "]";
+    }
+
+}
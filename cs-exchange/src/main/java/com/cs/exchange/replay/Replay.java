@@ -0,0 +1,226 @@
+package com.cs.exchange.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+import com.cs.exchange.MatchingEngine;
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.event.OrderEventHandler;
+import com.cs.exchange.history.HistoryStore;
+import com.cs.exchange.journal.FsyncPolicy;
+import com.cs.exchange.journal.Journal;
+import com.cs.exchange.journal.JournalHandler;
+import com.cs.exchange.journal.JournalReader;
+import com.cs.exchange.matcher.OrderMatcher;
+
+/**
+ * One replay of a recorded journal of order flow against a new engine with a
+ * given matcher
+ *
+ * The new orders, cancels and amendments of the journal are streamed from
+ * the file and applied in turn to an engine confined to the replaying thread,
+ * with nothing to wait for between them. Orders keep their recorded ids and
+ * the engine's clock is set to the time each order or amendment was
+ * originally matched at, so the same journal and matcher always give the
+ * same executions, bars and totals, however fast the replay runs and
+ * whatever runs alongside it. The executions recorded by the original
+ * matcher are only counted, for comparison.
+ *
+ * A replay can be run more than once, each time on a new engine.
+ *
+ */
+public class Replay implements Callable<ReplayResult> {
+
+    private final String name;
+    private final OrderMatcher matcher;
+    private final Collection<Instrument> instruments;
+    private final Path recording;
+    private final Path output;
+    private final HistoryStore historyStore;
+
+    public Replay(String name, OrderMatcher matcher, Collection<Instrument> instruments, Path recording) {
+        this(name, matcher, instruments, recording, null, null);
+    }
+
+    /**
+     * @param name
+     *            - the name the results are reported under
+     * @param matcher
+     *            - the matcher to replay the orders with, used only by this
+     *            replay
+     * @param instruments
+     *            - the instruments used by the engine that wrote the journal
+     * @param recording
+     *            - the journal to replay
+     * @param output
+     *            - the journal to record the replay in, including each
+     *            execution, replacing any existing file, or null for none
+     * @param historyStore
+     *            - the store for older orders and executions, used only by
+     *            this replay, or null to keep them all in memory
+     */
+    public Replay(String name, OrderMatcher matcher, Collection<Instrument> instruments, Path recording,
+                    Path output, HistoryStore historyStore) {
+
+        if (name == null || matcher == null || instruments == null || recording == null) {
+            throw new IllegalArgumentException("Name, matcher, instruments and recording must not be NULL");
+        }
+
+        this.name = name;
+        this.matcher = matcher;
+        this.instruments = instruments;
+        this.recording = recording;
+        this.output = output;
+        this.historyStore = historyStore;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public OrderMatcher getMatcher() {
+        return matcher;
+    }
+
+    /**
+     * Replay the whole journal on the calling thread
+     *
+     * @return the outcome of the replay, including the engine it left behind
+     */
+    @Override
+    public ReplayResult call() throws IOException {
+
+        if (output != null) {
+            Files.deleteIfExists(output);
+        }
+
+        try (Journal journal = output == null ? null : new Journal(output, FsyncPolicy.NONE)) {
+            MatchingEngine engine = new MatchingEngine(matcher, instruments, journal, historyStore);
+            Player player = new Player(engine);
+
+            long start = System.nanoTime();
+            new JournalReader(recording).read(player);
+            long elapsed = System.nanoTime() - start;
+
+            return new ReplayResult(name, engine, player.orderCount, player.cancelCount, player.amendCount,
+                            player.executionCount, player.recordedExecutionCount, player.checksum, elapsed);
+        }
+    }
+
+    /**
+     * Applies each journal record to the engine and keeps count of the
+     * executions it makes
+     */
+    private static class Player implements JournalHandler, OrderEventHandler {
+
+        private final MatchingEngine engine;
+        private final ReplayClock clock = new ReplayClock();
+
+        private long orderCount;
+        private long cancelCount;
+        private long amendCount;
+        private long executionCount;
+        private long recordedExecutionCount;
+        private long checksum;
+
+        Player(MatchingEngine engine) {
+            this.engine = engine;
+            engine.setClock(clock);
+            engine.setOrderEventHandler(this);
+        }
+
+        @Override
+        public void onNewOrder(long id, Direction direction, String ric, String user, long quantity, long price,
+                        OrderType type, TimeInForce timeInForce, long time) {
+            Instrument instrument = engine.getInstrument(ric);
+
+            if (instrument == null) {
+                throw new IllegalStateException("Recording orders a stock not given to the replay: " + ric);
+            }
+
+            Order order = new Order(direction, ric, instrument.quantityOf(quantity),
+                            type == OrderType.MARKET ? null : instrument.priceOf(price), user, type, timeInForce);
+
+            BookOrder o = new BookOrder(order, price, quantity);
+            o.setId(id);
+
+            clock.set(time);
+            engine.process(o);
+            engine.endBatch();
+            orderCount++;
+        }
+
+        @Override
+        public void onCancel(long id) {
+            // The order may already have been filled by this matcher
+            if (engine.cancelOrder(id)) {
+                cancelCount++;
+            }
+
+            engine.endBatch();
+        }
+
+        @Override
+        public void onAmend(long id, long quantity, long price, long time) {
+            BookOrder o = engine.getOpenOrder(id);
+
+            if (o != null) {
+                Instrument instrument = engine.getInstrument(o.getRic());
+
+                clock.set(time);
+                engine.amendOrder(id, instrument.quantityOf(quantity),
+                                o.getType() == OrderType.MARKET ? null : instrument.priceOf(price));
+                engine.endBatch();
+                amendCount++;
+            }
+        }
+
+        @Override
+        public void onExecution(String ric, long buyId, long sellId, long quantity, long price) {
+            recordedExecutionCount++;
+        }
+
+        @Override
+        public void onAuctionStart(String ric) {
+            engine.startAuction(ric);
+            engine.endBatch();
+        }
+
+        @Override
+        public void onUncross(String ric, long time) {
+            clock.set(time);
+            engine.uncross(ric);
+            engine.endBatch();
+        }
+
+        @Override
+        public void onOrderAccepted(BookOrder o) {
+        }
+
+        @Override
+        public void onExecution(BookOrder o, BookOrder matched, long quantity, long price) {
+            BookOrder buy = o.getDirection() == Direction.BUY ? o : matched;
+            BookOrder sell = (o == buy) ? matched : o;
+
+            // Order sensitive, so replays only agree if every execution does
+            checksum = 31 * checksum + buy.getId();
+            checksum = 31 * checksum + sell.getId();
+            checksum = 31 * checksum + quantity;
+            checksum = 31 * checksum + price;
+            executionCount++;
+        }
+
+        @Override
+        public void onOrderCancelled(BookOrder o) {
+        }
+    }
+
+}
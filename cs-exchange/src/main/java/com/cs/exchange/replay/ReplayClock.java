@@ -0,0 +1,73 @@
+package com.cs.exchange.replay;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that only moves when it is set, to the recorded time of each
+ * record being replayed
+ *
+ * Only used by the replaying thread.
+ *
+ */
+final class ReplayClock extends Clock {
+
+    private long millis;
+
+    void set(long millis) {
+        this.millis = millis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    /**
+     * Get a view of this clock in another zone, which still moves only when
+     * this clock is set
+     */
+    @Override
+    public Clock withZone(final ZoneId zone) {
+
+        if (zone.equals(ZoneOffset.UTC)) {
+            return this;
+        }
+
+        return new Clock() {
+
+            @Override
+            public long millis() {
+                return millis;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(millis);
+            }
+
+            @Override
+            public ZoneId getZone() {
+                return zone;
+            }
+
+            @Override
+            public Clock withZone(ZoneId other) {
+                return ReplayClock.this.withZone(other);
+            }
+        };
+    }
+
+}
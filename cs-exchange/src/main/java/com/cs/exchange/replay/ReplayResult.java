@@ -0,0 +1,99 @@
+package com.cs.exchange.replay;
+
+import com.cs.exchange.MatchingEngine;
+
+/**
+ * The outcome of a {@link Replay}
+ *
+ * The engine left behind by the replay can be queried for the resulting
+ * books, totals and bars, e.g. to compare matchers. It is no longer used by
+ * the replaying thread, so it can be confined to whichever thread asks.
+ *
+ */
+public class ReplayResult {
+
+    private final String name;
+    private final MatchingEngine engine;
+    private final long orderCount;
+    private final long cancelCount;
+    private final long amendCount;
+    private final long executionCount;
+    private final long recordedExecutionCount;
+    private final long checksum;
+    private final long elapsedNanos;
+
+    public ReplayResult(String name, MatchingEngine engine, long orderCount, long cancelCount, long amendCount,
+                    long executionCount, long recordedExecutionCount, long checksum, long elapsedNanos) {
+        this.name = name;
+        this.engine = engine;
+        this.orderCount = orderCount;
+        this.cancelCount = cancelCount;
+        this.amendCount = amendCount;
+        this.executionCount = executionCount;
+        this.recordedExecutionCount = recordedExecutionCount;
+        this.checksum = checksum;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MatchingEngine getEngine() {
+        return engine;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    /**
+     * Get the number of recorded cancels that found their order still OPEN
+     */
+    public long getCancelCount() {
+        return cancelCount;
+    }
+
+    /**
+     * Get the number of recorded amendments that found their order still
+     * OPEN
+     */
+    public long getAmendCount() {
+        return amendCount;
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * Get the number of executions made by the matcher that wrote the journal
+     */
+    public long getRecordedExecutionCount() {
+        return recordedExecutionCount;
+    }
+
+    /**
+     * Get a checksum of every execution in the order made, which is the same
+     * for replays that made the same executions
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getOrdersPerSecond() {
+        return elapsedNanos == 0 ? 0 : orderCount * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d orders, %d cancels, %d amends, %d executions (%d recorded), "
+                        + "checksum %016x in %.1f s, %.0f orders/s", name, orderCount, cancelCount, amendCount,
+                        executionCount, recordedExecutionCount, checksum, elapsedNanos / 1e9, getOrdersPerSecond());
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.cs.exchange.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.history.HistoryStore;
+import com.cs.exchange.journal.JournalHandler;
+import com.cs.exchange.journal.JournalReader;
+import com.cs.exchange.matcher.OrderMatcher;
+import com.google.common.base.Throwables;
+
+/**
+ * Runs independent replays side by side, e.g. one per matcher, and reports
+ * their throughput
+ *
+ * Each replay has its own engine and reads the recording for itself on a
+ * thread of its own, so replays share nothing and run in parallel across
+ * cores, and each gives the same result as it would alone.
+ *
+ * From the command line the recording is a journal written with the default
+ * instruments, followed by the matchers to replay it with, either class
+ * names in com.cs.exchange.matcher or fully qualified, e.g.
+ *
+ * <pre>
+ * > java com.cs.exchange.replay.ReplayRunner day.journal PriceTimeOrderMatcher ProRataOrderMatcher
+ * </pre>
+ *
+ * Every stock ordered in the recording is traded with the default
+ * instruments.
+ *
+ * Each replay then keeps only recent history in memory, with older orders
+ * and executions in a temporary {@link HistoryStore}, so many replays of a
+ * long recording fit in the heap at once.
+ *
+ */
+public class ReplayRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayRunner.class);
+
+    private static final int HISTORY_ORDERS_IN_MEMORY = 100000;
+    private static final int HISTORY_EXECUTIONS_IN_MEMORY = 10000;
+
+    private final int threadCount;
+
+    public ReplayRunner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threadCount
+     *            - the most replays to run at once
+     */
+    public ReplayRunner(int threadCount) {
+
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive");
+        }
+
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Run every replay, as many at once as there are threads, and wait for
+     * them all to finish
+     *
+     * @param replays
+     *            - the replays to run
+     * @return the result of each replay, in the same order
+     */
+    public List<ReplayResult> run(List<Replay> replays) throws InterruptedException {
+
+        if (replays.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, replays.size()),
+                        new ThreadFactory() {
+
+                            private final AtomicInteger count = new AtomicInteger();
+
+                            @Override
+                            public Thread newThread(Runnable r) {
+                                return new Thread(r, "replay-" + count.incrementAndGet());
+                            }
+                        });
+
+        try {
+            long start = System.nanoTime();
+            List<Future<ReplayResult>> futures = new ArrayList<Future<ReplayResult>>();
+
+            for (Replay replay : replays) {
+                futures.add(executor.submit(replay));
+            }
+
+            List<ReplayResult> results = new ArrayList<ReplayResult>();
+            long orderCount = 0;
+
+            for (Future<ReplayResult> future : futures) {
+                ReplayResult result = future.get();
+                LOGGER.info(result.toString());
+                orderCount += result.getOrderCount();
+                results.add(result);
+            }
+
+            long elapsed = System.nanoTime() - start;
+            LOGGER.info(String.format("Replayed %d orders in %.1f s, %.0f orders/s across %d replays", orderCount,
+                            elapsed / 1e9, orderCount * 1e9 / elapsed, replays.size()));
+
+            return results;
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static OrderMatcher newMatcher(String name) {
+        String className = name.indexOf('.') < 0 ? "com.cs.exchange.matcher." + name : name;
+
+        try {
+            return (OrderMatcher) Class.forName(className).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Unknown matcher: " + name, e);
+        }
+    }
+
+    /**
+     * @return the stocks ordered in the journal, in the order first seen
+     */
+    private static Set<String> readRics(Path recording) {
+        final Set<String> rics = new LinkedHashSet<String>();
+
+        new JournalReader(recording).read(new JournalHandler() {
+
+            @Override
+            public void onNewOrder(long id, Direction direction, String ric, String user, long quantity,
+                            long price, OrderType type, TimeInForce timeInForce, long time) {
+                rics.add(ric);
+            }
+
+            @Override
+            public void onCancel(long id) {
+            }
+
+            @Override
+            public void onAmend(long id, long quantity, long price, long time) {
+            }
+
+            @Override
+            public void onExecution(String ric, long buyId, long sellId, long quantity, long price) {
+            }
+        });
+
+        return rics;
+    }
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Expected a journal file and at least one matcher");
+        }
+
+        Path recording = Paths.get(args[0]);
+        Set<String> rics = readRics(recording);
+        List<Instrument> instruments = Instrument.withDefaults(rics.toArray(new String[rics.size()]));
+        List<Replay> replays = new ArrayList<Replay>();
+        List<HistoryStore> stores = new ArrayList<HistoryStore>();
+
+        try {
+            for (int i = 1; i < args.length; i++) {
+                HistoryStore store = new HistoryStore(Files.createTempDirectory("replay"),
+                                HISTORY_ORDERS_IN_MEMORY, HISTORY_EXECUTIONS_IN_MEMORY);
+                stores.add(store);
+                replays.add(new Replay(args[i], newMatcher(args[i]), instruments,
+                                recording, null, store));
+            }
+
+            new ReplayRunner().run(replays);
+        } finally {
+            for (HistoryStore store : stores) {
+                Path directory = store.getExecutionsFile().getParent();
+                store.close();
+                Files.delete(directory.resolve(HistoryStore.ORDERS_FILE));
+                Files.delete(directory.resolve(HistoryStore.EXECUTIONS_FILE));
+                Files.delete(directory);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.cs.exchange.risk;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.stats.ExecutionStatistics;
+
+/**
+ * Checks new orders against the pre-trade {@link RiskLimits} of their user
+ *
+ * Each check takes constant time: the user's position and the last trade
+ * price are read from the running {@link ExecutionStatistics} of the stock,
+ * which are already kept up to date once per execution, and the limits are
+ * compared as scaled longs. With no limits set a check returns straight
+ * away.
+ *
+ * A MARKET order is valued at the highest price it can reach on the
+ * opposite side of the book, or the last trade price if that is higher, and
+ * is rejected by a notional limit when there is neither.
+ *
+ * Limits can be set by any thread; checks are made by the thread matching
+ * orders.
+ *
+ */
+public class RiskChecker {
+
+    // Map of user against limits, for users whose limits are not the default
+    private final Map<String, RiskLimits> userLimits = new ConcurrentHashMap<String, RiskLimits>();
+
+    private volatile RiskLimits defaultLimits = RiskLimits.NONE;
+
+    /**
+     * Set the limits of a single user
+     *
+     * @param user
+     *            - the user whose orders are limited
+     * @param limits
+     *            - the limits, or null to go back to the default limits
+     */
+    public void setLimits(String user, RiskLimits limits) {
+
+        if (user == null) {
+            throw new IllegalArgumentException("User must not be NULL");
+        }
+
+        if (limits == null) {
+            userLimits.remove(user);
+        } else {
+            userLimits.put(user, limits);
+        }
+    }
+
+    /**
+     * Set the limits of every user without limits of their own
+     *
+     * @param limits
+     *            - the limits, or null for no limits
+     */
+    public void setDefaultLimits(RiskLimits limits) {
+        defaultLimits = limits == null ? RiskLimits.NONE : limits;
+    }
+
+    public RiskLimits getLimits(String user) {
+        RiskLimits limits = userLimits.get(user);
+        return limits == null ? defaultLimits : limits;
+    }
+
+    /**
+     * Check a new order against the limits of its user
+     *
+     * @param o
+     *            - the validated order, with its user id already interned
+     * @param instrument
+     *            - the stock the order is for
+     * @param stats
+     *            - the execution totals of the stock, or null if it has not
+     *            traded
+     * @param oppositePrice
+     *            - the highest price on the opposite side of the book, or 0
+     *            if it is empty
+     * @return null if the order is within the limits, otherwise the first
+     *         limit it breaks
+     */
+    public RejectReason check(BookOrder o, Instrument instrument, ExecutionStatistics stats, long oppositePrice) {
+        return check(o, o.getQuantity(), o.getPrice(), instrument, stats, oppositePrice);
+    }
+
+    /**
+     * Check an amendment of an OPEN order against the limits of its user, as
+     * if the order were new with the amended quantity and price
+     *
+     * @param o
+     *            - the OPEN order, with its user id already interned
+     * @param quantity
+     *            - the amended open quantity
+     * @param price
+     *            - the amended price, ignored for a MARKET order
+     * @param instrument
+     *            - the stock the order is for
+     * @param stats
+     *            - the execution totals of the stock, or null if it has not
+     *            traded
+     * @param oppositePrice
+     *            - the highest price on the opposite side of the book, or 0
+     *            if it is empty
+     * @return null if the amended order is within the limits, otherwise the
+     *         first limit it breaks
+     */
+    public RejectReason check(BookOrder o, long quantity, long price, Instrument instrument,
+                    ExecutionStatistics stats, long oppositePrice) {
+        RiskLimits limits = userLimits.isEmpty() ? defaultLimits : getLimits(o.getUser());
+
+        if (limits == RiskLimits.NONE) {
+            return null;
+        }
+
+        RiskLimits.Scaled scaled = limits.scaledFor(instrument);
+
+        if (quantity > scaled.maxOrderQuantity) {
+            return RejectReason.MAX_ORDER_QUANTITY;
+        }
+
+        long lastPrice = stats == null ? 0 : stats.getLastPrice();
+        boolean market = o.getType() == OrderType.MARKET;
+
+        // A MARKET order has no price of its own. A buy fills no higher than
+        // the highest offer and a sell no higher than the highest bid, but one
+        // resting in an auction fills at the uncross price, so it is valued at
+        // the higher of that and the last trade price.
+        long value = market ? Math.max(oppositePrice, lastPrice) : price;
+
+        if (value == 0 && scaled.maxOrderNotional != Long.MAX_VALUE) {
+            // Nothing to value the order against, so it cannot be shown to
+            // be within the limit
+            return RejectReason.MAX_ORDER_NOTIONAL;
+        }
+
+        // quantity * price > max without the product overflowing
+        if (value > 0 && quantity > scaled.maxOrderNotional / value) {
+            return RejectReason.MAX_ORDER_NOTIONAL;
+        }
+
+        if (!market && lastPrice > 0 && Math.abs(price - lastPrice) > lastPrice * scaled.priceBand) {
+            return RejectReason.PRICE_BAND;
+        }
+
+        if (scaled.maxPosition != Long.MAX_VALUE) {
+            long position = stats == null ? 0 : stats.getNetQuantity(o.getUserId());
+            long filled = o.getDirection() == Direction.BUY ? position + quantity : position - quantity;
+
+            // An order that can only reduce the position is always allowed
+            if (Math.abs(filled) > scaled.maxPosition && Math.abs(filled) > Math.abs(position)) {
+                return RejectReason.MAX_POSITION;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.cs.exchange.risk;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.cs.exchange.domain.Instrument;
+
+/**
+ * Pre-trade limits on the orders of a user
+ *
+ * Any limit may be null, for no limit. Quantities, positions and notionals
+ * are in the units of the stock being traded, and the price band is a
+ * fraction of the last trade price, e.g. 0.05 for orders within 5% of it.
+ *
+ * Immutable, so limits can be replaced while orders are being matched.
+ *
+ */
+public class RiskLimits {
+
+    public static final RiskLimits NONE = new RiskLimits(null, null, null, null);
+
+    private final BigDecimal maxOrderQuantity;
+    private final BigDecimal maxPosition;
+    private final BigDecimal maxOrderNotional;
+    private final BigDecimal priceBand;
+
+    // Limits converted to the scales of the last stock checked, which are
+    // usually the same for every stock
+    private volatile Scaled scaled;
+
+    /**
+     * @param maxOrderQuantity
+     *            - the largest quantity of a single order
+     * @param maxPosition
+     *            - the largest net executed quantity, long or short, an order
+     *            can take the user to in a stock
+     * @param maxOrderNotional
+     *            - the largest quantity multiplied by price of a single order
+     * @param priceBand
+     *            - the largest difference between an order's price and the
+     *            last trade price, as a fraction of the last trade price
+     */
+    public RiskLimits(BigDecimal maxOrderQuantity, BigDecimal maxPosition, BigDecimal maxOrderNotional,
+                    BigDecimal priceBand) {
+
+        if (isNegative(maxOrderQuantity) || isNegative(maxPosition) || isNegative(maxOrderNotional)
+                        || isNegative(priceBand)) {
+            throw new IllegalArgumentException("Risk limits must not be negative");
+        }
+
+        this.maxOrderQuantity = maxOrderQuantity;
+        this.maxPosition = maxPosition;
+        this.maxOrderNotional = maxOrderNotional;
+        this.priceBand = priceBand;
+    }
+
+    public BigDecimal getMaxOrderQuantity() {
+        return maxOrderQuantity;
+    }
+
+    public BigDecimal getMaxPosition() {
+        return maxPosition;
+    }
+
+    public BigDecimal getMaxOrderNotional() {
+        return maxOrderNotional;
+    }
+
+    public BigDecimal getPriceBand() {
+        return priceBand;
+    }
+
+    @Override
+    public String toString() {
+        return "RiskLimits [maxOrderQuantity=" + maxOrderQuantity + ", maxPosition=" + maxPosition
+                        + ", maxOrderNotional=" + maxOrderNotional + ", priceBand=" + priceBand + "]";
+    }
+
+    /**
+     * Get the limits as scaled longs for the given stock, converting them only
+     * when its scales differ from the last stock checked
+     */
+    Scaled scaledFor(Instrument instrument) {
+        Scaled s = scaled;
+
+        if (s == null || s.priceScale != instrument.getPriceScale()
+                        || s.quantityScale != instrument.getQuantityScale()) {
+            s = new Scaled(instrument.getPriceScale(), instrument.getQuantityScale());
+            scaled = s;
+        }
+
+        return s;
+    }
+
+    private static boolean isNegative(BigDecimal limit) {
+        return limit != null && limit.signum() < 0;
+    }
+
+    /**
+     * Limits converted to scaled longs - no limit is Long.MAX_VALUE, or
+     * infinity for the price band
+     */
+    final class Scaled {
+
+        final int priceScale;
+        final int quantityScale;
+        final long maxOrderQuantity;
+        final long maxPosition;
+        final long maxOrderNotional;
+        final double priceBand;
+
+        private Scaled(int priceScale, int quantityScale) {
+            this.priceScale = priceScale;
+            this.quantityScale = quantityScale;
+            this.maxOrderQuantity = toScaled(RiskLimits.this.maxOrderQuantity, quantityScale);
+            this.maxPosition = toScaled(RiskLimits.this.maxPosition, quantityScale);
+            this.maxOrderNotional = toScaled(RiskLimits.this.maxOrderNotional, priceScale + quantityScale);
+            this.priceBand = RiskLimits.this.priceBand == null ? Double.POSITIVE_INFINITY
+                            : RiskLimits.this.priceBand.doubleValue();
+        }
+
+        private long toScaled(BigDecimal limit, int scale) {
+
+            if (limit == null) {
+                return Long.MAX_VALUE;
+            }
+
+            // Anything too large for a long is no limit at all in practice
+            BigDecimal value = limit.setScale(scale, RoundingMode.DOWN);
+            return value.unscaledValue().bitLength() < 64 ? value.unscaledValue().longValue() : Long.MAX_VALUE;
+        }
+    }
+
+}
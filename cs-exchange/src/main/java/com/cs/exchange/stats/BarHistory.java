@@ -0,0 +1,79 @@
+package com.cs.exchange.stats;
+
+/**
+ * Bars of the executions of a single stock at every {@link BarResolution}
+ *
+ * Each execution is folded into the bar of its time at each resolution as it
+ * happens, so the executions themselves never need to be looked at again to
+ * answer a query over a range of time.
+ *
+ * Not thread safe.
+ *
+ */
+public class BarHistory {
+
+    private static final BarResolution[] RESOLUTIONS = BarResolution.values();
+
+    private final BarSeries[] series = new BarSeries[RESOLUTIONS.length];
+
+    public BarHistory() {
+        for (BarResolution resolution : RESOLUTIONS) {
+            series[resolution.ordinal()] = new BarSeries(resolution);
+        }
+    }
+
+    /**
+     * Fold an execution into the bar of its time at every resolution
+     *
+     * @param time
+     *            - the time of the execution, in milliseconds since the epoch
+     * @param quantity
+     *            - the scaled quantity executed
+     * @param price
+     *            - the scaled price of the execution
+     */
+    public void add(long time, long quantity, long price) {
+        for (BarSeries bars : series) {
+            bars.add(time, quantity, price);
+        }
+    }
+
+    public BarSeries getSeries(BarResolution resolution) {
+        return series[resolution.ordinal()];
+    }
+
+    /**
+     * Choose the bars that answer a query over a range of time with the
+     * fewest bars
+     *
+     * That is the coarsest resolution whose bars start and end exactly at the
+     * range and still go back to its start. Failing that the range is rounded
+     * out to the bars of the finest resolution that go back far enough, or of
+     * the coarsest if none do.
+     *
+     * @param from
+     *            - the start of the range, in milliseconds since the epoch
+     * @param to
+     *            - the end of the range (exclusive)
+     * @return the bars to aggregate
+     */
+    public BarSeries getSeriesFor(long from, long to) {
+
+        for (int i = series.length - 1; i >= 0; i--) {
+            BarResolution resolution = RESOLUTIONS[i];
+
+            if (resolution.startOf(from) == from && resolution.startOf(to) == to && series[i].covers(from)) {
+                return series[i];
+            }
+        }
+
+        for (BarSeries bars : series) {
+            if (bars.covers(from)) {
+                return bars;
+            }
+        }
+
+        return series[series.length - 1];
+    }
+
+}
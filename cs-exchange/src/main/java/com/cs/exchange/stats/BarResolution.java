@@ -0,0 +1,48 @@
+package com.cs.exchange.stats;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Enumerated type representing the length of time covered by each bar of
+ * executions, along with the number of bars kept in memory by default
+ */
+public enum BarResolution {
+    SECOND("1 second", TimeUnit.SECONDS.toMillis(1), 3600),
+    MINUTE("1 minute", TimeUnit.MINUTES.toMillis(1), 1440),
+    HOUR("1 hour", TimeUnit.HOURS.toMillis(1), 744),
+    DAY("1 day", TimeUnit.DAYS.toMillis(1), 3660);
+
+    private final String displayValue;
+    private final long millis;
+    private final int defaultRetention;
+
+    private BarResolution(String displayValue, long millis, int defaultRetention) {
+        this.displayValue = displayValue;
+        this.millis = millis;
+        this.defaultRetention = defaultRetention;
+    }
+
+    public String getDisplayValue() {
+        return displayValue;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public int getDefaultRetention() {
+        return defaultRetention;
+    }
+
+    /**
+     * Get the start of the bar a time falls in
+     *
+     * @param time
+     *            - milliseconds since the epoch
+     * @return the start of the bar, in milliseconds since the epoch
+     */
+    public long startOf(long time) {
+        return time - Math.floorMod(time, millis);
+    }
+
+}
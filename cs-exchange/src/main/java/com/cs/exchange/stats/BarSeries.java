@@ -0,0 +1,259 @@
+package com.cs.exchange.stats;
+
+import java.util.Arrays;
+
+/**
+ * Open, high, low and close prices, volume and notional of the executions of
+ * a single stock, bucketed by time at one {@link BarResolution}
+ *
+ * Bars are held as columns of primitives rather than as objects, so folding
+ * in an execution never allocates once the columns have grown to size. Only
+ * buckets with executions have a bar, and bars are kept in time order in a
+ * ring of the number of bars to retain; the oldest bar makes way for the
+ * newest. Finding the bars of a range of time is a binary search on their
+ * start times, so a query costs the number of bars in the range, however
+ * many executions they hold.
+ *
+ * Executions are expected in time order. One older than the newest bar, e.g.
+ * because the clock has been set back, is folded into the newest bar.
+ *
+ * Prices and quantities are scaled longs (see
+ * {@link com.cs.exchange.domain.Instrument}), and notionals their product.
+ *
+ * Not thread safe.
+ *
+ */
+public class BarSeries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final BarResolution resolution;
+    private final int maxSize;
+
+    private long[] starts;
+    private long[] opens;
+    private long[] highs;
+    private long[] lows;
+    private long[] closes;
+    private long[] volumes;
+    private long[] notionals;
+    private long[] counts;
+
+    // Slot of the oldest bar
+    private int head;
+    private int size;
+
+    // Whether any bar has made way for a newer one
+    private boolean truncated;
+
+    public BarSeries(BarResolution resolution) {
+        this(resolution, resolution.getDefaultRetention());
+    }
+
+    /**
+     * @param resolution
+     *            - the time covered by each bar
+     * @param maxSize
+     *            - the number of bars to retain
+     */
+    public BarSeries(BarResolution resolution, int maxSize) {
+
+        if (resolution == null || maxSize < 1) {
+            throw new IllegalArgumentException("Resolution must not be NULL and at least one bar must be retained");
+        }
+
+        this.resolution = resolution;
+        this.maxSize = maxSize;
+
+        int capacity = Math.min(INITIAL_CAPACITY, maxSize);
+        this.starts = new long[capacity];
+        this.opens = new long[capacity];
+        this.highs = new long[capacity];
+        this.lows = new long[capacity];
+        this.closes = new long[capacity];
+        this.volumes = new long[capacity];
+        this.notionals = new long[capacity];
+        this.counts = new long[capacity];
+    }
+
+    public BarResolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Fold an execution into the bar of its time
+     *
+     * @param time
+     *            - the time of the execution, in milliseconds since the epoch
+     * @param quantity
+     *            - the scaled quantity executed
+     * @param price
+     *            - the scaled price of the execution
+     */
+    public void add(long time, long quantity, long price) {
+        long start = resolution.startOf(time);
+
+        if (size > 0) {
+            int last = slot(size - 1);
+
+            if (start <= starts[last]) {
+                highs[last] = Math.max(highs[last], price);
+                lows[last] = Math.min(lows[last], price);
+                closes[last] = price;
+                volumes[last] += quantity;
+                notionals[last] += quantity * price;
+                counts[last]++;
+                return;
+            }
+        }
+
+        int slot = append();
+
+        starts[slot] = start;
+        opens[slot] = price;
+        highs[slot] = price;
+        lows[slot] = price;
+        closes[slot] = price;
+        volumes[slot] = quantity;
+        notionals[slot] = quantity * price;
+        counts[slot] = 1;
+    }
+
+    /**
+     * Restore a previously saved bar, newer than every bar held
+     */
+    public void restore(long start, long open, long high, long low, long close, long volume, long notional,
+                    long count) {
+
+        if (size > 0 && start <= starts[slot(size - 1)]) {
+            throw new IllegalArgumentException("Bars must be restored in time order");
+        }
+
+        int slot = append();
+
+        starts[slot] = start;
+        opens[slot] = open;
+        highs[slot] = high;
+        lows[slot] = low;
+        closes[slot] = close;
+        volumes[slot] = volume;
+        notionals[slot] = notional;
+        counts[slot] = count;
+    }
+
+    /**
+     * Get the number of bars held
+     *
+     * @return the number of bars with executions still retained
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the index of the first bar starting at or after a time
+     *
+     * @param time
+     *            - milliseconds since the epoch
+     * @return the index of the bar, or size() if every bar starts before the
+     *         time
+     */
+    public int indexOf(long time) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (starts[slot(mid)] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Check whether every bar from a time onwards is still retained
+     *
+     * @param time
+     *            - milliseconds since the epoch
+     * @return false if bars after the time have made way for newer ones
+     */
+    public boolean covers(long time) {
+        return !truncated || starts[head] <= resolution.startOf(time);
+    }
+
+    /**
+     * @param index
+     *            - 0 for the oldest bar held, size() - 1 for the newest
+     * @return the start of the bar, in milliseconds since the epoch
+     */
+    public long getStart(int index) {
+        return starts[slot(index)];
+    }
+
+    public long getOpen(int index) {
+        return opens[slot(index)];
+    }
+
+    public long getHigh(int index) {
+        return highs[slot(index)];
+    }
+
+    public long getLow(int index) {
+        return lows[slot(index)];
+    }
+
+    public long getClose(int index) {
+        return closes[slot(index)];
+    }
+
+    public long getVolume(int index) {
+        return volumes[slot(index)];
+    }
+
+    public long getNotional(int index) {
+        return notionals[slot(index)];
+    }
+
+    public long getCount(int index) {
+        return counts[slot(index)];
+    }
+
+    private int append() {
+
+        if (size == maxSize) {
+            head = (head + 1) % starts.length;
+            size--;
+            truncated = true;
+        } else if (size == starts.length) {
+            // Nothing has left the ring yet, so the oldest is still in slot 0
+            grow((int) Math.min((long) size * 2, maxSize));
+        }
+
+        return (head + size++) % starts.length;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+
+        return (head + index) % starts.length;
+    }
+
+    private void grow(int capacity) {
+        starts = Arrays.copyOf(starts, capacity);
+        opens = Arrays.copyOf(opens, capacity);
+        highs = Arrays.copyOf(highs, capacity);
+        lows = Arrays.copyOf(lows, capacity);
+        closes = Arrays.copyOf(closes, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+        notionals = Arrays.copyOf(notionals, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+    }
+
+}
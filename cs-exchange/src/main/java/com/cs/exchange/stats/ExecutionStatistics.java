@@ -0,0 +1,206 @@
+package com.cs.exchange.stats;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cs.exchange.util.SymbolTable;
+
+/**
+ * Running totals of all executions of a single stock
+ *
+ * Totals are updated once per execution so that the average execution price
+ * and each user's executed quantity can be read in constant time, however
+ * many executions there have been. All amounts are scaled longs (see
+ * {@link com.cs.exchange.domain.Instrument}).
+ *
+ * Users are interned to ids by a {@link SymbolTable}, which may be shared by
+ * the statistics of every stock, and net quantities are held in an array
+ * indexed by id, so adding an execution never allocates once the array has
+ * grown to the number of users.
+ *
+ * Not thread safe.
+ *
+ */
+public class ExecutionStatistics {
+
+    private long executionCount;
+    private long totalQuantity;
+    private long totalNotional;
+    private long lastPrice;
+
+    private final SymbolTable users;
+
+    // Net quantity of each user by user id, and whether the user has traded
+    private long[] netQuantities = new long[16];
+    private boolean[] traded = new boolean[16];
+
+    public ExecutionStatistics() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * @param users
+     *            - the ids of users, which may be shared with other statistics
+     */
+    public ExecutionStatistics(SymbolTable users) {
+        this.users = users;
+    }
+
+    /**
+     * Restore previously saved totals
+     *
+     * @param users
+     *            - the ids of users, which may be shared with other statistics
+     * @param netQuantities
+     *            - map of user against scaled net quantity
+     */
+    public ExecutionStatistics(SymbolTable users, long executionCount, long totalQuantity, long totalNotional,
+                    long lastPrice, Map<String, Long> netQuantities) {
+        this(users);
+        this.executionCount = executionCount;
+        this.totalQuantity = totalQuantity;
+        this.totalNotional = totalNotional;
+        this.lastPrice = lastPrice;
+
+        for (Map.Entry<String, Long> entry : netQuantities.entrySet()) {
+            int user = users.intern(entry.getKey());
+            ensureCapacity(user);
+            this.netQuantities[user] = entry.getValue();
+            this.traded[user] = true;
+        }
+    }
+
+    /**
+     * Add an execution to the totals
+     *
+     * @param buyer
+     *            - the user of the buy order
+     * @param seller
+     *            - the user of the sell order
+     * @param quantity
+     *            - the scaled quantity executed
+     * @param price
+     *            - the scaled price of the execution
+     * @throws ArithmeticException
+     *             if the total notional no longer fits in a long
+     */
+    public void addExecution(String buyer, String seller, long quantity, long price) {
+        addExecution(users.intern(buyer), users.intern(seller), quantity, price);
+    }
+
+    /**
+     * Add an execution to the totals
+     *
+     * @param buyer
+     *            - the id of the user of the buy order
+     * @param seller
+     *            - the id of the user of the sell order
+     * @param quantity
+     *            - the scaled quantity executed
+     * @param price
+     *            - the scaled price of the execution
+     * @throws ArithmeticException
+     *             if the total notional no longer fits in a long, which the
+     *             engine rules out by rejecting such orders before matching
+     */
+    public void addExecution(int buyer, int seller, long quantity, long price) {
+        // Nothing is updated unless both totals fit
+        long notional = Math.addExact(totalNotional, Math.multiplyExact(quantity, price));
+        totalQuantity = Math.addExact(totalQuantity, quantity);
+        totalNotional = notional;
+        executionCount++;
+        lastPrice = price;
+
+        ensureCapacity(Math.max(buyer, seller));
+        netQuantities[buyer] += quantity;
+        traded[buyer] = true;
+
+        // A user trading with themself only has the buy side counted
+        if (seller != buyer) {
+            netQuantities[seller] -= quantity;
+            traded[seller] = true;
+        }
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * Get the total quantity of all executions
+     *
+     * @return the total scaled quantity
+     */
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    /**
+     * Get the total notional (quantity multiplied by price) of all executions
+     *
+     * @return the total notional, scaled by both the quantity and price scales
+     */
+    public long getTotalNotional() {
+        return totalNotional;
+    }
+
+    /**
+     * Get the price of the most recent execution
+     *
+     * @return the scaled price or 0 if there have been no executions
+     */
+    public long getLastPrice() {
+        return lastPrice;
+    }
+
+    /**
+     * Get the net executed quantity of the given user, buys less sells
+     *
+     * @param user
+     *            - the user required
+     * @return the scaled net quantity
+     */
+    public long getNetQuantity(String user) {
+        int id = users.getId(user);
+        return id < 0 || id >= netQuantities.length ? 0 : netQuantities[id];
+    }
+
+    /**
+     * Get the net executed quantity of the given user, buys less sells
+     *
+     * @param user
+     *            - the id of the user required
+     * @return the scaled net quantity
+     */
+    public long getNetQuantity(int user) {
+        return user < 0 || user >= netQuantities.length ? 0 : netQuantities[user];
+    }
+
+    /**
+     * Get the net executed quantity of every user with executions
+     *
+     * @return a map of user against scaled net quantity
+     */
+    public Map<String, Long> getNetQuantities() {
+        Map<String, Long> qtyByUser = new HashMap<String, Long>();
+
+        for (int id = 0; id < traded.length; id++) {
+            if (traded[id]) {
+                qtyByUser.put(users.getSymbol(id), netQuantities[id]);
+            }
+        }
+
+        return Collections.unmodifiableMap(qtyByUser);
+    }
+
+    private void ensureCapacity(int user) {
+        if (user >= netQuantities.length) {
+            int capacity = Math.max(netQuantities.length * 2, user + 1);
+            netQuantities = Arrays.copyOf(netQuantities, capacity);
+            traded = Arrays.copyOf(traded, capacity);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.cs.exchange.util;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List that can only be appended to, stored in fixed size chunks which are
+ * never moved or copied once allocated
+ *
+ * Because existing elements never move, a {@link #view()} of the first n
+ * elements stays valid and unchanged however many elements are appended
+ * afterwards. A view can therefore be handed to other threads (after safe
+ * publication) as an immutable list without copying anything.
+ *
+ * The oldest elements can be evicted a whole chunk at a time to bound the
+ * memory held. Views taken before an eviction still hold the evicted chunk.
+ *
+ * Elements are indexed by int, as the views are Lists, so at most
+ * {@link #MAX_SIZE} elements can ever be appended, evicted or not.
+ *
+ * Appending and evicting are not thread safe.
+ *
+ */
+public class AppendOnlyList<E> {
+
+    private static final int CHUNK_BITS = 12;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    public static final int MAX_SIZE = Integer.MAX_VALUE;
+
+    private Object[][] chunks = new Object[16][];
+    private int size;
+
+    // Index of the first element not yet evicted
+    private int firstIndex;
+
+    /**
+     * @throws IllegalStateException
+     *             if {@link #MAX_SIZE} elements have already been appended
+     */
+    public void add(E e) {
+
+        if (isFull()) {
+            throw new IllegalStateException("List already holds the maximum of " + MAX_SIZE + " elements");
+        }
+
+        int chunk = size >>> CHUNK_BITS;
+
+        if (chunk == chunks.length) {
+            // Only the directory of chunks is copied, never the chunks
+            chunks = Arrays.copyOf(chunks, chunks.length * 2);
+        }
+
+        if (chunks[chunk] == null) {
+            chunks[chunk] = new Object[CHUNK_SIZE];
+        }
+
+        chunks[chunk][size & CHUNK_MASK] = e;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < firstIndex || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", First: " + firstIndex + ", Size: " + size);
+        }
+
+        return (E) chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether nothing more can be appended
+     *
+     * @return true if {@link #MAX_SIZE} elements have been appended
+     */
+    public boolean isFull() {
+        return size == MAX_SIZE;
+    }
+
+    /**
+     * Get the index of the oldest element still held
+     *
+     * @return the number of elements evicted so far
+     */
+    public int getFirstIndex() {
+        return firstIndex;
+    }
+
+    /**
+     * Evict the oldest chunk of elements, which must be full
+     *
+     * @return the evicted elements, in the order they were appended
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> evictFirstChunk() {
+
+        if (size - firstIndex < CHUNK_SIZE) {
+            throw new IllegalStateException("Only a full chunk can be evicted");
+        }
+
+        int chunk = firstIndex >>> CHUNK_BITS;
+        Object[] evicted = chunks[chunk];
+
+        // Existing views share the directory, so they get to keep the chunk
+        chunks = chunks.clone();
+        chunks[chunk] = null;
+        firstIndex += CHUNK_SIZE;
+
+        return (List<E>) Arrays.asList(evicted);
+    }
+
+    /**
+     * Get an immutable view of the elements appended so far
+     *
+     * Elements already evicted cannot be read through the view, although
+     * they still count towards its size.
+     *
+     * @return a list of the current elements which is unaffected by later
+     *         appends
+     */
+    public List<E> view() {
+        return new View<E>(chunks, firstIndex, size);
+    }
+
+    private static class View<E> extends AbstractList<E> implements RandomAccess {
+
+        private final Object[][] chunks;
+        private final int firstIndex;
+        private final int size;
+
+        View(Object[][] chunks, int firstIndex, int size) {
+            this.chunks = chunks;
+            this.firstIndex = firstIndex;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E get(int index) {
+            if (index < firstIndex || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", First: " + firstIndex + ", Size: "
+                                + size);
+            }
+
+            return (E) chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+    }
+
+}
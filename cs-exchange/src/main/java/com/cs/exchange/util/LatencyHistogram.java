@@ -0,0 +1,152 @@
+package com.cs.exchange.util;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative values (typically latencies in nanoseconds) with
+ * a fixed relative precision, in the style of HdrHistogram
+ *
+ * Values below 2^PRECISION_BITS are counted exactly. Larger values fall into
+ * buckets whose width doubles with each power of two, so every value is held
+ * to within 1/64th (about 1.6%) of its true value. The buckets are allocated
+ * once up front and recording never allocates.
+ *
+ * Not thread safe.
+ *
+ */
+public class LatencyHistogram {
+
+    private static final int PRECISION_BITS = 7;
+    private static final int EXACT_COUNT = 1 << PRECISION_BITS;
+    private static final int HALF_COUNT = EXACT_COUNT >> 1;
+
+    private final long[] counts = new long[EXACT_COUNT + (64 - PRECISION_BITS) * HALF_COUNT];
+
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private long sum;
+
+    /**
+     * Count a single value
+     *
+     * @param value
+     *            - the value, negative values are counted as 0
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+
+        counts[indexOf(v)]++;
+        totalCount++;
+        sum += v;
+
+        if (v < min) {
+            min = v;
+        }
+
+        if (v > max) {
+            max = v;
+        }
+    }
+
+    /**
+     * Add every value counted by another histogram
+     *
+     * @param other
+     *            - the histogram to be added
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        sum = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the smallest value counted or 0 if there are none
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the mean of the values counted or 0 if there are none
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * Get the value at or below which the given percentage of values fall
+     *
+     * @param percentile
+     *            - the percentage, from 0 to 100
+     * @return the highest value in the bucket holding the percentile, capped
+     *         at the maximum value counted, or 0 if there are none
+     */
+    public long getValueAtPercentile(double percentile) {
+
+        if (totalCount == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * totalCount));
+        long cumulative = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+
+            if (cumulative >= target) {
+                return Math.min(max, highestValueAt(i));
+            }
+        }
+
+        return max;
+    }
+
+    private static int indexOf(long value) {
+
+        if (value < EXACT_COUNT) {
+            return (int) value;
+        }
+
+        // Keep the top PRECISION_BITS bits of the value
+        int shift = (64 - Long.numberOfLeadingZeros(value)) - PRECISION_BITS;
+        return EXACT_COUNT + (shift - 1) * HALF_COUNT + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    private static long highestValueAt(int index) {
+
+        if (index < EXACT_COUNT) {
+            return index;
+        }
+
+        int shift = (index - EXACT_COUNT) / HALF_COUNT + 1;
+        long mantissa = (index - EXACT_COUNT) % HALF_COUNT + HALF_COUNT;
+        long highest = ((mantissa + 1) << shift) - 1;
+
+        // The top bucket would overflow
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.cs.exchange.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, lock-free ring buffer for many producer threads and a single
+ * consumer thread
+ *
+ * Producers claim a slot by advancing the tail sequence and then publish the
+ * element into it. The consumer takes elements strictly in claim order, so
+ * the claim sequence of an element is also its position in the overall
+ * sequence of elements passed through the buffer.
+ *
+ */
+public class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+
+    // Next sequence to be claimed by a producer
+    private final AtomicLong tail = new AtomicLong();
+
+    // Next sequence to be taken by the consumer
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity
+     *            - the maximum number of elements held, rounded up to a power
+     *            of two
+     */
+    public RingBuffer(int capacity) {
+
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Ring buffer capacity is invalid: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        this.slots = new AtomicReferenceArray<E>(size);
+        this.mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Publish an element if there is room for it
+     *
+     * @param e
+     *            - the element, which must not be null
+     * @return the sequence of the element or -1 if the buffer is full
+     */
+    public long offer(E e) {
+
+        if (e == null) {
+            throw new IllegalArgumentException("Unable to publish a NULL element");
+        }
+
+        while (true) {
+            long sequence = tail.get();
+
+            if (sequence - head.get() > mask) {
+                return -1;
+            }
+
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                slots.lazySet((int) sequence & mask, e);
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * Publish an element, waiting for room if the buffer is full
+     *
+     * @param e
+     *            - the element, which must not be null
+     * @return the sequence of the element
+     */
+    public long put(E e) {
+        long sequence;
+
+        while ((sequence = offer(e)) < 0) {
+            // Back pressure...wait for the consumer to catch up
+            LockSupport.parkNanos(1000L);
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Take the next element - only to be called by the single consumer thread
+     *
+     * @return the next element or null if none has been published
+     */
+    public E poll() {
+        long sequence = head.get();
+        int index = (int) sequence & mask;
+        E e = slots.get(index);
+
+        if (e != null) {
+            // Free the slot before letting producers see it as free
+            slots.lazySet(index, null);
+            head.lazySet(sequence + 1);
+        }
+
+        return e;
+    }
+
+    /**
+     * Get the sequence the next claimed element will have
+     *
+     * @return the number of elements claimed so far
+     */
+    public long getClaimedCount() {
+        return tail.get();
+    }
+
+    /**
+     * Get the sequence of the next element the consumer will take
+     *
+     * @return the number of elements consumed so far
+     */
+    public long getConsumedCount() {
+        return head.get();
+    }
+
+    public boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.cs.exchange.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns strings, such as user names, to small int ids
+ *
+ * Ids are given out from 0 in the order strings are first seen, so they can
+ * index arrays directly rather than every lookup going through a map.
+ *
+ * Not thread safe.
+ *
+ */
+public class SymbolTable {
+
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    private String[] symbols = new String[16];
+    private int size;
+
+    /**
+     * Get the id of a string, giving it the next id if it has not been seen
+     * before
+     *
+     * @param symbol
+     *            - the string, which must not be null
+     * @return the id of the string
+     */
+    public int intern(String symbol) {
+        Integer id = ids.get(symbol);
+
+        if (id != null) {
+            return id;
+        }
+
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+        }
+
+        symbols[size] = symbol;
+        ids.put(symbol, size);
+
+        return size++;
+    }
+
+    /**
+     * Get the id of a string without interning it
+     *
+     * @param symbol
+     *            - the string required
+     * @return the id of the string or -1 if it has not been seen
+     */
+    public int getId(String symbol) {
+        Integer id = ids.get(symbol);
+        return id == null ? -1 : id;
+    }
+
+    public String getSymbol(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Symbol id: " + id + ", Size: " + size);
+        }
+
+        return symbols[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+}
@@ -1,32 +1,59 @@
 package com.cs.exchange;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import com.cs.exchange.data.OrderGenerator;
+import com.cs.exchange.domain.AuctionPrice;
+import com.cs.exchange.domain.Bar;
 import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
 import com.cs.exchange.domain.OpenInterest;
 import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderRejectedException;
+import com.cs.exchange.domain.OrderResult;
+import com.cs.exchange.domain.OrderStatus;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.domain.TimeInForce;
 import com.cs.exchange.matcher.OrderMatcherImpl;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+import com.cs.exchange.metrics.ExchangeMetricsBean;
+import com.cs.exchange.metrics.MetricsSnapshot;
+import com.cs.exchange.stats.BarResolution;
 
 
 public class ExchangeTest {
 
     private static final String RIC = "VOD.L";
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC, "BARC.L");
     private static final String USER_1 = "User 1";
     private static final String USER_2 = "User 2";
     private Exchange ex;
     
     @Before
     public void setUp() throws Exception {
-        ex = new Exchange(new OrderMatcherImpl());
+        ex = new Exchange(new OrderMatcherImpl(), INSTRUMENTS);
     }
 
     @Test
@@ -202,5 +229,519 @@ public class ExchangeTest {
         assertTrue(new BigDecimal("-500").compareTo(execQuantity) == 0);
                         
     }
-    
+
+    @Test
+    public void testMatchPrefersSamePriceThenBestPrice() {
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("1000"), new BigDecimal("99"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("1000"), new BigDecimal("100"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("1000"), new BigDecimal("98"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, "BARC.L", new BigDecimal("1000"), new BigDecimal("90"), USER_1));
+
+        // Same price takes precedence over a better price
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("1000"), new BigDecimal("100"), USER_2));
+        List<OpenInterest> interest = ex.getOpenInterest(RIC, Direction.SELL);
+        assertTrue(interest.size() == 2);
+        assertTrue(interest.get(0).getPrice().compareTo(new BigDecimal("99")) == 0);
+        assertTrue(interest.get(1).getPrice().compareTo(new BigDecimal("98")) == 0);
+
+        // Otherwise the lowest sell price is matched
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("1000"), new BigDecimal("101"), USER_2));
+        interest = ex.getOpenInterest(RIC, Direction.SELL);
+        assertTrue(interest.size() == 1);
+        assertTrue(interest.get(0).getPrice().compareTo(new BigDecimal("99")) == 0);
+
+        // Orders for other stocks are never matched
+        interest = ex.getOpenInterest("BARC.L", Direction.SELL);
+        assertTrue(interest.size() == 1);
+        assertTrue(interest.get(0).getPrice().compareTo(new BigDecimal("90")) == 0);
+    }
+
+    @Test
+    public void testInstrumentScaleAndTickSize() {
+        // Prices to 2 decimal places in steps of 0.05, quantities to 1 decimal place
+        ex = new Exchange(new OrderMatcherImpl(), Arrays.asList(new Instrument(RIC, 2, 1, 5)));
+
+        try {
+            ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("100.01"), USER_1));
+            assertTrue("Order price should not be on tick", false);
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        try {
+            ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100.25"), new BigDecimal("100.05"), USER_1));
+            assertTrue("Order quantity should have too many decimal places", false);
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        assertTrue(ex.getAllOrders().isEmpty());
+
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100.5"), new BigDecimal("100.05"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100.50"), new BigDecimal("100.0"), USER_2));
+
+        assertEquals(new BigDecimal("100.0000"), ex.getAverageExecutionPrice(RIC));
+        assertEquals(new BigDecimal("100.5"), ex.getExecutedQuantityForUser(RIC, USER_1));
+        assertEquals(new BigDecimal("-100.5"), ex.getExecutedQuantityForUser(RIC, USER_2));
+    }
+
+    @Test
+    public void testUnregisteredStockIsRejected() {
+        ex = new Exchange(new OrderMatcherImpl());
+
+        try {
+            ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("10.5"), new BigDecimal("100.123456"), USER_1));
+            fail("Order for a stock that is not traded should be rejected");
+        } catch (OrderRejectedException e) {
+            assertEquals(RejectReason.INVALID_ORDER, e.getReason());
+        }
+
+        assertNull(ex.getInstrument(RIC));
+        assertTrue(ex.getAllOrders().isEmpty());
+    }
+
+    @Test
+    public void testOpenInterestBestLevels() {
+        for (int price = 95; price <= 99; price++) {
+            ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal(price), USER_1));
+            ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("300"), new BigDecimal(price + 10), USER_2));
+        }
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("99"), USER_2));
+
+        List<OpenInterest> interest = ex.getOpenInterest(RIC, Direction.BUY, 2);
+        assertEquals(2, interest.size());
+        assertEquals(new OpenInterest(new BigDecimal("150"), new BigDecimal("99.0000")), interest.get(0));
+        assertEquals(new OpenInterest(new BigDecimal("100"), new BigDecimal("98.0000")), interest.get(1));
+
+        // Best sell levels are the lowest prices, still listed in descending order
+        interest = ex.getOpenInterest(RIC, Direction.SELL, 2);
+        assertEquals(2, interest.size());
+        assertEquals(new OpenInterest(new BigDecimal("300"), new BigDecimal("106.0000")), interest.get(0));
+        assertEquals(new OpenInterest(new BigDecimal("300"), new BigDecimal("105.0000")), interest.get(1));
+
+        assertEquals(5, ex.getOpenInterest(RIC, Direction.SELL, 10).size());
+        assertEquals(0, ex.getOpenInterest(RIC, Direction.SELL, 0).size());
+        assertEquals(ex.getOpenInterest(RIC, Direction.BUY).subList(0, 3), ex.getOpenInterest(RIC, Direction.BUY, 3));
+
+        // Unchanged sides are not rebuilt
+        List<OpenInterest> sells = ex.getOpenInterest(RIC, Direction.SELL);
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("90"), USER_1));
+        assertSame(sells, ex.getOpenInterest(RIC, Direction.SELL));
+        assertEquals(6, ex.getOpenInterest(RIC, Direction.BUY).size());
+    }
+
+    @Test
+    public void testPartialFillsSweepPriceLevels() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("300"), new BigDecimal("101"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("200"), new BigDecimal("100"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_2));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("500"), new BigDecimal("103"), USER_2));
+
+        // Fills 200 and 100 at 100 then 250 of the 300 at 101
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("550"), new BigDecimal("101"), "User 3"));
+
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+        List<OpenInterest> interest = ex.getOpenInterest(RIC, Direction.SELL);
+        assertEquals(2, interest.size());
+        assertTrue(interest.get(0).getQuantity().compareTo(new BigDecimal("500")) == 0);
+        assertTrue(interest.get(1).getQuantity().compareTo(new BigDecimal("50")) == 0);
+        assertTrue(interest.get(1).getPrice().compareTo(new BigDecimal("101")) == 0);
+
+        assertTrue(new BigDecimal("100.4545").compareTo(ex.getAverageExecutionPrice(RIC)) == 0);
+        assertTrue(new BigDecimal("550").compareTo(ex.getExecutedQuantityForUser(RIC, "User 3")) == 0);
+        assertTrue(new BigDecimal("-450").compareTo(ex.getExecutedQuantityForUser(RIC, USER_1)) == 0);
+        assertTrue(new BigDecimal("-100").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+
+        // Remainder of a partially filled new order stays OPEN
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("102"), "User 3"));
+
+        interest = ex.getOpenInterest(RIC, Direction.BUY);
+        assertEquals(1, interest.size());
+        assertTrue(interest.get(0).getQuantity().compareTo(new BigDecimal("50")) == 0);
+        assertTrue(interest.get(0).getPrice().compareTo(new BigDecimal("102")) == 0);
+        assertEquals(1, ex.getOpenInterest(RIC, Direction.SELL).size());
+    }
+
+    @Test
+    public void testCancelOrder() {
+        long first = ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_1));
+        long second = ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_1));
+        assertEquals(0, first);
+        assertEquals(1, second);
+
+        // Identical orders are told apart by id
+        assertTrue(ex.cancelOrder(second));
+        assertFalse(ex.cancelOrder(second));
+        assertFalse(ex.cancelOrder(99));
+
+        List<OpenInterest> interest = ex.getOpenInterest(RIC, Direction.SELL);
+        assertEquals(1, interest.size());
+        assertTrue(interest.get(0).getQuantity().compareTo(new BigDecimal("100")) == 0);
+
+        // A filled order can no longer be cancelled
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_2));
+        assertFalse(ex.cancelOrder(first));
+        assertTrue(ex.getOpenInterest(RIC, Direction.SELL).isEmpty());
+        assertEquals(3, ex.getAllOrders().size());
+    }
+
+    @Test
+    public void testAmendOrder() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        long first = ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("300"), new BigDecimal("101"), USER_1));
+        long second = ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("300"), new BigDecimal("101"), USER_2));
+
+        // Reducing quantity keeps time priority
+        assertTrue(ex.amendOrder(first, new BigDecimal("200"), new BigDecimal("101")));
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("101"), "User 3"));
+        assertTrue(new BigDecimal("-100").compareTo(ex.getExecutedQuantityForUser(RIC, USER_1)) == 0);
+        assertTrue(new BigDecimal("400").compareTo(ex.getOpenInterest(RIC, Direction.SELL).get(0).getQuantity()) == 0);
+
+        // Increasing quantity loses it
+        assertTrue(ex.amendOrder(first, new BigDecimal("150"), new BigDecimal("101")));
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("101"), "User 3"));
+        assertTrue(new BigDecimal("-100").compareTo(ex.getExecutedQuantityForUser(RIC, USER_1)) == 0);
+        assertTrue(new BigDecimal("-100").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+
+        // Changing price to cross the book matches straight away
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("99"), "User 3"));
+        assertTrue(ex.amendOrder(second, new BigDecimal("200"), new BigDecimal("99")));
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+        assertTrue(new BigDecimal("-150").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+
+        List<OpenInterest> interest = ex.getOpenInterest(RIC, Direction.SELL);
+        assertEquals(2, interest.size());
+        assertTrue(interest.get(0).getQuantity().compareTo(new BigDecimal("150")) == 0);
+        assertTrue(interest.get(1).getQuantity().compareTo(new BigDecimal("150")) == 0);
+        assertTrue(interest.get(1).getPrice().compareTo(new BigDecimal("99")) == 0);
+
+        assertFalse(ex.amendOrder(99, new BigDecimal("100"), new BigDecimal("101")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testAmendOrderOffTick() {
+        long id = ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_1));
+        ex.amendOrder(id, new BigDecimal("100"), new BigDecimal("101.00001"));
+    }
+
+    @Test
+    public void testAddOrdersInBatch() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        List<Order> batch = Arrays.asList(
+                        new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_1),
+                        new Order(Direction.SELL, RIC, new BigDecimal("-100"), new BigDecimal("101"), USER_1),
+                        null,
+                        new Order(Direction.BUY, RIC, new BigDecimal("40"), new BigDecimal("101"), USER_2),
+                        new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_2));
+
+        List<OrderResult> results = ex.addNewOrders(batch);
+        assertEquals(5, results.size());
+
+        assertEquals(OrderStatus.RESTED, results.get(0).getStatus());
+        assertEquals(0, results.get(0).getId());
+        assertEquals(OrderStatus.REJECTED, results.get(1).getStatus());
+        assertEquals("Order quantity is invalid", results.get(1).getReason());
+        assertEquals(-1, results.get(1).getId());
+        assertEquals(OrderStatus.REJECTED, results.get(2).getStatus());
+        assertEquals(OrderStatus.FILLED, results.get(3).getStatus());
+        assertEquals(OrderStatus.PARTIALLY_FILLED, results.get(4).getStatus());
+        assertEquals(2, results.get(4).getId());
+
+        // Rejected orders are never submitted
+        assertArrayEquals(new Order[] { batch.get(0), batch.get(3), batch.get(4) }, ex.getAllOrders().toArray());
+        assertTrue(new BigDecimal("40").compareTo(ex.getOpenInterest(RIC, Direction.BUY).get(0).getQuantity()) == 0);
+    }
+
+    @Test
+    public void testMarketOrderSweepsOppositeSide() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("200"), new BigDecimal("105"), USER_1));
+
+        // Fills 100 at 100 and 200 at 105, the other 100 is cancelled
+        List<OrderResult> results = ex.addNewOrders(Arrays.asList(
+                        new Order(Direction.BUY, RIC, new BigDecimal("400"), null, USER_2, OrderType.MARKET,
+                                        TimeInForce.IOC)));
+
+        assertEquals(OrderStatus.PARTIALLY_FILLED, results.get(0).getStatus());
+        assertTrue(new BigDecimal("400").compareTo(results.get(0).getOrder().getQuantity()) == 0);
+        assertTrue(new BigDecimal("300").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+        assertTrue(new BigDecimal("103.3333").compareTo(ex.getAverageExecutionPrice(RIC)) == 0);
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+        assertTrue(ex.getOpenInterest(RIC, Direction.SELL).isEmpty());
+
+        // Executes at the price of the OPEN order whatever the matcher
+        ex = new Exchange(new OrderMatcherImpl(), INSTRUMENTS);
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("99"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), null, USER_2, OrderType.MARKET,
+                        TimeInForce.FOK));
+        assertTrue(new BigDecimal("99").compareTo(ex.getAverageExecutionPrice(RIC)) == 0);
+    }
+
+    @Test
+    public void testImmediateOrCancel() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_1));
+
+        List<OrderResult> results = ex.addNewOrders(Arrays.asList(
+                        new Order(Direction.BUY, RIC, new BigDecimal("300"), new BigDecimal("101"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.IOC),
+                        new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.IOC)));
+
+        assertEquals(OrderStatus.PARTIALLY_FILLED, results.get(0).getStatus());
+        assertEquals(OrderStatus.CANCELLED, results.get(1).getStatus());
+        assertTrue(new BigDecimal("100").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+
+        // Remainder never OPEN, so can't be cancelled
+        assertFalse(ex.cancelOrder(results.get(0).getId()));
+        assertEquals(3, ex.getAllOrders().size());
+    }
+
+    @Test
+    public void testFillOrKill() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("103"), USER_1));
+
+        // 300 is OPEN but only 200 at prices that cross
+        List<OrderResult> results = ex.addNewOrders(Arrays.asList(
+                        new Order(Direction.BUY, RIC, new BigDecimal("300"), new BigDecimal("102"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.FOK),
+                        new Order(Direction.BUY, RIC, new BigDecimal("150"), new BigDecimal("102"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.FOK)));
+
+        assertEquals(OrderStatus.CANCELLED, results.get(0).getStatus());
+        assertEquals(OrderStatus.FILLED, results.get(1).getStatus());
+        assertTrue(new BigDecimal("150").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+        assertEquals(2, ex.getOpenInterest(RIC, Direction.SELL).size());
+
+        // Without partial fills an order only ever fills in full
+        ex = new Exchange(new OrderMatcherImpl(), INSTRUMENTS);
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_1));
+
+        results = ex.addNewOrders(Arrays.asList(
+                        new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("100"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.FOK),
+                        new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.FOK)));
+
+        assertEquals(OrderStatus.CANCELLED, results.get(0).getStatus());
+        assertEquals(OrderStatus.FILLED, results.get(1).getStatus());
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+    }
+
+    @Test
+    public void testMarketOrderValidation() {
+        List<OrderResult> results = ex.addNewOrders(Arrays.asList(
+                        new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_1,
+                                        OrderType.MARKET, TimeInForce.IOC),
+                        new Order(Direction.BUY, RIC, new BigDecimal("100"), null, USER_1, OrderType.MARKET,
+                                        TimeInForce.GTC),
+                        new Order(Direction.BUY, RIC, new BigDecimal("100"), null, USER_1, OrderType.LIMIT,
+                                        TimeInForce.IOC)));
+
+        assertEquals("Market order must not have a price", results.get(0).getReason());
+        assertEquals("Market order must be IOC or FOK", results.get(1).getReason());
+        assertEquals("Order price is invalid", results.get(2).getReason());
+    }
+
+    @Test
+    public void testAuctionUncrossesAtSinglePrice() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_1));
+        ex.startAuction(RIC);
+
+        // Collected rather than matched, so the book crosses...apart from fill
+        // or kill, which can't wait for the uncross
+        List<OrderResult> results = ex.addNewOrders(Arrays.asList(
+                        new Order(Direction.BUY, RIC, new BigDecimal("300"), new BigDecimal("102"), USER_2),
+                        new Order(Direction.SELL, RIC, new BigDecimal("150"), new BigDecimal("101"), USER_1,
+                                        OrderType.LIMIT, TimeInForce.IOC),
+                        new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("103"), USER_1),
+                        new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("99"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.IOC),
+                        new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("105"), USER_2,
+                                        OrderType.LIMIT, TimeInForce.FOK)));
+
+        assertEquals(OrderStatus.RESTED, results.get(0).getStatus());
+        assertEquals(OrderStatus.RESTED, results.get(1).getStatus());
+        assertEquals(OrderStatus.CANCELLED, results.get(4).getStatus());
+        assertNull(ex.getAverageExecutionPrice(RIC));
+        assertEquals(2, ex.getOpenInterest(RIC, Direction.BUY).size());
+
+        // 250 executes at 101 or 102, and the surplus of bids favours 102
+        AuctionPrice indicative = ex.getAuctionPrice(RIC);
+        assertTrue(new BigDecimal("102").compareTo(indicative.getPrice()) == 0);
+        assertTrue(new BigDecimal("250").compareTo(indicative.getVolume()) == 0);
+        assertTrue(new BigDecimal("50").compareTo(indicative.getSurplus()) == 0);
+        assertEquals(Direction.BUY, indicative.getSurplusSide());
+
+        AuctionPrice uncrossed = ex.uncross(RIC);
+        assertEquals(indicative.toString(), uncrossed.toString());
+        assertTrue(new BigDecimal("102").compareTo(ex.getAverageExecutionPrice(RIC)) == 0);
+        assertTrue(new BigDecimal("250").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+        assertNull(ex.getAuctionPrice(RIC));
+
+        // The IOC left over is cancelled, the GTC remainder carries on
+        List<OpenInterest> bids = ex.getOpenInterest(RIC, Direction.BUY);
+        assertEquals(1, bids.size());
+        assertTrue(new BigDecimal("50").compareTo(bids.get(0).getQuantity()) == 0);
+        assertTrue(new BigDecimal("102").compareTo(bids.get(0).getPrice()) == 0);
+        assertEquals(1, ex.getOpenInterest(RIC, Direction.SELL).size());
+
+        // Back to continuous matching
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("50"), new BigDecimal("102"), USER_1));
+        assertTrue(new BigDecimal("300").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+    }
+
+    @Test
+    public void testAmendDuringAuctionKeepsTypeAndTimeInForce() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        ex.startAuction(RIC);
+
+        long ioc = ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("99"), USER_2,
+                        OrderType.LIMIT, TimeInForce.IOC));
+        long market = ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("30"), null, USER_2,
+                        OrderType.MARKET, TimeInForce.IOC));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("50"), new BigDecimal("101"), USER_1));
+
+        assertTrue(ex.amendOrder(ioc, new BigDecimal("80"), new BigDecimal("100")));
+
+        // A MARKET order has no price to amend
+        try {
+            ex.amendOrder(market, new BigDecimal("40"), new BigDecimal("100"));
+            fail("Expected the amendment to be rejected");
+        } catch (OrderRejectedException e) {
+            assertEquals(RejectReason.INVALID_ORDER, e.getReason());
+        }
+
+        assertTrue(ex.amendOrder(market, new BigDecimal("40"), null));
+
+        // Only the MARKET order crosses, then the amended IOC is cancelled
+        AuctionPrice uncrossed = ex.uncross(RIC);
+        assertTrue(new BigDecimal("40").compareTo(uncrossed.getVolume()) == 0);
+        assertTrue(new BigDecimal("101").compareTo(uncrossed.getPrice()) == 0);
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+        assertFalse(ex.cancelOrder(ioc));
+        assertTrue(new BigDecimal("10").compareTo(ex.getOpenInterest(RIC, Direction.SELL).get(0).getQuantity()) == 0);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUncrossWithoutAuction() {
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("100"), USER_1));
+        ex.uncross(RIC);
+    }
+
+    @Test
+    public void testNotionalOverflowRejectedBeforeMatching() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("1"), new BigDecimal("100"), USER_1));
+
+        // Quantity * price can't be held as a scaled long
+        OrderResult result = ex.submitOrder(new Order(Direction.BUY, RIC, new BigDecimal("10000000000001"),
+                        new BigDecimal("100"), USER_2));
+        assertEquals(RejectReason.INVALID_ORDER, result.getRejectReason());
+        assertNull(ex.getAverageExecutionPrice(RIC));
+
+        // Each order fits, but the last would take the total notional too far
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("1000000000000"), new BigDecimal("101"),
+                        USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("9000000000000"), new BigDecimal("100"),
+                        USER_1));
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("9000000000001"), new BigDecimal("100"),
+                        USER_2));
+        result = ex.submitOrder(new Order(Direction.BUY, RIC, new BigDecimal("1000000000000"),
+                        new BigDecimal("101"), USER_2));
+        assertEquals(RejectReason.INVALID_ORDER, result.getRejectReason());
+        assertTrue(new BigDecimal("9000000000001").compareTo(ex.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+    }
+
+    @Test
+    public void testBars() {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        long minute = BarResolution.MINUTE.getMillis();
+
+        tradeAt(30 * minute + 100, "100", "101");
+        tradeAt(30 * minute + 200, "300", "103");
+        tradeAt(33 * minute, "100", "99");
+        tradeAt(36 * minute, "100", "100");
+
+        List<Bar> bars = ex.getBars(RIC, BarResolution.MINUTE, 30 * minute, 34 * minute);
+        assertEquals(2, bars.size());
+        assertEquals(30 * minute, bars.get(0).getStart());
+        assertEquals(31 * minute, bars.get(0).getEnd());
+        assertEquals(new BigDecimal("101.0000"), bars.get(0).getOpen());
+        assertEquals(new BigDecimal("103.0000"), bars.get(0).getClose());
+        assertEquals(new BigDecimal("400"), bars.get(0).getVolume());
+        assertEquals(new BigDecimal("102.5000"), bars.get(0).getAveragePrice());
+        assertEquals(new BigDecimal("99.0000"), bars.get(1).getHigh());
+
+        // VWAP of the last five minutes
+        Bar lastFive = ex.getBar(RIC, 32 * minute, 37 * minute);
+        assertEquals(new BigDecimal("99.5000"), lastFive.getAveragePrice());
+        assertEquals(new BigDecimal("100.0000"), lastFive.getHigh());
+        assertEquals(new BigDecimal("99.0000"), lastFive.getLow());
+        assertEquals(2, lastFive.getExecutionCount());
+
+        assertNull(ex.getBar(RIC, 40 * minute, 50 * minute));
+        assertTrue(ex.getBars("BT.L", BarResolution.SECOND, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+
+        long id = ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("101"), USER_1));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("102"), USER_1));
+        ex.addNewOrders(Arrays.asList(
+                        new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("102"), USER_2),
+                        new Order(Direction.BUY, RIC, new BigDecimal("-50"), new BigDecimal("102"), USER_2)));
+        ex.amendOrder(id, new BigDecimal("20"), new BigDecimal("101"));
+        ex.cancelOrder(id);
+        ex.getOpenInterest(RIC, Direction.SELL);
+        ex.getAverageExecutionPrice(RIC);
+
+        MetricsSnapshot metrics = ex.getMetrics();
+        assertEquals(3, metrics.getOrderCount());
+        assertEquals(1, metrics.getExecutionCount());
+        assertEquals(1, metrics.getRejectCount());
+        assertEquals(1, metrics.getAmendCount());
+        assertEquals(1, metrics.getCancelCount());
+        assertEquals(1, metrics.getOpenOrderCount());
+        assertEquals(1, metrics.getPriceLevelCount());
+        assertEquals(2, metrics.getAddNewOrderLatency().getTotalCount());
+        assertEquals(3, metrics.getMatchingLatency().getTotalCount());
+        assertEquals(2, metrics.getQueryLatency().getTotalCount());
+        assertEquals(7, metrics.getLockWaitLatency().getTotalCount());
+
+        ObjectName name = ex.registerMetrics("ExchangeTest");
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(3L, server.getAttribute(name, "OrderCount"));
+            assertEquals(2L, ((CompositeData) server.getAttribute(name, "AddNewOrderLatency")).get("count"));
+        } finally {
+            ExchangeMetricsBean.unregister(name);
+        }
+    }
+
+    private void tradeAt(long time, String quantity, String price) {
+        ex.setClock(Clock.fixed(Instant.ofEpochMilli(time), ZoneOffset.UTC));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal(quantity), new BigDecimal(price), USER_1));
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal(quantity), new BigDecimal(price), USER_2));
+    }
+
 }
@@ -0,0 +1,196 @@
+package com.cs.exchange;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.data.OrderGenerator;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+
+
+public class SequencedExchangeTest {
+
+    private static final String RIC = "VOD.L";
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC);
+    private static final String USER_1 = "User 1";
+    private static final String USER_2 = "User 2";
+    private SequencedExchange ex;
+    
+    @Before
+    public void setUp() throws Exception {
+        ex = new SequencedExchange(new OrderMatcherImpl(), INSTRUMENTS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ex.close();
+    }
+
+    @Test
+    public void testMatchesLikeExchange() throws Exception {
+        assertNull(ex.getAverageExecutionPrice(RIC));
+        assertTrue(ex.getOpenInterest(RIC, Direction.BUY).isEmpty());
+        
+        for (Order order : OrderGenerator.getOrders()) {
+            ex.addNewOrder(order);
+        }
+        
+        ex.awaitProcessed();
+        
+        ExchangeSnapshot snapshot = ex.getSnapshot();
+        assertEquals(7, snapshot.getSequence());
+        assertArrayEquals(OrderGenerator.getOrders().toArray(), snapshot.getAllOrders().toArray());
+
+        List<OpenInterest> interest = snapshot.getOpenInterest(RIC, Direction.BUY);
+        assertTrue(interest.size() == 1);
+        assertTrue(interest.get(0).getQuantity().compareTo(new BigDecimal("1000")) == 0);
+        assertTrue(interest.get(0).getPrice().compareTo(new BigDecimal("99")) == 0);
+        assertTrue(snapshot.getOpenInterest(RIC, Direction.SELL).isEmpty());
+        
+        assertTrue(new BigDecimal("99.8800").compareTo(snapshot.getAverageExecutionPrice(RIC)) == 0);
+        assertTrue(new BigDecimal("500").compareTo(snapshot.getExecutedQuantityForUser(RIC, USER_1)) == 0);
+        assertTrue(new BigDecimal("-500").compareTo(snapshot.getExecutedQuantityForUser(RIC, USER_2)) == 0);
+        assertTrue(BigDecimal.ZERO.compareTo(snapshot.getExecutedQuantityForUser(RIC, "User 3")) == 0);
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterOrders() throws Exception {
+        List<Order> testOrders = OrderGenerator.getOrders();
+        
+        ex.addNewOrder(testOrders.get(0));
+        ex.awaitProcessed();
+        ExchangeSnapshot before = ex.getSnapshot();
+        
+        ex.addNewOrder(testOrders.get(1));
+        ex.awaitProcessed();
+        
+        assertEquals(1, before.getAllOrders().size());
+        assertEquals(1, before.getOpenInterest(RIC, Direction.SELL).size());
+        assertNull(before.getAverageExecutionPrice(RIC));
+        
+        assertEquals(2, ex.getAllOrders().size());
+        assertTrue(ex.getOpenInterest(RIC, Direction.SELL).isEmpty());
+        assertTrue(new BigDecimal("100.2").compareTo(ex.getAverageExecutionPrice(RIC)) == 0);
+    }
+
+    @Test
+    public void testNothingAcceptedOnceClosed() throws Exception {
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("10"), new BigDecimal("100"), USER_1));
+        ex.close();
+
+        // Everything submitted before the close is still matched
+        assertEquals(1, ex.getAllOrders().size());
+
+        try {
+            ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("10"), new BigDecimal("100"), USER_2));
+            fail("Expected the order to be refused");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+
+        try {
+            ex.getAuctionPrice(RIC);
+            fail("Expected the query to be refused");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testCloseWaitsThroughInterrupt() throws Exception {
+        for (Order order : OrderGenerator.getOrders()) {
+            ex.addNewOrder(order);
+        }
+
+        Thread.currentThread().interrupt();
+        ex.close();
+
+        // Still drained before returning, with the interrupt kept
+        assertTrue(Thread.interrupted());
+        assertEquals(OrderGenerator.getOrders().size(), ex.getAllOrders().size());
+    }
+
+    @Test
+    public void testConcurrentSubmitters() throws Exception {
+        final int threadCount = 4;
+        final int pairsPerThread = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+        
+        for (int t = 0; t < threadCount; t++) {
+            final String user = "User " + t;
+            
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    
+                    // Each user trades with themself so every pair matches
+                    for (int i = 0; i < pairsPerThread; i++) {
+                        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("10"), new BigDecimal("100"), user));
+                        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("10"), new BigDecimal("100"), user));
+                    }
+                }
+            });
+            
+            threads.add(thread);
+            thread.start();
+        }
+        
+        start.countDown();
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        ex.awaitProcessed();
+        
+        assertEquals(threadCount * pairsPerThread * 2, ex.getAllOrders().size());
+        assertTrue(new BigDecimal("100").compareTo(ex.getAverageExecutionPrice(RIC)) == 0);
+
+        // However the submitters raced, orders were matched in id order
+        List<BookOrder> submitted = ex.getSnapshot().getSubmittedOrders();
+
+        for (int i = 0; i < submitted.size(); i++) {
+            assertEquals(i, submitted.get(i).getId());
+        }
+        
+        // Sells and buys may interleave across users but every order is either
+        // matched or resting, so open quantity on each side must balance
+        BigDecimal openBuys = BigDecimal.ZERO;
+        BigDecimal openSells = BigDecimal.ZERO;
+        
+        for (OpenInterest interest : ex.getOpenInterest(RIC, Direction.BUY)) {
+            openBuys = openBuys.add(interest.getQuantity());
+        }
+        
+        for (OpenInterest interest : ex.getOpenInterest(RIC, Direction.SELL)) {
+            openSells = openSells.add(interest.getQuantity());
+        }
+        
+        assertTrue(openBuys.compareTo(openSells) == 0);
+        assertTrue(openBuys.signum() == 0);
+    }
+
+}
@@ -0,0 +1,172 @@
+package com.cs.exchange;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.data.OrderGenerator;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+
+
+public class ShardedExchangeTest {
+
+    private static final String USER_1 = "User 1";
+    private static final String USER_2 = "User 2";
+    private static final String[] RICS = { "VOD.L", "BARC.L", "HSBA.L", "BP.L", "RDSA.L", "GSK.L", "AZN.L", "ULVR.L" };
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RICS);
+    private ShardedExchange ex;
+    
+    @Before
+    public void setUp() throws Exception {
+        ex = new ShardedExchange(new OrderMatcherImpl(), INSTRUMENTS, 4);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ex.close();
+    }
+
+    @Test
+    public void testRicsAreSpreadAcrossShards() {
+        boolean[] used = new boolean[ex.getShardCount()];
+        
+        for (String ric : RICS) {
+            assertEquals(ex.getShard(ric), ex.getShard(new String(ric)));
+            used[ex.getShard(ric)] = true;
+        }
+        
+        int shardsUsed = 0;
+        
+        for (boolean u : used) {
+            shardsUsed += u ? 1 : 0;
+        }
+        
+        assertTrue(shardsUsed > 1);
+    }
+
+    @Test
+    public void testConcurrentSubmittersKeepSubmissionOrder() throws Exception {
+        final int threadCount = 4;
+        final int ordersPerThread = 5000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for (int t = 0; t < threadCount; t++) {
+            final String user = "User " + t;
+
+            Thread thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    // Buys only, each at a higher price than the user's last
+                    for (int i = 0; i < ordersPerThread; i++) {
+                        ex.addNewOrder(new Order(Direction.BUY, RICS[i % RICS.length], BigDecimal.ONE,
+                                        new BigDecimal(i + 1), user));
+                    }
+                }
+            });
+
+            threads.add(thread);
+            thread.start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        ex.awaitProcessed();
+
+        List<Order> orders = ex.getAllOrders();
+        Map<String, BigDecimal> lastPrices = new HashMap<String, BigDecimal>();
+        assertEquals(threadCount * ordersPerThread, orders.size());
+
+        for (Order o : orders) {
+            BigDecimal last = lastPrices.put(o.getUser(), o.getPrice());
+            assertTrue(last == null || last.compareTo(o.getPrice()) < 0);
+        }
+    }
+
+    @Test
+    public void testOrdersMatchPerStockAcrossShards() throws Exception {
+        List<Order> submitted = new ArrayList<Order>();
+        
+        // Same flow on every stock, interleaved
+        for (Order template : OrderGenerator.getOrders()) {
+            for (String ric : RICS) {
+                Order order = new Order(template.getDirection(), ric, template.getQuantity(), template.getPrice(), 
+                                        template.getUser());
+                ex.addNewOrder(order);
+                submitted.add(order);
+            }
+        }
+        
+        ex.awaitProcessed();
+        
+        // Submission order is restored across shards
+        assertArrayEquals(submitted.toArray(), ex.getAllOrders().toArray());
+        
+        for (String ric : RICS) {
+            assertTrue(new BigDecimal("99.8800").compareTo(ex.getAverageExecutionPrice(ric)) == 0);
+            assertTrue(new BigDecimal("500").compareTo(ex.getExecutedQuantityForUser(ric, USER_1)) == 0);
+            assertTrue(new BigDecimal("-500").compareTo(ex.getExecutedQuantityForUser(ric, USER_2)) == 0);
+            assertEquals(1, ex.getOpenInterest(ric, Direction.BUY).size());
+            assertTrue(ex.getOpenInterest(ric, Direction.SELL).isEmpty());
+        }
+        
+        Map<String, BigDecimal> qtyByRic = ex.getExecutedQuantitiesForUser(USER_1);
+        assertEquals(RICS.length, qtyByRic.size());
+        
+        for (String ric : RICS) {
+            assertTrue(new BigDecimal("500").compareTo(qtyByRic.get(ric)) == 0);
+        }
+        
+        assertNull(ex.getAverageExecutionPrice("UNKNOWN.L"));
+    }
+
+    @Test
+    public void testCancelAndAmendAreRoutedById() throws Exception {
+        long[] ids = new long[RICS.length];
+
+        for (int i = 0; i < RICS.length; i++) {
+            ids[i] = ex.addNewOrder(new Order(Direction.BUY, RICS[i], new BigDecimal("100"), new BigDecimal("99"), 
+                                    USER_1));
+        }
+
+        ex.cancelOrder(ids[0]);
+        ex.amendOrder(ids[1], new BigDecimal("50"), new BigDecimal("98"));
+        ex.awaitProcessed();
+
+        assertTrue(ex.getOpenInterest(RICS[0], Direction.BUY).isEmpty());
+
+        List<OpenInterest> interest = ex.getOpenInterest(RICS[1], Direction.BUY);
+        assertEquals(1, interest.size());
+        assertTrue(new BigDecimal("50").compareTo(interest.get(0).getQuantity()) == 0);
+        assertTrue(new BigDecimal("98").compareTo(interest.get(0).getPrice()) == 0);
+        assertEquals(1, ex.getOpenInterest(RICS[2], Direction.BUY).size());
+    }
+
+}
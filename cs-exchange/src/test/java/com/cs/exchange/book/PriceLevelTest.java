@@ -0,0 +1,60 @@
+package com.cs.exchange.book;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+
+
+public class PriceLevelTest {
+
+    private static final String RIC = "VOD.L";
+
+    @Test
+    public void testPartiallyFilledOrdersKeepPriorityWithinQuantity() {
+        OrderBook book = new OrderBook(new Instrument(RIC));
+        BookOrder first = add(book, 0, 100);
+        BookOrder second = add(book, 1, 60);
+        BookOrder third = add(book, 2, 100);
+        BookOrder fourth = add(book, 3, 60);
+
+        book.fill(first, 40);
+        assertEquals(Arrays.asList(0L, 1L, 3L), idsWithQuantity(book, 60));
+
+        book.fill(third, 40);
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), idsWithQuantity(book, 60));
+
+        book.reduce(fourth, 20);
+        book.reduce(second, 20);
+        assertEquals(Arrays.asList(1L, 3L), idsWithQuantity(book, 40));
+    }
+
+    private static BookOrder add(OrderBook book, long id, long quantity) {
+        BookOrder o = new BookOrder(new Order(Direction.BUY, RIC, new BigDecimal(quantity), new BigDecimal("100"),
+                        "User 1"), 1000000, quantity);
+        o.setId(id);
+        book.add(o);
+
+        return o;
+    }
+
+    private static List<Long> idsWithQuantity(OrderBook book, long quantity) {
+        List<Long> ids = new ArrayList<Long>();
+
+        for (BookOrder o = book.getSide(Direction.BUY).getLevel(1000000).getFirstOrder(quantity); o != null; o = o
+                        .getNextWithSameQuantity()) {
+            ids.add(o.getId());
+        }
+
+        return ids;
+    }
+
+}
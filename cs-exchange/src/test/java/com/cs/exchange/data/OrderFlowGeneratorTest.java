@@ -0,0 +1,90 @@
+package com.cs.exchange.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Order;
+
+
+public class OrderFlowGeneratorTest {
+
+    private OrderFlowSettings settings;
+    
+    @Before
+    public void setUp() throws Exception {
+        settings = new OrderFlowSettings();
+        settings.setRicCount(3);
+        settings.setUserCount(5);
+        settings.setMidPrice(new BigDecimal("10"));
+        settings.setTickSize(new BigDecimal("0.05"));
+        settings.setPriceStdDevTicks(100);
+        settings.setBuyRatio(0.8);
+        settings.setCancelRatio(0.25);
+        settings.setCancelWindow(16);
+    }
+
+    @Test
+    public void testFlowFollowsSettings() {
+        OrderFlowGenerator generator = new OrderFlowGenerator(settings, 100000);
+        Set<String> rics = new HashSet<String>();
+        Set<String> users = new HashSet<String>();
+        int cancels = 0;
+        int buys = 0;
+        int newOrders = 0;
+        
+        while (generator.hasNext()) {
+            OrderFlowGenerator.Event event = generator.next();
+            
+            if (event.getType() == OrderFlowGenerator.EventType.CANCEL) {
+                assertTrue(event.getCancelAge() < Math.min(newOrders, 16));
+                cancels++;
+                continue;
+            }
+            
+            Order order = event.getOrder();
+            newOrders++;
+            buys += order.getDirection() == Direction.BUY ? 1 : 0;
+            rics.add(order.getRic());
+            users.add(order.getUser());
+            
+            // Prices are whole ticks and never reach zero
+            assertTrue(order.getPrice().signum() > 0);
+            assertEquals(0, order.getPrice().remainder(new BigDecimal("0.05")).signum());
+            assertEquals(0, order.getQuantity().remainder(new BigDecimal("100")).signum());
+            assertTrue(order.getQuantity().compareTo(new BigDecimal("1000")) <= 0);
+        }
+        
+        assertEquals(100000, generator.getGeneratedCount());
+        assertEquals(3, rics.size());
+        assertEquals(5, users.size());
+        assertEquals(0.25, cancels / 100000.0, 0.01);
+        assertEquals(0.8, (double) buys / newOrders, 0.01);
+    }
+
+    @Test
+    public void testSameSeedGivesSameFlow() {
+        OrderFlowGenerator first = new OrderFlowGenerator(settings, 1000);
+        OrderFlowGenerator second = new OrderFlowGenerator(settings, 1000);
+        
+        while (first.hasNext()) {
+            OrderFlowGenerator.Event a = first.next();
+            OrderFlowGenerator.Event b = second.next();
+            
+            assertEquals(a.getType(), b.getType());
+            assertEquals(a.getOrder(), b.getOrder());
+            assertEquals(a.getCancelAge(), b.getCancelAge());
+        }
+        
+        assertFalse(second.hasNext());
+    }
+
+}
@@ -27,6 +27,8 @@ public class OrderTest {
         assertTrue(qty.compareTo(o.getQuantity()) == 0);
         assertTrue(price.compareTo(price) == 0);
         assertEquals("User 1", o.getUser());
+        assertEquals(OrderType.LIMIT, o.getType());
+        assertEquals(TimeInForce.GTC, o.getTimeInForce());
     }
 
 }
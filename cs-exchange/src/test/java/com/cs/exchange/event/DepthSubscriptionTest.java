@@ -0,0 +1,158 @@
+package com.cs.exchange.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.SequencedExchange;
+import com.cs.exchange.domain.AuctionPrice;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+
+
+public class DepthSubscriptionTest {
+
+    private static final String RIC = "VOD.L";
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC, "BT.L");
+
+    @Test
+    public void testChangesConflatedPerInterval() throws Exception {
+        Exchange ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        QueueingListener listener = new QueueingListener();
+
+        ex.addNewOrder(order(Direction.SELL, RIC, "100", "101"));
+        ex.addNewOrder(order(Direction.BUY, RIC, "50", "99"));
+        ex.addNewOrder(order(Direction.BUY, RIC, "50", "98"));
+
+        try (DepthSubscription subscription = ex.subscribeDepth(Collections.singletonList(RIC), listener, 500,
+                        TimeUnit.MILLISECONDS)) {
+
+            // The first update holds the whole book
+            DepthUpdate update = listener.next();
+            assertEquals(Arrays.asList(level("50", "99"), level("50", "98")), update.getLevels(Direction.BUY));
+            assertEquals(Collections.singletonList(level("100", "101")), update.getLevels(Direction.SELL));
+
+            for (int i = 0; i < 10; i++) {
+                ex.addNewOrder(order(Direction.SELL, RIC, "10", "101"));
+            }
+
+            ex.cancelOrder(1);
+
+            // Other stocks are not of interest
+            ex.addNewOrder(order(Direction.SELL, "BT.L", "10", "101"));
+
+            update = listener.next();
+            assertEquals(RIC, update.getRic());
+            assertEquals(Collections.singletonList(level("0", "99")), update.getLevels(Direction.BUY));
+            assertEquals(Collections.singletonList(level("200", "101")), update.getLevels(Direction.SELL));
+            assertEquals(9, subscription.getConflatedCount());
+        }
+
+        assertNull(listener.updates.poll());
+    }
+
+    @Test
+    public void testMarketOrdersHiddenDuringAuction() throws Exception {
+        Exchange ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        QueueingListener listener = new QueueingListener();
+
+        ex.startAuction(RIC);
+        ex.addNewOrder(market(Direction.BUY, "100"));
+        ex.addNewOrder(order(Direction.BUY, RIC, "50", "99"));
+        ex.addNewOrder(order(Direction.SELL, RIC, "30", "101"));
+        ex.addNewOrder(market(Direction.SELL, "20"));
+
+        assertEquals(Collections.singletonList(level("50", "99")), ex.getOpenInterest(RIC, Direction.BUY));
+        assertEquals(Collections.singletonList(level("30", "101")), ex.getOpenInterest(RIC, Direction.SELL, 5));
+
+        try (DepthSubscription subscription = ex.subscribeDepth(Collections.singletonList(RIC), listener, 0,
+                        TimeUnit.MILLISECONDS)) {
+            DepthUpdate update = listener.next();
+            assertEquals(Collections.singletonList(level("50", "99")), update.getLevels(Direction.BUY));
+            assertEquals(Collections.singletonList(level("30", "101")), update.getLevels(Direction.SELL));
+
+            ex.addNewOrder(market(Direction.BUY, "10"));
+            ex.addNewOrder(order(Direction.BUY, RIC, "10", "98"));
+
+            update = listener.next();
+            assertEquals(Collections.singletonList(level("10", "98")), update.getLevels(Direction.BUY));
+            assertEquals(Collections.emptyList(), update.getLevels(Direction.SELL));
+            assertTrue(subscription.isConnected());
+        }
+
+        // Still count towards the uncross
+        AuctionPrice price = ex.getAuctionPrice(RIC);
+        assertEquals(new BigDecimal("101").setScale(4), price.getPrice());
+        assertEquals(new BigDecimal("50"), price.getVolume());
+    }
+
+    @Test
+    public void testSequencedExchangeDepth() throws Exception {
+        QueueingListener listener = new QueueingListener();
+
+        try (SequencedExchange ex = new SequencedExchange(new PriceTimeOrderMatcher(), INSTRUMENTS)) {
+            ex.addNewOrder(order(Direction.SELL, RIC, "100", "101"));
+
+            try (DepthSubscription subscription = ex.subscribeDepth(Collections.singletonList(RIC), listener, 0,
+                            TimeUnit.MILLISECONDS)) {
+                assertEquals(Collections.singletonList(level("100", "101")), listener.next().getLevels(
+                                Direction.SELL));
+
+                ex.addNewOrder(order(Direction.BUY, RIC, "100", "101"));
+                assertEquals(Collections.singletonList(level("0", "101")), listener.next().getLevels(
+                                Direction.SELL));
+                assertTrue(subscription.isConnected());
+            }
+        }
+    }
+
+    private static Order order(Direction direction, String ric, String quantity, String price) {
+        return new Order(direction, ric, new BigDecimal(quantity), new BigDecimal(price), "User 1");
+    }
+
+    private static Order market(Direction direction, String quantity) {
+        return new Order(direction, RIC, new BigDecimal(quantity), null, "User 1", OrderType.MARKET,
+                        TimeInForce.IOC);
+    }
+
+    private static OpenInterest level(String quantity, String price) {
+        return new OpenInterest(new BigDecimal(quantity), new BigDecimal(price).setScale(4));
+    }
+
+    private static class QueueingListener implements DepthListener {
+
+        private final BlockingQueue<DepthUpdate> updates = new LinkedBlockingQueue<DepthUpdate>();
+
+        @Override
+        public void onDepthUpdate(DepthUpdate update) {
+            updates.add(update);
+        }
+
+        DepthUpdate next() throws InterruptedException {
+            DepthUpdate update = updates.poll(5, TimeUnit.SECONDS);
+
+            if (update == null) {
+                throw new AssertionError("No depth update");
+            }
+
+            return update;
+        }
+    }
+
+}
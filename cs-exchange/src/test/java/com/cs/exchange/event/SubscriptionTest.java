@@ -0,0 +1,184 @@
+package com.cs.exchange.event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.SequencedExchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+
+
+public class SubscriptionTest {
+
+    private static final String RIC = "VOD.L";
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC);
+
+    @Test
+    public void testEventsDeliveredInOrder() throws Exception {
+        Exchange ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        RecordingListener listener = new RecordingListener();
+
+        try (Subscription subscription = ex.subscribe(listener)) {
+            ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("101"), "User 1"));
+            ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("100"), new BigDecimal("102"), "User 1"));
+            ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("150"), new BigDecimal("102"), "User 2"));
+            ex.cancelOrder(1);
+            assertTrue(subscription.isConnected());
+        }
+
+        assertEquals(Arrays.asList(
+                        "ACCEPTED 0 SELL 100",
+                        "LEVEL VOD.L SELL 101.0000 100",
+                        "ACCEPTED 1 SELL 100",
+                        "LEVEL VOD.L SELL 102.0000 100",
+                        "ACCEPTED 2 BUY 150",
+                        "EXEC VOD.L 2 0 100 101.0000",
+                        "EXEC VOD.L 2 1 50 102.0000",
+                        "LEVEL VOD.L SELL 101.0000 0",
+                        "LEVEL VOD.L SELL 102.0000 50",
+                        "LEVEL VOD.L SELL 102.0000 0"),
+                        listener.events);
+
+        // Batches published close together may be delivered together
+        assertTrue(listener.batchCount >= 1 && listener.batchCount <= 4);
+    }
+
+    @Test
+    public void testUncrossReportsEachLevelOnce() throws Exception {
+        Exchange ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        RecordingListener listener = new RecordingListener();
+
+        ex.startAuction(RIC);
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("50"), new BigDecimal("100"), "User 1"));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("50"), new BigDecimal("100"), "User 1"));
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("101"), "User 2"));
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("50"), new BigDecimal("101"), "User 2"));
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("10"), new BigDecimal("99"), "User 2",
+                        OrderType.LIMIT, TimeInForce.IOC));
+
+        try (Subscription subscription = ex.subscribe(listener)) {
+            ex.uncross(RIC);
+            assertTrue(subscription.isConnected());
+        }
+
+        assertEquals(Arrays.asList(
+                        "EXEC VOD.L 2 0 50 100.0000",
+                        "EXEC VOD.L 3 1 50 100.0000",
+                        "LEVEL VOD.L BUY 101.0000 0",
+                        "LEVEL VOD.L SELL 100.0000 0",
+                        "LEVEL VOD.L BUY 99.0000 0"),
+                        listener.events);
+    }
+
+    @Test
+    public void testSlowListenerDoesNotHoldUpMatching() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BlockedListener listener = new BlockedListener(release);
+
+        try (SequencedExchange ex = new SequencedExchange(new PriceTimeOrderMatcher(), INSTRUMENTS)) {
+            Subscription dropping = ex.subscribe(listener, 4, 1, BackpressurePolicy.DROP);
+            Subscription disconnecting = ex.subscribe(new BlockedListener(release), 4, 1,
+                            BackpressurePolicy.DISCONNECT);
+
+            for (int i = 0; i < 100; i++) {
+                ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("100"), new BigDecimal("100"),
+                                "User 1"));
+            }
+
+            ex.awaitProcessed();
+
+            // Two events per order, of which only the first few fit
+            assertTrue(dropping.getDroppedCount() > 180);
+            assertFalse(disconnecting.isConnected());
+
+            release.countDown();
+            dropping.close();
+            disconnecting.close();
+
+            assertTrue(((BlockedListener) disconnecting.getListener()).disconnected.await(1, TimeUnit.SECONDS));
+            assertEquals(200 - dropping.getDroppedCount(), listener.count);
+        }
+    }
+
+    private static class RecordingListener implements ExchangeListener {
+
+        private final List<String> events = new CopyOnWriteArrayList<String>();
+        private volatile int batchCount;
+
+        @Override
+        public void onOrderAccepted(long id, Order order) {
+            events.add("ACCEPTED " + id + " " + order.getDirection() + " " + order.getQuantity());
+        }
+
+        @Override
+        public void onExecution(String ric, long buyId, long sellId, BigDecimal quantity, BigDecimal price) {
+            events.add("EXEC " + ric + " " + buyId + " " + sellId + " " + quantity + " " + price);
+        }
+
+        @Override
+        public void onBookLevelChanged(String ric, Direction direction, BigDecimal price, BigDecimal quantity) {
+            events.add("LEVEL " + ric + " " + direction + " " + price + " " + quantity);
+        }
+
+        @Override
+        public void onBatchEnd() {
+            batchCount++;
+        }
+    }
+
+    private static class BlockedListener implements ExchangeListener {
+
+        private final CountDownLatch release;
+        private final CountDownLatch disconnected = new CountDownLatch(1);
+        private volatile int count;
+
+        BlockedListener(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void onOrderAccepted(long id, Order order) {
+            await();
+        }
+
+        @Override
+        public void onExecution(String ric, long buyId, long sellId, BigDecimal quantity, BigDecimal price) {
+            await();
+        }
+
+        @Override
+        public void onBookLevelChanged(String ric, Direction direction, BigDecimal price, BigDecimal quantity) {
+            await();
+        }
+
+        @Override
+        public void onDisconnected() {
+            disconnected.countDown();
+        }
+
+        private void await() {
+            try {
+                release.await();
+                count++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+package com.cs.exchange.gateway;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+import com.cs.exchange.risk.RiskLimits;
+
+
+public class OrderGatewayTest {
+
+    private static final String RIC = "VOD.L";
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC);
+
+    private Exchange ex;
+    private OrderGateway gateway;
+    private OrderGatewayClient client1;
+    private OrderGatewayClient client2;
+
+    @Before
+    public void setUp() throws Exception {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+        gateway = new OrderGateway(ex, Collections.singletonList(RIC),
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client1 = new OrderGatewayClient(gateway.getLocalAddress(), "User 1");
+        client2 = new OrderGatewayClient(gateway.getLocalAddress(), "User 2");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client1.close();
+        client2.close();
+        gateway.close();
+    }
+
+    @Test
+    public void testOrdersAcknowledgedAndExecuted() throws Exception {
+        client1.newOrder(11, RIC, Direction.SELL, OrderType.LIMIT, TimeInForce.GTC, 100, 1010000);
+        assertMessage(GatewayProtocol.ACCEPTED, 11, 0, 0, 0, 0, client1.read());
+
+        client2.newOrder(21, RIC, Direction.BUY, OrderType.LIMIT, TimeInForce.IOC, 150, 1020000);
+        assertMessage(GatewayProtocol.ACCEPTED, 21, 1, 0, 0, 0, client2.read());
+        assertMessage(GatewayProtocol.EXECUTED, 21, 1, 100, 1010000, 50, client2.read());
+        assertMessage(GatewayProtocol.CANCELLED, 21, 1, 50, 0, 0, client2.read());
+        assertMessage(GatewayProtocol.EXECUTED, 11, 0, 100, 1010000, 0, client1.read());
+
+        assertEquals(new BigDecimal("100"), ex.getExecutedQuantityForUser(RIC, "User 2"));
+        assertEquals(new Order(Direction.BUY, RIC, new BigDecimal("150"), new BigDecimal("102.0000"), "User 2",
+                        OrderType.LIMIT, TimeInForce.IOC), ex.getAllOrders().get(1));
+    }
+
+    @Test
+    public void testExecutionByInProcessOrderReported() throws Exception {
+        client1.newOrder(11, RIC, Direction.BUY, OrderType.LIMIT, TimeInForce.GTC, 100, 1000000);
+        assertMessage(GatewayProtocol.ACCEPTED, 11, 0, 0, 0, 0, client1.read());
+
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("40"), new BigDecimal("100"), "User 3"));
+        assertMessage(GatewayProtocol.EXECUTED, 11, 0, 40, 1000000, 60, client1.read());
+
+        ex.cancelOrder(0);
+        assertMessage(GatewayProtocol.CANCELLED, 11, 0, 60, 0, 0, client1.read());
+    }
+
+    @Test
+    public void testAmendedOrderStillReported() throws Exception {
+        client1.newOrder(11, RIC, Direction.BUY, OrderType.LIMIT, TimeInForce.GTC, 100, 1000000);
+        assertMessage(GatewayProtocol.ACCEPTED, 11, 0, 0, 0, 0, client1.read());
+
+        // A new price takes the order out of the queue and back in again
+        ex.amendOrder(0, new BigDecimal("100"), new BigDecimal("101"));
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("40"), new BigDecimal("101"), "User 3"));
+        assertMessage(GatewayProtocol.EXECUTED, 11, 0, 40, 1010000, 60, client1.read());
+
+        client1.cancel(0);
+        assertMessage(GatewayProtocol.CANCELLED, 11, 0, 60, 0, 0, client1.read());
+    }
+
+    @Test
+    public void testRejects() throws Exception {
+        ex.setDefaultRiskLimits(new RiskLimits(new BigDecimal("1000"), null, null, null));
+
+        client1.newOrder(1, "BT.L", Direction.BUY, OrderType.LIMIT, TimeInForce.GTC, 100, 1000000);
+        assertReject(1, RejectReason.INVALID_ORDER, client1.read());
+
+        client1.newOrder(2, RIC, Direction.BUY, OrderType.LIMIT, TimeInForce.GTC, 0, 1000000);
+        assertReject(2, RejectReason.INVALID_ORDER, client1.read());
+
+        client1.newOrder(3, RIC, Direction.BUY, OrderType.MARKET, TimeInForce.GTC, 100, 0);
+        assertReject(3, RejectReason.INVALID_ORDER, client1.read());
+
+        client1.newOrder(4, RIC, Direction.BUY, OrderType.LIMIT, TimeInForce.GTC, 1001, 1000000);
+        assertReject(4, RejectReason.MAX_ORDER_QUANTITY, client1.read());
+
+        // Sessions may only cancel their own orders
+        client1.newOrder(5, RIC, Direction.BUY, OrderType.LIMIT, TimeInForce.GTC, 100, 1000000);
+        assertMessage(GatewayProtocol.ACCEPTED, 5, 0, 0, 0, 0, client1.read());
+
+        client2.cancel(0);
+        assertMessage(GatewayProtocol.CANCEL_REJECTED, 0, 0, 0, 0, 0, client2.read());
+
+        client1.cancel(0);
+        assertMessage(GatewayProtocol.CANCELLED, 5, 0, 100, 0, 0, client1.read());
+
+        client1.cancel(0);
+        assertMessage(GatewayProtocol.CANCEL_REJECTED, 0, 0, 0, 0, 0, client1.read());
+    }
+
+    private static void assertReject(long clientOrderId, RejectReason reason, GatewayMessage message) {
+        assertEquals(GatewayProtocol.REJECTED, message.getType());
+        assertEquals(clientOrderId, message.getClientOrderId());
+        assertEquals(reason, message.getRejectReason());
+    }
+
+    private static void assertMessage(byte type, long clientOrderId, long orderId, long quantity, long price,
+                    long openQuantity, GatewayMessage message) {
+        assertEquals(type + " " + clientOrderId + " " + orderId + " " + quantity + " " + price + " " + openQuantity,
+                        message.getType() + " " + message.getClientOrderId() + " " + message.getOrderId() + " "
+                                        + message.getQuantity() + " " + message.getPrice() + " "
+                                        + message.getOpenQuantity());
+    }
+
+}
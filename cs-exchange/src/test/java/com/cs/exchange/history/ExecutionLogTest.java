@@ -0,0 +1,97 @@
+package com.cs.exchange.history;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.journal.JournalHandler;
+import com.cs.exchange.journal.JournalReader;
+
+
+public class ExecutionLogTest {
+
+    private static final String RIC = "VOD.L";
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("exchange-history");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(directory.resolve(HistoryStore.ORDERS_FILE));
+        Files.deleteIfExists(directory.resolve(HistoryStore.EXECUTIONS_FILE));
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testAllExecutionsKeptWithoutStore() {
+        ExecutionLog log = new ExecutionLog(RIC, null);
+
+        for (int i = 0; i < 100; i++) {
+            log.add(i, i + 1000, 10 + i, 2000 + i);
+        }
+
+        assertEquals(100, log.size());
+        assertEquals(0, log.getBuyId(0));
+        assertEquals(1099, log.getSellId(99));
+        assertEquals(59, log.getQuantity(49));
+        assertEquals(2099, log.getPrice(99));
+    }
+
+    @Test
+    public void testOldestExecutionsGoToStore() throws Exception {
+        List<String> written = new ArrayList<String>();
+
+        try (HistoryStore store = new HistoryStore(directory, 0, 20)) {
+            ExecutionLog log = new ExecutionLog(RIC, store);
+
+            for (int i = 0; i < 50; i++) {
+                log.add(i, i + 1000, 10 + i, 2000 + i);
+            }
+
+            // Ring has wrapped, oldest first
+            assertEquals(20, log.size());
+            assertEquals(30, log.getBuyId(0));
+            assertEquals(49, log.getBuyId(19));
+            assertEquals(2049, log.getPrice(19));
+        }
+
+        new JournalReader(directory.resolve(HistoryStore.EXECUTIONS_FILE)).read(new JournalHandler() {
+
+            @Override
+            public void onNewOrder(long id, Direction direction, String ric, String user, long quantity,
+                            long price, OrderType type, TimeInForce timeInForce, long time) {
+            }
+
+            @Override
+            public void onCancel(long id) {
+            }
+
+            @Override
+            public void onAmend(long id, long quantity, long price, long time) {
+            }
+
+            @Override
+            public void onExecution(String ric, long buyId, long sellId, long quantity, long price) {
+                written.add(ric + " " + buyId + " " + sellId + " " + quantity + " " + price);
+            }
+        });
+
+        assertEquals(30, written.size());
+        assertEquals("VOD.L 0 1000 10 2000", written.get(0));
+        assertEquals("VOD.L 29 1029 39 2029", written.get(29));
+    }
+
+}
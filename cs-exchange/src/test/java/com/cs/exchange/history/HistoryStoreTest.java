@@ -0,0 +1,203 @@
+package com.cs.exchange.history;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.MatchingEngine;
+import com.cs.exchange.ShardedExchange;
+import com.cs.exchange.data.OrderFlowGenerator;
+import com.cs.exchange.data.OrderFlowSettings;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.journal.JournalHandler;
+import com.cs.exchange.journal.JournalReader;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+import com.cs.exchange.stats.ExecutionStatistics;
+
+
+public class HistoryStoreTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("exchange-history");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(directory.resolve(HistoryStore.ORDERS_FILE));
+        Files.deleteIfExists(directory.resolve(HistoryStore.EXECUTIONS_FILE));
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void testOlderHistoryLeavesMemoryWithSameResults() throws Exception {
+        OrderFlowSettings settings = new OrderFlowSettings();
+        settings.setRicCount(3);
+        settings.setUserCount(5);
+        settings.setCancelRatio(0);
+
+        OrderFlowGenerator generator = new OrderFlowGenerator(settings, 3 * OrderHistory.PAGE_SIZE + 500);
+        List<Instrument> instruments = Instrument.withDefaults(generator.getRics());
+        MatchingEngine all = new MatchingEngine(new PriceTimeOrderMatcher(), instruments);
+
+        try (HistoryStore store = new HistoryStore(directory, 100, 10)) {
+            MatchingEngine engine = new MatchingEngine(new PriceTimeOrderMatcher(), instruments, null, store);
+            List<Order> submitted = new ArrayList<Order>();
+
+            while (generator.hasNext()) {
+                Order order = generator.next().getOrder();
+                submitted.add(order);
+                all.process(all.validate(order));
+                engine.process(engine.validate(order));
+            }
+
+            // Only whole pages leave memory, leaving at least 100 behind
+            assertEquals(3, store.getPageCount());
+
+            List<Order> orders = engine.getAllOrders();
+            assertEquals(submitted, orders);
+            assertEquals(submitted.get(1), orders.get(1));
+            assertEquals(submitted.subList(5000, 5100), orders.subList(5000, 5100));
+            assertEquals(5000, engine.getSubmittedOrders().get(5000).getId());
+
+            // Totals are kept separately so stay exact
+            long written = 0;
+
+            for (String ric : generator.getRics()) {
+                ExecutionStatistics expected = all.getExecutionStatistics(ric);
+                ExecutionStatistics actual = engine.getExecutionStatistics(ric);
+
+                assertEquals(expected.getExecutionCount(), actual.getExecutionCount());
+                assertEquals(expected.getTotalNotional(), actual.getTotalNotional());
+                assertEquals(expected.getNetQuantities(), actual.getNetQuantities());
+                assertEquals(all.getAverageExecutionPrice(ric), engine.getAverageExecutionPrice(ric));
+                assertEquals(all.getOpenInterest(ric, Direction.BUY), engine.getOpenInterest(ric, Direction.BUY));
+
+                written += Math.max(0, actual.getExecutionCount() - 10);
+            }
+
+            // Everything but the last 10 executions of each stock was written
+            CountingHandler handler = new CountingHandler();
+            new JournalReader(store.getExecutionsFile()).read(handler);
+
+            assertTrue(written > 0);
+            assertEquals(written, handler.count);
+        }
+    }
+
+    @Test
+    public void testViewIsUnaffectedByLaterPages() throws Exception {
+
+        try (HistoryStore store = new HistoryStore(directory, 0, 0)) {
+            Exchange ex = new Exchange(new PriceTimeOrderMatcher(), Instrument.withDefaults("VOD.L"), null, store);
+            Order order = new Order(Direction.BUY, "VOD.L", new BigDecimal("150"), new BigDecimal("100.10"),
+                            "User 1");
+
+            for (int i = 0; i < OrderHistory.PAGE_SIZE - 1; i++) {
+                ex.addNewOrder(order);
+            }
+
+            List<Order> before = ex.getAllOrders();
+            ex.addNewOrder(order);
+
+            // The page has gone to the store but the earlier view still reads it
+            assertEquals(1, store.getPageCount());
+            assertEquals(OrderHistory.PAGE_SIZE - 1, before.size());
+            assertEquals(order, before.get(0));
+
+            // Scale of the submitted price is kept
+            assertEquals("100.10", ex.getAllOrders().get(0).getPrice().toString());
+            assertEquals("150", ex.getAllOrders().get(0).getQuantity().toString());
+        }
+    }
+
+    @Test
+    public void testShardedExchangeKeepsHistoryPerShard() throws Exception {
+        String[] rics = { "VOD.L", "BARC.L", "HSBA.L", "BP.L", "RDSA.L", "GSK.L", "AZN.L", "ULVR.L" };
+        List<HistoryStore> stores = new ArrayList<HistoryStore>();
+
+        try {
+            for (int i = 0; i < 4; i++) {
+                stores.add(new HistoryStore(directory.resolve("shard-" + i), 0, 0));
+            }
+
+            try (ShardedExchange ex = new ShardedExchange(new PriceTimeOrderMatcher(), Instrument.withDefaults(rics),
+                            stores, 4, 1024)) {
+                List<Order> submitted = new ArrayList<Order>();
+
+                for (int i = 0; i < 5 * OrderHistory.PAGE_SIZE; i++) {
+                    Order order = new Order(Direction.BUY, rics[i % rics.length], new BigDecimal(1 + i % 10),
+                                    new BigDecimal(100 + i % 7), "User " + (i % 3));
+                    ex.addNewOrder(order);
+                    submitted.add(order);
+                }
+
+                ex.awaitProcessed();
+
+                int pageCount = 0;
+
+                for (HistoryStore store : stores) {
+                    pageCount += store.getPageCount();
+                }
+
+                assertTrue(pageCount > 0);
+
+                // Merged back in submission order, whether iterated or read by
+                // index
+                List<Order> orders = ex.getAllOrders();
+                assertArrayEquals(submitted.toArray(), orders.toArray());
+                assertEquals(submitted, orders);
+                assertEquals(submitted.subList(1000, 1010), orders.subList(1000, 1010));
+            }
+        } finally {
+            for (HistoryStore store : stores) {
+                store.close();
+                Files.delete(store.getDirectory().resolve(HistoryStore.ORDERS_FILE));
+                Files.delete(store.getDirectory().resolve(HistoryStore.EXECUTIONS_FILE));
+                Files.delete(store.getDirectory());
+            }
+        }
+    }
+
+    private static class CountingHandler implements JournalHandler {
+
+        private long count;
+
+        @Override
+        public void onNewOrder(long id, Direction direction, String ric, String user, long quantity, long price,
+                        OrderType type, TimeInForce timeInForce, long time) {
+        }
+
+        @Override
+        public void onCancel(long id) {
+        }
+
+        @Override
+        public void onAmend(long id, long quantity, long price, long time) {
+        }
+
+        @Override
+        public void onExecution(String ric, long buyId, long sellId, long quantity, long price) {
+            count++;
+        }
+
+    }
+
+}
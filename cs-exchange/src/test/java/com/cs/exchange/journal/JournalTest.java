@@ -0,0 +1,165 @@
+package com.cs.exchange.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.data.OrderGenerator;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+
+
+public class JournalTest {
+
+    private static final String RIC = "VOD.L";
+    private Path file;
+    
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("exchange", ".journal");
+        Files.delete(file);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testOrdersAndExecutionsAreJournalled() throws Exception {
+        
+        try (Journal journal = new Journal(file, FsyncPolicy.BATCH)) {
+            Exchange ex = new Exchange(new OrderMatcherImpl(), Instrument.withDefaults(RIC), journal);
+            
+            for (Order order : OrderGenerator.getOrders()) {
+                ex.addNewOrder(order);
+            }
+            
+            long id = ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("10"), new BigDecimal("200"), "User 3"));
+            ex.amendOrder(id, new BigDecimal("5"), new BigDecimal("199.5"));
+            ex.cancelOrder(id);
+        }
+        
+        RecordingHandler handler = new RecordingHandler();
+        new JournalReader(file).read(handler);
+        
+        assertEquals(Arrays.asList(
+                        "NEW 0 SELL VOD.L User 1 1000 1002000",
+                        "NEW 1 BUY VOD.L User 2 1000 1002000",
+                        "EXEC VOD.L 1 0 1000 1002000",
+                        "NEW 2 BUY VOD.L User 1 1000 990000",
+                        "NEW 3 BUY VOD.L User 1 1000 1010000",
+                        "NEW 4 SELL VOD.L User 2 500 1020000",
+                        "NEW 5 BUY VOD.L User 1 500 1030000",
+                        "EXEC VOD.L 5 4 500 1030000",
+                        "NEW 6 SELL VOD.L User 2 1000 980000",
+                        "EXEC VOD.L 3 6 1000 980000",
+                        "NEW 7 SELL VOD.L User 3 10 2000000",
+                        "AMEND 7 5 1995000",
+                        "CANCEL 7"), handler.records);
+    }
+
+    @Test
+    public void testAuctionIsJournalledAheadOfItsExecutions() throws Exception {
+
+        try (Journal journal = new Journal(file, FsyncPolicy.NONE)) {
+            Exchange ex = new Exchange(new OrderMatcherImpl(), Instrument.withDefaults(RIC), journal);
+            ex.setClock(Clock.fixed(Instant.ofEpochMilli(5000), ZoneOffset.UTC));
+            ex.startAuction(RIC);
+            ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal("10"), new BigDecimal("101"), "User 1"));
+            ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal("10"), new BigDecimal("101"), "User 2"));
+            ex.uncross(RIC);
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        new JournalReader(file).read(handler);
+
+        assertEquals(Arrays.asList(
+                        "AUCTION VOD.L",
+                        "NEW 0 BUY VOD.L User 1 10 1010000",
+                        "NEW 1 SELL VOD.L User 2 10 1010000",
+                        "UNCROSS VOD.L 5000",
+                        "EXEC VOD.L 0 1 10 1010000"), handler.records);
+    }
+
+    @Test
+    public void testReopenedJournalIsAppendedAcrossRegions() throws Exception {
+        
+        // Small regions so that the journal is remapped many times
+        for (int run = 0; run < 2; run++) {
+            try (Journal journal = new Journal(file, FsyncPolicy.NONE, 0, 1024)) {
+                Exchange ex = new Exchange(new OrderMatcherImpl(), Instrument.withDefaults("RIC0", "RIC1", "RIC2",
+                                "RIC3", "RIC4", "RIC5", "RIC6"), journal);
+                
+                for (int i = 0; i < 500; i++) {
+                    ex.addNewOrder(new Order(Direction.BUY, "RIC" + (i % 7), new BigDecimal("100"), 
+                                             new BigDecimal(50 + i), "User " + run));
+                }
+            }
+        }
+        
+        RecordingHandler handler = new RecordingHandler();
+        long end = new JournalReader(file).read(handler);
+        
+        assertEquals(1000, handler.records.size());
+        assertEquals("NEW 0 BUY RIC0 User 0 100 500000", handler.records.get(0));
+        assertEquals("NEW 499 BUY RIC2 User 1 100 5490000", handler.records.get(999));
+        assertTrue(end > 1000 * 30);
+    }
+
+    private static class RecordingHandler implements JournalHandler {
+
+        private final List<String> records = new ArrayList<String>();
+        
+        @Override
+        public void onNewOrder(long id, Direction direction, String ric, String user, long quantity, long price,
+                        OrderType type, TimeInForce timeInForce, long time) {
+            records.add("NEW " + id + " " + direction + " " + ric + " " + user + " " + quantity + " " + price);
+        }
+
+        @Override
+        public void onCancel(long id) {
+            records.add("CANCEL " + id);
+        }
+
+        @Override
+        public void onAmend(long id, long quantity, long price, long time) {
+            records.add("AMEND " + id + " " + quantity + " " + price);
+        }
+
+        @Override
+        public void onExecution(String ric, long buyId, long sellId, long quantity, long price) {
+            records.add("EXEC " + ric + " " + buyId + " " + sellId + " " + quantity + " " + price);
+        }
+
+        @Override
+        public void onAuctionStart(String ric) {
+            records.add("AUCTION " + ric);
+        }
+
+        @Override
+        public void onUncross(String ric, long time) {
+            records.add("UNCROSS " + ric + " " + time);
+        }
+        
+    }
+
+}
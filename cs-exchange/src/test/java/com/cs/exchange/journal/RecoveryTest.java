@@ -0,0 +1,178 @@
+package com.cs.exchange.journal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.data.OrderFlowGenerator;
+import com.cs.exchange.data.OrderFlowSettings;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.matcher.OrderMatcher;
+import com.cs.exchange.matcher.OrderMatcherImpl;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+import com.cs.exchange.stats.BarResolution;
+
+
+public class RecoveryTest {
+
+    private Path journalFile;
+    private Path snapshotFile;
+    private OrderFlowSettings settings;
+    
+    @Before
+    public void setUp() throws Exception {
+        journalFile = Files.createTempFile("exchange", ".journal");
+        snapshotFile = Files.createTempFile("exchange", ".snapshot");
+        Files.delete(journalFile);
+        Files.delete(snapshotFile);
+        
+        settings = new OrderFlowSettings();
+        settings.setRicCount(4);
+        settings.setUserCount(10);
+        settings.setCancelRatio(0.3);
+        settings.setIocRatio(0.1);
+        settings.setFokRatio(0.1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(journalFile);
+        Files.deleteIfExists(snapshotFile);
+    }
+
+    @Test
+    public void testRecoveryGivesSameResults() throws Exception {
+        testRecoveryGivesSameResults(new OrderMatcherImpl());
+        tearDown();
+        testRecoveryGivesSameResults(new PriceTimeOrderMatcher());
+    }
+
+    private void testRecoveryGivesSameResults(OrderMatcher matcher) throws Exception {
+        OrderFlowGenerator generator = new OrderFlowGenerator(settings, 20000);
+        List<Instrument> instruments = Instrument.withDefaults(generator.getRics());
+        List<String> before;
+        long nextId;
+        
+        try (Journal journal = new Journal(journalFile, FsyncPolicy.NONE)) {
+            Exchange ex = new Exchange(matcher, instruments, journal);
+            ex.setClock(new SteppingClock(10));
+            List<Long> ids = new ArrayList<Long>();
+            
+            while (generator.hasNext()) {
+                OrderFlowGenerator.Event event = generator.next();
+                
+                if (event.getType() == OrderFlowGenerator.EventType.NEW) {
+                    ids.add(ex.addNewOrder(event.getOrder()));
+                } else {
+                    ex.cancelOrder(ids.get(ids.size() - 1 - event.getCancelAge()));
+                }
+                
+                if (ids.size() % 1000 == 0) {
+                    ex.amendOrder(ids.get(ids.size() - 1), new BigDecimal("50"), new BigDecimal("100"));
+                }
+                
+                // One auction before the snapshot and one that spans it
+                if (generator.getGeneratedCount() == 5000 || generator.getGeneratedCount() == 11000) {
+                    ex.startAuction(generator.getRics()[0]);
+                } else if (generator.getGeneratedCount() == 8000 || generator.getGeneratedCount() == 15000) {
+                    ex.uncross(generator.getRics()[0]);
+                }
+
+                if (generator.getGeneratedCount() == 12000) {
+                    ex.writeSnapshot(snapshotFile);
+                }
+            }
+            
+            before = describe(ex, generator.getRics(), settings.getUserCount());
+            nextId = ids.size();
+        }
+        
+        try (Journal journal = new Journal(journalFile, FsyncPolicy.NONE)) {
+            Exchange ex = Exchange.recover(matcher, instruments, journal, snapshotFile);
+            assertEquals(before, describe(ex, generator.getRics(), settings.getUserCount()));
+        }
+        
+        // Replaying the whole journal gives the same results too
+        Files.delete(snapshotFile);
+        
+        try (Journal journal = new Journal(journalFile, FsyncPolicy.NONE)) {
+            Exchange ex = Exchange.recover(matcher, instruments, journal, snapshotFile);
+            assertEquals(before, describe(ex, generator.getRics(), settings.getUserCount()));
+            
+            // Carries on from where it left off
+            assertEquals(nextId, ex.addNewOrder(new Order(Direction.BUY, "RIC0.L", new BigDecimal("100"), 
+                                                          new BigDecimal("1"), "User 1")));
+        }
+    }
+
+    private static List<String> describe(Exchange ex, String[] rics, int userCount) {
+        List<String> results = new ArrayList<String>();
+        results.add("orders=" + ex.getAllOrders().size());
+        
+        for (String ric : rics) {
+            results.add(ric + " bids=" + ex.getOpenInterest(ric, Direction.BUY));
+            results.add(ric + " offers=" + ex.getOpenInterest(ric, Direction.SELL));
+            results.add(ric + " average=" + ex.getAverageExecutionPrice(ric));
+            results.add(ric + " auction=" + ex.getAuctionPrice(ric));
+            
+            for (int i = 1; i <= userCount; i++) {
+                results.add(ric + " User " + i + "=" + ex.getExecutedQuantityForUser(ric, "User " + i));
+            }
+
+            // Bars keep the times the executions were originally made at
+            results.add(ric + " bars=" + ex.getBars(ric, BarResolution.SECOND, 0, Long.MAX_VALUE));
+            results.add(ric + " summary=" + ex.getBar(ric, 0, Long.MAX_VALUE));
+        }
+        
+        return results;
+    }
+
+    /**
+     * A clock that moves on by a fixed step each time it is read
+     */
+    private static class SteppingClock extends Clock {
+
+        private final long step;
+        private long millis;
+
+        SteppingClock(long step) {
+            this.step = step;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long millis() {
+            return millis += step;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+    }
+
+}
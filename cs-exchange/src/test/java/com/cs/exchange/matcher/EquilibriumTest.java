@@ -0,0 +1,115 @@
+package com.cs.exchange.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.book.OrderBook;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.TimeInForce;
+
+
+public class EquilibriumTest {
+
+    private static final String RIC = "VOD.L";
+    private Instrument instrument;
+    private OrderBook book;
+    private long nextId;
+
+    @Before
+    public void setUp() throws Exception {
+        instrument = new Instrument(RIC);
+        book = new OrderBook(instrument);
+    }
+
+    @Test
+    public void testMaximumVolume() {
+        add(Direction.BUY, "100", "102");
+        add(Direction.BUY, "200", "101");
+        add(Direction.SELL, "150", "100");
+        add(Direction.SELL, "100", "101");
+        add(Direction.SELL, "100", "103");
+
+        // 150 executes at 100, 250 at 101 and 100 at 102
+        Equilibrium equilibrium = Equilibrium.find(book, 0);
+        assertEquals(instrument.toPrice(new BigDecimal("101")), equilibrium.getPrice());
+        assertEquals(250, equilibrium.getVolume());
+        assertEquals(300, equilibrium.getBuyQuantity());
+        assertEquals(50, equilibrium.getSurplus());
+    }
+
+    @Test
+    public void testSurplusDecidesBetweenPrices() {
+        add(Direction.BUY, "200", "101");
+        add(Direction.SELL, "100", "100");
+        assertEquals(instrument.toPrice(new BigDecimal("101")), Equilibrium.find(book, 0).getPrice());
+
+        book = new OrderBook(instrument);
+        add(Direction.BUY, "100", "101");
+        add(Direction.SELL, "200", "100");
+        assertEquals(instrument.toPrice(new BigDecimal("100")), Equilibrium.find(book, 0).getPrice());
+    }
+
+    @Test
+    public void testReferencePriceDecidesBalancedBook() {
+        add(Direction.BUY, "100", "101");
+        add(Direction.SELL, "100", "100");
+
+        assertEquals(instrument.toPrice(new BigDecimal("100")), Equilibrium.find(book, 0).getPrice());
+        assertEquals(instrument.toPrice(new BigDecimal("101")),
+                        Equilibrium.find(book, instrument.toPrice(new BigDecimal("105"))).getPrice());
+        assertEquals(instrument.toPrice(new BigDecimal("100")),
+                        Equilibrium.find(book, instrument.toPrice(new BigDecimal("95"))).getPrice());
+    }
+
+    @Test
+    public void testMarketOrdersNeverSetPrice() {
+        addMarket(Direction.BUY, "100");
+        add(Direction.SELL, "60", "100");
+        add(Direction.SELL, "60", "101");
+
+        Equilibrium equilibrium = Equilibrium.find(book, 0);
+        assertEquals(instrument.toPrice(new BigDecimal("101")), equilibrium.getPrice());
+        assertEquals(100, equilibrium.getVolume());
+
+        book = new OrderBook(instrument);
+        addMarket(Direction.BUY, "100");
+        addMarket(Direction.SELL, "100");
+        assertNull(Equilibrium.find(book, 0));
+    }
+
+    @Test
+    public void testNothingCrosses() {
+        assertNull(Equilibrium.find(book, 0));
+
+        add(Direction.BUY, "100", "99");
+        add(Direction.SELL, "100", "100");
+        assertNull(Equilibrium.find(book, 0));
+    }
+
+    private void add(Direction direction, String quantity, String price) {
+        Order order = new Order(direction, RIC, new BigDecimal(quantity), new BigDecimal(price), "User 1");
+        BookOrder o = new BookOrder(order, instrument.toPrice(order.getPrice()),
+                        instrument.toQuantity(order.getQuantity()));
+        o.setId(nextId++);
+        book.add(o);
+    }
+
+    private void addMarket(Direction direction, String quantity) {
+        Order order = new Order(direction, RIC, new BigDecimal(quantity), null, "User 1", OrderType.MARKET,
+                        TimeInForce.IOC);
+        BookOrder o = new BookOrder(order, BookOrder.marketPrice(direction),
+                        instrument.toQuantity(order.getQuantity()));
+        o.setId(nextId++);
+        book.add(o);
+    }
+
+}
@@ -8,7 +8,9 @@ import java.util.List;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.cs.exchange.book.BookOrder;
 import com.cs.exchange.data.OrderGenerator;
+import com.cs.exchange.domain.Instrument;
 import com.cs.exchange.domain.Order;
 import com.cs.exchange.matcher.OrderMatcherImpl;
 
@@ -47,4 +49,23 @@ public class OrderMatcherImplTest {
         assertFalse("Orders should not match", matcher.checkIfOrdersMatch(sellOrder2, buyOrder1));
     }
 
+    @Test
+    public void testBookOrdersMatch() {
+        Instrument instrument = new Instrument(sellOrder1.getRic());
+        
+        assertTrue("Orders should match", matcher.checkIfBookOrdersMatch(toBookOrder(sellOrder1, instrument), 
+                                                                         toBookOrder(buyOrder1, instrument)));
+        assertTrue("Orders should match", matcher.checkIfBookOrdersMatch(toBookOrder(sellOrder2, instrument), 
+                                                                         toBookOrder(buyOrder2, instrument)));
+        assertFalse("Null order should not match", matcher.checkIfBookOrdersMatch(toBookOrder(sellOrder2, instrument), null));
+        assertFalse("Orders should not match", matcher.checkIfBookOrdersMatch(toBookOrder(sellOrder1, instrument), 
+                                                                              toBookOrder(buyOrder2, instrument)));
+        assertFalse("Orders should not match", matcher.checkIfBookOrdersMatch(toBookOrder(sellOrder2, instrument), 
+                                                                              toBookOrder(buyOrder1, instrument)));
+    }
+
+    private static BookOrder toBookOrder(Order o, Instrument instrument) {
+        return new BookOrder(o, instrument.toPrice(o.getPrice()), instrument.toQuantity(o.getQuantity()));
+    }
+
 }
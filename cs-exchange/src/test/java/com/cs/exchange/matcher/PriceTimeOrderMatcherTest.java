@@ -0,0 +1,74 @@
+package com.cs.exchange.matcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.book.BookOrder;
+import com.cs.exchange.data.OrderGenerator;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+
+
+public class PriceTimeOrderMatcherTest {
+
+    private Order buyOrder1;
+    private Order buyOrder2;
+    private Order sellOrder1;
+    private Order sellOrder2;
+    private Instrument instrument;
+    
+    private PriceTimeOrderMatcher matcher;
+    
+    @Before
+    public void setUp() throws Exception {
+        matcher = new PriceTimeOrderMatcher();
+        List<Order> orders = OrderGenerator.getOrders();
+        sellOrder1 = orders.get(0);
+        buyOrder1 = orders.get(1);
+        sellOrder2 = orders.get(4);
+        buyOrder2 = orders.get(5);
+        instrument = new Instrument(sellOrder1.getRic());
+    }
+
+    @Test
+    public void testOrdersMatchWhateverTheirQuantity() {
+        assertTrue("Orders should match", matcher.checkIfOrdersMatch(sellOrder1, buyOrder1));
+        assertTrue("Orders should match", matcher.checkIfOrdersMatch(buyOrder2, sellOrder2));
+        assertTrue("Orders should match", matcher.checkIfOrdersMatch(sellOrder1, buyOrder2));
+        assertTrue("Orders should match", matcher.checkIfBookOrdersMatch(toBookOrder(sellOrder1), toBookOrder(buyOrder2)));
+    }
+
+    @Test
+    public void testOrdersDoNotMatch() {
+        assertFalse("Null order should not match", matcher.checkIfOrdersMatch(sellOrder2, null));
+        assertFalse("Orders should not match", matcher.checkIfOrdersMatch(sellOrder1, sellOrder2));
+        assertFalse("Orders should not match", matcher.checkIfOrdersMatch(sellOrder2, buyOrder1));
+        assertFalse("Orders should not match", matcher.checkIfBookOrdersMatch(toBookOrder(sellOrder2), toBookOrder(buyOrder1)));
+        assertFalse("Orders should not match", matcher.checkIfOrdersMatch(sellOrder1, 
+                        new Order(Direction.BUY, "BARC.L", new BigDecimal("1000"), new BigDecimal("101"), "User 2")));
+    }
+
+    @Test
+    public void testExecutionQuantityAndPrice() {
+        BookOrder buy = toBookOrder(buyOrder2);
+        BookOrder sell = toBookOrder(sellOrder1);
+        
+        assertTrue(matcher.isPartialFillAllowed());
+        assertEquals(buy.getQuantity(), matcher.getExecutionQuantity(buy, sell));
+        assertEquals(sell.getPrice(), matcher.getExecutionPrice(buy, sell));
+        assertEquals(0, matcher.getExecutionQuantity(toBookOrder(sellOrder2), toBookOrder(buyOrder1)));
+    }
+
+    private BookOrder toBookOrder(Order o) {
+        return new BookOrder(o, instrument.toPrice(o.getPrice()), instrument.toQuantity(o.getQuantity()));
+    }
+
+}
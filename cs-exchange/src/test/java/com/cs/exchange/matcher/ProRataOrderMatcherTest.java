@@ -0,0 +1,105 @@
+package com.cs.exchange.matcher;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.OpenInterest;
+import com.cs.exchange.domain.Order;
+
+
+public class ProRataOrderMatcherTest {
+
+    private static final String RIC = "VOD.L";
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC);
+
+    private Exchange ex;
+
+    @Before
+    public void setUp() throws Exception {
+        ex = new Exchange(new ProRataOrderMatcher(), INSTRUMENTS);
+    }
+
+    @Test
+    public void testLevelSharedInProportionToOpenQuantity() {
+        sell("100", "100", "User 1");
+        sell("300", "100", "User 2");
+        sell("600", "100", "User 3");
+
+        buy("500", "100", "User 4");
+
+        assertExecuted("-50", "User 1");
+        assertExecuted("-150", "User 2");
+        assertExecuted("-300", "User 3");
+        assertExecuted("500", "User 4");
+        assertEquals(Collections.singletonList(new OpenInterest(new BigDecimal("500"), new BigDecimal("100.0000"))),
+                        ex.getOpenInterest(RIC, Direction.SELL));
+    }
+
+    @Test
+    public void testRoundingLeftOverFilledInTimePriority() {
+        sell("3", "100", "User 1");
+        sell("3", "100", "User 2");
+        sell("3", "100", "User 3");
+
+        // Shares of 4 * 3 / 9 are rounded down to 1 each, leaving 1 for the
+        // earliest order
+        buy("4", "100", "User 4");
+
+        assertExecuted("-2", "User 1");
+        assertExecuted("-1", "User 2");
+        assertExecuted("-1", "User 3");
+    }
+
+    @Test
+    public void testBestLevelTakenInFullBeforeNext() {
+        sell("100", "100", "User 1");
+        sell("200", "101", "User 2");
+        sell("200", "101", "User 3");
+        sell("100", "102", "User 1");
+
+        buy("300", "101", "User 4");
+
+        assertExecuted("-100", "User 1");
+        assertExecuted("-100", "User 2");
+        assertExecuted("-100", "User 3");
+        assertEquals(new BigDecimal("100.6667"), ex.getAverageExecutionPrice(RIC));
+        assertEquals(Arrays.asList(new OpenInterest(new BigDecimal("100"), new BigDecimal("102.0000")),
+                                   new OpenInterest(new BigDecimal("200"), new BigDecimal("101.0000"))),
+                        ex.getOpenInterest(RIC, Direction.SELL));
+    }
+
+    @Test
+    public void testRemainderStaysOpenWhenPricesNoLongerCross() {
+        sell("100", "100", "User 1");
+        sell("100", "102", "User 2");
+
+        buy("150", "101", "User 3");
+
+        assertExecuted("-100", "User 1");
+        assertEquals(Collections.singletonList(new OpenInterest(new BigDecimal("50"), new BigDecimal("101.0000"))),
+                        ex.getOpenInterest(RIC, Direction.BUY));
+    }
+
+    private void buy(String quantity, String price, String user) {
+        ex.addNewOrder(new Order(Direction.BUY, RIC, new BigDecimal(quantity), new BigDecimal(price), user));
+    }
+
+    private void sell(String quantity, String price, String user) {
+        ex.addNewOrder(new Order(Direction.SELL, RIC, new BigDecimal(quantity), new BigDecimal(price), user));
+    }
+
+    private void assertExecuted(String quantity, String user) {
+        assertEquals(new BigDecimal(quantity), ex.getExecutedQuantityForUser(RIC, user));
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.cs.exchange.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.MatchingEngine;
+import com.cs.exchange.data.OrderFlowGenerator;
+import com.cs.exchange.data.OrderFlowSettings;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.journal.FsyncPolicy;
+import com.cs.exchange.journal.Journal;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+import com.cs.exchange.matcher.ProRataOrderMatcher;
+import com.cs.exchange.stats.BarResolution;
+
+
+public class ReplayTest {
+
+    private Path recording;
+    private Path firstOutput;
+    private Path secondOutput;
+
+    @Before
+    public void setUp() throws Exception {
+        recording = Files.createTempFile("exchange", ".journal");
+        firstOutput = Files.createTempFile("replay", ".journal");
+        secondOutput = Files.createTempFile("replay", ".journal");
+        Files.delete(recording);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(recording);
+        Files.deleteIfExists(firstOutput);
+        Files.deleteIfExists(secondOutput);
+    }
+
+    @Test
+    public void testClockInOtherZoneFollowsReplay() {
+        ReplayClock clock = new ReplayClock();
+        Clock zoned = clock.withZone(ZoneId.of("Europe/London"));
+
+        clock.set(1000);
+
+        assertSame(clock, clock.withZone(ZoneOffset.UTC));
+        assertEquals(ZoneId.of("Europe/London"), zoned.getZone());
+        assertEquals(Instant.ofEpochMilli(1000), zoned.instant());
+        assertSame(clock, zoned.withZone(ZoneOffset.UTC));
+    }
+
+    @Test
+    public void testParallelReplaysAreDeterministic() throws Exception {
+        OrderFlowSettings settings = new OrderFlowSettings();
+        settings.setRicCount(3);
+        settings.setCancelRatio(0.3);
+
+        OrderFlowGenerator generator = new OrderFlowGenerator(settings, 20000);
+        List<Instrument> instruments = Instrument.withDefaults(generator.getRics());
+        List<String> recorded;
+
+        try (Journal journal = new Journal(recording, FsyncPolicy.NONE)) {
+            Exchange ex = new Exchange(new PriceTimeOrderMatcher(), instruments, journal);
+            List<Long> ids = new ArrayList<Long>();
+
+            while (generator.hasNext()) {
+                OrderFlowGenerator.Event event = generator.next();
+
+                // A second apart, so the bars span several hours
+                ex.setClock(Clock.fixed(Instant.ofEpochSecond(generator.getGeneratedCount()), ZoneOffset.UTC));
+
+                if (event.getType() == OrderFlowGenerator.EventType.NEW) {
+                    ids.add(ex.addNewOrder(event.getOrder()));
+                } else {
+                    ex.cancelOrder(ids.get(ids.size() - 1 - event.getCancelAge()));
+                }
+            }
+
+            recorded = describe(ex, generator.getRics());
+        }
+
+        List<ReplayResult> results = new ReplayRunner(3).run(Arrays.asList(
+                        new Replay("first", new PriceTimeOrderMatcher(), instruments, recording, firstOutput, null),
+                        new Replay("second", new PriceTimeOrderMatcher(), instruments, recording, secondOutput, null),
+                        new Replay("pro-rata", new ProRataOrderMatcher(), instruments, recording)));
+
+        ReplayResult first = results.get(0);
+        ReplayResult second = results.get(1);
+
+        // The same matcher gives what was recorded, every time
+        assertTrue(first.getExecutionCount() > 0);
+        assertEquals(first.getRecordedExecutionCount(), first.getExecutionCount());
+        assertEquals(first.getChecksum(), second.getChecksum());
+        assertEquals(recorded, describe(first.getEngine(), generator.getRics()));
+        assertArrayEquals(Files.readAllBytes(firstOutput), Files.readAllBytes(secondOutput));
+
+        // Another matcher replays the same orders to its own outcome
+        ReplayResult proRata = results.get(2);
+        assertEquals(first.getOrderCount(), proRata.getOrderCount());
+        assertTrue(proRata.getChecksum() != first.getChecksum());
+    }
+
+    private static List<String> describe(Exchange ex, String[] rics) {
+        List<String> results = new ArrayList<String>();
+
+        for (String ric : rics) {
+            results.add(ric + " average=" + ex.getAverageExecutionPrice(ric));
+            results.add(ric + " bars=" + ex.getBars(ric, BarResolution.MINUTE, 0, Long.MAX_VALUE));
+        }
+
+        return results;
+    }
+
+    private static List<String> describe(MatchingEngine engine, String[] rics) {
+        List<String> results = new ArrayList<String>();
+
+        for (String ric : rics) {
+            results.add(ric + " average=" + engine.getAverageExecutionPrice(ric));
+            results.add(ric + " bars=" + engine.getBars(ric, BarResolution.MINUTE, 0, Long.MAX_VALUE));
+        }
+
+        return results;
+    }
+
+}
@@ -0,0 +1,237 @@
+package com.cs.exchange.risk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.Exchange;
+import com.cs.exchange.SequencedExchange;
+import com.cs.exchange.ShardedExchange;
+import com.cs.exchange.domain.Direction;
+import com.cs.exchange.domain.Instrument;
+import com.cs.exchange.domain.Order;
+import com.cs.exchange.domain.OrderRejectedException;
+import com.cs.exchange.domain.OrderResult;
+import com.cs.exchange.domain.OrderStatus;
+import com.cs.exchange.domain.OrderType;
+import com.cs.exchange.domain.RejectReason;
+import com.cs.exchange.domain.TimeInForce;
+import com.cs.exchange.matcher.PriceTimeOrderMatcher;
+
+
+public class RiskCheckerTest {
+
+    private static final String RIC = "VOD.L";
+    private static final List<Instrument> INSTRUMENTS = Instrument.withDefaults(RIC, "MSFT.OQ");
+
+    private Exchange ex;
+
+    @Before
+    public void setUp() throws Exception {
+        ex = new Exchange(new PriceTimeOrderMatcher(), INSTRUMENTS);
+    }
+
+    @Test
+    public void testMaxOrderQuantity() {
+        ex.setDefaultRiskLimits(new RiskLimits(new BigDecimal("1000"), null, null, null));
+
+        assertAccepted(buy("1000", "100", "User 1"));
+        assertRejected(RejectReason.MAX_ORDER_QUANTITY, buy("1001", "100", "User 1"));
+
+        // Rejected orders are not given an id
+        assertEquals(1, ex.addNewOrder(order(Direction.BUY, "10", "100", "User 1")));
+    }
+
+    @Test
+    public void testMaxOrderNotional() {
+        ex.setDefaultRiskLimits(new RiskLimits(null, null, new BigDecimal("10000"), null));
+
+        assertAccepted(buy("100", "100", "User 1"));
+        assertRejected(RejectReason.MAX_ORDER_NOTIONAL, buy("100", "100.1", "User 1"));
+    }
+
+    @Test
+    public void testMaxOrderNotionalOfMarketOrder() {
+        ex.setDefaultRiskLimits(new RiskLimits(null, null, new BigDecimal("10000"), null));
+
+        // Nothing to value it against before the first offer or trade
+        assertRejected(RejectReason.MAX_ORDER_NOTIONAL, market(Direction.BUY, "10", "User 1"));
+
+        assertAccepted(sell("50", "100", "User 2"));
+        assertAccepted(sell("50", "120", "User 2"));
+
+        // Valued at the highest offer it could reach
+        assertRejected(RejectReason.MAX_ORDER_NOTIONAL, market(Direction.BUY, "90", "User 1"));
+        assertAccepted(market(Direction.BUY, "80", "User 1"));
+
+        // Or at the last trade price, if that is higher than the highest bid
+        assertAccepted(buy("50", "90", "User 1"));
+        assertRejected(RejectReason.MAX_ORDER_NOTIONAL, market(Direction.SELL, "90", "User 2"));
+        assertAccepted(market(Direction.SELL, "80", "User 2"));
+    }
+
+    @Test
+    public void testMaxPosition() {
+        ex.setRiskLimits("User 1", new RiskLimits(null, new BigDecimal("500"), null, null));
+
+        assertAccepted(sell("1000", "100", "User 2"));
+        assertAccepted(buy("400", "100", "User 1"));
+
+        // Would take the position to 600 if filled
+        assertRejected(RejectReason.MAX_POSITION, buy("200", "100", "User 1"));
+        assertAccepted(buy("100", "100", "User 1"));
+
+        // Other users are not limited
+        assertAccepted(buy("2000", "99", "User 3"));
+
+        // Reducing the position is always allowed, and so is going as far
+        // short
+        assertAccepted(sell("1000", "99", "User 1"));
+        assertEquals(new BigDecimal("-500"), ex.getExecutedQuantityForUser(RIC, "User 1"));
+        assertRejected(RejectReason.MAX_POSITION, sell("1", "99", "User 1"));
+    }
+
+    @Test
+    public void testPriceBand() {
+        ex.setDefaultRiskLimits(new RiskLimits(null, null, null, new BigDecimal("0.05")));
+
+        // No band until there has been a trade
+        assertAccepted(sell("100", "100", "User 1"));
+        assertAccepted(buy("50", "100", "User 2"));
+
+        assertAccepted(buy("10", "95", "User 2"));
+        assertAccepted(sell("10", "105", "User 1"));
+        assertRejected(RejectReason.PRICE_BAND, buy("10", "94.9", "User 2"));
+        assertRejected(RejectReason.PRICE_BAND, sell("10", "105.1", "User 1"));
+
+        // A MARKET order has no price to check
+        assertAccepted(ex.submitOrder(new Order(Direction.BUY, RIC, new BigDecimal("10"), null, "User 2",
+                        OrderType.MARKET, TimeInForce.IOC)));
+    }
+
+    @Test
+    public void testUserLimitsOverrideDefault() {
+        ex.setDefaultRiskLimits(new RiskLimits(new BigDecimal("10"), null, null, null));
+        ex.setRiskLimits("User 1", RiskLimits.NONE);
+
+        assertAccepted(buy("100", "100", "User 1"));
+        assertRejected(RejectReason.MAX_ORDER_QUANTITY, buy("100", "100", "User 2"));
+
+        ex.setRiskLimits("User 1", null);
+        assertRejected(RejectReason.MAX_ORDER_QUANTITY, buy("100", "100", "User 1"));
+    }
+
+    @Test
+    public void testAddNewOrderThrowsTypedReason() {
+        ex.setDefaultRiskLimits(new RiskLimits(new BigDecimal("10"), null, null, null));
+
+        try {
+            ex.addNewOrder(order(Direction.BUY, "100", "100", "User 1"));
+            fail("Expected the order to be rejected");
+        } catch (OrderRejectedException e) {
+            assertEquals(RejectReason.MAX_ORDER_QUANTITY, e.getReason());
+        }
+
+        try {
+            ex.addNewOrder(order(Direction.BUY, "-1", "100", "User 1"));
+            fail("Expected the order to be rejected");
+        } catch (OrderRejectedException e) {
+            assertEquals(RejectReason.INVALID_ORDER, e.getReason());
+        }
+    }
+
+    @Test
+    public void testAmendmentsAreChecked() {
+        ex.setDefaultRiskLimits(new RiskLimits(new BigDecimal("100"), null, null, new BigDecimal("0.05")));
+
+        assertAccepted(sell("10", "100", "User 1"));
+        assertAccepted(buy("10", "100", "User 2"));
+        long id = ex.addNewOrder(order(Direction.BUY, "10", "99", "User 2"));
+
+        assertAmendRejected(RejectReason.MAX_ORDER_QUANTITY, id, "1000000", "99");
+        assertAmendRejected(RejectReason.PRICE_BAND, id, "10", "90");
+
+        // The order is left as it was
+        assertEquals(new BigDecimal("10"), ex.getOpenInterest(RIC, Direction.BUY).get(0).getQuantity());
+        assertTrue(ex.amendOrder(id, new BigDecimal("100"), new BigDecimal("99")));
+
+        // Only reducing the quantity is allowed even outside the band
+        ex.setDefaultRiskLimits(new RiskLimits(new BigDecimal("100"), null, null, new BigDecimal("0.001")));
+        assertTrue(ex.amendOrder(id, new BigDecimal("50"), new BigDecimal("99")));
+        assertAmendRejected(RejectReason.PRICE_BAND, id, "50", "98");
+    }
+
+    @Test
+    public void testSequencedExchangeSkipsRejectedOrders() throws Exception {
+        try (SequencedExchange sequenced = new SequencedExchange(new PriceTimeOrderMatcher(), INSTRUMENTS)) {
+            sequenced.setDefaultRiskLimits(new RiskLimits(new BigDecimal("10"), null, null, null));
+
+            sequenced.addNewOrder(order(Direction.BUY, "10", "100", "User 1"));
+            sequenced.addNewOrder(order(Direction.BUY, "11", "100", "User 1"));
+            sequenced.awaitProcessed();
+
+            assertEquals(1, sequenced.getAllOrders().size());
+            assertEquals(1, sequenced.getRejectedCount());
+        }
+    }
+
+    @Test
+    public void testShardedExchangeCountsRejectedOrders() throws Exception {
+        try (ShardedExchange sharded = new ShardedExchange(new PriceTimeOrderMatcher(), INSTRUMENTS, 2)) {
+            sharded.setDefaultRiskLimits(new RiskLimits(new BigDecimal("10"), null, null, null));
+
+            sharded.addNewOrder(order(Direction.BUY, "10", "100", "User 1"));
+            sharded.addNewOrder(order(Direction.BUY, "11", "100", "User 1"));
+            sharded.addNewOrder(new Order(Direction.SELL, "MSFT.OQ", new BigDecimal("12"), new BigDecimal("50"),
+                            "User 2"));
+            sharded.awaitProcessed();
+
+            assertEquals(1, sharded.getAllOrders().size());
+            assertEquals(2, sharded.getRejectedCount());
+        }
+    }
+
+    private OrderResult buy(String quantity, String price, String user) {
+        return ex.submitOrder(order(Direction.BUY, quantity, price, user));
+    }
+
+    private OrderResult sell(String quantity, String price, String user) {
+        return ex.submitOrder(order(Direction.SELL, quantity, price, user));
+    }
+
+    private OrderResult market(Direction direction, String quantity, String user) {
+        return ex.submitOrder(new Order(direction, RIC, new BigDecimal(quantity), null, user, OrderType.MARKET,
+                        TimeInForce.IOC));
+    }
+
+    private static Order order(Direction direction, String quantity, String price, String user) {
+        return new Order(direction, RIC, new BigDecimal(quantity), new BigDecimal(price), user);
+    }
+
+    private void assertAmendRejected(RejectReason reason, long id, String quantity, String price) {
+        try {
+            ex.amendOrder(id, new BigDecimal(quantity), new BigDecimal(price));
+            fail("Expected the amendment to be rejected");
+        } catch (OrderRejectedException e) {
+            assertEquals(reason, e.getReason());
+        }
+    }
+
+    private static void assertAccepted(OrderResult result) {
+        assertNull(result.getRejectReason());
+    }
+
+    private static void assertRejected(RejectReason reason, OrderResult result) {
+        assertEquals(OrderStatus.REJECTED, result.getStatus());
+        assertEquals(reason, result.getRejectReason());
+        assertEquals(-1, result.getId());
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.cs.exchange.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class BarSeriesTest {
+
+    private static final long MINUTE = BarResolution.MINUTE.getMillis();
+
+    @Test
+    public void testExecutionsFoldedIntoBarOfTheirTime() {
+        BarSeries bars = new BarSeries(BarResolution.MINUTE);
+
+        bars.add(MINUTE + 1, 10, 100);
+        bars.add(MINUTE + 2, 20, 105);
+        bars.add(2 * MINUTE - 1, 30, 95);
+        bars.add(3 * MINUTE, 40, 101);
+
+        // Nothing in the third minute so no bar
+        assertEquals(2, bars.size());
+        assertEquals(MINUTE, bars.getStart(0));
+        assertEquals(100, bars.getOpen(0));
+        assertEquals(105, bars.getHigh(0));
+        assertEquals(95, bars.getLow(0));
+        assertEquals(95, bars.getClose(0));
+        assertEquals(60, bars.getVolume(0));
+        assertEquals(10 * 100 + 20 * 105 + 30 * 95, bars.getNotional(0));
+        assertEquals(3, bars.getCount(0));
+
+        assertEquals(3 * MINUTE, bars.getStart(1));
+        assertEquals(101, bars.getOpen(1));
+        assertEquals(1, bars.getCount(1));
+
+        // Set back clock goes into the newest bar
+        bars.add(MINUTE, 1, 90);
+        assertEquals(2, bars.size());
+        assertEquals(90, bars.getLow(1));
+    }
+
+    @Test
+    public void testRangeFoundByStartTime() {
+        BarSeries bars = new BarSeries(BarResolution.MINUTE);
+
+        for (int i = 0; i < 100; i += 2) {
+            bars.add(i * MINUTE, 1, 100 + i);
+        }
+
+        assertEquals(0, bars.indexOf(0));
+        assertEquals(5, bars.indexOf(10 * MINUTE));
+        assertEquals(6, bars.indexOf(11 * MINUTE));
+        assertEquals(50, bars.indexOf(100 * MINUTE));
+    }
+
+    @Test
+    public void testOldestBarsMakeWayForNewest() {
+        BarSeries bars = new BarSeries(BarResolution.MINUTE, 40);
+
+        for (int i = 0; i < 100; i++) {
+            bars.add(i * MINUTE, 1, 100 + i);
+        }
+
+        assertEquals(40, bars.size());
+        assertEquals(60 * MINUTE, bars.getStart(0));
+        assertEquals(199, bars.getClose(39));
+        assertTrue(bars.covers(60 * MINUTE + 1));
+        assertFalse(bars.covers(59 * MINUTE));
+    }
+
+    @Test
+    public void testCoarsestFittingResolutionChosen() {
+        BarHistory history = new BarHistory();
+        long hour = BarResolution.HOUR.getMillis();
+
+        history.add(hour + 1, 1, 100);
+
+        assertSame(history.getSeries(BarResolution.HOUR), history.getSeriesFor(hour, 3 * hour));
+        assertSame(history.getSeries(BarResolution.MINUTE), history.getSeriesFor(hour, hour + 5 * MINUTE));
+
+        // Not a whole number of seconds
+        assertSame(history.getSeries(BarResolution.SECOND), history.getSeriesFor(hour + 1, hour + 5 * MINUTE));
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.cs.exchange.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cs.exchange.util.SymbolTable;
+
+
+public class ExecutionStatisticsTest {
+
+    private ExecutionStatistics stats;
+    
+    @Before
+    public void setUp() throws Exception {
+        stats = new ExecutionStatistics();
+    }
+
+    @Test
+    public void testRunningTotals() {
+        stats.addExecution("User 2", "User 1", 1000, 1002000);
+        stats.addExecution("User 1", "User 2", 500, 1030000);
+        stats.addExecution("User 3", "User 3", 200, 1000000);
+        
+        assertEquals(3, stats.getExecutionCount());
+        assertEquals(1700, stats.getTotalQuantity());
+        assertEquals(1000L * 1002000 + 500L * 1030000 + 200L * 1000000, stats.getTotalNotional());
+        assertEquals(1000000, stats.getLastPrice());
+        
+        assertEquals(-500, stats.getNetQuantity("User 1"));
+        assertEquals(500, stats.getNetQuantity("User 2"));
+        assertEquals(200, stats.getNetQuantity("User 3"));
+        assertEquals(0, stats.getNetQuantity("User 4"));
+        assertEquals(3, stats.getNetQuantities().size());
+    }
+
+    @Test
+    public void testUserIdsSharedBetweenStocks() {
+        SymbolTable users = new SymbolTable();
+        ExecutionStatistics vod = new ExecutionStatistics(users);
+        ExecutionStatistics bt = new ExecutionStatistics(users);
+
+        vod.addExecution(users.intern("User 1"), users.intern("User 2"), 100, 2000);
+        bt.addExecution(users.intern("User 3"), users.intern("User 1"), 50, 1000);
+        bt.addExecution("User 3", "User 4", 20, 1000);
+
+        assertEquals(4, users.size());
+        assertEquals(100, vod.getNetQuantity("User 1"));
+        assertEquals(-50, bt.getNetQuantity("User 1"));
+        assertEquals(70, bt.getNetQuantity("User 3"));
+        assertEquals(0, vod.getNetQuantity("User 3"));
+        assertEquals(2, vod.getNetQuantities().size());
+        assertEquals(3, bt.getNetQuantities().size());
+    }
+
+    @Test
+    public void testOverflowLeavesTotalsUnchanged() {
+        stats.addExecution("User 1", "User 2", 10, 100);
+        
+        try {
+            stats.addExecution("User 1", "User 2", Long.MAX_VALUE / 2, 100);
+            assertTrue("Notional should overflow", false);
+        } catch (ArithmeticException e) {
+            // expected
+        }
+        
+        assertEquals(1, stats.getExecutionCount());
+        assertEquals(10, stats.getTotalQuantity());
+        assertEquals(1000, stats.getTotalNotional());
+        assertEquals(10, stats.getNetQuantity("User 1"));
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.cs.exchange.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram();
+        
+        for (int i = 1; i <= 100; i++) {
+            h.record(i);
+        }
+        
+        assertEquals(100, h.getTotalCount());
+        assertEquals(1, h.getMin());
+        assertEquals(100, h.getMax());
+        assertEquals(50, h.getValueAtPercentile(50));
+        assertEquals(99, h.getValueAtPercentile(99));
+        assertEquals(100, h.getValueAtPercentile(100));
+        assertEquals(50.5, h.getMean(), 0.0001);
+    }
+
+    @Test
+    public void testLargeValuesAreWithinPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        long[] values = { 1000, 123456, 98765432, 1L << 40, Long.MAX_VALUE };
+        
+        for (long value : values) {
+            LatencyHistogram single = new LatencyHistogram();
+            single.record(value);
+            single.record(Long.MAX_VALUE);
+            h.record(value);
+            
+            // Reported as the top of the value's bucket
+            long reported = single.getValueAtPercentile(50);
+            assertTrue(reported >= value);
+            assertTrue(reported - value <= value / 64);
+        }
+        
+        
+        LatencyHistogram total = new LatencyHistogram();
+        total.add(h);
+        total.add(h);
+        assertEquals(10, total.getTotalCount());
+        assertEquals(Long.MAX_VALUE, total.getMax());
+        assertEquals(1000, total.getMin());
+        
+        h.reset();
+        assertEquals(0, h.getTotalCount());
+        assertEquals(0, h.getValueAtPercentile(99));
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.cs.exchange.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class LongObjectHashMapTest {
+
+    private LongObjectHashMap<String> map;
+    
+    @Before
+    public void setUp() throws Exception {
+        map = new LongObjectHashMap<String>(4);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1000L, "a"));
+        assertNull(map.put(-5L, "b"));
+        assertEquals("a", map.put(1000L, "c"));
+        
+        assertEquals(2, map.size());
+        assertEquals("c", map.get(1000L));
+        assertEquals("b", map.get(-5L));
+        assertNull(map.get(7L));
+        
+        assertEquals("c", map.remove(1000L));
+        assertNull(map.remove(1000L));
+        assertFalse(map.containsKey(1000L));
+        assertTrue(map.containsKey(-5L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void testAgainstHashMap() {
+        Map<Long, String> expected = new HashMap<Long, String>();
+        Random random = new Random(42);
+        
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(500);
+            
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        
+        assertEquals(expected.size(), map.size());
+        
+        for (long key = 0; key < 500; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+    }
+
+}